@@ -0,0 +1,455 @@
+package com.imageprocessing.execution;
+
+import com.imageprocessing.server.IntermediateResultCache;
+import com.imageprocessing.server.MatLease;
+import com.imageprocessing.server.OpenCVImageProcessor;
+import com.imageprocessing.ui.model.ToolInstance;
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Applies a workflow to many image files in parallel, as a stream.
+ *
+ * The workflow is planned once by {@link PipelineOptimizer}, which drops unused
+ * steps and redundant conversions. Files then flow through a {@link StagedPipeline}:
+ * a decode stage reads each file, a compute stage runs the planned tools in
+ * order, and an encode stage writes the results, so reading and writing overlap
+ * with computing other files and at most a bounded number of decoded images is
+ * held at once. Each file has its
+ * own namespace of cache keys so files don't see each other's intermediates; the
+ * keys are removed once the file is done. String parameters may use
+ * {@code {input}} (the file path) and {@code {name}} (its name without
+ * extension). Unless some parameter uses {@code {input}}, the decoded file is
+ * the first tool's input. Output paths without {@code {name}} get
+ * the file name as prefix so files don't overwrite each other's results, and
+ * relative output paths are resolved against the output directory.
+ */
+public class BatchProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchProcessor.class);
+
+    /** File extensions picked up when the input is a directory. */
+    public static final Set<String> IMAGE_EXTENSIONS = Set.of("png", "jpg", "jpeg", "tif", "tiff", "bmp", "webp");
+
+    private static final String[] CACHE_KEY_PARAMS = {"input_key", "source_key", "mask_key", "output_key"};
+    private static final String[] OUTPUT_PATH_PARAMS = {"output_path", "output_csv_path"};
+    private static final AtomicLong RUN_IDS = new AtomicLong();
+
+    // Tools whose output_path is written through the executor's storeOutput and can be deferred
+    private static final Set<String> DEFERRED_WRITE_TOOLS = Set.of("resize_image", "segment_image",
+        "color_to_grayscale", "filter_image", "denoise_image", "blur_image", "detect_contours");
+    private static final String DECODED_KEY = "#decoded";
+    private static final int IO_THREADS = 2;
+
+    private final DirectToolExecutor executor;
+    private final IntermediateResultCache cache;
+
+    public BatchProcessor(DirectToolExecutor executor, IntermediateResultCache cache) {
+        this.executor = executor;
+        this.cache = cache;
+    }
+
+    /**
+     * Resolve a directory (all image files directly in it) or a glob such as
+     * {@code /data/scans/*.png} to a sorted list of files.
+     */
+    public static List<Path> resolveInputs(String input) throws IOException {
+        Path path = Path.of(input);
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                return files.filter(Files::isRegularFile)
+                    .filter(file -> IMAGE_EXTENSIONS.contains(extension(file)))
+                    .sorted()
+                    .collect(Collectors.toList());
+            }
+        }
+
+        // Walk from the deepest directory without glob characters
+        Path base = path.isAbsolute() ? path.getRoot() : Path.of("");
+        Path pattern = Path.of("");
+        boolean inPattern = false;
+        for (Path part : path) {
+            inPattern |= part.toString().matches(".*[*?\\[{].*");
+            if (inPattern) {
+                pattern = pattern.resolve(part);
+            } else {
+                base = base.resolve(part);
+            }
+        }
+        if (!inPattern) {
+            return Files.isRegularFile(path) ? List.of(path) : List.of();
+        }
+
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        Path root = base.toString().isEmpty() ? Path.of(".") : base;
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                .filter(file -> matcher.matches(root.relativize(file)))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Run a workflow over files.
+     * @param files Input image files
+     * @param workflow Tools to run on each file, in order
+     * @param outputDir Directory for relative output paths (null for the working directory)
+     * @param concurrency Maximum number of files computed at once
+     * @return Per-file status, throughput and stage metrics
+     */
+    public Summary run(List<Path> files, List<ToolInstance> workflow, Path outputDir, int concurrency)
+            throws InterruptedException {
+        long runId = RUN_IDS.incrementAndGet();
+        boolean explicitInput = workflow.stream()
+            .flatMap(tool -> tool.getParameterValues().values().stream())
+            .anyMatch(value -> value instanceof String && ((String) value).contains("{input}"));
+
+        // A leading load_image is what the decode stage does; it decodes into that tool's output key
+        boolean leadingLoad = !explicitInput && !workflow.isEmpty() && "load_image".equals(workflow.get(0).getName());
+        Object loadKey = leadingLoad ? workflow.get(0).getParameter("output_key") : null;
+        String decodedKey = loadKey != null && !loadKey.toString().isBlank() ? loadKey.toString() : DECODED_KEY;
+
+        List<String> tools = new ArrayList<>();
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (ToolInstance tool : workflow) {
+            tools.add(tool.getName());
+            steps.add(tool.getParameterValues());
+        }
+        if (!explicitInput && !leadingLoad && !steps.isEmpty()) {
+            steps.get(0).remove("image_path");
+            steps.get(0).put("output_segmented".equals(tools.get(0)) ? "source_key" : "input_key", DECODED_KEY);
+        }
+        // Per-file keys are dropped after each file; only the decoded image of a
+        // leading load_image is produced regardless, so it is never planned away
+        PipelineOptimizer.Plan plan = PipelineOptimizer.optimize(tools, steps,
+            leadingLoad ? Set.of(decodedKey) : Set.of());
+        plan.getNotes().forEach(note -> logger.info("Batch plan: {}", note));
+
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            jobs.add(new Job(i, files.get(i), "batch-" + runId + "-" + i + ":"));
+        }
+
+        int threads = Math.max(1, Math.min(concurrency, files.size()));
+        int ioThreads = Math.min(IO_THREADS, threads);
+        StagedPipeline<Job> pipeline = new StagedPipeline<Job>("BatchProcessor", threads)
+            .addStage("decode", ioThreads, job -> decode(job, explicitInput, decodedKey))
+            .addStage("compute", threads, job -> compute(job, plan, leadingLoad, outputDir))
+            .addStage("encode", ioThreads, this::encode);
+
+        FileResult[] results = new FileResult[jobs.size()];
+        long start = System.nanoTime();
+        List<StagedPipeline.StageStats> stages = pipeline.run(jobs, (job, e) -> {
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            logger.warn("Batch step {} failed for {}: {}", job.current, job.file, message);
+            job.cleanup(cache);
+            results[job.index] = new FileResult(job.file, false, System.nanoTime() - job.start,
+                job.current + ": " + message);
+        });
+        long savedBytes = 0;
+        for (Job job : jobs) {
+            if (results[job.index] == null) {
+                results[job.index] = new FileResult(job.file, true, job.finished - job.start, "ok");
+                savedBytes += plan.getSavedBytes(job.pixels);
+            }
+        }
+        return new Summary(List.of(results), System.nanoTime() - start, threads, stages, plan, savedBytes);
+    }
+
+    /**
+     * I/O stage: read the file into the cache, unless the workflow loads it itself.
+     */
+    private void decode(Job job, boolean explicitInput, String decodedKey) throws Exception {
+        job.start = System.nanoTime();
+        job.current = "decode";
+        if (!explicitInput) {
+            String key = job.prefix + decodedKey;
+            job.pin(cache, key);
+            Mat image = OpenCVImageProcessor.loadImage(job.file.toString(), null, null);
+            job.pixels = (long) image.rows() * image.cols();
+            cache.put(key, image);
+        }
+    }
+
+    /**
+     * CPU stage: run the planned steps in memory. Images bound for disk are
+     * leased and handed to the encode stage instead of being written here.
+     */
+    private void compute(Job job, PipelineOptimizer.Plan plan, boolean leadingLoad, Path outputDir)
+            throws Exception {
+        for (PipelineOptimizer.Step step : plan.getSteps()) {
+            if (leadingLoad && step.getIndex() == 0) {
+                continue;
+            }
+            if (executor.isCancelled()) {
+                job.current = "compute";
+                throw new CancellationException("Cancelled");
+            }
+            job.current = step.getTool();
+            Map<String, Object> params = bindParameters(step.getParameters(), job, outputDir);
+
+            Object outputPath = params.get("output_path");
+            boolean deferWrite = DEFERRED_WRITE_TOOLS.contains(job.current)
+                && outputPath != null && !outputPath.toString().isBlank();
+            if (deferWrite) {
+                params.remove("output_path");
+                Object outputKey = params.get("output_key");
+                if (outputKey == null || outputKey.toString().isBlank()) {
+                    String key = job.prefix + "#output-" + step.getIndex();
+                    job.pin(cache, key);
+                    params.put("output_key", key);
+                }
+            }
+
+            executor.executeTool(job.current, params);
+
+            if (deferWrite) {
+                // The lease keeps this result even if a later step replaces the key
+                MatLease lease = cache.acquire(params.get("output_key").toString());
+                if (lease == null) {
+                    throw new IllegalStateException("Output was not produced");
+                }
+                job.writes.add(new Write(lease, outputPath.toString()));
+            }
+        }
+    }
+
+    /**
+     * I/O stage: write the leased results and drop the file's cache entries.
+     */
+    private void encode(Job job) {
+        job.current = "encode";
+        for (Write write : job.writes) {
+            OpenCVImageProcessor.saveImage(write.lease.mat(), write.path);
+        }
+        job.cleanup(cache);
+        job.finished = System.nanoTime();
+    }
+
+    private Map<String, Object> bindParameters(Map<String, Object> template, Job job, Path outputDir)
+            throws IOException {
+        Path file = job.file;
+        String name = job.name;
+        Map<String, Object> params = new HashMap<>();
+        for (Map.Entry<String, Object> entry : template.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                value = ((String) value).replace("{input}", file.toString()).replace("{name}", name);
+            }
+            params.put(entry.getKey(), value);
+        }
+
+        for (String param : CACHE_KEY_PARAMS) {
+            Object key = params.get(param);
+            if (key != null && !key.toString().isBlank()) {
+                params.put(param, job.prefix + key);
+                job.pin(cache, job.prefix + key);
+            }
+        }
+
+        for (String param : OUTPUT_PATH_PARAMS) {
+            Object original = template.get(param);
+            Object value = params.get(param);
+            if (value == null || value.toString().isBlank()) {
+                continue;
+            }
+            Path path = Path.of(value.toString());
+            if (!original.toString().contains("{name}")) {
+                path = path.resolveSibling(name + "_" + path.getFileName());
+            }
+            if (outputDir != null && !path.isAbsolute()) {
+                path = outputDir.resolve(path);
+            }
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            params.put(param, path.toString());
+        }
+        return params;
+    }
+
+    private static String stem(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private static String extension(Path file) {
+        String fileName = file.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * A file on its way through the stages.
+     */
+    private static class Job {
+        final int index;
+        final Path file;
+        final String name;
+        final String prefix;
+        final Set<String> keys = new LinkedHashSet<>();
+        final List<Write> writes = new ArrayList<>();
+        volatile String current = "decode";
+        volatile long start;
+        volatile long finished;
+        volatile long pixels;
+
+        Job(int index, Path file, String prefix) {
+            this.index = index;
+            this.file = file;
+            this.name = stem(file);
+            this.prefix = prefix;
+        }
+
+        void pin(IntermediateResultCache cache, String key) {
+            if (keys.add(key)) {
+                cache.pin(key);
+            }
+        }
+
+        void cleanup(IntermediateResultCache cache) {
+            writes.forEach(write -> write.lease.close());
+            for (String key : keys) {
+                cache.remove(key);
+                cache.unpin(key);
+            }
+        }
+    }
+
+    private static class Write {
+        final MatLease lease;
+        final String path;
+
+        Write(MatLease lease, String path) {
+            this.lease = lease;
+            this.path = path;
+        }
+    }
+
+    /**
+     * Outcome of one input file.
+     */
+    public static class FileResult {
+        private final Path file;
+        private final boolean success;
+        private final long nanos;
+        private final String message;
+
+        FileResult(Path file, boolean success, long nanos, String message) {
+            this.file = file;
+            this.success = success;
+            this.nanos = nanos;
+            this.message = message;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public double getMillis() {
+            return nanos / 1e6;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Outcome of a batch run.
+     */
+    public static class Summary {
+        private final List<FileResult> results;
+        private final long nanos;
+        private final int concurrency;
+        private final List<StagedPipeline.StageStats> stages;
+        private final PipelineOptimizer.Plan plan;
+        private final long savedBytes;
+
+        Summary(List<FileResult> results, long nanos, int concurrency, List<StagedPipeline.StageStats> stages,
+                PipelineOptimizer.Plan plan, long savedBytes) {
+            this.results = results;
+            this.nanos = nanos;
+            this.concurrency = concurrency;
+            this.stages = stages;
+            this.plan = plan;
+            this.savedBytes = savedBytes;
+        }
+
+        public List<FileResult> getResults() {
+            return results;
+        }
+
+        public long getSucceeded() {
+            return results.stream().filter(FileResult::isSuccess).count();
+        }
+
+        public long getFailed() {
+            return results.size() - getSucceeded();
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        /**
+         * Utilization of the decode, compute and encode stages.
+         */
+        public List<StagedPipeline.StageStats> getStages() {
+            return stages;
+        }
+
+        /**
+         * The workflow as it was run, after optimization.
+         */
+        public PipelineOptimizer.Plan getPlan() {
+            return plan;
+        }
+
+        /**
+         * Estimated bytes the optimization did not allocate, over all succeeded files.
+         */
+        public long getSavedBytes() {
+            return savedBytes;
+        }
+
+        /**
+         * Files per second over the whole run.
+         */
+        public double getThroughput() {
+            return nanos == 0 ? 0 : results.size() / getSeconds();
+        }
+    }
+}
@@ -1,18 +1,26 @@
 package com.imageprocessing.execution;
 
+import com.imageprocessing.server.DecodedImageCache;
 import com.imageprocessing.server.OpenCVImageProcessor;
 import com.imageprocessing.server.IntermediateResultCache;
+import com.imageprocessing.server.MatLease;
 import com.imageprocessing.server.TextResultCache;
 import com.imageprocessing.server.BlobInfo;
 import com.imageprocessing.ui.model.ToolInstance;
-import javafx.collections.ObservableList;
 import org.opencv.core.Mat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -27,22 +35,100 @@ public class DirectToolExecutor {
 
     private static final Logger logger = LoggerFactory.getLogger(DirectToolExecutor.class);
 
+    // Tool parameters that name entries in the intermediate result cache
+    private static final String[] CACHE_KEY_PARAMS = {"input_key", "source_key", "mask_key", "output_key"};
+    private static final String[] READ_KEY_PARAMS = {"input_key", "source_key", "mask_key"};
+
+    // Tools that are cheap and only have an effect when run, so they are never reused
+    private static final Set<String> ALWAYS_RUN_TOOLS = Set.of("display_image");
+
     private final OpenCVImageProcessor processor;
     private final IntermediateResultCache cache;
+    private final DecodedImageCache decodedImages;
     private final ExecutorService executor;
+    private final ExecutorService pipelineExecutor;
+    private final int parallelism;
+    private final boolean ownsThreads;
     private volatile boolean cancelled = false;
     private Consumer<String> displayImageCallback;
 
+    /**
+     * Thread pools shared by several executors, so executors created per run
+     * (one per batch or workflow tool call) reuse threads instead of starting
+     * their own, and all their tools together stay within one bounded pool.
+     */
+    public static class Threads {
+        private final ExecutorService tools;
+        private final ExecutorService pipelines;
+        private final int parallelism;
+
+        /**
+         * @param parallelism Number of tool threads
+         */
+        public Threads(int parallelism) {
+            this.parallelism = Math.max(2, parallelism);
+            this.tools = Executors.newFixedThreadPool(this.parallelism, r -> {
+                Thread t = new Thread(r, "DirectToolExecutor");
+                t.setDaemon(true);
+                return t;
+            });
+            // Each running pipeline waits on one orchestration thread; idle ones are reused
+            this.pipelines = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "DirectToolExecutor-pipeline");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        public void shutdown() {
+            tools.shutdown();
+            pipelines.shutdown();
+        }
+    }
+
     public DirectToolExecutor(OpenCVImageProcessor processor, IntermediateResultCache cache) {
+        this(processor, cache, new DecodedImageCache());
+    }
+
+    /**
+     * @param decodedImages Decode cache for path/URL inputs, shared with the MCP server
+     */
+    public DirectToolExecutor(OpenCVImageProcessor processor, IntermediateResultCache cache,
+                              DecodedImageCache decodedImages) {
         this.processor = processor;
         this.cache = cache;
-        // Use fixed thread pool with 2 threads to avoid deadlock
-        // One thread for pipeline orchestration, one for tool execution
-        this.executor = Executors.newFixedThreadPool(2, r -> {
+        this.decodedImages = decodedImages;
+        // Tools run on a pool sized to the CPU count so independent pipeline
+        // branches overlap; pipelines are orchestrated on their own thread so
+        // waiting for tools never occupies a tool thread
+        this.parallelism = Math.max(2, Runtime.getRuntime().availableProcessors());
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
             Thread t = new Thread(r, "DirectToolExecutor");
             t.setDaemon(true);
             return t;
         });
+        this.pipelineExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "DirectToolExecutor-pipeline");
+            t.setDaemon(true);
+            return t;
+        });
+        this.ownsThreads = true;
+    }
+
+    /**
+     * Create an executor for one run on shared threads. It has its own cancel
+     * flag and display callback; {@link #shutdown()} leaves the threads running.
+     * Concurrent pipelines on shared threads are not serialized.
+     */
+    public DirectToolExecutor(OpenCVImageProcessor processor, IntermediateResultCache cache,
+                              DecodedImageCache decodedImages, Threads threads) {
+        this.processor = processor;
+        this.cache = cache;
+        this.decodedImages = decodedImages;
+        this.parallelism = threads.parallelism;
+        this.executor = threads.tools;
+        this.pipelineExecutor = threads.pipelines;
+        this.ownsThreads = false;
     }
 
     /**
@@ -89,6 +175,12 @@ public class DirectToolExecutor {
                 logger.info("Tool completed successfully: {} - {}", toolName, resultMessage);
                 return ToolResult.success(resultMessage);
 
+            } catch (CancellationException e) {
+                // Cancelled between tiles of a large image
+                logger.info("Tool execution cancelled while running: {}", toolName);
+                toolInstance.setStatus(ToolInstance.Status.ERROR);
+                toolInstance.setResult("Cancelled");
+                return ToolResult.cancelled();
             } catch (Exception e) {
                 logger.error("Tool execution failed: " + toolName + " - " + e.getClass().getSimpleName() + ": " + e.getMessage(), e);
                 toolInstance.setStatus(ToolInstance.Status.ERROR);
@@ -101,62 +193,237 @@ public class DirectToolExecutor {
     }
 
     /**
-     * Execute entire pipeline sequentially.
+     * Execute entire pipeline, running independent tools concurrently.
+     * Only tools that are dirty or downstream of a dirty tool run; the others
+     * reuse their cached results.
      */
     public CompletableFuture<PipelineResult> executePipeline(
-            ObservableList<ToolInstance> tools,
+            List<ToolInstance> tools,
             Consumer<ToolInstance> progressCallback
+    ) {
+        return executePipeline(tools, progressCallback, true);
+    }
+
+    /**
+     * Execute entire pipeline, running independent tools concurrently.
+     * @param incremental Reuse the cached results of tools whose parameters and
+     *                    inputs are unchanged since their last successful run
+     */
+    public CompletableFuture<PipelineResult> executePipeline(
+            List<ToolInstance> tools,
+            Consumer<ToolInstance> progressCallback,
+            boolean incremental
     ) {
         logger.info("DirectToolExecutor.executePipeline() called with {} tools", tools.size());
         return CompletableFuture.supplyAsync(() -> {
             cancelled = false;
             PipelineResult result = new PipelineResult();
 
-            logger.info("Starting pipeline execution loop");
-            for (int i = 0; i < tools.size(); i++) {
-                // Check cancellation at the start of each iteration
-                if (cancelled) {
-                    logger.info("Pipeline cancelled at tool {}", (i + 1));
-                    result.setCancelled(true);
-                    break;
+            // Pin every key the pipeline reads or writes so the cache budget
+            // cannot evict intermediates that later tools still need
+            List<String> pinnedKeys = collectCacheKeys(tools);
+            pinnedKeys.forEach(cache::pin);
+            try {
+                runPipeline(tools, progressCallback, result, incremental);
+            } finally {
+                pinnedKeys.forEach(cache::unpin);
+            }
+
+            logger.info("Pipeline execution completed. Total tools: {}, Reused: {}, Errors: {}, Cancelled: {}",
+                    tools.size(), result.getReusedCount(), result.hasErrors(), result.isCancelled());
+            return result;
+        }, pipelineExecutor);
+    }
+
+    /**
+     * Run the tools of a pipeline as a dependency graph: each tool starts once the
+     * tools producing its inputs have finished, and independent branches run
+     * concurrently. Errors are recorded in the result in pipeline order.
+     */
+    private void runPipeline(List<ToolInstance> tools, Consumer<ToolInstance> progressCallback,
+                             PipelineResult result, boolean incremental) {
+        logger.info("Starting pipeline execution on {} threads", parallelism);
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (ToolInstance tool : tools) {
+            steps.add(tool.getParameterValues());
+        }
+        boolean[] rerun = incremental ? planRerun(tools, steps) : null;
+
+        PipelineScheduler.schedule(steps,
+            index -> {
+                ToolInstance tool = tools.get(index);
+                if (rerun != null && !rerun[index]) {
+                    logger.info("Reusing cached result of tool {}/{}: {}", (index + 1), tools.size(), tool.getName());
+                    tool.setStatus(ToolInstance.Status.COMPLETED);
+                    tool.setResult(tool.getRunResult());
+                    result.addReused();
+                    if (progressCallback != null) {
+                        progressCallback.accept(tool);
+                    }
+                    return CompletableFuture.completedFuture(null);
                 }
 
-                ToolInstance tool = tools.get(i);
-                logger.info("Executing tool {}/{}: {}", (i + 1), tools.size(), tool.getName());
+                logger.info("Executing tool {}/{}: {}", (index + 1), tools.size(), tool.getName());
+                // Upstream tools have finished, so the inputs are final; edits from
+                // here on are not guaranteed to be seen by this run
+                long editCount = tool.getEditCount();
+                String inputs = inputStamp(tool.getParameterValues());
+                return executeTool(tool).thenAccept(toolResult -> {
+                    logger.info("Tool {} completed with status: {}", tool.getName(), tool.getStatus());
+                    if (toolResult.isSuccess()) {
+                        tool.markClean(inputs + outputStamp(tool.getParameterValues()), editCount);
+                    } else {
+                        tool.markDirty();
+                    }
+                    if (progressCallback != null) {
+                        progressCallback.accept(tool);
+                    }
+                });
+            },
+            () -> cancelled,
+            (index, e) -> {
+                ToolInstance tool = tools.get(index);
+                logger.error("Exception during tool execution: " + tool.getName(), e);
+                tool.markDirty();
+                tool.setStatus(ToolInstance.Status.ERROR);
+                tool.setErrorMessage("Execution exception: " + e.getMessage());
+            }
+        ).join();
+
+        if (cancelled) {
+            logger.info("Pipeline cancelled");
+            result.setCancelled(true);
+        }
+        for (ToolInstance tool : tools) {
+            if (tool.getStatus() == ToolInstance.Status.ERROR) {
+                logger.warn("Tool {} failed: {}", tool.getName(), tool.getErrorMessage());
+                result.addError(tool.getName() + ": " + tool.getErrorMessage());
+            }
+        }
+    }
+
+    /**
+     * Decide which tools must run: tools whose parameters were edited, whose
+     * input keys, input files or results changed since their last successful
+     * run, or whose results are gone, plus everything downstream of them.
+     * Pipelines that write a cache key or file more than once always run fully,
+     * since a reused step could then read another step's result.
+     */
+    private boolean[] planRerun(List<ToolInstance> tools, List<Map<String, Object>> steps) {
+        boolean[] rerun = new boolean[tools.size()];
+        if (hasRepeatedWrites(steps)) {
+            Arrays.fill(rerun, true);
+            return rerun;
+        }
+
+        List<TreeSet<Integer>> dependencies = PipelineScheduler.dependencies(steps);
+        for (int i = 0; i < tools.size(); i++) {
+            ToolInstance tool = tools.get(i);
+            Map<String, Object> params = steps.get(i);
+            String outputPath = getStringParam(params, "output_path");
+            String csvPath = getStringParam(params, "output_csv_path");
+
+            rerun[i] = ALWAYS_RUN_TOOLS.contains(tool.getName())
+                || tool.isDirty()
+                || tool.getRunStamp() == null
+                || !tool.getRunStamp().equals(inputStamp(params) + outputStamp(params))
+                || (outputPath != null && !outputPath.isBlank() && !Files.exists(Path.of(outputPath)))
+                || (csvPath != null && !csvPath.isBlank() && !Files.exists(Path.of(csvPath)));
+            for (int dependency : dependencies.get(i)) {
+                rerun[i] |= rerun[dependency];
+            }
+        }
+        return rerun;
+    }
+
+    private static boolean hasRepeatedWrites(List<Map<String, Object>> steps) {
+        Set<String> written = new HashSet<>();
+        for (Map<String, Object> params : steps) {
+            for (String param : new String[] {"output_key", "output_path", "output_csv_path"}) {
+                Object value = params.get(param);
+                if (value != null && !value.toString().isBlank() && !written.add(param + ":" + value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
+    /**
+     * Versions of the cached inputs and modification times of the input files of a step.
+     */
+    private String inputStamp(Map<String, Object> params) {
+        StringBuilder stamp = new StringBuilder();
+        for (String param : READ_KEY_PARAMS) {
+            String key = getStringParam(params, param);
+            if (key != null && !key.isBlank()) {
+                stamp.append(param).append('=').append(key).append('@').append(cache.getVersion(key)).append(';');
+            }
+        }
+        for (String param : new String[] {"image_path", "mask_path"}) {
+            String path = getStringParam(params, param);
+            if (path != null && !path.isBlank()) {
+                long modified;
                 try {
-                    // Execute tool synchronously and wait for completion
-                    executeTool(tool).thenAccept(toolResult -> {
-                        logger.info("Tool {} completed with status: {}", tool.getName(), tool.getStatus());
-                        if (progressCallback != null) {
-                            progressCallback.accept(tool);
-                        }
-                    }).join(); // Wait for each tool to complete
+                    modified = Files.getLastModifiedTime(Path.of(path)).toMillis();
                 } catch (Exception e) {
-                    logger.error("Exception during tool execution: " + tool.getName(), e);
-                    tool.setStatus(ToolInstance.Status.ERROR);
-                    tool.setErrorMessage("Execution exception: " + e.getMessage());
-                    result.addError(tool.getName() + ": " + e.getMessage());
+                    modified = -1;
                 }
+                stamp.append(param).append('=').append(path).append('@').append(modified).append(';');
+            }
+        }
+        return stamp.toString();
+    }
 
-                // Check cancellation immediately after tool completion
-                if (cancelled) {
-                    logger.info("Pipeline cancelled after tool {}", tool.getName());
-                    result.setCancelled(true);
-                    break;
-                }
+    /**
+     * Version of the cached result of a step.
+     */
+    private String outputStamp(Map<String, Object> params) {
+        String key = getStringParam(params, "output_key");
+        return key != null && !key.isBlank() ? "output_key=" + key + "@" + cache.getVersion(key) : "";
+    }
 
-                if (tool.getStatus() == ToolInstance.Status.ERROR) {
-                    logger.warn("Tool {} failed: {}", tool.getName(), tool.getErrorMessage());
-                    result.addError(tool.getName() + ": " + tool.getErrorMessage());
-                    // Don't break on error - let it continue or check if we should stop on first error
+    /**
+     * Collect all cache keys referenced by the tools of a pipeline.
+     */
+    private static List<String> collectCacheKeys(List<ToolInstance> tools) {
+        List<String> keys = new ArrayList<>();
+        for (ToolInstance tool : tools) {
+            for (String param : CACHE_KEY_PARAMS) {
+                Object value = tool.getParameter(param);
+                if (value != null && !value.toString().isBlank()) {
+                    keys.add(value.toString());
                 }
             }
+        }
+        return keys;
+    }
 
-            logger.info("Pipeline execution completed. Total tools: {}, Errors: {}, Cancelled: {}",
-                    tools.size(), result.hasErrors(), result.isCancelled());
-            return result;
-        }, executor);
+    /**
+     * Execute a workflow in streaming mode over a sequence of image files.
+     * Files are decoded, computed and written by separate stages connected by
+     * bounded queues; see {@link BatchProcessor}. Tool instances are used as
+     * templates and their status is not updated.
+     * @param tools Workflow to apply to each file
+     * @param files Input image files, in order
+     * @param outputDir Directory for relative output paths (null for the working directory)
+     * @return Per-file status, throughput and stage utilization
+     */
+    public CompletableFuture<BatchProcessor.Summary> executeStreaming(List<ToolInstance> tools, List<Path> files,
+                                                                      Path outputDir) {
+        return CompletableFuture.supplyAsync(() -> {
+            cancelled = false;
+            try {
+                BatchProcessor.Summary summary = new BatchProcessor(this, cache).run(files, tools, outputDir, parallelism);
+                logger.info("Streaming execution completed. Files: {}, Failed: {}, {} files/s",
+                    summary.getResults().size(), summary.getFailed(), String.format("%.2f", summary.getThroughput()));
+                summary.getStages().forEach(stage -> logger.info("Stage {}", stage));
+                return summary;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted");
+            }
+        }, pipelineExecutor);
     }
 
     /**
@@ -166,17 +433,33 @@ public class DirectToolExecutor {
         cancelled = true;
     }
 
+    boolean isCancelled() {
+        return cancelled;
+    }
+
     /**
-     * Shutdown the executor service.
+     * Allow tools to run again after {@link #cancel()}; used by {@link LivePreview}
+     * before each run.
+     */
+    void clearCancel() {
+        cancelled = false;
+    }
+
+    /**
+     * Shutdown the executor service. Shared threads are left running.
      */
     public void shutdown() {
-        executor.shutdown();
+        if (ownsThreads) {
+            executor.shutdown();
+            pipelineExecutor.shutdown();
+        }
     }
 
     /**
      * Route tool execution to the appropriate processor method.
+     * Runs on the calling thread; also used by {@link BatchProcessor}.
      */
-    private Object executeTool(String toolName, Map<String, Object> params) throws Exception {
+    Object executeTool(String toolName, Map<String, Object> params) throws Exception {
         return switch (toolName) {
             case "load_image" -> executeLoadImage(params);
             case "resize_image" -> executeResize(params);
@@ -200,7 +483,7 @@ public class DirectToolExecutor {
         String imageData = getStringParam(params, "image_data");
         String outputKey = getStringParam(params, "output_key");
 
-        Mat image = OpenCVImageProcessor.loadImage(imagePath, imageUrl, imageData);
+        Mat image = decodedImages.load(imagePath, imageUrl, imageData, 1);
 
         if (outputKey != null && !outputKey.isBlank()) {
             cache.put(outputKey, image);
@@ -213,99 +496,99 @@ public class DirectToolExecutor {
     }
 
     private Object executeResize(Map<String, Object> params) throws Exception {
-        Mat image = getInputImage(params);
         int width = getIntParam(params, "width");
         int height = getIntParam(params, "height");
         String interpolation = getStringParam(params, "interpolation", "LINEAR");
 
-        Mat resized = OpenCVImageProcessor.resize(image, width, height, interpolation);
-
-        storeOutput(params, resized);
-        releaseInputIfNotCached(params, image);
+        try (MatLease image = getInputImage(params)) {
+            Mat resized = OpenCVImageProcessor.resize(image.mat(), width, height, interpolation);
+            storeOutput(params, resized);
+        }
 
         return String.format("Resized to %dx%d using %s interpolation", width, height, interpolation);
     }
 
     private Object executeSegment(Map<String, Object> params) throws Exception {
-        Mat image = getInputImage(params);
         double threshold = getDoubleParam(params, "threshold", 127.0);
         String thresholdType = getStringParam(params, "threshold_type", "BINARY");
         boolean invert = getBooleanParam(params, "invert", false);
 
-        Mat segmented = OpenCVImageProcessor.segment(image, threshold, thresholdType, invert);
-
-        storeOutput(params, segmented);
-        releaseInputIfNotCached(params, image);
+        try (MatLease image = getInputImage(params)) {
+            Mat segmented = OpenCVImageProcessor.segment(image.mat(), threshold, thresholdType, invert);
+            storeOutput(params, segmented);
+        }
 
         String invertStr = invert ? ", inverted" : "";
         return String.format("Segmented using threshold %.1f, type: %s%s", threshold, thresholdType, invertStr);
     }
 
     private Object executeColorToGrayscale(Map<String, Object> params) throws Exception {
-        Mat image = getInputImage(params);
-        Mat gray = OpenCVImageProcessor.colorToGrayscale(image);
-
-        storeOutput(params, gray);
-        releaseInputIfNotCached(params, image);
+        int channels;
+        try (MatLease image = getInputImage(params)) {
+            channels = image.mat().channels();
+            Mat gray = OpenCVImageProcessor.colorToGrayscale(image.mat());
+            storeOutput(params, gray);
+        }
 
-        return String.format("Converted to grayscale (channels: %d -> 1)", image.channels());
+        return String.format("Converted to grayscale (channels: %d -> 1)", channels);
     }
 
     private Object executeFilter(Map<String, Object> params) throws Exception {
-        Mat image = getInputImage(params);
         String filterType = getStringParam(params, "filter_type", "GAUSSIAN");
         int kernelSize = getIntParam(params, "kernel_size", 5);
         double sigmaX = getDoubleParam(params, "sigma_x", 1.0);
         double sigmaColor = getDoubleParam(params, "sigma_color", 75.0);
         double sigmaSpace = getDoubleParam(params, "sigma_space", 75.0);
 
-        Mat filtered = OpenCVImageProcessor.filter(image, filterType, kernelSize,
-                sigmaX, sigmaColor, sigmaSpace);
-
-        storeOutput(params, filtered);
-        releaseInputIfNotCached(params, image);
+        try (MatLease image = getInputImage(params)) {
+            Mat filtered = OpenCVImageProcessor.filter(image.mat(), filterType, kernelSize,
+                    sigmaX, sigmaColor, sigmaSpace, () -> cancelled);
+            storeOutput(params, filtered);
+        }
 
         return String.format("Applied %s filter with kernel size %d", filterType, kernelSize);
     }
 
     private Object executeDenoise(Map<String, Object> params) throws Exception {
-        Mat image = getInputImage(params);
         float h = getFloatParam(params, "h", 10.0f);
         int templateWindowSize = getIntParam(params, "template_window_size", 7);
         int searchWindowSize = getIntParam(params, "search_window_size", 21);
 
-        Mat denoised = OpenCVImageProcessor.denoise(image, h, templateWindowSize, searchWindowSize);
-
-        storeOutput(params, denoised);
-        releaseInputIfNotCached(params, image);
+        try (MatLease image = getInputImage(params)) {
+            Mat denoised = OpenCVImageProcessor.denoise(image.mat(), h, templateWindowSize, searchWindowSize,
+                    () -> cancelled);
+            storeOutput(params, denoised);
+        }
 
         return String.format("Denoised with h=%.1f, template=%d, search=%d",
                 h, templateWindowSize, searchWindowSize);
     }
 
     private Object executeBlur(Map<String, Object> params) throws Exception {
-        Mat image = getInputImage(params);
         String blurType = getStringParam(params, "blur_type", "GAUSSIAN");
         int kernelSize = getIntParam(params, "kernel_size", 5);
         double angle = getDoubleParam(params, "angle", 0.0);
 
-        Mat blurred = OpenCVImageProcessor.blur(image, blurType, kernelSize, angle);
-
-        storeOutput(params, blurred);
-        releaseInputIfNotCached(params, image);
+        try (MatLease image = getInputImage(params)) {
+            Mat blurred = OpenCVImageProcessor.blur(image.mat(), blurType, kernelSize, angle, () -> cancelled);
+            storeOutput(params, blurred);
+        }
 
         return String.format("Applied %s blur with kernel size %d", blurType, kernelSize);
     }
 
     private Object executeDetectContours(Map<String, Object> params) throws Exception {
-        Mat image = getInputImage(params);
         double minArea = getDoubleParam(params, "min_area", 100.0);
         double maxArea = getDoubleParam(params, "max_area", -1.0);
         double minCircularity = getDoubleParam(params, "min_circularity", 0.0);
         double maxCircularity = getDoubleParam(params, "max_circularity", 1.0);
+        boolean binaryInput = getBooleanParam(params, PipelineOptimizer.BINARY_INPUT_PARAM, false);
 
-        Map<String, Object> result = OpenCVImageProcessor.detectContours(
-                image, minArea, maxArea, minCircularity, maxCircularity);
+        Map<String, Object> result;
+        try (MatLease image = getInputImage(params)) {
+            result = OpenCVImageProcessor.detectContours(
+                    image.mat(), minArea, maxArea, minCircularity, maxCircularity, binaryInput);
+        }
 
         Mat visualization = (Mat) result.get("visualization");
         int count = (int) result.get("count");
@@ -327,27 +610,30 @@ public class DirectToolExecutor {
         }
 
         storeOutput(params, visualization);
-        releaseInputIfNotCached(params, image);
 
         return String.format("Detected %d contours (min area: %.1f, circularity: %.2f-%.2f)",
                 count, minArea, minCircularity, maxCircularity);
     }
 
     private Object executeOutputSegmented(Map<String, Object> params) throws Exception {
-        Mat sourceImage = getInputImageWithKey(params, "source_key", "image_path", "image_url", "image_data");
-        Mat mask = getInputImageWithKey(params, "mask_key", "mask_path", null, null);
         String outputPath = getStringParam(params, "output_path", "./segmented_output.png");
 
-        List<String> savedFiles = OpenCVImageProcessor.outputSegmented(sourceImage, mask, outputPath);
-
-        releaseInputIfNotCached(params, sourceImage, "source_key");
-        releaseInputIfNotCached(params, mask, "mask_key");
+        List<String> savedFiles;
+        try (MatLease sourceImage = getInputImageWithKey(params, "source_key", "image_path", "image_url", "image_data");
+             MatLease mask = getInputImageWithKey(params, "mask_key", "mask_path", null, null)) {
+            savedFiles = OpenCVImageProcessor.outputSegmented(sourceImage.mat(), mask.mat(), outputPath);
+        }
 
         return String.format("Extracted %d regions, saved to %s", savedFiles.size(), outputPath);
     }
 
     private Object executeDisplayImage(Map<String, Object> params) throws Exception {
-        Mat image = getInputImage(params);
+        int width;
+        int height;
+        try (MatLease image = getInputImage(params)) {
+            width = image.mat().cols();
+            height = image.mat().rows();
+        }
 
         // Get the cache key if the image is cached
         String cacheKey = getStringParam(params, "input_key");
@@ -362,26 +648,31 @@ public class DirectToolExecutor {
             logger.warn("No cache key provided for display_image - cannot display image");
         }
 
-        releaseInputIfNotCached(params, image);
-
-        return String.format("Image displayed: %dx%d", image.cols(), image.rows());
+        return String.format("Image displayed: %dx%d", width, height);
     }
 
     // ==================== HELPER METHODS ====================
 
-    private Mat getInputImage(Map<String, Object> params) throws Exception {
+    private MatLease getInputImage(Map<String, Object> params) throws Exception {
         return getInputImageWithKey(params, "input_key", "image_path", "image_url", "image_data");
     }
 
-    private Mat getInputImageWithKey(Map<String, Object> params,
-                                     String cacheKey,
-                                     String pathKey,
-                                     String urlKey,
-                                     String dataKey) throws Exception {
+    /**
+     * Resolve an input image. Cached images are leased and shared with the cache;
+     * images loaded from path/url/data are owned by the returned lease.
+     */
+    private MatLease getInputImageWithKey(Map<String, Object> params,
+                                          String cacheKey,
+                                          String pathKey,
+                                          String urlKey,
+                                          String dataKey) throws Exception {
         // Try cache first
         String key = getStringParam(params, cacheKey);
-        if (key != null && !key.isBlank() && cache.containsKey(key)) {
-            return cache.get(key);
+        if (key != null && !key.isBlank()) {
+            MatLease lease = cache.acquire(key);
+            if (lease != null) {
+                return lease;
+            }
         }
 
         // Try loading from path/url/data
@@ -390,7 +681,7 @@ public class DirectToolExecutor {
         String imageData = dataKey != null ? getStringParam(params, dataKey) : null;
 
         if (imagePath != null || imageUrl != null || imageData != null) {
-            return OpenCVImageProcessor.loadImage(imagePath, imageUrl, imageData);
+            return MatLease.owned(decodedImages.load(imagePath, imageUrl, imageData, 1));
         }
 
         throw new IllegalArgumentException("No input image specified (cache key, path, url, or data)");
@@ -412,19 +703,6 @@ public class DirectToolExecutor {
         }
     }
 
-    private void releaseInputIfNotCached(Map<String, Object> params, Mat image) {
-        releaseInputIfNotCached(params, image, "input_key");
-    }
-
-    private void releaseInputIfNotCached(Map<String, Object> params, Mat image, String cacheKey) {
-        String key = getStringParam(params, cacheKey);
-        if (key == null || key.isBlank() || !cache.containsKey(key)) {
-            if (image != null) {
-                image.release();
-            }
-        }
-    }
-
     private String getStringParam(Map<String, Object> params, String key) {
         return getStringParam(params, key, null);
     }
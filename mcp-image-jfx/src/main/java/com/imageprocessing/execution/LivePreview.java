@@ -0,0 +1,459 @@
+package com.imageprocessing.execution;
+
+import com.imageprocessing.server.DecodedImageCache;
+import com.imageprocessing.server.IntermediateResultCache;
+import com.imageprocessing.server.MatLease;
+import com.imageprocessing.server.OpenCVImageProcessor;
+import com.imageprocessing.ui.model.ToolInstance;
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Re-runs the part of a workflow that a selected tool depends on, on a
+ * downscaled proxy of the input image, while its parameters are being edited.
+ *
+ * Requests are debounced; a newer request cancels the run in progress (between
+ * tools, and between tiles of tiled operations). Input images are replaced by a
+ * cached proxy of at most {@link #MAX_PROXY_PIXELS}, absolute sizes (resize
+ * targets, contour areas) are scaled to match, and outputs are not written to
+ * disk. Intermediates live under their own cache keys and are reused while the
+ * tools producing them are unchanged. When a run exceeds the frame budget the
+ * proxy is halved for the next run, and it grows back while runs are fast.
+ */
+public class LivePreview {
+
+    private static final Logger logger = LoggerFactory.getLogger(LivePreview.class);
+
+    /** Largest proxy image, in pixels. */
+    public static final long MAX_PROXY_PIXELS = 1024L * 1024;
+
+    /** Smallest proxy the frame budget may shrink to, in pixels. */
+    public static final long MIN_PROXY_PIXELS = 128L * 1024;
+
+    public static final long DEFAULT_DEBOUNCE_MS = 150;
+    public static final long DEFAULT_FRAME_BUDGET_MS = 100;
+
+    private static final String PREFIX = "preview:";
+    private static final String SELECTED_KEY = PREFIX + "#selected";
+    private static final String[] CACHE_KEY_PARAMS = {"input_key", "source_key", "mask_key", "output_key"};
+    private static final String[] READ_KEY_PARAMS = {"input_key", "source_key", "mask_key"};
+    private static final String[] OUTPUT_PARAMS = {"output_path", "output_csv_path", "output_csv_key"};
+    private static final Set<String> DISPLAY_TOOLS = Set.of("display_image", "output_segmented");
+
+    /**
+     * A rendered preview, or the error of a failed run.
+     */
+    public static class Frame {
+        private final String toolName;
+        private final BufferedImage image;
+        private final long millis;
+        private final long proxyPixels;
+        private final String error;
+
+        Frame(String toolName, BufferedImage image, long millis, long proxyPixels, String error) {
+            this.toolName = toolName;
+            this.image = image;
+            this.millis = millis;
+            this.proxyPixels = proxyPixels;
+            this.error = error;
+        }
+
+        public String getToolName() {
+            return toolName;
+        }
+
+        /**
+         * The selected tool's result, or null if the run failed.
+         */
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * Time from the start of the run to the rendered image.
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        public long getProxyPixels() {
+            return proxyPixels;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    private final DirectToolExecutor executor;
+    private final IntermediateResultCache cache;
+    private final DecodedImageCache decodedImages;
+    private final Consumer<Frame> onFrame;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong generation = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private ScheduledFuture<?> pending;
+
+    // Only touched on the scheduler thread
+    private final Map<String, String> signatures = new HashMap<>();
+    private final Map<String, Double> proxyScales = new HashMap<>();
+    private long proxyPixels = MAX_PROXY_PIXELS;
+
+    private volatile long debounceMs = DEFAULT_DEBOUNCE_MS;
+    private volatile long frameBudgetMs = DEFAULT_FRAME_BUDGET_MS;
+
+    /**
+     * @param onFrame Receives each finished preview, on the preview thread
+     */
+    public LivePreview(OpenCVImageProcessor processor, IntermediateResultCache cache,
+                       DecodedImageCache decodedImages, Consumer<Frame> onFrame) {
+        this.executor = new DirectToolExecutor(processor, cache, decodedImages);
+        this.cache = cache;
+        this.decodedImages = decodedImages;
+        this.onFrame = onFrame;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "LivePreview");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void setDebounceMs(long debounceMs) {
+        this.debounceMs = debounceMs;
+    }
+
+    public void setFrameBudgetMs(long frameBudgetMs) {
+        this.frameBudgetMs = frameBudgetMs;
+    }
+
+    /**
+     * Preview a tool of a workflow after the debounce delay, superseding any
+     * earlier request. Parameters are captured now, so later edits need a new request.
+     * @param tools The workflow
+     * @param selected Index of the tool to preview
+     */
+    public void request(List<ToolInstance> tools, int selected) {
+        if (selected < 0 || selected >= tools.size()) {
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (ToolInstance tool : tools) {
+            names.add(tool.getName());
+            steps.add(tool.getParameterValues());
+        }
+
+        long run = supersede();
+        lock.lock();
+        try {
+            pending = scheduler.schedule(() -> run(run, names, steps, selected), debounceMs, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancel pending and running previews.
+     */
+    public void stop() {
+        supersede();
+    }
+
+    /**
+     * Stop previewing and drop the preview's cached images.
+     */
+    public void shutdown() {
+        supersede();
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        signatures.keySet().forEach(cache::remove);
+        executor.shutdown();
+    }
+
+    private long supersede() {
+        long run = generation.incrementAndGet();
+        executor.cancel();
+        lock.lock();
+        try {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return run;
+    }
+
+    private void run(long run, List<String> names, List<Map<String, Object>> steps, int selected) {
+        if (run != generation.get()) {
+            return;
+        }
+        executor.clearCancel();
+        long start = System.nanoTime();
+        String toolName = names.get(selected);
+        try {
+            String target = runSteps(run, names, steps, selected);
+            if (target == null) {
+                return;
+            }
+
+            BufferedImage image;
+            try (MatLease lease = cache.acquire(target)) {
+                if (lease == null) {
+                    throw new IllegalStateException("No image produced");
+                }
+                image = OpenCVImageProcessor.matToBufferedImage(lease.mat());
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            long pixels = proxyPixels;
+            adaptProxy(millis);
+            if (run == generation.get()) {
+                onFrame.accept(new Frame(toolName, image, millis, pixels, null));
+            }
+        } catch (CancellationException e) {
+            logger.debug("Preview run superseded");
+        } catch (Exception e) {
+            if (run == generation.get()) {
+                String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                onFrame.accept(new Frame(toolName, null, (System.nanoTime() - start) / 1_000_000, proxyPixels, message));
+            }
+        }
+    }
+
+    /**
+     * Run the steps the selected step depends on, and the selected step.
+     * @return Cache key of the image to show, or null if superseded
+     */
+    private String runSteps(long run, List<String> names, List<Map<String, Object>> steps, int selected)
+            throws Exception {
+        // Steps the selected one depends on, transitively
+        List<TreeSet<Integer>> dependencies = PipelineScheduler.dependencies(steps);
+        TreeSet<Integer> needed = new TreeSet<>();
+        List<Integer> open = new ArrayList<>(List.of(selected));
+        while (!open.isEmpty()) {
+            int step = open.remove(open.size() - 1);
+            if (needed.add(step)) {
+                open.addAll(dependencies.get(step));
+            }
+        }
+
+        double scale = 1.0;
+        String target = null;
+        for (int step : needed) {
+            if (run != generation.get()) {
+                return null;
+            }
+            String name = names.get(step);
+            Map<String, Object> params = bind(steps.get(step));
+
+            if (DISPLAY_TOOLS.contains(name)) {
+                // Show what the display tool would show instead of running it
+                if (step == selected) {
+                    target = stringParam(params, name.equals("output_segmented") ? "source_key" : "input_key");
+                }
+                continue;
+            }
+            if (step == selected && stringParam(params, "output_key") == null) {
+                params.put("output_key", SELECTED_KEY);
+            }
+
+            String source = inputSource(params);
+            if (source != null) {
+                Proxy proxy = proxy(params);
+                scale = proxy.scale;
+                if (name.equals("load_image")) {
+                    String out = stringParam(params, "output_key");
+                    if (out != null) {
+                        signatures.put(out, proxy.signature);
+                        try (MatLease lease = cache.acquire(proxy.key)) {
+                            cache.put(out, lease.mat().clone());
+                        }
+                    }
+                    target = out != null ? out : proxy.key;
+                    continue;
+                }
+                params.remove("image_path");
+                params.remove("image_url");
+                params.remove("image_data");
+                params.put(name.equals("output_segmented") ? "source_key" : "input_key", proxy.key);
+            }
+            scaleSizes(name, params, scale);
+
+            String out = stringParam(params, "output_key");
+            String signature = signature(name, params);
+            if (out != null && signature.equals(signatures.get(out)) && cache.containsKey(out)) {
+                target = out;
+                continue;
+            }
+            executor.executeTool(name, params);
+            if (out != null) {
+                signatures.put(out, signature);
+            }
+            target = out;
+        }
+        return target;
+    }
+
+    /**
+     * Copy step parameters with cache keys moved into the preview namespace and
+     * outputs to disk removed.
+     */
+    private static Map<String, Object> bind(Map<String, Object> template) {
+        Map<String, Object> params = new HashMap<>(template);
+        for (String param : CACHE_KEY_PARAMS) {
+            String key = stringParam(params, param);
+            if (key != null) {
+                params.put(param, PREFIX + key);
+            }
+        }
+        for (String param : OUTPUT_PARAMS) {
+            params.remove(param);
+        }
+        return params;
+    }
+
+    /**
+     * Scale absolute pixel sizes from the full image to the proxy.
+     */
+    private static void scaleSizes(String name, Map<String, Object> params, double scale) {
+        if (scale == 1.0) {
+            return;
+        }
+        if (name.equals("resize_image")) {
+            for (String param : new String[] {"width", "height"}) {
+                Object value = params.get(param);
+                if (value != null) {
+                    params.put(param, Math.max(1, (int) Math.round(Double.parseDouble(value.toString()) * scale)));
+                }
+            }
+        } else if (name.equals("detect_contours")) {
+            for (String param : new String[] {"min_area", "max_area"}) {
+                Object value = params.get(param);
+                if (value != null && Double.parseDouble(value.toString()) > 0) {
+                    params.put(param, Double.parseDouble(value.toString()) * scale * scale);
+                }
+            }
+        }
+    }
+
+    private static class Proxy {
+        final String key;
+        final String signature;
+        final double scale;
+
+        Proxy(String key, String signature, double scale) {
+            this.key = key;
+            this.signature = signature;
+            this.scale = scale;
+        }
+    }
+
+    /**
+     * Get the proxy of a step's input file, URL or data, creating it when the
+     * source or the proxy size changed.
+     */
+    private Proxy proxy(Map<String, Object> params) throws Exception {
+        String source = inputSource(params);
+        String imagePath = stringParam(params, "image_path");
+        String modified = "";
+        if (imagePath != null) {
+            try {
+                modified = String.valueOf(Files.getLastModifiedTime(Path.of(imagePath)).toMillis());
+            } catch (Exception e) {
+                modified = "?";
+            }
+        }
+        String key = PREFIX + "proxy:" + Integer.toHexString(source.hashCode());
+        String signature = source + "@" + modified + "@" + proxyPixels;
+        if (signature.equals(signatures.get(key)) && cache.containsKey(key)) {
+            return new Proxy(key, signature, proxyScales.get(key));
+        }
+
+        Mat image = decodedImages.load(imagePath, stringParam(params, "image_url"), stringParam(params, "image_data"), 1);
+        double scale = 1.0;
+        try {
+            long pixels = (long) image.rows() * image.cols();
+            if (pixels > proxyPixels) {
+                scale = Math.sqrt((double) proxyPixels / pixels);
+                cache.put(key, OpenCVImageProcessor.resize(image,
+                    Math.max(1, (int) (image.cols() * scale)), Math.max(1, (int) (image.rows() * scale)), "AREA"));
+            } else {
+                cache.put(key, image.clone());
+            }
+        } finally {
+            image.release();
+        }
+        signatures.put(key, signature);
+        proxyScales.put(key, scale);
+        return new Proxy(key, signature, scale);
+    }
+
+    /**
+     * Shrink the proxy when a run missed the frame budget, grow it back while runs are fast.
+     */
+    private void adaptProxy(long millis) {
+        if (millis > frameBudgetMs && proxyPixels > MIN_PROXY_PIXELS) {
+            proxyPixels = Math.max(MIN_PROXY_PIXELS, proxyPixels / 2);
+            logger.debug("Preview took {} ms, proxy reduced to {} pixels", millis, proxyPixels);
+        } else if (millis < frameBudgetMs / 4 && proxyPixels < MAX_PROXY_PIXELS) {
+            proxyPixels = Math.min(MAX_PROXY_PIXELS, proxyPixels * 2);
+        }
+    }
+
+    private static String inputSource(Map<String, Object> params) {
+        if (stringParam(params, "input_key") != null || stringParam(params, "source_key") != null) {
+            return null;
+        }
+        for (String param : new String[] {"image_path", "image_url", "image_data"}) {
+            String value = stringParam(params, param);
+            if (value != null) {
+                return param + "=" + value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Identify a step's work: its parameters and the signatures of the images it reads.
+     */
+    private String signature(String name, Map<String, Object> params) {
+        StringBuilder signature = new StringBuilder(name).append(new TreeMap<>(params));
+        for (String param : READ_KEY_PARAMS) {
+            String key = stringParam(params, param);
+            if (key != null) {
+                signature.append('|').append(signatures.get(key));
+            }
+        }
+        return signature.toString();
+    }
+
+    private static String stringParam(Map<String, Object> params, String param) {
+        Object value = params.get(param);
+        return value != null && !value.toString().isBlank() ? value.toString() : null;
+    }
+}
@@ -0,0 +1,379 @@
+package com.imageprocessing.execution;
+
+import com.imageprocessing.ui.model.ToolInstance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plans a workflow before it runs, so that fewer full-size images are allocated.
+ *
+ * The planner tracks the channel count and kind (color, gray, binary) of every
+ * cache key and rewrites the steps without changing any written file or kept key:
+ * <ul>
+ *   <li>a color_to_grayscale whose input is already single-channel is skipped
+ *       and its readers read the input directly;</li>
+ *   <li>a color_to_grayscale read only by a segment_image is fused into it, since
+ *       segmentation converts color input itself (in place);</li>
+ *   <li>a detect_contours reading a binary mask skips its own threshold pass;</li>
+ *   <li>steps whose results are never written, displayed or read by a live step
+ *       are dropped.</li>
+ * </ul>
+ * Rewrites that alias keys are only done when every key is written at most once.
+ * Savings are estimated for 8-bit images, per input pixel (and in absolute bytes
+ * after resizes).
+ */
+public class PipelineOptimizer {
+
+    private static final String[] INPUT_PARAMS = {"input_key", "image_path", "image_url", "image_data"};
+    private static final String[] READ_KEY_PARAMS = {"input_key", "source_key", "mask_key"};
+    private static final String[] SIDE_EFFECT_PARAMS = {"output_path", "output_csv_path", "output_csv_key"};
+    private static final Set<String> SIDE_EFFECT_TOOLS = Set.of("display_image", "output_segmented");
+    private static final Set<String> BINARY_THRESHOLDS = Set.of("BINARY", "BINARY_INV", "OTSU");
+
+    /** Parameter set on detect_contours when its input is known to be a 0/255 mask. */
+    public static final String BINARY_INPUT_PARAM = "input_is_binary";
+
+    private enum Kind { COLOR, GRAY, BINARY, UNKNOWN }
+
+    /**
+     * Channel kind and size of an image, as far as it is known before running.
+     * Pixels is -1 while the image has the size of the workflow input.
+     */
+    private static class Shape {
+        final Kind kind;
+        final long pixels;
+
+        Shape(Kind kind, long pixels) {
+            this.kind = kind;
+            this.pixels = pixels;
+        }
+
+        int channels() {
+            return kind == Kind.COLOR || kind == Kind.UNKNOWN ? 3 : 1;
+        }
+    }
+
+    private static final Shape INPUT = new Shape(Kind.UNKNOWN, -1);
+
+    private PipelineOptimizer() {
+    }
+
+    /**
+     * Optimize the tools of a workflow model.
+     * @param tools Tools in workflow order (not modified)
+     * @param keepKeys Cache keys that must still hold their result afterwards
+     */
+    public static Plan optimize(List<ToolInstance> tools, Set<String> keepKeys) {
+        List<String> names = new ArrayList<>();
+        List<Map<String, Object>> steps = new ArrayList<>();
+        for (ToolInstance tool : tools) {
+            names.add(tool.getName());
+            steps.add(tool.getParameterValues());
+        }
+        return optimize(names, steps, keepKeys);
+    }
+
+    /**
+     * Optimize a workflow.
+     * @param tools Tool name of each step, in workflow order
+     * @param steps Parameters of each step (not modified)
+     * @param keepKeys Cache keys that must still hold their result afterwards
+     * @return The rewritten steps and a report of what was saved
+     */
+    public static Plan optimize(List<String> tools, List<Map<String, Object>> steps, Set<String> keepKeys) {
+        List<Step> plan = new ArrayList<>();
+        for (int i = 0; i < steps.size(); i++) {
+            plan.add(new Step(i, tools.get(i), new HashMap<>(steps.get(i))));
+        }
+        Plan result = new Plan(plan);
+
+        if (writtenOnce(plan)) {
+            boolean changed = true;
+            while (changed) {
+                changed = skipRedundantGrayscale(plan, keepKeys, result)
+                    || fuseGrayscaleIntoSegment(plan, keepKeys, result);
+            }
+            markBinaryInputs(plan, result);
+        }
+        dropDeadSteps(plan, keepKeys, result);
+        return result;
+    }
+
+    private static boolean skipRedundantGrayscale(List<Step> plan, Set<String> keepKeys, Plan result) {
+        Map<String, Shape> shapes = shapes(plan);
+        for (Step step : plan) {
+            String in = key(step.params, "input_key");
+            String out = key(step.params, "output_key");
+            if (!step.tool.equals("color_to_grayscale") || in == null || out == null
+                    || keepKeys.contains(out) || hasSideEffect(step)) {
+                continue;
+            }
+            Shape input = shapes.getOrDefault(in, INPUT);
+            if (input.channels() != 1) {
+                continue;
+            }
+            for (Step reader : plan) {
+                for (String param : READ_KEY_PARAMS) {
+                    if (out.equals(key(reader.params, param))) {
+                        reader.params.put(param, in);
+                    }
+                }
+            }
+            plan.remove(step);
+            result.save(input.pixels, 1, String.format(
+                "skipped color_to_grayscale (step %d): input is already single-channel", step.index + 1));
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean fuseGrayscaleIntoSegment(List<Step> plan, Set<String> keepKeys, Plan result) {
+        Map<String, Shape> shapes = shapes(plan);
+        for (int i = 0; i < plan.size(); i++) {
+            Step gray = plan.get(i);
+            String out = key(gray.params, "output_key");
+            if (!gray.tool.equals("color_to_grayscale") || out == null
+                    || keepKeys.contains(out) || hasSideEffect(gray)) {
+                continue;
+            }
+            List<Step> readers = readersOf(plan, out);
+            if (readers.size() != 1 || !readers.get(0).tool.equals("segment_image")
+                    || !out.equals(key(readers.get(0).params, "input_key"))) {
+                continue;
+            }
+            Step segment = readers.get(0);
+            for (String param : INPUT_PARAMS) {
+                segment.params.put(param, gray.params.get(param));
+            }
+            plan.remove(i);
+            result.save(shapes.get(out).pixels, 1, String.format(
+                "fused color_to_grayscale (step %d) into segment_image (step %d)", gray.index + 1, segment.index + 1));
+            return true;
+        }
+        return false;
+    }
+
+    private static void markBinaryInputs(List<Step> plan, Plan result) {
+        Map<String, Shape> shapes = shapes(plan);
+        for (Step step : plan) {
+            String in = key(step.params, "input_key");
+            if (step.tool.equals("detect_contours") && in != null
+                    && shapes.getOrDefault(in, INPUT).kind == Kind.BINARY) {
+                step.params.put(BINARY_INPUT_PARAM, true);
+                result.save(shapes.get(in).pixels, 1, String.format(
+                    "detect_contours (step %d) uses its binary input without re-thresholding", step.index + 1));
+            }
+        }
+    }
+
+    /**
+     * Remove steps that neither have a side effect nor produce a key read by a
+     * later live step (or kept), walking backwards.
+     */
+    private static void dropDeadSteps(List<Step> plan, Set<String> keepKeys, Plan result) {
+        Map<String, Shape> shapes = shapes(plan);
+        Set<String> needed = new HashSet<>(keepKeys);
+        List<Step> dead = new ArrayList<>();
+        for (int i = plan.size() - 1; i >= 0; i--) {
+            Step step = plan.get(i);
+            String out = key(step.params, "output_key");
+            if (!hasSideEffect(step) && (out == null || !needed.contains(out))) {
+                dead.add(0, step);
+                continue;
+            }
+            if (out != null) {
+                needed.remove(out);
+            }
+            for (String param : READ_KEY_PARAMS) {
+                String in = key(step.params, param);
+                if (in != null) {
+                    needed.add(in);
+                }
+            }
+        }
+
+        for (Step step : dead) {
+            plan.remove(step);
+            String out = key(step.params, "output_key");
+            Shape shape = out != null ? shapes.get(out) : null;
+            if (shape != null) {
+                result.save(shape.pixels, shape.channels(), String.format(
+                    "dropped %s (step %d): result is never used", step.tool, step.index + 1));
+            } else {
+                result.note(String.format("dropped %s (step %d): result is never used", step.tool, step.index + 1));
+            }
+        }
+    }
+
+    /**
+     * Shape of each key written by the plan.
+     */
+    private static Map<String, Shape> shapes(List<Step> plan) {
+        Map<String, Shape> shapes = new HashMap<>();
+        for (Step step : plan) {
+            String in = key(step.params, "input_key");
+            Shape input = in != null ? shapes.getOrDefault(in, INPUT) : INPUT;
+            Shape output = switch (step.tool) {
+                case "load_image" -> INPUT;
+                // Only nearest-neighbour resizing keeps a mask binary; the others blend edge pixels into grays
+                case "resize_image" -> new Shape(input.kind == Kind.BINARY
+                        && !"NEAREST".equalsIgnoreCase(stringParam(step.params, "interpolation", "LINEAR"))
+                        ? Kind.GRAY : input.kind,
+                    (long) intParam(step.params, "width", 800) * intParam(step.params, "height", 600));
+                case "segment_image" -> new Shape(
+                    BINARY_THRESHOLDS.contains(stringParam(step.params, "threshold_type", "BINARY").toUpperCase())
+                        ? Kind.BINARY : Kind.GRAY, input.pixels);
+                case "color_to_grayscale" -> new Shape(input.kind == Kind.BINARY ? Kind.BINARY : Kind.GRAY,
+                    input.pixels);
+                case "filter_image", "denoise_image", "blur_image" -> new Shape(
+                    input.kind == Kind.BINARY ? Kind.GRAY : input.kind, input.pixels);
+                case "detect_contours" -> new Shape(Kind.COLOR, input.pixels);
+                default -> null;
+            };
+            String out = key(step.params, "output_key");
+            if (out != null && output != null) {
+                shapes.put(out, output);
+            }
+        }
+        return shapes;
+    }
+
+    private static boolean writtenOnce(List<Step> plan) {
+        Set<String> written = new HashSet<>();
+        for (Step step : plan) {
+            String out = key(step.params, "output_key");
+            if (out != null && !written.add(out)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Step> readersOf(List<Step> plan, String key) {
+        List<Step> readers = new ArrayList<>();
+        for (Step step : plan) {
+            for (String param : READ_KEY_PARAMS) {
+                if (key.equals(key(step.params, param))) {
+                    readers.add(step);
+                    break;
+                }
+            }
+        }
+        return readers;
+    }
+
+    private static boolean hasSideEffect(Step step) {
+        if (SIDE_EFFECT_TOOLS.contains(step.tool)) {
+            return true;
+        }
+        for (String param : SIDE_EFFECT_PARAMS) {
+            if (key(step.params, param) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String key(Map<String, Object> params, String param) {
+        Object value = params.get(param);
+        return value != null && !value.toString().isBlank() ? value.toString() : null;
+    }
+
+    private static String stringParam(Map<String, Object> params, String param, String defaultValue) {
+        String value = key(params, param);
+        return value != null ? value : defaultValue;
+    }
+
+    private static int intParam(Map<String, Object> params, String param, int defaultValue) {
+        Object value = params.get(param);
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        try {
+            return value != null ? Integer.parseInt(value.toString().trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * One step of an optimized workflow.
+     */
+    public static class Step {
+        private final int index;
+        private final String tool;
+        private final Map<String, Object> params;
+
+        Step(int index, String tool, Map<String, Object> params) {
+            this.index = index;
+            this.tool = tool;
+            this.params = params;
+        }
+
+        /**
+         * Position of the step in the original workflow.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public String getTool() {
+            return tool;
+        }
+
+        public Map<String, Object> getParameters() {
+            return params;
+        }
+    }
+
+    /**
+     * An optimized workflow and what the optimization saved.
+     */
+    public static class Plan {
+        private final List<Step> steps;
+        private final List<String> notes = new ArrayList<>();
+        private long savedBytesPerInputPixel;
+        private long savedBytes;
+
+        Plan(List<Step> steps) {
+            this.steps = steps;
+        }
+
+        public List<Step> getSteps() {
+            return steps;
+        }
+
+        /**
+         * One line per rewrite, in the order they were applied.
+         */
+        public List<String> getNotes() {
+            return notes;
+        }
+
+        /**
+         * Estimated bytes no longer allocated per run.
+         * @param inputPixels Pixel count of the workflow's input image
+         */
+        public long getSavedBytes(long inputPixels) {
+            return savedBytesPerInputPixel * inputPixels + savedBytes;
+        }
+
+        void save(long pixels, int planes, String note) {
+            if (pixels < 0) {
+                savedBytesPerInputPixel += planes;
+            } else {
+                savedBytes += pixels * planes;
+            }
+            notes.add(note);
+        }
+
+        void note(String note) {
+            notes.add(note);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.imageprocessing.execution;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Result of pipeline execution, including errors and cancellation state.
@@ -9,6 +10,7 @@ import java.util.List;
 public class PipelineResult {
     private final List<String> errors = new ArrayList<>();
     private boolean cancelled = false;
+    private final AtomicInteger reused = new AtomicInteger();
 
     public void addError(String error) {
         errors.add(error);
@@ -29,4 +31,15 @@ public class PipelineResult {
     public boolean isCancelled() {
         return cancelled;
     }
+
+    /**
+     * Count a tool whose cached result was reused instead of running it.
+     */
+    public void addReused() {
+        reused.incrementAndGet();
+    }
+
+    public int getReusedCount() {
+        return reused.get();
+    }
 }
@@ -0,0 +1,164 @@
+package com.imageprocessing.execution;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+
+/**
+ * Runs pipeline steps as a dependency graph instead of strictly in order.
+ *
+ * A step depends on an earlier step when it reads a cache key or file the
+ * earlier step writes (input_key, source_key and mask_key against output_key;
+ * image_path, mask_path and file: image_url against output_path and
+ * output_csv_path), or when both write the same cache key, file or CSV key, or
+ * when it overwrites a key or file the earlier step reads. Files are compared
+ * by their absolute, normalized paths. Every other pair of steps is independent and may run
+ * concurrently, so the final cache contents and files are the same as with
+ * sequential execution.
+ */
+public class PipelineScheduler {
+
+    private static final String[] READ_KEY_PARAMS = {"input_key", "source_key", "mask_key"};
+
+    private PipelineScheduler() {
+    }
+
+    /**
+     * Compute the direct dependencies of each step.
+     * @param steps Parameters of each step, in pipeline order
+     * @return For each step, the indices of the earlier steps it must wait for
+     */
+    public static List<TreeSet<Integer>> dependencies(List<Map<String, Object>> steps) {
+        List<TreeSet<Integer>> dependencies = new ArrayList<>();
+        Map<String, Integer> lastWriter = new HashMap<>();
+        Map<String, List<Integer>> readersSinceWrite = new HashMap<>();
+
+        for (int i = 0; i < steps.size(); i++) {
+            Map<String, Object> params = steps.get(i);
+            TreeSet<Integer> deps = new TreeSet<>();
+
+            List<String> reads = new ArrayList<>();
+            for (String param : READ_KEY_PARAMS) {
+                String key = stringParam(params, param);
+                if (key != null) {
+                    reads.add("cache:" + key);
+                }
+            }
+            addResource(reads, "file:", file(stringParam(params, "image_path")));
+            addResource(reads, "file:", file(stringParam(params, "mask_path")));
+            addResource(reads, "file:", fileUrl(stringParam(params, "image_url")));
+            List<String> writes = new ArrayList<>();
+            addResource(writes, "cache:", stringParam(params, "output_key"));
+            addResource(writes, "file:", file(stringParam(params, "output_path")));
+            addResource(writes, "text:", stringParam(params, "output_csv_key"));
+            addResource(writes, "file:", file(stringParam(params, "output_csv_path")));
+
+            for (String resource : reads) {
+                Integer writer = lastWriter.get(resource);
+                if (writer != null) {
+                    deps.add(writer);
+                }
+            }
+            for (String resource : writes) {
+                Integer writer = lastWriter.get(resource);
+                if (writer != null) {
+                    deps.add(writer);
+                }
+                deps.addAll(readersSinceWrite.getOrDefault(resource, List.of()));
+            }
+
+            for (String resource : reads) {
+                readersSinceWrite.computeIfAbsent(resource, r -> new ArrayList<>()).add(i);
+            }
+            for (String resource : writes) {
+                lastWriter.put(resource, i);
+                readersSinceWrite.remove(resource);
+            }
+            deps.remove(i);
+            dependencies.add(deps);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Start every step as soon as the steps it depends on have finished.
+     * @param steps Parameters of each step, in pipeline order
+     * @param start Starts step i; the future completes when it has finished
+     * @param cancelled Checked before each step starts; cancelled steps are skipped
+     * @param onFailure Called when starting or finishing a step throws
+     * @return Future that completes once all steps have finished or been skipped
+     */
+    public static CompletableFuture<Void> schedule(List<Map<String, Object>> steps,
+                                                   IntFunction<CompletableFuture<Void>> start,
+                                                   BooleanSupplier cancelled,
+                                                   BiConsumer<Integer, Throwable> onFailure) {
+        List<TreeSet<Integer>> dependencies = dependencies(steps);
+        CompletableFuture<?>[] done = new CompletableFuture<?>[steps.size()];
+
+        for (int i = 0; i < steps.size(); i++) {
+            int index = i;
+            CompletableFuture<?>[] upstream = dependencies.get(i).stream()
+                .map(d -> done[d])
+                .toArray(CompletableFuture<?>[]::new);
+
+            // Failed steps do not stop their dependents, as in sequential execution
+            done[i] = CompletableFuture.allOf(upstream)
+                .handle((ignored, error) -> null)
+                .thenCompose(ignored -> cancelled.getAsBoolean()
+                    ? CompletableFuture.<Void>completedFuture(null)
+                    : start.apply(index))
+                .exceptionally(error -> {
+                    onFailure.accept(index, error);
+                    return null;
+                });
+        }
+        return CompletableFuture.allOf(done);
+    }
+
+    private static void addResource(List<String> resources, String prefix, String value) {
+        if (value != null) {
+            resources.add(prefix + value);
+        }
+    }
+
+    /**
+     * Normalize a file path so that different spellings of one file match.
+     */
+    private static String file(String path) {
+        if (path == null) {
+            return null;
+        }
+        try {
+            return Path.of(path).toAbsolutePath().normalize().toString();
+        } catch (RuntimeException e) {
+            return path;
+        }
+    }
+
+    /**
+     * Get the file a file: URL refers to, or null for other URLs.
+     */
+    private static String fileUrl(String url) {
+        if (url == null || !url.regionMatches(true, 0, "file:", 0, 5)) {
+            return null;
+        }
+        try {
+            return Path.of(URI.create(url)).toAbsolutePath().normalize().toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String stringParam(Map<String, Object> params, String name) {
+        Object value = params.get(name);
+        return value != null && !value.toString().isBlank() ? value.toString() : null;
+    }
+}
@@ -0,0 +1,235 @@
+package com.imageprocessing.execution;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Streams items through a chain of stages, each with its own worker threads,
+ * connected by bounded queues.
+ *
+ * Stages overlap: while one item is being computed the next is decoded and the
+ * previous one written. A full queue blocks the stage feeding it, so a slow stage
+ * throttles the ones before it and the number of items in flight (and their
+ * memory) stays bounded. Items that fail in a stage are reported and dropped
+ * from the remaining stages. Each stage records how busy its workers were and
+ * how long they were blocked on the next stage.
+ *
+ * @param <T> Item type; stages typically update the item in place
+ */
+public class StagedPipeline<T> {
+
+    /**
+     * Work done by one stage on one item.
+     */
+    @FunctionalInterface
+    public interface Stage<T> {
+        void process(T item) throws Exception;
+    }
+
+    private final List<StageDefinition<T>> stages = new ArrayList<>();
+    private final int queueCapacity;
+    private final String name;
+
+    /**
+     * @param name Prefix for worker thread names
+     * @param queueCapacity Capacity of the queue in front of each stage
+     */
+    public StagedPipeline(String name, int queueCapacity) {
+        this.name = name;
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    /**
+     * Append a stage.
+     * @param stageName Name used in metrics and thread names
+     * @param threads Number of worker threads
+     * @param stage Work done per item
+     */
+    public StagedPipeline<T> addStage(String stageName, int threads, Stage<T> stage) {
+        stages.add(new StageDefinition<>(stageName, Math.max(1, threads), stage));
+        return this;
+    }
+
+    /**
+     * Run all items through the stages and wait until they have left the last one.
+     * @param items Items in input order
+     * @param onFailure Called with an item and the exception of the stage it failed in
+     * @return Per-stage metrics, in stage order
+     */
+    public List<StageStats> run(List<T> items, BiConsumer<T, Exception> onFailure) throws InterruptedException {
+        if (stages.isEmpty()) {
+            return List.of();
+        }
+
+        List<BlockingQueue<Slot<T>>> queues = new ArrayList<>();
+        for (int i = 0; i <= stages.size(); i++) {
+            // The last queue only collects finished items; it never blocks
+            queues.add(new ArrayBlockingQueue<>(i < stages.size() ? queueCapacity : items.size() + stages.size() + 1));
+        }
+
+        long start = System.nanoTime();
+        List<Thread> workers = new ArrayList<>();
+        List<StageStats> stats = new ArrayList<>();
+        for (int s = 0; s < stages.size(); s++) {
+            StageDefinition<T> definition = stages.get(s);
+            StageStats stageStats = new StageStats(definition.name, definition.threads);
+            stats.add(stageStats);
+            BlockingQueue<Slot<T>> in = queues.get(s);
+            BlockingQueue<Slot<T>> out = queues.get(s + 1);
+            int nextThreads = s + 1 < stages.size() ? stages.get(s + 1).threads : 1;
+            AtomicInteger running = new AtomicInteger(definition.threads);
+
+            for (int t = 0; t < definition.threads; t++) {
+                Thread worker = new Thread(() -> work(definition, stageStats, in, out, running, nextThreads, onFailure),
+                    name + "-" + definition.name + "-" + t);
+                worker.setDaemon(true);
+                workers.add(worker);
+            }
+        }
+        workers.forEach(Thread::start);
+
+        try {
+            BlockingQueue<Slot<T>> first = queues.get(0);
+            for (T item : items) {
+                first.put(new Slot<>(item));
+            }
+            for (int t = 0; t < stages.get(0).threads; t++) {
+                first.put(Slot.end());
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            workers.forEach(Thread::interrupt);
+            throw e;
+        }
+
+        long wall = System.nanoTime() - start;
+        stats.forEach(stageStats -> stageStats.wallNanos = wall);
+        return stats;
+    }
+
+    private void work(StageDefinition<T> definition, StageStats stats,
+                      BlockingQueue<Slot<T>> in, BlockingQueue<Slot<T>> out,
+                      AtomicInteger running, int nextThreads, BiConsumer<T, Exception> onFailure) {
+        try {
+            while (true) {
+                Slot<T> slot = in.take();
+                if (slot.isEnd()) {
+                    break;
+                }
+                long begin = System.nanoTime();
+                boolean ok = true;
+                try {
+                    definition.stage.process(slot.item);
+                } catch (Exception e) {
+                    ok = false;
+                    stats.failed.incrementAndGet();
+                    onFailure.accept(slot.item, e);
+                }
+                long processed = System.nanoTime();
+                stats.busyNanos.addAndGet(processed - begin);
+                stats.items.incrementAndGet();
+                if (ok) {
+                    out.put(slot);
+                    stats.blockedNanos.addAndGet(System.nanoTime() - processed);
+                }
+            }
+            // The last worker of a stage tells every worker of the next stage to stop
+            if (running.decrementAndGet() == 0) {
+                for (int t = 0; t < nextThreads; t++) {
+                    out.put(Slot.end());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Metrics of one stage.
+     */
+    public static class StageStats {
+        private final String name;
+        private final int threads;
+        private final AtomicLong items = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong blockedNanos = new AtomicLong();
+        private volatile long wallNanos;
+
+        StageStats(String name, int threads) {
+            this.name = name;
+            this.threads = threads;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getItems() {
+            return items.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * Fraction of the workers' time spent processing items (0-1).
+         */
+        public double getUtilization() {
+            return wallNanos == 0 ? 0 : (double) busyNanos.get() / ((double) wallNanos * threads);
+        }
+
+        /**
+         * Fraction of the workers' time spent waiting for room in the next stage's queue (0-1).
+         */
+        public double getBlocked() {
+            return wallNanos == 0 ? 0 : (double) blockedNanos.get() / ((double) wallNanos * threads);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d thread(s), %d items, %.0f%% busy, %.0f%% blocked",
+                name, threads, getItems(), getUtilization() * 100, getBlocked() * 100);
+        }
+    }
+
+    private static class StageDefinition<T> {
+        final String name;
+        final int threads;
+        final Stage<T> stage;
+
+        StageDefinition(String name, int threads, Stage<T> stage) {
+            this.name = name;
+            this.threads = threads;
+            this.stage = stage;
+        }
+    }
+
+    private static class Slot<T> {
+        final T item;
+
+        Slot(T item) {
+            this.item = item;
+        }
+
+        static <T> Slot<T> end() {
+            return new Slot<>(null);
+        }
+
+        boolean isEnd() {
+            return item == null;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.imageprocessing.server;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits how much image work runs at once.
+ *
+ * Every tool call costs a number of permits from a global budget, weighted by how
+ * expensive the tool is (non-local means denoising costs far more than a grayscale
+ * conversion). Calls that don't fit wait in a bounded queue for at most the maximum
+ * wait time; calls arriving at a full queue, or waiting too long, are rejected with
+ * a {@link RejectedException} so clients can retry later. A call never costs more
+ * than the whole budget, so the heaviest tool can always run on its own.
+ *
+ * Waiting calls are admitted in arrival order, except that a cheap call may overtake
+ * a queued expensive one when enough permits are free for the cheap call only.
+ */
+public class AdmissionController {
+
+    /** Default permit budget: two per CPU. */
+    public static final int DEFAULT_PERMITS = 2 * Runtime.getRuntime().availableProcessors();
+
+    /** Default maximum number of waiting calls. */
+    public static final int DEFAULT_MAX_QUEUE = 64;
+
+    /** Default maximum time a call waits for permits: 30 seconds. */
+    public static final long DEFAULT_MAX_WAIT_MS = 30_000;
+
+    /** Relative cost of each tool; tools not listed cost one permit. */
+    public static final Map<String, Integer> DEFAULT_COSTS = Map.of(
+        "denoise_image", 8,
+        "detect_contours", 4,
+        "segment_image", 4,
+        "filter_image", 2,
+        "blur_image", 2,
+        "load_image", 2,
+        "output_segmented", 2,
+        "stream_process", 4,
+        "batch_process", 8,
+        "get_server_stats", 0
+    );
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+    private final Map<String, Integer> costs;
+    private final int permits;
+    private final int maxQueue;
+    private final long maxWaitMs;
+
+    private int available;
+    private long admittedCount = 0;
+    private long rejectedCount = 0;
+    private long queuedCount = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+
+    public AdmissionController() {
+        this(DEFAULT_PERMITS, DEFAULT_MAX_QUEUE, DEFAULT_MAX_WAIT_MS);
+    }
+
+    /**
+     * @param permits Global permit budget (0 disables admission control)
+     * @param maxQueue Maximum number of waiting calls (0 rejects calls that don't fit immediately)
+     * @param maxWaitMs Maximum time a call waits for permits
+     */
+    public AdmissionController(int permits, int maxQueue, long maxWaitMs) {
+        this(permits, maxQueue, maxWaitMs, DEFAULT_COSTS);
+    }
+
+    public AdmissionController(int permits, int maxQueue, long maxWaitMs, Map<String, Integer> costs) {
+        this.permits = permits;
+        this.maxQueue = maxQueue;
+        this.maxWaitMs = maxWaitMs;
+        this.costs = Map.copyOf(costs);
+        this.available = permits;
+    }
+
+    /**
+     * Get the number of permits a call to a tool takes.
+     */
+    public int costOf(String tool) {
+        if (permits <= 0) {
+            return 0;
+        }
+        return Math.min(costs.getOrDefault(tool, 1), permits);
+    }
+
+    /**
+     * Request permits for a tool call.
+     * @return Future completing with a permit once the call may run, or exceptionally
+     *         with a {@link RejectedException} when the queue is full or the wait times out.
+     *         Cancelling the future gives up the place in the queue.
+     */
+    public CompletableFuture<Permit> acquire(String tool) {
+        int cost = costOf(tool);
+        lock.lock();
+        try {
+            if (cost == 0 || (waiters.isEmpty() && available >= cost) || fitsAheadOfQueue(cost)) {
+                available -= cost;
+                admittedCount++;
+                return CompletableFuture.completedFuture(new Permit(cost));
+            }
+            if (waiters.size() >= maxQueue) {
+                rejectedCount++;
+                return CompletableFuture.failedFuture(new RejectedException(
+                    tool + " rejected: " + waiters.size() + " calls already waiting"));
+            }
+            Waiter waiter = new Waiter(tool, cost);
+            waiters.add(waiter);
+            queuedCount++;
+            CompletableFuture.delayedExecutor(maxWaitMs, TimeUnit.MILLISECONDS).execute(() -> timeOut(waiter));
+            // Cancelled by the caller: give up the place in the queue
+            waiter.future.whenComplete((permit, error) -> {
+                if (error != null) {
+                    abandon(waiter);
+                }
+            });
+            return waiter.future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPermits() {
+        return permits;
+    }
+
+    public int getMaxQueue() {
+        return maxQueue;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public int getAvailablePermits() {
+        lock.lock();
+        try {
+            return available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAdmittedCount() {
+        lock.lock();
+        try {
+            return admittedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the average wait of calls that were queued, in milliseconds.
+     */
+    public double getAverageWaitMs() {
+        lock.lock();
+        try {
+            return queuedCount == 0 ? 0 : totalWaitNanos / 1e6 / queuedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getLongestWaitMs() {
+        lock.lock();
+        try {
+            return maxWaitNanos / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== INTERNALS ====================
+
+    /**
+     * Whether a call fits in the permits left over after the head of the queue.
+     * Must be called with the lock held.
+     */
+    private boolean fitsAheadOfQueue(int cost) {
+        return !waiters.isEmpty() && available >= cost && waiters.peekFirst().cost > available;
+    }
+
+    private void release(int cost) {
+        List<Waiter> granted = new ArrayList<>();
+        lock.lock();
+        try {
+            available += cost;
+            Iterator<Waiter> it = waiters.iterator();
+            while (it.hasNext() && available > 0) {
+                Waiter waiter = it.next();
+                if (waiter.cost <= available) {
+                    it.remove();
+                    available -= waiter.cost;
+                    admittedCount++;
+                    recordWait(waiter);
+                    granted.add(waiter);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Complete outside the lock; a waiter that timed out meanwhile hands its permits back
+        for (Waiter waiter : granted) {
+            Permit permit = new Permit(waiter.cost);
+            if (!waiter.future.complete(permit)) {
+                permit.release();
+            }
+        }
+    }
+
+    private void timeOut(Waiter waiter) {
+        lock.lock();
+        try {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            recordWait(waiter);
+            rejectedCount++;
+        } finally {
+            lock.unlock();
+        }
+        waiter.future.completeExceptionally(new RejectedException(
+            waiter.tool + " rejected: no capacity within " + maxWaitMs + " ms"));
+        // Cheaper calls behind the rejected one may fit now
+        release(0);
+    }
+
+    private void abandon(Waiter waiter) {
+        boolean removed;
+        lock.lock();
+        try {
+            removed = waiters.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+        if (removed) {
+            release(0);
+        }
+    }
+
+    /**
+     * Must be called with the lock held.
+     */
+    private void recordWait(Waiter waiter) {
+        long waited = System.nanoTime() - waiter.enqueuedAt;
+        totalWaitNanos += waited;
+        maxWaitNanos = Math.max(maxWaitNanos, waited);
+    }
+
+    /**
+     * Permits held by an admitted call; release them when the call has finished.
+     */
+    public class Permit {
+        private final int cost;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int cost) {
+            this.cost = cost;
+        }
+
+        public int getCost() {
+            return cost;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdmissionController.this.release(cost);
+            }
+        }
+    }
+
+    /**
+     * Thrown when a call is not admitted; the call may be retried later.
+     */
+    public static class RejectedException extends RuntimeException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    private static class Waiter {
+        final String tool;
+        final int cost;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        Waiter(String tool, int cost) {
+            this.tool = tool;
+            this.cost = cost;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package com.imageprocessing.server;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.HttpOutput;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary transfer of cached images over HTTP, next to the MCP endpoint, so
+ * images don't have to cross the wire base64-encoded inside JSON.
+ *
+ * <ul>
+ *   <li>{@code PUT /blobs/{key}} - store an encoded image (PNG, JPEG, ...) in the cache,
+ *       decoded to 8-bit gray or BGR like every other image input;
+ *       with {@code ?format=raw&rows=..&cols=..&type=..} the body is raw pixel data,
+ *       streamed into the Mat in bands of rows. Images larger than the cache budget
+ *       are rejected</li>
+ *   <li>{@code GET /blobs/{key}} - the image encoded with the server's response image
+ *       settings ({@code image_format}, {@code image_quality}, {@code png_compression}
+ *       query parameters override them); {@code ?format=raw} returns the pixel data with
+ *       {@code X-Image-Rows}, {@code X-Image-Cols} and {@code X-Image-Type} headers</li>
+ *   <li>{@code DELETE /blobs/{key}} - remove the image from the cache</li>
+ * </ul>
+ *
+ * GET supports single byte ranges and ETag/If-None-Match; the ETag changes
+ * whenever the key is overwritten. Encoded payloads are written straight from
+ * the bytes the cache keeps for the entry, without re-encoding or copying.
+ */
+public class BlobServlet extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobServlet.class);
+
+    private static final long BAND_BYTES = 4L * 1024 * 1024;
+    // CV_CN_MAX: the most channels a Mat can have
+    private static final int MAX_CHANNELS = 512;
+
+    private final IntermediateResultCache cache;
+
+    public BlobServlet(IntermediateResultCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = keyOf(request);
+        if (key == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing key: use /blobs/{key}");
+            return;
+        }
+
+        Mat mat;
+        try {
+            mat = "raw".equals(request.getParameter("format")) ? readRaw(request) : readEncoded(request);
+            checkBudget(IntermediateResultCache.estimateBytes(mat), mat);
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        boolean existed = cache.containsKey(key);
+        cache.put(key, mat);
+        logger.debug("Stored blob {}: {}x{}", key, mat.cols(), mat.rows());
+
+        response.setStatus(existed ? HttpServletResponse.SC_OK : HttpServletResponse.SC_CREATED);
+        response.setHeader("Location", request.getRequestURI());
+        response.setContentType("text/plain");
+        response.getWriter().printf("Stored %s: %dx%d, %d channel(s)%n", key, mat.cols(), mat.rows(), mat.channels());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = keyOf(request);
+        if (key == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing key: use /blobs/{key}");
+            return;
+        }
+
+        if ("raw".equals(request.getParameter("format"))) {
+            getRaw(key, request, response);
+        } else {
+            getEncoded(key, request, response);
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = keyOf(request);
+        if (key == null || !cache.remove(key)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    // ==================== GET ====================
+
+    private void getEncoded(String key, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Map<String, Object> params = new HashMap<>();
+        for (String name : new String[]{"image_format", "image_quality", "png_compression"}) {
+            String value = request.getParameter(name);
+            if (value != null) {
+                params.put(name, value);
+            }
+        }
+
+        IntermediateResultCache.VersionedEncoding versioned;
+        try {
+            versioned = cache.getVersionedEncoding(key,
+                ImageProcessingMcpServer.ToolFactory.getResponseEncoding().withRequest(params));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (versioned == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No cached image with key: " + key);
+            return;
+        }
+
+        // The version belongs to the payload, so the ETag matches the bytes sent
+        EncodedImage encoded = versioned.getImage();
+        String etag = etag(versioned.getVersion(), encoded.getPayloadKey());
+        if (notModified(request, response, etag)) {
+            return;
+        }
+
+        byte[] bytes = encoded.getBytes();
+        long[] range = prepareRange(request, response, bytes.length, etag, encoded.getMimeType());
+        if (range != null && !"HEAD".equals(request.getMethod())) {
+            write(response.getOutputStream(), ByteBuffer.wrap(bytes, (int) range[0], (int) (range[1] - range[0])));
+        }
+    }
+
+    private void getRaw(String key, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        try (MatLease lease = cache.acquire(key)) {
+            if (lease == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "No cached image with key: " + key);
+                return;
+            }
+            Mat mat = lease.mat();
+
+            String etag = etag(lease.version(), "raw");
+            if (notModified(request, response, etag)) {
+                return;
+            }
+
+            response.setHeader("X-Image-Rows", String.valueOf(mat.rows()));
+            response.setHeader("X-Image-Cols", String.valueOf(mat.cols()));
+            response.setHeader("X-Image-Type", String.valueOf(mat.type()));
+            long length = IntermediateResultCache.estimateBytes(mat);
+            long[] range = prepareRange(request, response, length, etag, "application/octet-stream");
+            if (range != null && !"HEAD".equals(request.getMethod())) {
+                writeRaw(mat, response.getOutputStream(), range[0], range[1]);
+            }
+        }
+    }
+
+    /**
+     * Answer If-None-Match with 304 when the client already has this version.
+     * @return true if the response is complete
+     */
+    private static boolean notModified(HttpServletRequest request, HttpServletResponse response, String etag) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    response.setHeader("ETag", etag);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Set the status and headers for a full or partial response.
+     * @return The byte range [start, end) to send, or null if the range is not satisfiable
+     */
+    private static long[] prepareRange(HttpServletRequest request, HttpServletResponse response,
+                                       long length, String etag, String contentType) throws IOException {
+        response.setHeader("ETag", etag);
+        response.setHeader("Accept-Ranges", "bytes");
+        response.setContentType(contentType);
+
+        long[] range = parseRange(request.getHeader("Range"), length);
+        if (range == null) {
+            response.setContentLengthLong(length);
+            return new long[]{0, length};
+        }
+        if (range[0] >= range[1]) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return null;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("Content-Range", String.format("bytes %d-%d/%d", range[0], range[1] - 1, length));
+        response.setContentLengthLong(range[1] - range[0]);
+        return range;
+    }
+
+    /**
+     * Parse a single "bytes=" range. Multiple or malformed ranges are ignored, so
+     * the whole content is sent.
+     * @return [start, end) (empty if unsatisfiable), or null to send everything
+     */
+    static long[] parseRange(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                return new long[]{Math.max(0, length - suffix), suffix > 0 ? length : 0};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length : Math.min(length, Long.parseLong(last) + 1);
+            if (start >= length || end <= start) {
+                return new long[]{0, 0};
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write pixel bytes [start, end) of a Mat, copying them out in bands of rows
+     * through a direct buffer.
+     */
+    private static void writeRaw(Mat mat, OutputStream out, long start, long end) throws IOException {
+        long rowBytes = mat.cols() * mat.elemSize();
+        if (rowBytes == 0) {
+            return;
+        }
+        int bandRows = (int) Math.max(1, Math.min(mat.rows(), BAND_BYTES / rowBytes));
+        ByteBuffer band = ByteBuffer.allocateDirect((int) (bandRows * rowBytes));
+
+        for (int row = (int) (start / rowBytes); row < mat.rows() && (long) row * rowBytes < end; row += bandRows) {
+            int rows = Math.min(bandRows, mat.rows() - row);
+            Mat view = new Mat(rows, mat.cols(), mat.type(), band);
+            Mat source = mat.rowRange(row, row + rows);
+            try {
+                source.copyTo(view);
+            } finally {
+                source.release();
+                view.release();
+            }
+
+            long bandStart = row * rowBytes;
+            band.clear();
+            band.position((int) (Math.max(start, bandStart) - bandStart));
+            band.limit((int) (Math.min(end, bandStart + rows * rowBytes) - bandStart));
+            write(out, band);
+        }
+    }
+
+    /**
+     * Write a buffer, handing it to Jetty directly when possible.
+     */
+    private static void write(OutputStream out, ByteBuffer buffer) throws IOException {
+        if (out instanceof HttpOutput) {
+            ((HttpOutput) out).write(buffer);
+        } else if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            byte[] chunk = new byte[buffer.remaining()];
+            buffer.get(chunk);
+            out.write(chunk);
+        }
+    }
+
+    // ==================== PUT ====================
+
+    private Mat readEncoded(HttpServletRequest request) throws IOException {
+        byte[] bytes = readBody(request);
+        checkBudget(bytes.length, null);
+        try {
+            return OpenCVImageProcessor.decodeImage(bytes, 1);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Body is not a decodable image");
+        }
+    }
+
+    /**
+     * Stream raw pixel data into a new Mat, one band of rows at a time. The size
+     * is checked against Content-Length and the cache budget before allocating.
+     */
+    private Mat readRaw(HttpServletRequest request) throws IOException {
+        int rows = intParameter(request, "rows");
+        int cols = intParameter(request, "cols");
+        int type = request.getParameter("type") != null ? intParameter(request, "type") : CvType.CV_8UC3;
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("rows and cols must be positive");
+        }
+        long rowBytes = cols * elemSize(type);
+        if (rowBytes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Rows too large: " + rowBytes + " bytes");
+        }
+        long total;
+        try {
+            total = Math.multiplyExact(rows, rowBytes);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(String.format("Image too large: %dx%d type %d", cols, rows, type));
+        }
+        long length = request.getContentLengthLong();
+        if (length >= 0 && length != total) {
+            throw new IllegalArgumentException(String.format(
+                "Expected %d bytes for %dx%d type %d, got %d", total, cols, rows, type, length));
+        }
+        checkBudget(total, null);
+
+        Mat mat = new Mat(rows, cols, type);
+        try {
+            int bandRows = (int) Math.max(1, Math.min(rows, BAND_BYTES / rowBytes));
+            byte[] chunk = new byte[(int) (bandRows * rowBytes)];
+            ByteBuffer band = ByteBuffer.allocateDirect(chunk.length);
+            InputStream in = request.getInputStream();
+            for (int row = 0; row < rows; row += bandRows) {
+                int count = Math.min(bandRows, rows - row);
+                int bytes = (int) (count * rowBytes);
+                if (in.readNBytes(chunk, 0, bytes) < bytes) {
+                    throw new IllegalArgumentException("Body ended before row " + row);
+                }
+                band.clear();
+                band.put(chunk, 0, bytes);
+
+                // Wrap the band and let OpenCV copy it into the rows, whatever the depth
+                Mat view = new Mat(count, cols, type, band);
+                Mat target = mat.rowRange(row, row + count);
+                try {
+                    view.copyTo(target);
+                } finally {
+                    target.release();
+                    view.release();
+                }
+            }
+            return mat;
+        } catch (IOException | RuntimeException e) {
+            mat.release();
+            throw e;
+        }
+    }
+
+    private static byte[] readBody(HttpServletRequest request) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Encoded image too large: " + length + " bytes");
+        }
+        try (InputStream in = request.getInputStream()) {
+            if (length >= 0) {
+                byte[] bytes = new byte[(int) length];
+                if (in.readNBytes(bytes, 0, bytes.length) < bytes.length) {
+                    throw new IllegalArgumentException("Body shorter than Content-Length");
+                }
+                return bytes;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    /**
+     * Reject an image that could never be cached because it alone exceeds the budget.
+     * @param mat Decoded image to release on rejection, or null
+     */
+    private void checkBudget(long bytes, Mat mat) {
+        long maxBytes = cache.getMaxBytes();
+        if (bytes > maxBytes) {
+            if (mat != null) {
+                mat.release();
+            }
+            throw new IllegalArgumentException(String.format(
+                "Image of %d bytes exceeds the cache budget of %d bytes", bytes, maxBytes));
+        }
+    }
+
+    /**
+     * Get the bytes per pixel of a Mat type without allocating one.
+     */
+    private static long elemSize(int type) {
+        if (type < 0 || CvType.channels(type) > MAX_CHANNELS) {
+            throw new IllegalArgumentException("Invalid type: " + type);
+        }
+        try {
+            return CvType.ELEM_SIZE(type);
+        } catch (UnsupportedOperationException e) {
+            throw new IllegalArgumentException("Invalid type: " + type);
+        }
+    }
+
+    private static String keyOf(HttpServletRequest request) {
+        // Already percent-decoded by the container
+        String path = request.getPathInfo();
+        if (path == null || path.length() <= 1) {
+            return null;
+        }
+        return path.substring(1);
+    }
+
+    private static int intParameter(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static String etag(long version, String payload) {
+        return "\"" + version + "-" + payload + "\"";
+    }
+}
@@ -0,0 +1,198 @@
+package com.imageprocessing.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registers each saved workflow (*.json) in a directory as a composite tool and
+ * keeps the tools in sync with the directory: new files are added, changed files
+ * re-registered and deleted files removed.
+ */
+public class CompositeToolDirectory implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompositeToolDirectory.class);
+
+    /** Quiet time after the last change before the directory is reloaded, so editors can finish writing. */
+    private static final long DEBOUNCE_MS = 300;
+
+    /**
+     * Adds tools to and removes tools from a running server.
+     */
+    public interface Registrar {
+        void add(CompositeWorkflow workflow) throws Exception;
+
+        void remove(String toolName) throws Exception;
+    }
+
+    private final Path directory;
+    private final Set<String> reservedNames;
+    private final Registrar registrar;
+    private final ReentrantLock lock = new ReentrantLock();
+    // Registered tools by file, with the file content they were registered from
+    private final Map<Path, Loaded> loaded = new HashMap<>();
+    private WatchService watchService;
+    private Thread watcher;
+
+    private static class Loaded {
+        final String name;
+        final String json;
+
+        Loaded(String name, String json) {
+            this.name = name;
+            this.json = json;
+        }
+    }
+
+    /**
+     * @param reservedNames Names of built-in tools, which workflows cannot replace
+     */
+    public CompositeToolDirectory(Path directory, Set<String> reservedNames, Registrar registrar) {
+        this.directory = directory;
+        this.reservedNames = Set.copyOf(reservedNames);
+        this.registrar = registrar;
+    }
+
+    /**
+     * Register the workflows in the directory and start watching it.
+     */
+    public void start() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Workflow directory does not exist: " + directory);
+        }
+        reload();
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        watcher = new Thread(this::watch, "workflow-tools-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching {} for workflow tools", directory);
+    }
+
+    /**
+     * Names of the currently registered workflow tools.
+     */
+    public Set<String> getToolNames() {
+        lock.lock();
+        try {
+            Set<String> names = new TreeSet<>();
+            loaded.values().forEach(entry -> names.add(entry.name));
+            return names;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bring the registered tools in line with the directory's workflow files.
+     */
+    void reload() {
+        Map<Path, String> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : stream) {
+                try {
+                    files.put(file, Files.readString(file));
+                } catch (IOException e) {
+                    logger.warn("Could not read workflow {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list workflow directory {}: {}", directory, e.getMessage());
+            return;
+        }
+
+        lock.lock();
+        try {
+            // Remove deleted and changed files first, so a renamed tool can take a freed name
+            for (Map.Entry<Path, Loaded> entry : Map.copyOf(loaded).entrySet()) {
+                String json = files.get(entry.getKey());
+                if (json == null || !json.equals(entry.getValue().json)) {
+                    unregister(entry.getKey(), entry.getValue());
+                }
+            }
+            for (Map.Entry<Path, String> file : files.entrySet()) {
+                if (!loaded.containsKey(file.getKey())) {
+                    register(file.getKey(), file.getValue());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void register(Path file, String json) {
+        try {
+            CompositeWorkflow workflow = CompositeWorkflow.parse(file.getFileName().toString(), json);
+            String name = workflow.getName();
+            if (name.isEmpty() || reservedNames.contains(name)
+                    || loaded.values().stream().anyMatch(entry -> entry.name.equals(name))) {
+                logger.warn("Skipping workflow {}: tool name '{}' is empty or already taken", file, name);
+                return;
+            }
+            registrar.add(workflow);
+            loaded.put(file, new Loaded(name, json));
+            logger.info("Registered workflow tool '{}' from {}", name, file);
+        } catch (Exception e) {
+            logger.warn("Could not register workflow {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void unregister(Path file, Loaded entry) {
+        loaded.remove(file);
+        try {
+            registrar.remove(entry.name);
+            logger.info("Removed workflow tool '{}'", entry.name);
+        } catch (Exception e) {
+            logger.warn("Could not remove workflow tool '{}': {}", entry.name, e.getMessage());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                key.pollEvents();
+                key.reset();
+                // Collapse the burst of events one save produces into one reload
+                WatchKey next;
+                while ((next = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    next.pollEvents();
+                    next.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * Stop watching the directory. Registered tools stay registered.
+     */
+    @Override
+    public void close() throws IOException {
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.imageprocessing.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.imageprocessing.ui.model.ToolInstance;
+import com.imageprocessing.ui.model.ToolMetadata;
+import com.imageprocessing.ui.model.WorkflowSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A saved workflow exposed as one MCP tool.
+ *
+ * The tool's arguments are the workflow's unbound parameters:
+ * <ul>
+ *   <li>{@code ${name}} placeholders in string parameter values (a value that is
+ *       only a placeholder takes the parameter's type);</li>
+ *   <li>the image source of a step that reads none of a path, URL, data or cache
+ *       key (exposed as image_path, image_url, image_data and input_key);</li>
+ *   <li>required parameters without a value.</li>
+ * </ul>
+ * Keys that are written and read inside the workflow are renamed per call, so
+ * concurrent calls don't share intermediates, and removed afterwards. The final
+ * outputs are the keys nobody in the workflow reads, the images of display_image
+ * steps and the results of steps without an output key.
+ */
+public class CompositeWorkflow {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([A-Za-z_][A-Za-z0-9_]*)}");
+    private static final String[] SOURCE_PARAMS = {"image_path", "image_url", "image_data"};
+    private static final String[] READ_KEY_PARAMS = {"input_key", "source_key", "mask_key"};
+
+    private final String name;
+    private final String description;
+    private final List<String> tools = new ArrayList<>();
+    private final List<ToolMetadata> metadata = new ArrayList<>();
+    private final List<Map<String, Object>> steps = new ArrayList<>();
+    private final Map<String, Input> inputs = new LinkedHashMap<>();
+    private final List<List<String>> sourceGroups = new ArrayList<>();
+
+    /**
+     * An argument of the composite tool.
+     */
+    private static class Input {
+        final String name;
+        final String type;
+        final String description;
+        final List<String> enumValues;
+        boolean required;
+        final List<int[]> targets = new ArrayList<>();
+        final List<String> targetParams = new ArrayList<>();
+
+        Input(String name, String type, String description, List<String> enumValues) {
+            this.name = name;
+            this.type = type;
+            this.description = description;
+            this.enumValues = enumValues;
+        }
+    }
+
+    CompositeWorkflow(String name, String description, List<ToolInstance> workflow) {
+        this.name = name;
+        for (ToolInstance tool : workflow) {
+            tools.add(tool.getName());
+            metadata.add(tool.getMetadata());
+            steps.add(tool.getParameterValues());
+        }
+        this.description = description != null && !description.isBlank() ? description
+            : "Run the saved workflow " + String.join(" -> ", tools)
+                + " in one call and return only its final outputs.";
+
+        for (int i = 0; i < workflow.size(); i++) {
+            ToolMetadata metadata = workflow.get(i).getMetadata();
+            Map<String, Object> params = steps.get(i);
+            findPlaceholders(metadata, params);
+            findUnboundSource(i, metadata, params);
+            findUnboundRequired(i, metadata, params);
+        }
+    }
+
+    /**
+     * Parse a workflow file as saved by the UI. Besides version and tools it may
+     * have a "name" (overriding the default tool name) and a "description".
+     * @param defaultName Tool name to use if the workflow has none, usually the file name
+     */
+    public static CompositeWorkflow parse(String defaultName, String json)
+            throws IOException, WorkflowSerializer.WorkflowLoadException {
+        JsonNode root = MAPPER.readTree(json);
+        if (!(root instanceof ObjectNode)) {
+            throw new WorkflowSerializer.WorkflowLoadException("Workflow must be a JSON object");
+        }
+        ObjectNode object = (ObjectNode) root;
+        JsonNode name = object.remove("name");
+        JsonNode description = object.remove("description");
+        List<ToolInstance> workflow = new WorkflowSerializer().parseWorkflow(MAPPER.writeValueAsString(object));
+        return new CompositeWorkflow(toolName(name != null ? name.asText() : defaultName),
+            description != null ? description.asText() : null, workflow);
+    }
+
+    /**
+     * Turn a file or workflow name into a valid tool name.
+     */
+    static String toolName(String name) {
+        String base = name.endsWith(".json") ? name.substring(0, name.length() - ".json".length()) : name;
+        String toolName = base.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_-]+", "_").replaceAll("^_+|_+$", "");
+        return toolName.length() > 64 ? toolName.substring(0, 64) : toolName;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Tool names of the steps, in order.
+     */
+    public List<String> getTools() {
+        return tools;
+    }
+
+    /**
+     * JSON schema of the tool's arguments.
+     */
+    public String inputSchema() {
+        ObjectNode schema = MAPPER.createObjectNode();
+        schema.put("type", "object");
+        ObjectNode properties = schema.putObject("properties");
+        ArrayNode required = MAPPER.createArrayNode();
+        for (Input input : inputs.values()) {
+            ObjectNode property = properties.putObject(input.name);
+            property.put("type", input.type);
+            property.put("description", input.description);
+            if (input.enumValues != null && !input.enumValues.isEmpty()) {
+                ArrayNode values = property.putArray("enum");
+                input.enumValues.forEach(values::add);
+            }
+            if (input.required) {
+                required.add(input.name);
+            }
+        }
+        ObjectNode responseImage = properties.putObject("response_image");
+        responseImage.put("type", "string");
+        responseImage.putArray("enum").add("none").add("thumbnail").add("full").add("reference");
+        responseImage.put("description",
+            "How to return the final images: omit them, bounded previews, full resolution, or only their cache keys (default: server setting)");
+        ObjectNode thumbnailSize = properties.putObject("thumbnail_size");
+        thumbnailSize.put("type", "integer");
+        thumbnailSize.put("description", "Longest side of thumbnails in pixels (default: server setting)");
+        if (!required.isEmpty()) {
+            schema.set("required", required);
+        }
+        return schema.toString();
+    }
+
+    /**
+     * Build the tool instances for one call.
+     * @param args Call arguments
+     * @param keyPrefix Prefix for the call's intermediate cache keys
+     * @throws IllegalArgumentException if a required argument is missing
+     */
+    public Binding bind(Map<String, Object> args, String keyPrefix) {
+        Map<String, Object> arguments = args != null ? args : Map.of();
+        for (Input input : inputs.values()) {
+            if (input.required && isBlank(arguments.get(input.name))) {
+                throw new IllegalArgumentException("Missing required argument: " + input.name);
+            }
+        }
+        for (List<String> group : sourceGroups) {
+            if (group.stream().allMatch(param -> isBlank(arguments.get(param)))) {
+                throw new IllegalArgumentException("One of " + String.join(", ", group) + " is required");
+            }
+        }
+
+        // Keys both written and read inside the workflow are intermediates
+        Set<String> written = new HashSet<>();
+        Set<String> read = new HashSet<>();
+        for (Map<String, Object> params : steps) {
+            addKey(written, params.get("output_key"));
+            for (String param : READ_KEY_PARAMS) {
+                addKey(read, params.get(param));
+            }
+        }
+        Map<String, String> renamed = new HashMap<>();
+        for (String key : written) {
+            if (read.contains(key)) {
+                renamed.put(key, keyPrefix + key);
+            }
+        }
+
+        Binding binding = new Binding();
+        binding.intermediateKeys.addAll(renamed.values());
+        for (int i = 0; i < steps.size(); i++) {
+            String tool = tools.get(i);
+            Map<String, Object> params = new HashMap<>();
+            for (Map.Entry<String, Object> entry : steps.get(i).entrySet()) {
+                params.put(entry.getKey(), substitute(entry.getValue(), arguments));
+            }
+            for (Input input : inputs.values()) {
+                for (int t = 0; t < input.targets.size(); t++) {
+                    Object value = arguments.get(input.name);
+                    if (input.targets.get(t)[0] == i && !isBlank(value)) {
+                        params.put(input.targetParams.get(t), value);
+                    }
+                }
+            }
+            for (String param : new String[] {"input_key", "source_key", "mask_key", "output_key"}) {
+                Object key = params.get(param);
+                if (key != null && renamed.containsKey(key.toString())) {
+                    params.put(param, renamed.get(key.toString()));
+                }
+            }
+
+            // Final outputs
+            Object out = steps.get(i).get("output_key");
+            if (tool.equals("display_image")) {
+                Object shown = params.get("input_key");
+                if (!isBlank(shown)) {
+                    binding.outputs.add(new Output(i, shown.toString(), renamed.containsValue(shown.toString())));
+                }
+            } else if (!hasParameter(metadata.get(i), "output_key")) {
+                binding.outputs.add(new Output(i, null, false));
+            } else if (isBlank(out)) {
+                String key = keyPrefix + "result-" + (i + 1);
+                params.put("output_key", key);
+                binding.outputs.add(new Output(i, key, true));
+            } else if (!renamed.containsKey(out.toString())) {
+                binding.outputs.add(new Output(i, out.toString(), false));
+            }
+
+            ToolInstance instance = new ToolInstance(metadata.get(i));
+            params.forEach(instance::setParameter);
+            binding.tools.add(instance);
+        }
+        // A displayed intermediate stays until its output has been read
+        binding.outputs.forEach(output -> binding.intermediateKeys.remove(output.getKey()));
+        return binding;
+    }
+
+    private void findPlaceholders(ToolMetadata metadata, Map<String, Object> params) {
+        for (ToolMetadata.ParameterDefinition definition : metadata.getParameters()) {
+            Object value = params.get(definition.getName());
+            if (!(value instanceof String)) {
+                continue;
+            }
+            Matcher matcher = PLACEHOLDER.matcher((String) value);
+            while (matcher.find()) {
+                boolean whole = matcher.group().equals(value);
+                Input input = inputs.computeIfAbsent(matcher.group(1), inputName -> new Input(inputName,
+                    whole ? jsonType(definition.getType()) : "string", definition.getDescription(),
+                    whole ? definition.getEnumValues() : null));
+                input.required = true;
+            }
+        }
+    }
+
+    private void findUnboundSource(int step, ToolMetadata metadata, Map<String, Object> params) {
+        String keyParam = hasParameter(metadata, "source_key") ? "source_key"
+            : hasParameter(metadata, "input_key") ? "input_key" : null;
+        if (!hasParameter(metadata, "image_path")) {
+            return;
+        }
+        if (!isBlank(params.get("image_path")) || !isBlank(params.get("image_url"))
+                || !isBlank(params.get("image_data")) || (keyParam != null && !isBlank(params.get(keyParam)))) {
+            return;
+        }
+        List<String> group = new ArrayList<>();
+        for (String param : SOURCE_PARAMS) {
+            group.add(addTarget(step, param, param, "string",
+                describe(metadata, param) + " (step " + (step + 1) + ", " + metadata.getName() + ")"));
+        }
+        if (keyParam != null) {
+            group.add(addTarget(step, "input_key", keyParam, "string",
+                describe(metadata, keyParam) + " (step " + (step + 1) + ", " + metadata.getName() + ")"));
+        }
+        sourceGroups.add(group);
+
+        if (hasParameter(metadata, "mask_key") && isBlank(params.get("mask_key")) && isBlank(params.get("mask_path"))) {
+            List<String> maskGroup = new ArrayList<>();
+            for (String param : new String[] {"mask_path", "mask_key"}) {
+                maskGroup.add(addTarget(step, param, param, "string", describe(metadata, param)));
+            }
+            sourceGroups.add(maskGroup);
+        }
+    }
+
+    private void findUnboundRequired(int step, ToolMetadata metadata, Map<String, Object> params) {
+        for (ToolMetadata.ParameterDefinition definition : metadata.getParameters()) {
+            if (definition.isRequired() && isBlank(params.get(definition.getName()))) {
+                String inputName = addTarget(step, definition.getName(), definition.getName(),
+                    jsonType(definition.getType()), definition.getDescription());
+                inputs.get(inputName).required = true;
+            }
+        }
+    }
+
+    /**
+     * Add an argument that sets a parameter of one step, named after the parameter
+     * unless an earlier step already took that name.
+     * @return The argument name
+     */
+    private String addTarget(int step, String inputName, String param, String type, String description) {
+        String unique = inputs.containsKey(inputName) ? "step" + (step + 1) + "_" + inputName : inputName;
+        Input input = inputs.computeIfAbsent(unique, n -> new Input(n, type, description, null));
+        input.targets.add(new int[] {step});
+        input.targetParams.add(param);
+        return unique;
+    }
+
+    /**
+     * Replace placeholders in a parameter value. A value that is only a
+     * placeholder takes the argument's value as is, keeping its type.
+     */
+    private static Object substitute(Object value, Map<String, Object> arguments) {
+        if (!(value instanceof String)) {
+            return value;
+        }
+        String text = (String) value;
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        if (matcher.matches()) {
+            return arguments.get(matcher.group(1));
+        }
+        matcher.reset();
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            Object argument = arguments.get(matcher.group(1));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(argument != null ? argument.toString() : ""));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String jsonType(ToolMetadata.ParameterDefinition.Type type) {
+        return switch (type) {
+            case INTEGER -> "integer";
+            case DOUBLE, FLOAT -> "number";
+            case BOOLEAN -> "boolean";
+            default -> "string";
+        };
+    }
+
+    private static boolean hasParameter(ToolMetadata metadata, String param) {
+        return metadata.getParameters().stream().anyMatch(definition -> definition.getName().equals(param));
+    }
+
+    private static String describe(ToolMetadata metadata, String param) {
+        return metadata.getParameters().stream()
+            .filter(definition -> definition.getName().equals(param))
+            .map(ToolMetadata.ParameterDefinition::getDescription)
+            .findFirst().orElse(param);
+    }
+
+    private static void addKey(Set<String> keys, Object key) {
+        if (!isBlank(key)) {
+            keys.add(key.toString());
+        }
+    }
+
+    private static boolean isBlank(Object value) {
+        return value == null || value.toString().isBlank();
+    }
+
+    /**
+     * A final output of one call.
+     */
+    public static class Output {
+        private final int step;
+        private final String key;
+        private final boolean generated;
+
+        Output(int step, String key, boolean generated) {
+            this.step = step;
+            this.key = key;
+            this.generated = generated;
+        }
+
+        /**
+         * Index of the step producing the output.
+         */
+        public int getStep() {
+            return step;
+        }
+
+        /**
+         * Cache key of the output image, or null for steps that only write files.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Whether the key is private to this call, made up because the step had
+         * none or renamed, and can be removed once the output has been read.
+         */
+        public boolean isGenerated() {
+            return generated;
+        }
+    }
+
+    /**
+     * The tool instances of one call and where to find its results.
+     */
+    public static class Binding {
+        private final List<ToolInstance> tools = new ArrayList<>();
+        private final List<Output> outputs = new ArrayList<>();
+        private final List<String> intermediateKeys = new ArrayList<>();
+
+        public List<ToolInstance> getTools() {
+            return tools;
+        }
+
+        public List<Output> getOutputs() {
+            return outputs;
+        }
+
+        /**
+         * Keys private to the call, to remove once the outputs have been read.
+         */
+        public List<String> getIntermediateKeys() {
+            return intermediateKeys;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.imageprocessing.server;
+
+import org.opencv.core.Mat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Read-through cache of decoded path and URL inputs.
+ *
+ * Files are keyed by canonical path and decode scale and validated by size and
+ * modification time. URLs are keyed by URL and decode scale and revalidated
+ * with If-None-Match/If-Modified-Since; responses without an ETag or
+ * Last-Modified header are not cached. Base64 data is decoded on every call.
+ * Key and validator together identify the decoded pixels, and are handed out as
+ * the lease's {@link MatLease#source()} so results computed from them can be
+ * memoized without hashing the pixels.
+ *
+ * Loaded Mats are copies of the cached pixels, so callers own (and release)
+ * them as usual and may modify them in place, e.g. when they are handed to the
+ * result cache; a copy still costs far less than decoding the file again.
+ * The cache has its own byte budget with least-recently-used eviction.
+ */
+public class DecodedImageCache {
+
+    /** Default byte budget for decoded images: 512 MiB. */
+    public static final long DEFAULT_MAX_BYTES = 512L * 1024 * 1024;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Access-ordered: iteration starts at the least recently used image
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private volatile long maxBytes;
+    private long currentBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public DecodedImageCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes Maximum number of pixel bytes held (0 disables caching)
+     */
+    public DecodedImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Load an image like {@link OpenCVImageProcessor#loadImage(String, String, String, int)},
+     * reusing an earlier decode of the same unchanged file or URL.
+     * @return A Mat owned by the caller
+     */
+    public Mat load(String imagePath, String imageUrl, String imageData, int decodeScale) throws Exception {
+        // An owned lease only wraps the Mat, so the caller can take the Mat over
+        return acquire(imagePath, imageUrl, imageData, decodeScale).mat();
+    }
+
+    /**
+     * Load an image like {@link #load(String, String, String, int)}, wrapped in an
+     * owned lease that also identifies the validated file or URL version it was
+     * decoded from (null for base64 data and unvalidated URLs).
+     */
+    public MatLease acquire(String imagePath, String imageUrl, String imageData, int decodeScale) throws Exception {
+        if (imageData != null && !imageData.isBlank()) {
+            return MatLease.owned(OpenCVImageProcessor.loadImage(imagePath, imageUrl, imageData, decodeScale));
+        }
+        if (imageUrl != null && !imageUrl.isBlank()) {
+            return loadUrl(imageUrl, decodeScale);
+        }
+        if (imagePath != null && !imagePath.isBlank()) {
+            return loadFile(imagePath, decodeScale);
+        }
+        return MatLease.owned(OpenCVImageProcessor.loadImage(imagePath, imageUrl, imageData, decodeScale));
+    }
+
+    /**
+     * Drop all cached images.
+     */
+    public void clear() {
+        List<Mat> toRelease = new ArrayList<>();
+        lock.lock();
+        try {
+            entries.values().forEach(entry -> toRelease.add(entry.mat));
+            entries.clear();
+            currentBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        toRelease.forEach(Mat::release);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Change the byte budget. Shrinking it evicts immediately; 0 disables caching.
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        List<Mat> toRelease = new ArrayList<>();
+        lock.lock();
+        try {
+            evictIfNeeded(null, toRelease);
+        } finally {
+            lock.unlock();
+        }
+        toRelease.forEach(Mat::release);
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCurrentBytes() {
+        lock.lock();
+        try {
+            return currentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        lock.lock();
+        try {
+            return hitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMissCount() {
+        lock.lock();
+        try {
+            return missCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== INTERNALS ====================
+
+    private MatLease loadFile(String imagePath, int decodeScale) throws Exception {
+        Path file;
+        BasicFileAttributes attributes;
+        try {
+            file = Path.of(imagePath).toRealPath();
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // Let the decoder report the missing or unreadable file
+            return MatLease.owned(OpenCVImageProcessor.loadImage(imagePath, null, null, decodeScale));
+        }
+
+        String key = "file:" + file + "#" + decodeScale;
+        String validator = attributes.size() + "@" + attributes.lastModifiedTime().toMillis();
+        String source = key + "@" + validator;
+        if (maxBytes <= 0) {
+            return MatLease.owned(OpenCVImageProcessor.loadImage(file.toString(), null, null, decodeScale), source);
+        }
+        Mat cached = lookup(key, validator);
+        if (cached != null) {
+            return MatLease.owned(cached, source);
+        }
+
+        Mat mat = OpenCVImageProcessor.loadImage(file.toString(), null, null, decodeScale);
+        return MatLease.owned(store(key, new Entry(mat, validator, null, 0)), source);
+    }
+
+    private MatLease loadUrl(String imageUrl, int decodeScale) throws Exception {
+        if (maxBytes <= 0) {
+            return MatLease.owned(OpenCVImageProcessor.loadImage(null, imageUrl, null, decodeScale));
+        }
+        String key = "url:" + imageUrl + "#" + decodeScale;
+        Entry previous;
+        lock.lock();
+        try {
+            previous = entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+
+        URLConnection connection = new URL(imageUrl).openConnection();
+        if (previous != null && connection instanceof HttpURLConnection) {
+            if (previous.etag != null) {
+                connection.setRequestProperty("If-None-Match", previous.etag);
+            }
+            if (previous.lastModified > 0) {
+                connection.setIfModifiedSince(previous.lastModified);
+            }
+        }
+
+        try (InputStream in = connection.getInputStream()) {
+            String etag = connection.getHeaderField("ETag");
+            long lastModified = connection.getLastModified();
+            String validator = etag + "@" + lastModified + "/" + connection.getContentLengthLong();
+
+            if (previous != null) {
+                boolean notModified = connection instanceof HttpURLConnection
+                    && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED;
+                String current = notModified ? previous.validator : validator;
+                Mat cached = lookup(key, current);
+                if (cached != null) {
+                    return MatLease.owned(cached, key + "@" + current);
+                }
+                if (notModified) {
+                    // Evicted while revalidating: fetch again unconditionally
+                    return MatLease.owned(OpenCVImageProcessor.loadImage(null, imageUrl, null, decodeScale));
+                }
+            } else {
+                countMiss();
+            }
+
+            Mat mat = OpenCVImageProcessor.decodeImage(in.readAllBytes(), decodeScale);
+            if (etag != null || lastModified > 0) {
+                return MatLease.owned(store(key, new Entry(mat, validator, etag, lastModified)), key + "@" + validator);
+            }
+            return MatLease.owned(mat);
+        }
+    }
+
+    /**
+     * Return a copy of a cached image if its validator still matches.
+     */
+    private Mat lookup(String key, String validator) {
+        Mat stale = null;
+        lock.lock();
+        try {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.validator.equals(validator)) {
+                hitCount++;
+                return entry.mat.clone();
+            }
+            missCount++;
+            if (entry != null) {
+                entries.remove(key);
+                currentBytes -= entry.bytes;
+                stale = entry.mat;
+            }
+        } finally {
+            lock.unlock();
+            if (stale != null) {
+                stale.release();
+            }
+        }
+        return null;
+    }
+
+    private void countMiss() {
+        lock.lock();
+        try {
+            missCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cache a decoded image, which the cache takes over.
+     * @return A copy for the caller, or the image itself if it is too large to cache
+     */
+    private Mat store(String key, Entry entry) {
+        if (entry.bytes > maxBytes) {
+            return entry.mat;
+        }
+        Mat copy = entry.mat.clone();
+        List<Mat> toRelease = new ArrayList<>();
+        lock.lock();
+        try {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                currentBytes -= previous.bytes;
+                toRelease.add(previous.mat);
+            }
+            currentBytes += entry.bytes;
+            evictIfNeeded(key, toRelease);
+        } finally {
+            lock.unlock();
+            toRelease.forEach(Mat::release);
+        }
+        return copy;
+    }
+
+    /**
+     * Evict least recently used images until the cache fits its budget.
+     * Must be called with the lock held.
+     */
+    private void evictIfNeeded(String protectedKey, List<Mat> toRelease) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> candidate = it.next();
+            if (candidate.getKey().equals(protectedKey)) {
+                continue;
+            }
+            it.remove();
+            currentBytes -= candidate.getValue().bytes;
+            toRelease.add(candidate.getValue().mat);
+        }
+    }
+
+    private static class Entry {
+        final Mat mat;
+        final long bytes;
+        final String validator;
+        final String etag;          // URLs only
+        final long lastModified;    // URLs only
+
+        Entry(Mat mat, String validator, String etag, long lastModified) {
+            this.mat = mat;
+            this.bytes = IntermediateResultCache.estimateBytes(mat);
+            this.validator = validator;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.imageprocessing.server;
+
+import java.util.Base64;
+
+/**
+ * An encoded image payload (e.g. PNG bytes) together with its base64 form.
+ *
+ * Instances are immutable and may be shared between requests. The base64
+ * string is derived on first use and then kept, so the accounted size
+ * ({@link #getAccountedBytes()}) covers both representations.
+ */
+public class EncodedImage {
+
+    private final byte[] bytes;
+    private final String mimeType;
+    private final String payloadKey;
+    private volatile String base64;
+
+    /**
+     * @param bytes Encoded file bytes
+     * @param mimeType MIME type of the bytes, e.g. image/png
+     * @param payloadKey Format and settings that produced the bytes, e.g. "png:3"
+     */
+    public EncodedImage(byte[] bytes, String mimeType, String payloadKey) {
+        this.bytes = bytes;
+        this.mimeType = mimeType;
+        this.payloadKey = payloadKey;
+    }
+
+    /**
+     * Get the encoded bytes. Callers must not modify the returned array.
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getPayloadKey() {
+        return payloadKey;
+    }
+
+    public String getBase64() {
+        String result = base64;
+        if (result == null) {
+            result = Base64.getEncoder().encodeToString(bytes);
+            base64 = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the payload as a data URI, e.g. {@code data:image/png;base64,...}.
+     */
+    public String getDataUri() {
+        return "data:" + mimeType + ";base64," + getBase64();
+    }
+
+    /**
+     * Bytes charged against the cache budget: the encoded bytes plus their base64 form.
+     */
+    public long getAccountedBytes() {
+        return bytes.length + (bytes.length + 2L) / 3 * 4;
+    }
+}
@@ -0,0 +1,219 @@
+package com.imageprocessing.server;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Settings for encoding response images: an ordered list of acceptable formats,
+ * JPEG/WebP quality, PNG compression level and an optional maximum dimension for
+ * previews (larger images are downscaled with INTER_AREA before encoding).
+ *
+ * The format is negotiated per image: the first preferred format that the
+ * OpenCV build can write and that can represent the image is used (JPEG cannot
+ * hold an alpha channel or more than 8 bits per channel), falling back to PNG.
+ * Encoding runs through {@link OpenCVImageProcessor#encodeImage}, i.e. OpenCV's
+ * native codecs.
+ */
+public class ImageEncoding {
+
+    public static final String PNG = "png";
+    public static final String JPEG = "jpeg";
+    public static final String WEBP = "webp";
+
+    public static final int DEFAULT_QUALITY = 90;
+    public static final int DEFAULT_PNG_COMPRESSION = 3;
+
+    /** Lossless PNG with the default compression level. */
+    public static final ImageEncoding DEFAULT = new ImageEncoding(List.of(PNG), DEFAULT_QUALITY, DEFAULT_PNG_COMPRESSION, 0);
+
+    private static final Map<String, Boolean> writerAvailable = new ConcurrentHashMap<>();
+
+    private final List<String> formats;
+    private final int quality;
+    private final int pngCompression;
+    private final int maxDimension;  // 0 = full resolution
+
+    private ImageEncoding(List<String> formats, int quality, int pngCompression, int maxDimension) {
+        this.formats = formats;
+        this.quality = quality;
+        this.pngCompression = pngCompression;
+        this.maxDimension = maxDimension;
+    }
+
+    /**
+     * Create encoding settings.
+     * @param formats Comma-separated format preference, e.g. "webp,jpeg,png"
+     * @param quality JPEG/WebP quality (1-100)
+     * @param pngCompression PNG compression level (0-9)
+     * @throws IllegalArgumentException if a value is out of range or a format is unknown
+     */
+    public static ImageEncoding of(String formats, int quality, int pngCompression) {
+        if (quality < 1 || quality > 100) {
+            throw new IllegalArgumentException("Image quality must be between 1 and 100: " + quality);
+        }
+        if (pngCompression < 0 || pngCompression > 9) {
+            throw new IllegalArgumentException("PNG compression must be between 0 and 9: " + pngCompression);
+        }
+        return new ImageEncoding(parseFormats(formats), quality, pngCompression, 0);
+    }
+
+    /**
+     * Get these settings with a bound on the encoded image's longest side.
+     * @param maxDimension Maximum width/height in pixels (0 for full resolution)
+     */
+    public ImageEncoding withMaxDimension(int maxDimension) {
+        if (maxDimension < 0) {
+            throw new IllegalArgumentException("Maximum dimension must not be negative: " + maxDimension);
+        }
+        if (maxDimension == this.maxDimension) {
+            return this;
+        }
+        return new ImageEncoding(formats, quality, pngCompression, maxDimension);
+    }
+
+    /**
+     * Apply per-request overrides ({@code image_format}, {@code image_quality},
+     * {@code png_compression}) to these settings.
+     * @param args Tool call arguments
+     * @return Settings for this request
+     */
+    public ImageEncoding withRequest(Map<String, Object> args) {
+        if (args == null) {
+            return this;
+        }
+        Object format = args.get("image_format");
+        Object requestQuality = args.get("image_quality");
+        Object requestCompression = args.get("png_compression");
+        if (format == null && requestQuality == null && requestCompression == null) {
+            return this;
+        }
+        return of(
+            format != null && !format.toString().isBlank() ? format.toString() : String.join(",", formats),
+            requestQuality instanceof Number ? ((Number) requestQuality).intValue()
+                : requestQuality != null ? Integer.parseInt(requestQuality.toString()) : quality,
+            requestCompression instanceof Number ? ((Number) requestCompression).intValue()
+                : requestCompression != null ? Integer.parseInt(requestCompression.toString()) : pngCompression)
+            .withMaxDimension(maxDimension);
+    }
+
+    /**
+     * Pick the format used for images of an OpenCV type.
+     * @param type Mat type, e.g. {@code CvType.CV_8UC3}
+     */
+    public String selectFormat(int type) {
+        for (String format : formats) {
+            if (canEncode(format, type)) {
+                return format;
+            }
+        }
+        return PNG;
+    }
+
+    /**
+     * Identify the payload produced for images of an OpenCV type, e.g. "png:3",
+     * "jpeg:90" or "jpeg:90@512" for previews. Used to key encoded payloads in the cache.
+     */
+    public String payloadKey(int type) {
+        String format = selectFormat(type);
+        String key = format + ":" + (PNG.equals(format) ? pngCompression : quality);
+        return maxDimension > 0 ? key + "@" + maxDimension : key;
+    }
+
+    /**
+     * Encode an image with the negotiated format, downscaling it first if it
+     * exceeds the maximum dimension.
+     */
+    public EncodedImage encode(Mat mat) {
+        String format = selectFormat(mat.type());
+        Mat preview = null;
+        int longest = Math.max(mat.cols(), mat.rows());
+        if (maxDimension > 0 && longest > maxDimension) {
+            double scale = (double) maxDimension / longest;
+            preview = new Mat();
+            Imgproc.resize(mat, preview, new Size(
+                    Math.max(1, Math.round(mat.cols() * scale)),
+                    Math.max(1, Math.round(mat.rows() * scale))),
+                0, 0, Imgproc.INTER_AREA);
+        }
+        try {
+            byte[] bytes = OpenCVImageProcessor.encodeImage(preview != null ? preview : mat, format, quality, pngCompression);
+            return new EncodedImage(bytes, mimeType(format), payloadKey(mat.type()));
+        } finally {
+            if (preview != null) {
+                preview.release();
+            }
+        }
+    }
+
+    public List<String> getFormats() {
+        return formats;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    public int getPngCompression() {
+        return pngCompression;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+
+    public static String mimeType(String format) {
+        switch (format) {
+            case JPEG: return "image/jpeg";
+            case WEBP: return "image/webp";
+            default: return "image/png";
+        }
+    }
+
+    private static boolean canEncode(String format, int type) {
+        if (JPEG.equals(format) || WEBP.equals(format)) {
+            // Lossy codecs here take 8-bit gray/BGR only (WebP also accepts BGRA)
+            int channels = CvType.channels(type);
+            if (CvType.depth(type) != CvType.CV_8U || channels == 2 || (channels == 4 && JPEG.equals(format))) {
+                return false;
+            }
+        }
+        return writerAvailable.computeIfAbsent(format, f -> Imgcodecs.haveImageWriter("." + extension(f)));
+    }
+
+    static String extension(String format) {
+        return JPEG.equals(format) ? "jpg" : format;
+    }
+
+    private static List<String> parseFormats(String formats) {
+        List<String> result = new ArrayList<>();
+        if (formats != null) {
+            for (String part : formats.split(",")) {
+                String format = part.trim().toLowerCase(Locale.ROOT);
+                if (format.isEmpty()) {
+                    continue;
+                }
+                if ("jpg".equals(format)) {
+                    format = JPEG;
+                }
+                if (!PNG.equals(format) && !JPEG.equals(format) && !WEBP.equals(format)) {
+                    throw new IllegalArgumentException("Unsupported image format: " + part.trim()
+                        + " (expected png, jpeg or webp)");
+                }
+                result.add(format);
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(PNG);
+        }
+        return List.copyOf(result);
+    }
+}
@@ -1,25 +1,48 @@
 package com.imageprocessing.server;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.imageprocessing.execution.BatchProcessor;
+import com.imageprocessing.execution.DirectToolExecutor;
+import com.imageprocessing.execution.PipelineResult;
+import com.imageprocessing.execution.PipelineScheduler;
+import com.imageprocessing.execution.StagedPipeline;
+import com.imageprocessing.ui.model.ToolInstance;
+import com.imageprocessing.ui.model.ToolRegistry;
+import com.imageprocessing.ui.model.WorkflowSerializer;
 import io.modelcontextprotocol.server.McpServer;
 import io.modelcontextprotocol.server.McpServerFeatures;
 import io.modelcontextprotocol.server.McpStatelessServerFeatures;
 import io.modelcontextprotocol.server.McpAsyncServer;
+import io.modelcontextprotocol.server.McpAsyncServerExchange;
 import io.modelcontextprotocol.server.McpStatelessSyncServer;
 import io.modelcontextprotocol.server.transport.StdioServerTransportProvider;
 import io.modelcontextprotocol.server.transport.HttpServletStatelessServerTransport;
 import io.modelcontextprotocol.spec.McpSchema;
 import io.modelcontextprotocol.json.McpJsonMapper;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import org.opencv.core.Mat;
 
 import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
 
 /**
  * MCP Server providing comprehensive image processing capabilities using OpenCV.
@@ -27,8 +50,27 @@ import java.util.concurrent.CountDownLatch;
  */
 public class ImageProcessingMcpServer {
 
-    private static final IntermediateResultCache cache = new IntermediateResultCache();
-    private static final TextResultCache textCache = new TextResultCache();
+    private static IntermediateResultCache cache = new IntermediateResultCache();
+    private static TextResultCache textCache = new TextResultCache();
+    private static ToolResultMemo memo = new ToolResultMemo(cache, ToolResultMemo.DEFAULT_MAX_BYTES);
+    private static DecodedImageCache decodedImages = new DecodedImageCache();
+    private static volatile ImageEncoding responseEncoding = ImageEncoding.DEFAULT;
+    private static volatile AdmissionController admission = new AdmissionController();
+
+    /** Default maximum number of Jetty request threads in HTTP mode. */
+    public static final int DEFAULT_HTTP_MAX_THREADS = 200;
+
+    // Tool handlers run here, at most one per CPU at a time
+    private static final Scheduler COMPUTE = Schedulers.newBoundedElastic(
+            Runtime.getRuntime().availableProcessors(), 1024, "image-compute", 60, true);
+    // Cheap tools get their own lane so they never queue behind slow ones on COMPUTE
+    private static final Scheduler INTERACTIVE = Schedulers.newBoundedElastic(
+            Runtime.getRuntime().availableProcessors(), 1024, "image-interactive", 60, true);
+    // Tool threads shared by the executors that batch and workflow calls create per call
+    private static final DirectToolExecutor.Threads TOOL_THREADS =
+            new DirectToolExecutor.Threads(Runtime.getRuntime().availableProcessors());
+    private static volatile ResponseImageMode responseImageMode = ResponseImageMode.FULL;
+    private static volatile int thumbnailSize = ResponseImageMode.DEFAULT_THUMBNAIL_SIZE;
 
     public static void main(String[] args) {
         try {
@@ -40,6 +82,16 @@ public class ImageProcessingMcpServer {
             // Parse command-line arguments
             boolean useHttp = false;
             int port = 8082;
+            int httpMaxThreads = DEFAULT_HTTP_MAX_THREADS;
+            String spillDir = null;
+            long spillMaxMb = 8192;
+            String imageFormat = ImageEncoding.PNG;
+            int imageQuality = ImageEncoding.DEFAULT_QUALITY;
+            int pngCompression = ImageEncoding.DEFAULT_PNG_COMPRESSION;
+            int admissionPermits = AdmissionController.DEFAULT_PERMITS;
+            int admissionQueue = AdmissionController.DEFAULT_MAX_QUEUE;
+            long admissionWaitMs = AdmissionController.DEFAULT_MAX_WAIT_MS;
+            String workflowDir = null;
 
             for (int i = 0; i < args.length; i++) {
                 if ("--http".equals(args[i])) {
@@ -48,13 +100,54 @@ public class ImageProcessingMcpServer {
                         port = Integer.parseInt(args[i + 1]);
                         i++;
                     }
+                } else if ("--http-max-threads".equals(args[i]) && i + 1 < args.length) {
+                    httpMaxThreads = Integer.parseInt(args[++i]);
+                } else if ("--cache-max-mb".equals(args[i]) && i + 1 < args.length) {
+                    cache.setMaxBytes(Long.parseLong(args[++i]) * 1024 * 1024);
+                } else if ("--cache-spill-dir".equals(args[i]) && i + 1 < args.length) {
+                    spillDir = args[++i];
+                } else if ("--cache-spill-max-mb".equals(args[i]) && i + 1 < args.length) {
+                    spillMaxMb = Long.parseLong(args[++i]);
+                } else if ("--memo-max-mb".equals(args[i]) && i + 1 < args.length) {
+                    memo.setMaxBytes(Long.parseLong(args[++i]) * 1024 * 1024);
+                } else if ("--decode-cache-max-mb".equals(args[i]) && i + 1 < args.length) {
+                    decodedImages.setMaxBytes(Long.parseLong(args[++i]) * 1024 * 1024);
+                } else if ("--image-format".equals(args[i]) && i + 1 < args.length) {
+                    imageFormat = args[++i];
+                } else if ("--image-quality".equals(args[i]) && i + 1 < args.length) {
+                    imageQuality = Integer.parseInt(args[++i]);
+                } else if ("--png-compression".equals(args[i]) && i + 1 < args.length) {
+                    pngCompression = Integer.parseInt(args[++i]);
+                } else if ("--response-image".equals(args[i]) && i + 1 < args.length) {
+                    responseImageMode = ResponseImageMode.parse(args[++i]);
+                } else if ("--thumbnail-size".equals(args[i]) && i + 1 < args.length) {
+                    thumbnailSize = Integer.parseInt(args[++i]);
+                } else if ("--admission-permits".equals(args[i]) && i + 1 < args.length) {
+                    admissionPermits = Integer.parseInt(args[++i]);
+                } else if ("--admission-queue".equals(args[i]) && i + 1 < args.length) {
+                    admissionQueue = Integer.parseInt(args[++i]);
+                } else if ("--admission-wait-ms".equals(args[i]) && i + 1 < args.length) {
+                    admissionWaitMs = Long.parseLong(args[++i]);
+                } else if ("--workflow-dir".equals(args[i]) && i + 1 < args.length) {
+                    workflowDir = args[++i];
                 }
             }
 
+            responseEncoding = ImageEncoding.of(imageFormat, imageQuality, pngCompression);
+            admission = new AdmissionController(admissionPermits, admissionQueue, admissionWaitMs);
+
+            if (spillDir != null) {
+                cache.setSpillStore(new MatSpillStore(java.nio.file.Path.of(spillDir), spillMaxMb * 1024 * 1024));
+                System.err.println("Cache spill directory: " + spillDir);
+            }
+
+            // Workflow tools run headless on the server's caches
+            WorkflowManager.setEngine(new WorkflowEngine(new OpenCVImageProcessor(), cache, decodedImages));
+
             if (useHttp) {
-                startHttpServer(port);
+                startHttpServer(port, httpMaxThreads, workflowDir);
             } else {
-                startStdioServer();
+                startStdioServer(workflowDir);
             }
 
         } catch (Exception e) {
@@ -64,11 +157,11 @@ public class ImageProcessingMcpServer {
         }
     }
 
-    private static void startStdioServer() throws InterruptedException {
+    private static void startStdioServer(String workflowDir) throws Exception {
         StdioServerTransportProvider transportProvider =
                 new StdioServerTransportProvider(McpJsonMapper.createDefault());
 
-        // Create all 10 tools
+        // Create all 14 tools
         var loadImageTool = ToolFactory.createLoadImageTool();
         var resizeImageTool = ToolFactory.createResizeImageTool();
         var segmentImageTool = ToolFactory.createSegmentImageTool();
@@ -79,17 +172,32 @@ public class ImageProcessingMcpServer {
         var detectContoursTool = ToolFactory.createDetectContoursTool();
         var outputSegmentedTool = ToolFactory.createOutputSegmentedTool();
         var displayImageTool = ToolFactory.createDisplayImageTool();
+        var serverStatsTool = ToolFactory.createServerStatsTool();
+        var streamProcessTool = ToolFactory.createStreamProcessTool();
+        var batchProcessTool = ToolFactory.createBatchProcessTool();
+        var batchCallTool = ToolFactory.createBatchCallTool();
 
         McpAsyncServer server = McpServer.async(transportProvider)
                 .serverInfo("image-processing-mcp-server", getVersion())
                 .capabilities(McpSchema.ServerCapabilities.builder()
                         .tools(true)
+                        .resources(false, false)
                         .build())
                 .tools(loadImageTool, resizeImageTool, segmentImageTool, colorToGrayscaleTool,
                        filterImageTool, denoiseImageTool, blurImageTool, detectContoursTool,
-                       outputSegmentedTool, displayImageTool)
+                       outputSegmentedTool, displayImageTool, serverStatsTool, streamProcessTool,
+                       batchProcessTool, batchCallTool,
+                       WorkflowMcpTools.createAsyncAddToWorkflow(),
+                       WorkflowMcpTools.createAsyncClearWorkflow(),
+                       WorkflowMcpTools.createAsyncGetWorkflowStatus(),
+                       WorkflowMcpTools.createAsyncExecuteWorkflow())
+                .resources(ToolFactory.createAllAsyncResources())
                 .build();
 
+        // Saved workflows become tools of their own
+        CompositeToolDirectory workflowTools = workflowDir != null
+                ? ToolFactory.watchWorkflowTools(java.nio.file.Path.of(workflowDir), server) : null;
+
         System.err.println("Image Processing MCP Server started (stdio mode)");
         System.err.println("Version: " + getVersion());
         System.err.println("Ready for connections...");
@@ -97,6 +205,13 @@ public class ImageProcessingMcpServer {
         CountDownLatch latch = new CountDownLatch(1);
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.err.println("Shutting down server...");
+            try {
+                if (workflowTools != null) {
+                    workflowTools.close();
+                }
+            } catch (java.io.IOException e) {
+                System.err.println("Error closing workflow directory: " + e.getMessage());
+            }
             cache.clear();
             server.close();
             latch.countDown();
@@ -105,13 +220,13 @@ public class ImageProcessingMcpServer {
         latch.await();
     }
 
-    private static void startHttpServer(int port) throws Exception {
+    private static void startHttpServer(int port, int maxThreads, String workflowDir) throws Exception {
         HttpServletStatelessServerTransport transport = HttpServletStatelessServerTransport.builder()
                 .jsonMapper(McpJsonMapper.createDefault())
                 .messageEndpoint("/mcp")
                 .build();
 
-        // Create stateless versions of all 10 tools
+        // Create stateless versions of all 14 tools
         var loadImageTool = ToolFactory.createStatelessLoadImageTool();
         var resizeImageTool = ToolFactory.createStatelessResizeImageTool();
         var segmentImageTool = ToolFactory.createStatelessSegmentImageTool();
@@ -122,33 +237,53 @@ public class ImageProcessingMcpServer {
         var detectContoursTool = ToolFactory.createStatelessDetectContoursTool();
         var outputSegmentedTool = ToolFactory.createStatelessOutputSegmentedTool();
         var displayImageTool = ToolFactory.createStatelessDisplayImageTool();
+        var serverStatsTool = ToolFactory.createStatelessServerStatsTool();
+        var streamProcessTool = ToolFactory.createStatelessStreamProcessTool();
+        var batchProcessTool = ToolFactory.createStatelessBatchProcessTool();
+        var batchCallTool = ToolFactory.createStatelessBatchCallTool();
 
         McpStatelessSyncServer mcpServer = McpServer.sync(transport)
                 .serverInfo("image-processing-mcp-server", getVersion())
                 .capabilities(McpSchema.ServerCapabilities.builder()
                         .tools(true)
+                        .resources(false, false)
                         .build())
                 .tools(loadImageTool, resizeImageTool, segmentImageTool, colorToGrayscaleTool,
                        filterImageTool, denoiseImageTool, blurImageTool, detectContoursTool,
-                       outputSegmentedTool, displayImageTool)
+                       outputSegmentedTool, displayImageTool, serverStatsTool, streamProcessTool,
+                       batchProcessTool, batchCallTool,
+                       WorkflowMcpTools.createStatelessAddToWorkflow(),
+                       WorkflowMcpTools.createStatelessClearWorkflow(),
+                       WorkflowMcpTools.createStatelessGetWorkflowStatus(),
+                       WorkflowMcpTools.createStatelessExecuteWorkflow())
+                .resources(ToolFactory.createAllStatelessResources())
                 .build();
 
-        Server jettyServer = new Server(port);
+        // Saved workflows become tools of their own
+        CompositeToolDirectory workflowTools = workflowDir != null
+                ? ToolFactory.watchWorkflowTools(java.nio.file.Path.of(workflowDir), mcpServer) : null;
+
+        Server jettyServer = createHttpServer(port, maxThreads);
         ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
         context.setContextPath("/");
         jettyServer.setHandler(context);
 
         ServletHolder servletHolder = new ServletHolder(transport);
         context.addServlet(servletHolder, "/mcp");
+        context.addServlet(new ServletHolder(new BlobServlet(cache)), "/blobs/*");
 
         jettyServer.start();
         System.err.println("Image Processing MCP Server started on HTTP port " + port);
         System.err.println("Version: " + getVersion());
         System.err.println("MCP endpoint: http://localhost:" + port + "/mcp");
+        System.err.println("Blob endpoint: http://localhost:" + port + "/blobs/{key}");
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.err.println("Shutting down server...");
             try {
+                if (workflowTools != null) {
+                    workflowTools.close();
+                }
                 cache.clear();
                 mcpServer.close();
                 jettyServer.stop();
@@ -160,6 +295,22 @@ public class ImageProcessingMcpServer {
         jettyServer.join();
     }
 
+    /**
+     * Create a Jetty server with an explicitly sized request thread pool.
+     * Stateless tool calls block their request thread until the handler finishes
+     * on the compute scheduler, so the pool bounds how many calls can be in flight
+     * while the compute schedulers bound how many run at once.
+     */
+    static Server createHttpServer(int port, int maxThreads) {
+        QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, Math.min(8, maxThreads), 60_000);
+        threadPool.setName("mcp-http");
+        Server server = new Server(threadPool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setPort(port);
+        server.addConnector(connector);
+        return server;
+    }
+
     private static String getVersion() {
         try (InputStream input = ImageProcessingMcpServer.class.getClassLoader()
                 .getResourceAsStream("build-info.properties")) {
@@ -180,17 +331,75 @@ public class ImageProcessingMcpServer {
      */
     static class ToolFactory {
 
+        /** Maximum number of calls in one batch_call request. */
+        static final int MAX_BATCH_CALLS = 256;
+
+        private static final ObjectMapper JSON = new ObjectMapper();
+
+        // Response image and decode options accepted by every tool that reads or returns an image
+        private static final String IMAGE_OPTIONS = """
+            {
+              "image_format": {"type": "string", "description": "Response image format preference, e.g. 'webp,jpeg,png' (default: server setting)"},
+              "image_quality": {"type": "integer", "description": "JPEG/WebP quality 1-100 (default: server setting)"},
+              "png_compression": {"type": "integer", "description": "PNG compression level 0-9 (default: server setting)"},
+              "response_image": {"type": "string", "enum": ["none", "thumbnail", "full", "reference"], "description": "How to return the result image: omit it, a bounded preview, full resolution, or only its cache key (default: server setting)"},
+              "thumbnail_size": {"type": "integer", "description": "Longest side of thumbnail previews in pixels (default: server setting)"},
+              "decode_scale": {"type": "integer", "enum": [1, 2, 4, 8], "description": "Decode path/url/data inputs at 1/N size (always 8-bit gray or BGR; default: 1)"}
+            }
+            """;
+
+        /**
+         * Adds the shared image options to a tool's input schema. Properties the
+         * schema already declares are kept, so a tool can narrow an option.
+         */
+        static String withImageOptions(String schema) {
+            try {
+                ObjectNode root = (ObjectNode) JSON.readTree(schema);
+                ObjectNode properties = (ObjectNode) root.get("properties");
+                JSON.readTree(IMAGE_OPTIONS).fields().forEachRemaining(option -> {
+                    if (!properties.has(option.getKey())) {
+                        properties.set(option.getKey(), option.getValue());
+                    }
+                });
+                return root.toString();
+            } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid tool schema: " + e.getMessage(), e);
+            }
+        }
+
+        // Workflow tools currently registered from a workflow directory, callable from batch_call
+        private static final Map<String, McpServerFeatures.AsyncToolSpecification> compositeTools =
+            new java.util.concurrent.ConcurrentHashMap<>();
+
+        // Handlers of the built-in tools for batch_call, created once on first use
+        // by the class initializer, which publishes the map safely to every thread
+        private static final class BuiltInHandlers {
+            static final Map<String, BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest,
+                Mono<McpSchema.CallToolResult>>> HANDLERS = create();
+
+            private static Map<String, BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest,
+                    Mono<McpSchema.CallToolResult>>> create() {
+                Map<String, BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest, Mono<McpSchema.CallToolResult>>> handlers =
+                    new java.util.HashMap<>();
+                for (McpServerFeatures.AsyncToolSpecification spec : createAllAsyncTools(null, null)) {
+                    if (!spec.tool().name().equals("batch_call")) {
+                        handlers.put(spec.tool().name(), spec.callHandler());
+                    }
+                }
+                return Map.copyOf(handlers);
+            }
+        }
+
         /**
          * Helper to create tool result with both text message and base64 image.
          */
         private static McpSchema.CallToolResult createImageResult(String message, Mat outputImage) throws Exception {
             String base64Image = OpenCVImageProcessor.matToBase64Png(outputImage);
-            String imageData = "data:image/png;base64," + base64Image;
 
             return new McpSchema.CallToolResult.Builder()
                     .content(List.of(
                         new McpSchema.TextContent(message),
-                        new McpSchema.TextContent(imageData)
+                        new McpSchema.ImageContent(null, base64Image, "image/png")
                     ))
                     .isError(false)
                     .build();
@@ -203,6 +412,7 @@ public class ImageProcessingMcpServer {
          */
         public static java.util.List<io.modelcontextprotocol.server.McpServerFeatures.AsyncToolSpecification>
                 createAllAsyncTools(IntermediateResultCache sharedCache, TextResultCache sharedTextCache) {
+            useSharedCaches(sharedCache, sharedTextCache);
             return java.util.List.of(
                 createLoadImageTool(),
                 createResizeImageTool(),
@@ -214,6 +424,10 @@ public class ImageProcessingMcpServer {
                 createDetectContoursTool(),
                 createOutputSegmentedTool(),
                 createDisplayImageTool(),
+                createServerStatsTool(),
+                createStreamProcessTool(),
+                createBatchProcessTool(),
+                createBatchCallTool(),
                 WorkflowMcpTools.createAsyncAddToWorkflow(),
                 WorkflowMcpTools.createAsyncClearWorkflow(),
                 WorkflowMcpTools.createAsyncGetWorkflowStatus(),
@@ -226,6 +440,7 @@ public class ImageProcessingMcpServer {
          */
         public static java.util.List<io.modelcontextprotocol.server.McpStatelessServerFeatures.SyncToolSpecification>
                 createAllStatelessTools(IntermediateResultCache sharedCache, TextResultCache sharedTextCache) {
+            useSharedCaches(sharedCache, sharedTextCache);
             return java.util.List.of(
                 createStatelessLoadImageTool(),
                 createStatelessResizeImageTool(),
@@ -237,6 +452,10 @@ public class ImageProcessingMcpServer {
                 createStatelessDetectContoursTool(),
                 createStatelessOutputSegmentedTool(),
                 createStatelessDisplayImageTool(),
+                createStatelessServerStatsTool(),
+                createStatelessStreamProcessTool(),
+                createStatelessBatchProcessTool(),
+                createStatelessBatchCallTool(),
                 WorkflowMcpTools.createStatelessAddToWorkflow(),
                 WorkflowMcpTools.createStatelessClearWorkflow(),
                 WorkflowMcpTools.createStatelessGetWorkflowStatus(),
@@ -244,10 +463,82 @@ public class ImageProcessingMcpServer {
             );
         }
 
+        /**
+         * Register the saved workflows in a directory as tools of a stdio server and
+         * keep them in sync with the directory's files.
+         */
+        static CompositeToolDirectory watchWorkflowTools(java.nio.file.Path directory, McpAsyncServer server)
+                throws java.io.IOException {
+            CompositeToolDirectory workflowTools = new CompositeToolDirectory(directory, builtInToolNames(),
+                new CompositeToolDirectory.Registrar() {
+                    @Override
+                    public void add(CompositeWorkflow workflow) {
+                        McpServerFeatures.AsyncToolSpecification spec = createCompositeTool(workflow);
+                        server.addTool(spec).block();
+                        compositeTools.put(workflow.getName(), spec);
+                    }
+
+                    @Override
+                    public void remove(String toolName) {
+                        compositeTools.remove(toolName);
+                        server.removeTool(toolName).block();
+                    }
+                });
+            workflowTools.start();
+            return workflowTools;
+        }
+
+        /**
+         * Register the saved workflows in a directory as tools of an HTTP server and
+         * keep them in sync with the directory's files.
+         */
+        static CompositeToolDirectory watchWorkflowTools(java.nio.file.Path directory, McpStatelessSyncServer server)
+                throws java.io.IOException {
+            CompositeToolDirectory workflowTools = new CompositeToolDirectory(directory, builtInToolNames(),
+                new CompositeToolDirectory.Registrar() {
+                    @Override
+                    public void add(CompositeWorkflow workflow) {
+                        McpServerFeatures.AsyncToolSpecification spec = createCompositeTool(workflow);
+                        server.addTool(createSyncToolFromAsync(spec));
+                        compositeTools.put(workflow.getName(), spec);
+                    }
+
+                    @Override
+                    public void remove(String toolName) {
+                        compositeTools.remove(toolName);
+                        server.removeTool(toolName);
+                    }
+                });
+            workflowTools.start();
+            return workflowTools;
+        }
+
+        private static java.util.Set<String> builtInToolNames() {
+            java.util.Set<String> names = new java.util.HashSet<>();
+            createAllAsyncTools(null, null).forEach(spec -> names.add(spec.tool().name()));
+            return names;
+        }
+
+        /**
+         * Point the tools at the caches owned by the embedding application,
+         * so the UI and external clients share entries and one byte budget.
+         */
+        private static void useSharedCaches(IntermediateResultCache sharedCache, TextResultCache sharedTextCache) {
+            if (sharedCache != null && sharedCache != cache) {
+                long memoMaxBytes = memo.getMaxBytes();
+                memo.clear();
+                cache = sharedCache;
+                memo = new ToolResultMemo(sharedCache, memoMaxBytes);
+            }
+            if (sharedTextCache != null) {
+                textCache = sharedTextCache;
+            }
+        }
+
         // ==================== ASYNC TOOLS (STDIO) ====================
 
         static McpServerFeatures.AsyncToolSpecification createLoadImageTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
@@ -270,7 +561,7 @@ public class ImageProcessingMcpServer {
                   },
                   "description": "At least one of image_path, image_url, or image_data must be provided"
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -278,41 +569,35 @@ public class ImageProcessingMcpServer {
                             .description("Load an image from path, URL, or base64 data and optionally store in cache")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
+                    .callHandler(offload("load_image", (exchange, request) -> {
                         try {
                             var args = request.arguments();
                             String imagePath = getStringArg(args, "image_path");
                             String imageUrl = getStringArg(args, "image_url");
                             String imageData = getStringArg(args, "image_data");
-                            String outputKey = getStringArg(args, "output_key");
+                            String outputKey = outputKeyFor(args);
 
-                            Mat mat = OpenCVImageProcessor.loadImage(imagePath, imageUrl, imageData);
-
-                            if (outputKey != null && !outputKey.isBlank()) {
-                                cache.put(outputKey, mat);
-                            }
+                            Mat mat = decodedImages.load(imagePath, imageUrl, imageData,
+                                getIntArg(args, "decode_scale", 1));
 
                             String info = OpenCVImageProcessor.getImageInfo(mat);
                             String message = String.format("Image loaded successfully!\n%s", info);
 
+                            // Encode the response image before the cache owns the Mat
+                            EncodedImage encoded = encodeResult(args, mat);
+
                             if (outputKey != null && !outputKey.isBlank()) {
+                                cache.put(outputKey, mat);
+                                cache.putEncoded(outputKey, mat, encoded);
                                 message += "\n- Cached with key: " + outputKey;
-                            }
-
-                            // Convert image to base64 for client
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(mat);
-                            String imageDataUri = "data:image/png;base64," + base64Image;
-
-                            if (outputKey == null || outputKey.isBlank()) {
+                                message += "\n- Resource: " + imageUri(outputKey);
+                            } else {
                                 mat.release();
                             }
 
-                            // Return both text info and base64 image
+                            // Return text info and, depending on response_image, the image
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(
-                                        new McpSchema.TextContent(message),
-                                        new McpSchema.TextContent(imageDataUri)
-                                    ))
+                                    .content(resultContent(message, encoded, outputKey))
                                     .isError(false)
                                     .build());
 
@@ -322,12 +607,12 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
         static McpServerFeatures.AsyncToolSpecification createResizeImageTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
@@ -347,7 +632,7 @@ public class ImageProcessingMcpServer {
                   },
                   "required": ["width", "height"]
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -355,34 +640,30 @@ public class ImageProcessingMcpServer {
                             .description("Resize an image to specified dimensions with various interpolation methods")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-                            Mat src = loadImageFromArgs(args);
+                    .callHandler(offloadInteractive("resize_image", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease input = loadImageFromArgs(args)) {
+                            Mat src = input.mat();
 
                             int width = getIntArg(args, "width");
                             int height = getIntArg(args, "height");
                             String interpolation = getStringArg(args, "interpolation", "LINEAR");
 
-                            Mat resized = OpenCVImageProcessor.resize(src, width, height, interpolation);
-
-                            String result = handleOutput(args, resized,
-                                String.format("Image resized successfully!\n- Original size: %dx%d\n- New size: %dx%d\n- Interpolation: %s",
-                                    src.cols(), src.rows(), width, height, interpolation));
+                            Mat resized = memo.compute("resize_image",
+                                Map.of("width", width, "height", height, "interpolation", interpolation),
+                                List.of(input),
+                                () -> OpenCVImageProcessor.resize(src, width, height, interpolation));
 
                             // Convert to base64 for client
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(resized);
-                            String imageData = "data:image/png;base64," + base64Image;
+                            EncodedImage encoded = encodeResult(args, resized);
 
-                            if (!cache.containsKey(getStringArg(args, "input_key"))) {
-                                src.release();
-                            }
+                            String outputKey = outputKeyFor(args);
+                            String result = handleOutput(args, outputKey, resized, encoded,
+                                String.format("Image resized successfully!\n- Original size: %dx%d\n- New size: %dx%d\n- Interpolation: %s",
+                                    src.cols(), src.rows(), width, height, interpolation));
 
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(
-                                        new McpSchema.TextContent(result),
-                                        new McpSchema.TextContent(imageData)
-                                    ))
+                                    .content(resultContent(result, encoded, outputKey))
                                     .isError(false)
                                     .build());
 
@@ -392,12 +673,12 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
         static McpServerFeatures.AsyncToolSpecification createSegmentImageTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
@@ -424,7 +705,7 @@ public class ImageProcessingMcpServer {
                     "output_key": {"type": "string"}
                   }
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -432,35 +713,32 @@ public class ImageProcessingMcpServer {
                             .description("Segment an image using threshold-based methods including Otsu auto-thresholding")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-                            Mat src = loadImageFromArgs(args);
+                    .callHandler(offload("segment_image", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease input = loadImageFromArgs(args)) {
+                            Mat src = input.mat();
 
                             double threshold = getDoubleArg(args, "threshold", 127.0);
                             String thresholdType = getStringArg(args, "threshold_type", "BINARY");
                             boolean invert = getBooleanArg(args, "invert", false);
 
-                            Mat segmented = OpenCVImageProcessor.segment(src, threshold, thresholdType, invert);
+                            Mat segmented = memo.compute("segment_image",
+                                Map.of("threshold", threshold, "threshold_type", thresholdType, "invert", invert),
+                                List.of(input),
+                                () -> OpenCVImageProcessor.segment(src, threshold, thresholdType, invert));
 
                             String invertStr = invert ? ", inverted" : "";
-                            String result = handleOutput(args, segmented,
-                                String.format("Image segmented successfully!\n- Threshold: %.1f\n- Type: %s%s",
-                                    threshold, thresholdType, invertStr));
 
                             // Convert to base64 for client
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(segmented);
-                            String imageData = "data:image/png;base64," + base64Image;
+                            EncodedImage encoded = encodeResult(args, segmented);
 
-                            if (!cache.containsKey(getStringArg(args, "input_key"))) {
-                                src.release();
-                            }
+                            String outputKey = outputKeyFor(args);
+                            String result = handleOutput(args, outputKey, segmented, encoded,
+                                String.format("Image segmented successfully!\n- Threshold: %.1f\n- Type: %s%s",
+                                    threshold, thresholdType, invertStr));
 
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(
-                                        new McpSchema.TextContent(result),
-                                        new McpSchema.TextContent(imageData)
-                                    ))
+                                    .content(resultContent(result, encoded, outputKey))
                                     .isError(false)
                                     .build());
 
@@ -470,12 +748,12 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
         static McpServerFeatures.AsyncToolSpecification createColorToGrayscaleTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
@@ -487,7 +765,7 @@ public class ImageProcessingMcpServer {
                     "output_key": {"type": "string"}
                   }
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -495,30 +773,24 @@ public class ImageProcessingMcpServer {
                             .description("Convert a color image to grayscale")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-                            Mat src = loadImageFromArgs(args);
+                    .callHandler(offloadInteractive("color_to_grayscale", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease input = loadImageFromArgs(args)) {
+                            Mat src = input.mat();
 
-                            Mat gray = OpenCVImageProcessor.colorToGrayscale(src);
-
-                            String result = handleOutput(args, gray,
-                                String.format("Image converted to grayscale!\n- Original channels: %d\n- New channels: 1",
-                                    src.channels()));
+                            Mat gray = memo.compute("color_to_grayscale", Map.of(), List.of(input),
+                                () -> OpenCVImageProcessor.colorToGrayscale(src));
 
                             // Convert to base64 for client
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(gray);
-                            String imageData = "data:image/png;base64," + base64Image;
+                            EncodedImage encoded = encodeResult(args, gray);
 
-                            if (!cache.containsKey(getStringArg(args, "input_key"))) {
-                                src.release();
-                            }
+                            String outputKey = outputKeyFor(args);
+                            String result = handleOutput(args, outputKey, gray, encoded,
+                                String.format("Image converted to grayscale!\n- Original channels: %d\n- New channels: 1",
+                                    src.channels()));
 
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(
-                                        new McpSchema.TextContent(result),
-                                        new McpSchema.TextContent(imageData)
-                                    ))
+                                    .content(resultContent(result, encoded, outputKey))
                                     .isError(false)
                                     .build());
 
@@ -528,12 +800,12 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
         static McpServerFeatures.AsyncToolSpecification createFilterImageTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
@@ -554,7 +826,7 @@ public class ImageProcessingMcpServer {
                     "output_key": {"type": "string"}
                   }
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -562,10 +834,10 @@ public class ImageProcessingMcpServer {
                             .description("Apply various filters (Gaussian, Median, Bilateral) to an image")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-                            Mat src = loadImageFromArgs(args);
+                    .callHandler(offload("filter_image", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease input = loadImageFromArgs(args)) {
+                            Mat src = input.mat();
 
                             String filterType = getStringArg(args, "filter_type", "GAUSSIAN");
                             int kernelSize = getIntArg(args, "kernel_size", 5);
@@ -573,26 +845,23 @@ public class ImageProcessingMcpServer {
                             double sigmaColor = getDoubleArg(args, "sigma_color", 75.0);
                             double sigmaSpace = getDoubleArg(args, "sigma_space", 75.0);
 
-                            Mat filtered = OpenCVImageProcessor.filter(src, filterType, kernelSize,
-                                sigmaX, sigmaColor, sigmaSpace);
-
-                            String result = handleOutput(args, filtered,
-                                String.format("Filter applied successfully!\n- Filter type: %s\n- Kernel size: %d",
-                                    filterType, kernelSize));
+                            Mat filtered = memo.compute("filter_image",
+                                Map.of("filter_type", filterType, "kernel_size", kernelSize, "sigma_x", sigmaX,
+                                    "sigma_color", sigmaColor, "sigma_space", sigmaSpace),
+                                List.of(input),
+                                () -> OpenCVImageProcessor.filter(src, filterType, kernelSize,
+                                    sigmaX, sigmaColor, sigmaSpace));
 
                             // Convert to base64 for client
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(filtered);
-                            String imageData = "data:image/png;base64," + base64Image;
+                            EncodedImage encoded = encodeResult(args, filtered);
 
-                            if (!cache.containsKey(getStringArg(args, "input_key"))) {
-                                src.release();
-                            }
+                            String outputKey = outputKeyFor(args);
+                            String result = handleOutput(args, outputKey, filtered, encoded,
+                                String.format("Filter applied successfully!\n- Filter type: %s\n- Kernel size: %d",
+                                    filterType, kernelSize));
 
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(
-                                        new McpSchema.TextContent(result),
-                                        new McpSchema.TextContent(imageData)
-                                    ))
+                                    .content(resultContent(result, encoded, outputKey))
                                     .isError(false)
                                     .build());
 
@@ -602,12 +871,12 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
         static McpServerFeatures.AsyncToolSpecification createDenoiseImageTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
@@ -634,7 +903,7 @@ public class ImageProcessingMcpServer {
                     "output_key": {"type": "string"}
                   }
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -642,34 +911,31 @@ public class ImageProcessingMcpServer {
                             .description("Denoise an image using Non-Local Means Denoising algorithm")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-                            Mat src = loadImageFromArgs(args);
+                    .callHandler(offload("denoise_image", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease input = loadImageFromArgs(args)) {
+                            Mat src = input.mat();
 
                             float h = getFloatArg(args, "h", 10.0f);
                             int templateWindowSize = getIntArg(args, "template_window_size", 7);
                             int searchWindowSize = getIntArg(args, "search_window_size", 21);
 
-                            Mat denoised = OpenCVImageProcessor.denoise(src, h, templateWindowSize, searchWindowSize);
-
-                            String result = handleOutput(args, denoised,
-                                String.format("Image denoised successfully!\n- Filter strength: %.1f\n- Template window: %d\n- Search window: %d",
-                                    h, templateWindowSize, searchWindowSize));
+                            Mat denoised = memo.compute("denoise_image",
+                                Map.of("h", h, "template_window_size", templateWindowSize,
+                                    "search_window_size", searchWindowSize),
+                                List.of(input),
+                                () -> OpenCVImageProcessor.denoise(src, h, templateWindowSize, searchWindowSize));
 
                             // Convert to base64 for client
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(denoised);
-                            String imageData = "data:image/png;base64," + base64Image;
+                            EncodedImage encoded = encodeResult(args, denoised);
 
-                            if (!cache.containsKey(getStringArg(args, "input_key"))) {
-                                src.release();
-                            }
+                            String outputKey = outputKeyFor(args);
+                            String result = handleOutput(args, outputKey, denoised, encoded,
+                                String.format("Image denoised successfully!\n- Filter strength: %.1f\n- Template window: %d\n- Search window: %d",
+                                    h, templateWindowSize, searchWindowSize));
 
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(
-                                        new McpSchema.TextContent(result),
-                                        new McpSchema.TextContent(imageData)
-                                    ))
+                                    .content(resultContent(result, encoded, outputKey))
                                     .isError(false)
                                     .build());
 
@@ -679,12 +945,12 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
         static McpServerFeatures.AsyncToolSpecification createBlurImageTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
@@ -707,7 +973,7 @@ public class ImageProcessingMcpServer {
                     "output_key": {"type": "string"}
                   }
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -715,34 +981,30 @@ public class ImageProcessingMcpServer {
                             .description("Apply various blur effects (Gaussian, Motion, Box) to an image")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-                            Mat src = loadImageFromArgs(args);
+                    .callHandler(offload("blur_image", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease input = loadImageFromArgs(args)) {
+                            Mat src = input.mat();
 
                             String blurType = getStringArg(args, "blur_type", "GAUSSIAN");
                             int kernelSize = getIntArg(args, "kernel_size", 5);
                             double angle = getDoubleArg(args, "angle", 0.0);
 
-                            Mat blurred = OpenCVImageProcessor.blur(src, blurType, kernelSize, angle);
-
-                            String result = handleOutput(args, blurred,
-                                String.format("Blur applied successfully!\n- Blur type: %s\n- Kernel size: %d\n- Angle: %.1f°",
-                                    blurType, kernelSize, angle));
+                            Mat blurred = memo.compute("blur_image",
+                                Map.of("blur_type", blurType, "kernel_size", kernelSize, "angle", angle),
+                                List.of(input),
+                                () -> OpenCVImageProcessor.blur(src, blurType, kernelSize, angle));
 
                             // Convert to base64 for client
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(blurred);
-                            String imageData = "data:image/png;base64," + base64Image;
+                            EncodedImage encoded = encodeResult(args, blurred);
 
-                            if (!cache.containsKey(getStringArg(args, "input_key"))) {
-                                src.release();
-                            }
+                            String outputKey = outputKeyFor(args);
+                            String result = handleOutput(args, outputKey, blurred, encoded,
+                                String.format("Blur applied successfully!\n- Blur type: %s\n- Kernel size: %d\n- Angle: %.1f°",
+                                    blurType, kernelSize, angle));
 
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(
-                                        new McpSchema.TextContent(result),
-                                        new McpSchema.TextContent(imageData)
-                                    ))
+                                    .content(resultContent(result, encoded, outputKey))
                                     .isError(false)
                                     .build());
 
@@ -752,12 +1014,12 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
         static McpServerFeatures.AsyncToolSpecification createDetectContoursTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
@@ -791,7 +1053,7 @@ public class ImageProcessingMcpServer {
                     "output_csv_key": {"type": "string", "description": "Store blob CSV data in cache"}
                   }
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -799,10 +1061,10 @@ public class ImageProcessingMcpServer {
                             .description("Detect and filter contours by size and circularity")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-                            Mat src = loadImageFromArgs(args);
+                    .callHandler(offload("detect_contours", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease input = loadImageFromArgs(args)) {
+                            Mat src = input.mat();
 
                             double minArea = getDoubleArg(args, "min_area", 100.0);
                             double maxArea = getDoubleArg(args, "max_area", -1.0);
@@ -817,7 +1079,11 @@ public class ImageProcessingMcpServer {
                             @SuppressWarnings("unchecked")
                             List<BlobInfo> blobs = (List<BlobInfo>) contourResult.get("blobs");
 
-                            String result = handleOutput(args, visualization,
+                            // Convert to base64 for client
+                            EncodedImage encoded = encodeResult(args, visualization);
+
+                            String outputKey = outputKeyFor(args);
+                            String result = handleOutput(args, outputKey, visualization, encoded,
                                 String.format("Contours detected successfully!\n- Count: %d\n- Min area: %.1f\n- Max area: %.1f\n- Circularity: %.2f-%.2f",
                                     count, minArea, maxArea, minCircularity, maxCircularity));
 
@@ -841,21 +1107,11 @@ public class ImageProcessingMcpServer {
                             if (csvKey != null && !csvKey.isBlank()) {
                                 textCache.put(csvKey, csvData);
                                 result += "\n- CSV cached with key: " + csvKey;
-                            }
-
-                            // Convert to base64 for client
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(visualization);
-                            String imageData = "data:image/png;base64," + base64Image;
-
-                            if (!cache.containsKey(getStringArg(args, "input_key"))) {
-                                src.release();
+                                result += "\n- CSV resource: " + csvUri(csvKey);
                             }
 
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(
-                                        new McpSchema.TextContent(result),
-                                        new McpSchema.TextContent(imageData)
-                                    ))
+                                    .content(resultContent(result, encoded, outputKey))
                                     .isError(false)
                                     .build());
 
@@ -865,7 +1121,7 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
@@ -896,29 +1152,13 @@ public class ImageProcessingMcpServer {
                             .description("Extract and save segmented regions from an image using a binary mask")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-
-                            // Load source image
-                            Mat src = loadImageFromArgs(args, "image_path", "image_url", "image_data", "source_key");
-
-                            // Load mask image
-                            Mat mask;
-                            String maskKey = getStringArg(args, "mask_key");
-                            if (maskKey != null && !maskKey.isBlank() && cache.containsKey(maskKey)) {
-                                mask = cache.get(maskKey);
-                            } else {
-                                String maskPath = getStringArg(args, "mask_path");
-                                if (maskPath == null || maskPath.isBlank()) {
-                                    throw new IllegalArgumentException("Must provide mask_path or mask_key");
-                                }
-                                mask = OpenCVImageProcessor.loadImage(maskPath, null, null);
-                            }
-
+                    .callHandler(offload("output_segmented", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease src = loadImageFromArgs(args, "image_path", "image_url", "image_data", "source_key");
+                             MatLease mask = loadMaskFromArgs(args)) {
                             String outputPath = getStringArg(args, "output_path", "./segmented_output.png");
 
-                            List<String> savedFiles = OpenCVImageProcessor.outputSegmented(src, mask, outputPath);
+                            List<String> savedFiles = OpenCVImageProcessor.outputSegmented(src.mat(), mask.mat(), outputPath);
 
                             StringBuilder result = new StringBuilder("Segmented regions extracted successfully!\n");
                             result.append(String.format("- Total regions: %d\n", savedFiles.size()));
@@ -927,13 +1167,6 @@ public class ImageProcessingMcpServer {
                                 result.append("  - ").append(file).append("\n");
                             }
 
-                            if (!cache.containsKey(getStringArg(args, "source_key"))) {
-                                src.release();
-                            }
-                            if (maskKey == null || maskKey.isBlank() || !cache.containsKey(maskKey)) {
-                                mask.release();
-                            }
-
                             return Mono.just(new McpSchema.CallToolResult.Builder()
                                     .content(List.of(new McpSchema.TextContent(result.toString())))
                                     .isError(false)
@@ -945,22 +1178,23 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
-                    })
+                    }))
                     .build();
         }
 
         static McpServerFeatures.AsyncToolSpecification createDisplayImageTool() {
-            String schema = """
+            String schema = withImageOptions("""
                 {
                   "type": "object",
                   "properties": {
                     "image_path": {"type": "string"},
                     "image_url": {"type": "string"},
                     "image_data": {"type": "string"},
-                    "input_key": {"type": "string"}
+                    "input_key": {"type": "string"},
+                    "response_image": {"type": "string", "enum": ["thumbnail", "full"], "description": "Display a bounded preview or the full resolution image (default: server setting)"}
                   }
                 }
-                """;
+                """);
 
             return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                     McpSchema.Tool.builder()
@@ -968,19 +1202,185 @@ public class ImageProcessingMcpServer {
                             .description("Load and display an image in the MCP client as base64 PNG")
                             .inputSchema(McpJsonMapper.createDefault(), schema)
                             .build())
-                    .callHandler((exchange, request) -> {
-                        try {
-                            var args = request.arguments();
-                            Mat mat = loadImageFromArgs(args);
+                    .callHandler(offloadInteractive("display_image", (exchange, request) -> {
+                        var args = request.arguments();
+                        try (MatLease input = loadImageFromArgs(args)) {
+                            EncodedImage encoded = encodeResponse(args, input);
 
-                            String base64Image = OpenCVImageProcessor.matToBase64Png(mat);
+                            return Mono.just(new McpSchema.CallToolResult.Builder()
+                                    .content(List.of(new McpSchema.ImageContent(null, encoded.getBase64(), encoded.getMimeType())))
+                                    .isError(false)
+                                    .build());
 
-                            if (!cache.containsKey(getStringArg(args, "input_key"))) {
-                                mat.release();
+                        } catch (Exception e) {
+                            return Mono.just(new McpSchema.CallToolResult.Builder()
+                                    .content(List.of(new McpSchema.TextContent("Error: " + e.getMessage())))
+                                    .isError(true)
+                                    .build());
+                        }
+                    }))
+                    .build();
+        }
+
+        static McpServerFeatures.AsyncToolSpecification createServerStatsTool() {
+            String schema = """
+                {
+                  "type": "object",
+                  "properties": {}
+                }
+                """;
+
+            return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
+                    McpSchema.Tool.builder()
+                            .name("get_server_stats")
+                            .description("Report image cache usage, memoized result hit/miss counts and admission queue depth and wait times")
+                            .inputSchema(McpJsonMapper.createDefault(), schema)
+                            .build())
+                    .callHandler(offloadInteractive("get_server_stats", (exchange, request) -> {
+                        StringBuilder stats = new StringBuilder("Server statistics:\n");
+                        stats.append("Image cache:\n");
+                        stats.append(String.format("- Entries: %d\n", cache.size()));
+                        stats.append(String.format("- Pixels: %.1f MB (budget %.1f MB, shared with encoded payloads)\n",
+                            toMb(cache.getCurrentBytes()), toMb(cache.getMaxBytes())));
+                        stats.append(String.format("- Spilled: %.1f MB\n", toMb(cache.getSpilledBytes())));
+                        stats.append(String.format("- Evictions: %d, spills: %d, faults: %d\n",
+                            cache.getEvictionCount(), cache.getSpillCount(), cache.getFaultCount()));
+                        stats.append(String.format("- Encoded payloads: %.1f MB, hits: %d, misses: %d\n",
+                            toMb(cache.getEncodedBytes()), cache.getEncodingHits(), cache.getEncodingMisses()));
+                        stats.append("Decoded path/URL inputs:\n");
+                        stats.append(String.format("- Entries: %d (%.1f MB of %.1f MB)\n",
+                            decodedImages.size(), toMb(decodedImages.getCurrentBytes()), toMb(decodedImages.getMaxBytes())));
+                        stats.append(String.format("- Hits: %d, misses: %d\n",
+                            decodedImages.getHitCount(), decodedImages.getMissCount()));
+                        stats.append("Memoized results:\n");
+                        stats.append(String.format("- Entries: %d (%.1f MB of %.1f MB)\n",
+                            memo.size(), toMb(memo.getCurrentBytes()), toMb(memo.getMaxBytes())));
+                        stats.append(String.format("- Hits: %d, misses: %d, invalidations: %d\n",
+                            memo.getHitCount(), memo.getMissCount(), memo.getInvalidationCount()));
+                        AdmissionController admitted = admission;
+                        stats.append("Admission control:\n");
+                        stats.append(String.format("- Permits: %d of %d free, waiting calls: %d (max %d)\n",
+                            admitted.getAvailablePermits(), admitted.getPermits(),
+                            admitted.getQueueDepth(), admitted.getMaxQueue()));
+                        stats.append(String.format("- Admitted: %d, rejected: %d\n",
+                            admitted.getAdmittedCount(), admitted.getRejectedCount()));
+                        stats.append(String.format("- Queue wait: %.1f ms average, %.1f ms longest (limit %d ms)\n",
+                            admitted.getAverageWaitMs(), admitted.getLongestWaitMs(), admitted.getMaxWaitMs()));
+
+                        return Mono.just(new McpSchema.CallToolResult.Builder()
+                                .content(List.of(new McpSchema.TextContent(stats.toString())))
+                                .isError(false)
+                                .build());
+                    }))
+                    .build();
+        }
+
+        static McpServerFeatures.AsyncToolSpecification createStreamProcessTool() {
+            String schema = """
+                {
+                  "type": "object",
+                  "properties": {
+                    "image_path": {"type": "string", "description": "Input image file (TIFF inputs are read band by band most efficiently)"},
+                    "output_path": {"type": "string", "description": "Output TIFF file (.tif or .tiff), written band by band"},
+                    "operation": {
+                      "type": "string",
+                      "enum": ["GRAYSCALE", "SEGMENT", "BLUR", "FILTER"],
+                      "description": "Operation to apply"
+                    },
+                    "band_rows": {"type": "integer", "description": "Rows processed per band; bounds peak memory", "default": 512},
+                    "threshold": {"type": "number", "description": "SEGMENT: threshold value (0-255)", "default": 127},
+                    "threshold_type": {
+                      "type": "string",
+                      "description": "SEGMENT: BINARY, BINARY_INV, TRUNC, TOZERO, TOZERO_INV, OTSU (computed in a first pass)",
+                      "default": "BINARY"
+                    },
+                    "invert": {"type": "boolean", "description": "SEGMENT: invert the result", "default": false},
+                    "blur_type": {"type": "string", "description": "BLUR: GAUSSIAN, MOTION, BOX, AVERAGE", "default": "GAUSSIAN"},
+                    "angle": {"type": "number", "description": "BLUR: angle for motion blur in degrees", "default": 0.0},
+                    "filter_type": {"type": "string", "description": "FILTER: GAUSSIAN, MEDIAN, BILATERAL", "default": "GAUSSIAN"},
+                    "kernel_size": {"type": "integer", "description": "BLUR/FILTER: kernel size (must be odd)", "default": 5},
+                    "sigma_x": {"type": "number", "description": "FILTER: sigma X", "default": 1.0},
+                    "sigma_color": {"type": "number", "description": "FILTER: sigma color (bilateral)", "default": 75.0},
+                    "sigma_space": {"type": "number", "description": "FILTER: sigma space (bilateral)", "default": 75.0}
+                  },
+                  "required": ["image_path", "output_path", "operation"]
+                }
+                """;
+
+            return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
+                    McpSchema.Tool.builder()
+                            .name("stream_process")
+                            .description("Process an image file larger than memory band by band (grayscale, segment, blur or filter) and write the result to a TIFF file")
+                            .inputSchema(McpJsonMapper.createDefault(), schema)
+                            .build())
+                    .callHandler(offload("stream_process", (exchange, request) -> {
+                        var args = request.arguments();
+                        try {
+                            String imagePath = getStringArg(args, "image_path");
+                            String outputPath = getStringArg(args, "output_path");
+                            String operation = getStringArg(args, "operation", "").toUpperCase();
+                            if (imagePath == null || outputPath == null) {
+                                throw new IllegalArgumentException("image_path and output_path are required");
+                            }
+                            java.nio.file.Path input = java.nio.file.Path.of(imagePath);
+                            java.nio.file.Path output = java.nio.file.Path.of(outputPath);
+                            int bandRows = getIntArg(args, "band_rows", StreamingProcessor.DEFAULT_BAND_ROWS);
+                            int kernelSize = getIntArg(args, "kernel_size", 5);
+                            int radius = (kernelSize % 2 == 0 ? kernelSize + 1 : kernelSize) / 2;
+                            java.util.function.BooleanSupplier cancelled = TiledExecutor.callerInterrupted();
+
+                            int halo;
+                            TiledExecutor.TileOperation bandOperation;
+                            String details;
+                            switch (operation) {
+                                case "GRAYSCALE" -> {
+                                    halo = 0;
+                                    bandOperation = OpenCVImageProcessor::colorToGrayscale;
+                                    details = "Grayscale";
+                                }
+                                case "SEGMENT" -> {
+                                    String thresholdType = getStringArg(args, "threshold_type", "BINARY");
+                                    boolean invert = getBooleanArg(args, "invert", false);
+                                    // Otsu needs the whole image's histogram: compute it in a first pass
+                                    boolean otsu = thresholdType.equalsIgnoreCase("OTSU");
+                                    double threshold = otsu
+                                        ? StreamingProcessor.otsuThreshold(input, bandRows, cancelled)
+                                        : getDoubleArg(args, "threshold", 127);
+                                    String bandType = otsu ? "BINARY" : thresholdType;
+                                    halo = 0;
+                                    bandOperation = band -> OpenCVImageProcessor.segment(band, threshold, bandType, invert);
+                                    details = String.format("Segment (%s, threshold %.1f%s)", thresholdType, threshold,
+                                        invert ? ", inverted" : "");
+                                }
+                                case "BLUR" -> {
+                                    String blurType = getStringArg(args, "blur_type", "GAUSSIAN");
+                                    double angle = getDoubleArg(args, "angle", 0.0);
+                                    halo = radius;
+                                    bandOperation = band -> OpenCVImageProcessor.blur(band, blurType, kernelSize, angle, cancelled);
+                                    details = String.format("%s blur, kernel size %d", blurType, kernelSize);
+                                }
+                                case "FILTER" -> {
+                                    String filterType = getStringArg(args, "filter_type", "GAUSSIAN");
+                                    double sigmaX = getDoubleArg(args, "sigma_x", 1.0);
+                                    double sigmaColor = getDoubleArg(args, "sigma_color", 75.0);
+                                    double sigmaSpace = getDoubleArg(args, "sigma_space", 75.0);
+                                    halo = radius;
+                                    bandOperation = band -> OpenCVImageProcessor.filter(band, filterType, kernelSize,
+                                        sigmaX, sigmaColor, sigmaSpace, cancelled);
+                                    details = String.format("%s filter, kernel size %d", filterType, kernelSize);
+                                }
+                                default -> throw new IllegalArgumentException("Unknown operation: " + operation);
                             }
 
+                            StreamingProcessor.Summary summary = StreamingProcessor.process(
+                                input, output, halo, bandOperation, bandRows, cancelled);
+
+                            String result = String.format("Image streamed successfully!\n- Operation: %s\n- Size: %dx%d\n- Bands: %d of %d rows\n- Peak band memory: %.1f MB\n- Saved to: %s",
+                                details, summary.getWidth(), summary.getHeight(), summary.getBands(), bandRows,
+                                toMb(summary.getPeakBandBytes()), output);
+
                             return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(new McpSchema.ImageContent(null, base64Image, "image/png")))
+                                    .content(List.of(new McpSchema.TextContent(result)))
                                     .isError(false)
                                     .build());
 
@@ -990,10 +1390,354 @@ public class ImageProcessingMcpServer {
                                     .isError(true)
                                     .build());
                         }
+                    }))
+                    .build();
+        }
+
+        static McpServerFeatures.AsyncToolSpecification createBatchProcessTool() {
+            String schema = """
+                {
+                  "type": "object",
+                  "properties": {
+                    "input": {"type": "string", "description": "Directory (all image files in it) or glob such as /data/scans/*.png"},
+                    "tool": {"type": "string", "description": "Name of a single tool to apply to each file (alternative to workflow)"},
+                    "parameters": {"type": "object", "description": "Parameters of the single tool"},
+                    "workflow": {"type": "string", "description": "Workflow JSON as saved by the UI: a version and a list of tools with name and parameters"},
+                    "workflow_path": {"type": "string", "description": "Path of a saved workflow JSON file"},
+                    "output_dir": {"type": "string", "description": "Directory for relative output_path/output_csv_path values"},
+                    "max_concurrency": {"type": "integer", "description": "Maximum number of files processed at once (default: CPU count)"}
+                  },
+                  "required": ["input"]
+                }
+                """;
+
+            return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
+                    McpSchema.Tool.builder()
+                            .name("batch_process")
+                            .description("Apply one tool or a saved workflow to every image in a directory or glob, in parallel. "
+                                + "Outputs and CSVs are written to disk; {input} and {name} in parameters expand to the file path "
+                                + "and its name without extension. Returns a per-file status summary, no images.")
+                            .inputSchema(McpJsonMapper.createDefault(), schema)
+                            .build())
+                    .callHandler(offload("batch_process", (exchange, request) -> {
+                        var args = request.arguments();
+                        try {
+                            String input = getStringArg(args, "input");
+                            if (input == null || input.isBlank()) {
+                                throw new IllegalArgumentException("input is required");
+                            }
+                            List<ToolInstance> workflow = batchWorkflow(args);
+                            List<java.nio.file.Path> files = BatchProcessor.resolveInputs(input);
+                            if (files.isEmpty()) {
+                                throw new IllegalArgumentException("No image files match " + input);
+                            }
+                            String outputDir = getStringArg(args, "output_dir");
+                            int concurrency = getIntArg(args, "max_concurrency", Runtime.getRuntime().availableProcessors());
+
+                            DirectToolExecutor executor = new DirectToolExecutor(new OpenCVImageProcessor(), cache,
+                                decodedImages, TOOL_THREADS);
+                            BatchProcessor.Summary summary = new BatchProcessor(executor, cache).run(files, workflow,
+                                outputDir != null ? java.nio.file.Path.of(outputDir) : null, concurrency);
+
+                            StringBuilder result = new StringBuilder(String.format(
+                                "Batch finished: %d files, %d succeeded, %d failed\n- Time: %.1f s (%.2f files/s, %d at once)\n",
+                                summary.getResults().size(), summary.getSucceeded(), summary.getFailed(),
+                                summary.getSeconds(), summary.getThroughput(), summary.getConcurrency()));
+                            for (String note : summary.getPlan().getNotes()) {
+                                result.append("- Plan: ").append(note).append("\n");
+                            }
+                            if (summary.getSavedBytes() > 0) {
+                                result.append(String.format("- Allocation saved by plan: ~%.1f MB\n",
+                                    toMb(summary.getSavedBytes())));
+                            }
+                            for (StagedPipeline.StageStats stage : summary.getStages()) {
+                                result.append("- Stage ").append(stage).append("\n");
+                            }
+                            for (BatchProcessor.FileResult file : summary.getResults()) {
+                                result.append(String.format("%s %s (%.0f ms)%s\n", file.isSuccess() ? "ok  " : "FAIL",
+                                    file.getFile(), file.getMillis(), file.isSuccess() ? "" : ": " + file.getMessage()));
+                            }
+
+                            return Mono.just(new McpSchema.CallToolResult.Builder()
+                                    .content(List.of(new McpSchema.TextContent(result.toString())))
+                                    .isError(summary.getSucceeded() == 0)
+                                    .build());
+
+                        } catch (Exception e) {
+                            return Mono.just(new McpSchema.CallToolResult.Builder()
+                                    .content(List.of(new McpSchema.TextContent("Error: " + e.getMessage())))
+                                    .isError(true)
+                                    .build());
+                        }
+                    }))
+                    .build();
+        }
+
+        static McpServerFeatures.AsyncToolSpecification createBatchCallTool() {
+            String schema = """
+                {
+                  "type": "object",
+                  "properties": {
+                    "calls": {
+                      "type": "array",
+                      "description": "Tool calls to run, at most %d",
+                      "items": {
+                        "type": "object",
+                        "properties": {
+                          "tool": {"type": "string", "description": "Name of the tool"},
+                          "arguments": {"type": "object", "description": "Arguments of the call"}
+                        },
+                        "required": ["tool"]
+                      }
+                    },
+                    "response_image": {"type": "string", "enum": ["none", "thumbnail", "full", "reference"], "description": "response_image for calls that don't set their own (default: none)"},
+                    "max_concurrency": {"type": "integer", "description": "Maximum number of calls running at once (default: CPU count)"}
+                  },
+                  "required": ["calls"]
+                }
+                """.formatted(MAX_BATCH_CALLS);
+
+            return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
+                    McpSchema.Tool.builder()
+                            .name("batch_call")
+                            .description("Run many tool calls in one request. Calls run concurrently, except that a call "
+                                + "reading or overwriting a cache key or file an earlier call writes waits for it; a call "
+                                + "whose dependency failed is skipped. Returns a JSON array with one result or error per call, "
+                                + "in call order.")
+                            .inputSchema(McpJsonMapper.createDefault(), schema)
+                            .build())
+                    // Not offloaded: each call is admitted and offloaded by its own tool
+                    .callHandler((exchange, request) -> Mono.defer(() -> batchCall(exchange, request.arguments()))
+                            .onErrorResume(e -> Mono.just(new McpSchema.CallToolResult.Builder()
+                                    .content(List.of(new McpSchema.TextContent("Error: " + e.getMessage())))
+                                    .isError(true)
+                                    .build())))
+                    .build();
+        }
+
+        /**
+         * Run the calls of a batch_call request, each as soon as the calls it depends on
+         * (by the cache keys and files in their arguments) have finished.
+         */
+        @SuppressWarnings("unchecked")
+        private static Mono<McpSchema.CallToolResult> batchCall(McpAsyncServerExchange exchange, Map<String, Object> args) {
+            Object calls = args != null ? args.get("calls") : null;
+            if (!(calls instanceof List) || ((List<?>) calls).isEmpty()) {
+                throw new IllegalArgumentException("calls must be a non-empty array");
+            }
+            List<?> entries = (List<?>) calls;
+            if (entries.size() > MAX_BATCH_CALLS) {
+                throw new IllegalArgumentException("At most " + MAX_BATCH_CALLS + " calls per batch: " + entries.size());
+            }
+            String defaultMode = ResponseImageMode.parse(getStringArg(args, "response_image", "none")).name()
+                .toLowerCase(java.util.Locale.ROOT);
+            int concurrency = Math.max(1, getIntArg(args, "max_concurrency", Runtime.getRuntime().availableProcessors()));
+
+            List<String> tools = new java.util.ArrayList<>();
+            List<Map<String, Object>> arguments = new java.util.ArrayList<>();
+            for (Object entry : entries) {
+                Map<String, Object> call = entry instanceof Map ? (Map<String, Object>) entry : Map.of();
+                Object callArguments = call.get("arguments");
+                Map<String, Object> params = new java.util.HashMap<>(
+                    callArguments instanceof Map ? (Map<String, Object>) callArguments : Map.of());
+                params.putIfAbsent("response_image", defaultMode);
+                tools.add(call.get("tool") != null ? call.get("tool").toString() : null);
+                arguments.add(params);
+            }
+
+            List<java.util.TreeSet<Integer>> dependencies = PipelineScheduler.dependencies(arguments);
+            ObjectNode[] results = new ObjectNode[entries.size()];
+            List<CompletableFuture<Boolean>> succeeded = new java.util.ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                succeeded.add(new CompletableFuture<>());
+            }
+
+            // flatMap starts calls in order, so a call's dependencies have always started before it waits on them
+            return Flux.range(0, entries.size())
+                    .flatMap(i -> batchEntry(exchange, i, tools.get(i), arguments.get(i), dependencies.get(i),
+                            succeeded, results), concurrency)
+                    .then(Mono.fromCallable(() -> {
+                        ArrayNode array = JSON.createArrayNode();
+                        array.addAll(java.util.Arrays.asList(results));
+                        long failed = java.util.Arrays.stream(results).filter(result -> !result.get("ok").asBoolean()).count();
+                        return new McpSchema.CallToolResult.Builder()
+                                .content(List.of(new McpSchema.TextContent(array.toString())))
+                                .isError(failed == results.length)
+                                .build();
+                    }));
+        }
+
+        /**
+         * Run one call of a batch once its dependencies have finished, recording its
+         * result and whether it succeeded.
+         */
+        private static Mono<Void> batchEntry(McpAsyncServerExchange exchange, int index, String tool,
+                                             Map<String, Object> arguments, java.util.TreeSet<Integer> dependencies,
+                                             List<CompletableFuture<Boolean>> succeeded, ObjectNode[] results) {
+            ObjectNode result = JSON.createObjectNode();
+            result.put("index", index);
+            result.put("tool", tool);
+            result.put("ok", false);
+            results[index] = result;
+
+            CompletableFuture<?>[] upstream = dependencies.stream()
+                .map(succeeded::get)
+                .toArray(CompletableFuture<?>[]::new);
+            return Mono.fromFuture(CompletableFuture.allOf(upstream))
+                    .then(Mono.defer(() -> {
+                        for (int dependency : dependencies) {
+                            if (!succeeded.get(dependency).join()) {
+                                return Mono.<McpSchema.CallToolResult>error(new IllegalStateException("Skipped: call " + dependency + " failed"));
+                            }
+                        }
+                        var handler = batchTarget(tool);
+                        if (handler == null) {
+                            return Mono.<McpSchema.CallToolResult>error(new IllegalArgumentException("Unknown tool: " + tool));
+                        }
+                        return handler.apply(exchange, new McpSchema.CallToolRequest(tool, arguments));
+                    }))
+                    .map(callResult -> {
+                        StringBuilder text = new StringBuilder();
+                        ArrayNode images = JSON.createArrayNode();
+                        ArrayNode resources = JSON.createArrayNode();
+                        for (McpSchema.Content content : callResult.content()) {
+                            if (content instanceof McpSchema.TextContent) {
+                                text.append(text.length() > 0 ? "\n" : "")
+                                    .append(((McpSchema.TextContent) content).text());
+                            } else if (content instanceof McpSchema.ImageContent) {
+                                // The batch result is one JSON document, so images go in as data URIs
+                                McpSchema.ImageContent image = (McpSchema.ImageContent) content;
+                                images.add("data:" + image.mimeType() + ";base64," + image.data());
+                            } else if (content instanceof McpSchema.ResourceLink) {
+                                resources.add(((McpSchema.ResourceLink) content).uri());
+                            }
+                        }
+                        boolean ok = !Boolean.TRUE.equals(callResult.isError());
+                        result.put("ok", ok);
+                        result.put(ok ? "result" : "error", text.toString());
+                        if (!images.isEmpty()) {
+                            result.set("images", images);
+                        }
+                        if (!resources.isEmpty()) {
+                            result.set("resources", resources);
+                        }
+                        return ok;
+                    })
+                    .onErrorResume(e -> {
+                        result.put("ok", false);
+                        result.put("error", e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                        return Mono.just(false);
                     })
+                    .defaultIfEmpty(false)
+                    .doOnNext(ok -> succeeded.get(index).complete(ok))
+                    .then();
+        }
+
+        /**
+         * Get the handler batch_call uses for a tool: a built-in tool other than
+         * batch_call itself, or a registered workflow tool.
+         */
+        private static BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest, Mono<McpSchema.CallToolResult>> batchTarget(
+                String tool) {
+            if (tool == null) {
+                return null;
+            }
+            McpServerFeatures.AsyncToolSpecification composite = compositeTools.get(tool);
+            if (composite != null) {
+                return composite.callHandler();
+            }
+            return BuiltInHandlers.HANDLERS.get(tool);
+        }
+
+        /**
+         * Create the tool running a saved workflow in one call. Its arguments are the
+         * workflow's unbound parameters; intermediates stay on the server and only the
+         * final outputs are returned. Admission is weighted by the costliest step.
+         */
+        static McpServerFeatures.AsyncToolSpecification createCompositeTool(CompositeWorkflow workflow) {
+            String costliest = workflow.getTools().stream()
+                .max(java.util.Comparator.comparingInt(admission::costOf))
+                .orElse(workflow.getName());
+
+            return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
+                    McpSchema.Tool.builder()
+                            .name(workflow.getName())
+                            .description(workflow.getDescription())
+                            .inputSchema(McpJsonMapper.createDefault(), workflow.inputSchema())
+                            .build())
+                    .callHandler(offload(costliest, (exchange, request) -> {
+                        var args = request.arguments();
+                        CompositeWorkflow.Binding binding = null;
+                        ResponseImageMode mode = ResponseImageMode.NONE;
+                        try {
+                            mode = responseImageModeFor(args);
+                            binding = workflow.bind(args,
+                                "composite:" + java.util.UUID.randomUUID().toString().substring(0, 8) + ":");
+
+                            DirectToolExecutor executor = new DirectToolExecutor(new OpenCVImageProcessor(), cache,
+                                decodedImages, TOOL_THREADS);
+                            long start = System.nanoTime();
+                            PipelineResult result = executor.executePipeline(binding.getTools(), null, false).join();
+                            double millis = (System.nanoTime() - start) / 1e6;
+
+                            List<McpSchema.Content> content = new java.util.ArrayList<>();
+                            content.add(new McpSchema.TextContent(String.format("Workflow %s finished: %d steps in %.0f ms%s",
+                                workflow.getName(), binding.getTools().size(), millis,
+                                result.hasErrors() ? "\nErrors:\n" + result.getErrors() : "")));
+                            for (CompositeWorkflow.Output output : binding.getOutputs()) {
+                                content.addAll(compositeOutput(args, mode, binding.getTools().get(output.getStep()), output));
+                            }
+
+                            return Mono.just(new McpSchema.CallToolResult.Builder()
+                                    .content(content)
+                                    .isError(result.hasErrors())
+                                    .build());
+
+                        } catch (Exception e) {
+                            Throwable cause = e instanceof java.util.concurrent.CompletionException && e.getCause() != null
+                                ? e.getCause() : e;
+                            return Mono.just(new McpSchema.CallToolResult.Builder()
+                                    .content(List.of(new McpSchema.TextContent("Error: " + cause.getMessage())))
+                                    .isError(true)
+                                    .build());
+                        } finally {
+                            if (binding != null) {
+                                binding.getIntermediateKeys().forEach(cache::remove);
+                                // Outputs returned by reference stay cached for the client
+                                if (mode != ResponseImageMode.REFERENCE) {
+                                    binding.getOutputs().stream()
+                                        .filter(CompositeWorkflow.Output::isGenerated)
+                                        .forEach(output -> cache.remove(output.getKey()));
+                                }
+                            }
+                        }
+                    }))
                     .build();
         }
 
+        /**
+         * Content for one final output of a composite tool call: the step's result
+         * message and, unless the call asked for none, its image or resource URI.
+         */
+        private static List<McpSchema.Content> compositeOutput(Map<String, Object> args, ResponseImageMode mode,
+                                                               ToolInstance tool, CompositeWorkflow.Output output) {
+            StringBuilder message = new StringBuilder(String.format("Step %d (%s): %s",
+                output.getStep() + 1, tool.getName(), tool.getResult()));
+            String key = output.getKey();
+            if (key == null || !cache.containsKey(key) || tool.getStatus() != ToolInstance.Status.COMPLETED) {
+                return List.of(new McpSchema.TextContent(message.toString()));
+            }
+            if (mode == ResponseImageMode.REFERENCE) {
+                if (output.isGenerated()) {
+                    message.append("\n- Cached with key: ").append(key);
+                }
+                message.append("\n- Resource: ").append(imageUri(key));
+                return List.of(new McpSchema.TextContent(message.toString()), imageLink(key));
+            }
+            EncodedImage encoded = mode.includesImage() ? cache.getEncoded(key, responseEncodingFor(args, mode)) : null;
+            return resultContent(message.toString(), encoded, null);
+        }
+
         // ==================== STATELESS SYNC TOOLS (HTTP) ====================
         // Implementation omitted for brevity - similar pattern to async tools
         // but using McpStatelessServerFeatures.SyncToolSpecification and returning CallToolResult directly
@@ -1039,6 +1783,26 @@ public class ImageProcessingMcpServer {
             return createSyncToolFromAsync(createDisplayImageTool());
         }
 
+        static McpStatelessServerFeatures.SyncToolSpecification createStatelessServerStatsTool() {
+            return createSyncToolFromAsync(createServerStatsTool());
+        }
+
+        static McpStatelessServerFeatures.SyncToolSpecification createStatelessStreamProcessTool() {
+            return createSyncToolFromAsync(createStreamProcessTool());
+        }
+
+        static McpStatelessServerFeatures.SyncToolSpecification createStatelessBatchProcessTool() {
+            return createSyncToolFromAsync(createBatchProcessTool());
+        }
+
+        static McpStatelessServerFeatures.SyncToolSpecification createStatelessBatchCallTool() {
+            return createSyncToolFromAsync(createBatchCallTool());
+        }
+
+        static McpStatelessServerFeatures.SyncToolSpecification createStatelessCompositeTool(CompositeWorkflow workflow) {
+            return createSyncToolFromAsync(createCompositeTool(workflow));
+        }
+
         /**
          * Helper method to convert async tool handler to sync tool handler.
          * This wraps the async Mono response and blocks to get the result.
@@ -1052,35 +1816,226 @@ public class ImageProcessingMcpServer {
             return new McpStatelessServerFeatures.SyncToolSpecification.Builder()
                     .tool(tool)
                     .callHandler((transportContext, request) -> {
-                        // Block on the async handler to get the result synchronously
+                        // Block on the async handler to get the result synchronously; the
+                        // work itself runs on the compute scheduler, which bounds concurrency
                         return asyncHandler.apply(null, request).block();
                     })
                     .build();
         }
 
+        // ==================== RESOURCES ====================
+
+        static final String IMAGE_URI_PREFIX = "image://";
+        static final String CSV_URI_PREFIX = "csv://";
+
+        /**
+         * Create the async resources publishing cached images and CSVs.
+         */
+        public static List<McpServerFeatures.AsyncResourceSpecification> createAllAsyncResources() {
+            return List.of(
+                new McpServerFeatures.AsyncResourceSpecification(imageResource(),
+                    (exchange, request) -> Mono.fromCallable(() -> readResource(request.uri())).subscribeOn(COMPUTE)),
+                new McpServerFeatures.AsyncResourceSpecification(csvResource(),
+                    (exchange, request) -> Mono.fromCallable(() -> readResource(request.uri())).subscribeOn(COMPUTE))
+            );
+        }
+
+        /**
+         * Create the stateless sync resources publishing cached images and CSVs.
+         */
+        public static List<McpStatelessServerFeatures.SyncResourceSpecification> createAllStatelessResources() {
+            return List.of(
+                new McpStatelessServerFeatures.SyncResourceSpecification(imageResource(),
+                    (transportContext, request) -> readResource(request.uri())),
+                new McpStatelessServerFeatures.SyncResourceSpecification(csvResource(),
+                    (transportContext, request) -> readResource(request.uri()))
+            );
+        }
+
+        private static McpSchema.Resource imageResource() {
+            return McpSchema.Resource.builder()
+                    .uri(IMAGE_URI_PREFIX + "{key}")
+                    .name("cached-image")
+                    .description("Image stored in the result cache under {key}, encoded with the server's response image settings")
+                    .mimeType("image/png")
+                    .build();
+        }
+
+        private static McpSchema.Resource csvResource() {
+            return McpSchema.Resource.builder()
+                    .uri(CSV_URI_PREFIX + "{key}")
+                    .name("cached-csv")
+                    .description("CSV stored in the text cache under {key}, e.g. by detect_contours")
+                    .mimeType("text/csv")
+                    .build();
+        }
+
+        /**
+         * Read a cached image or CSV. Images are encoded on first read and the
+         * encoded payload is kept with the cache entry.
+         */
+        private static McpSchema.ReadResourceResult readResource(String uri) {
+            if (uri.startsWith(IMAGE_URI_PREFIX)) {
+                String key = resourceKey(uri, IMAGE_URI_PREFIX);
+                EncodedImage encoded = cache.getEncoded(key, responseEncoding);
+                if (encoded == null) {
+                    throw new IllegalArgumentException("No cached image with key: " + key);
+                }
+                return new McpSchema.ReadResourceResult(List.of(
+                    new McpSchema.BlobResourceContents(uri, encoded.getMimeType(), encoded.getBase64())));
+            }
+            if (uri.startsWith(CSV_URI_PREFIX)) {
+                String key = resourceKey(uri, CSV_URI_PREFIX);
+                String csv = textCache.get(key);
+                if (csv == null) {
+                    throw new IllegalArgumentException("No cached CSV with key: " + key);
+                }
+                return new McpSchema.ReadResourceResult(List.of(
+                    new McpSchema.TextResourceContents(uri, "text/csv", csv)));
+            }
+            throw new IllegalArgumentException("Unknown resource: " + uri);
+        }
+
+        private static String resourceKey(String uri, String prefix) {
+            return URLDecoder.decode(uri.substring(prefix.length()), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Get the resource URI of a cached image.
+         */
+        static String imageUri(String key) {
+            return IMAGE_URI_PREFIX + URLEncoder.encode(key, StandardCharsets.UTF_8).replace("+", "%20");
+        }
+
+        /**
+         * Get the resource URI of a cached CSV.
+         */
+        static String csvUri(String key) {
+            return CSV_URI_PREFIX + URLEncoder.encode(key, StandardCharsets.UTF_8).replace("+", "%20");
+        }
+
         // ==================== HELPER METHODS ====================
 
-        private static Mat loadImageFromArgs(Map<String, Object> args) throws Exception {
+        /**
+         * Run a tool handler on the bounded compute scheduler instead of the calling
+         * (transport) thread, so slow OpenCV work in one call doesn't hold up others.
+         * The call first waits for admission, weighted by the tool's cost.
+         */
+        static BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest, Mono<McpSchema.CallToolResult>> offload(
+                String tool,
+                BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest, Mono<McpSchema.CallToolResult>> handler) {
+            return offload(COMPUTE, tool, handler);
+        }
+
+        /**
+         * Like {@link #offload(String, BiFunction)}, for cheap tools: they run on a separate
+         * scheduler so a burst of slow calls doesn't add to their latency.
+         */
+        static BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest, Mono<McpSchema.CallToolResult>> offloadInteractive(
+                String tool,
+                BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest, Mono<McpSchema.CallToolResult>> handler) {
+            return offload(INTERACTIVE, tool, handler);
+        }
+
+        private static BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest, Mono<McpSchema.CallToolResult>> offload(
+                Scheduler scheduler, String tool,
+                BiFunction<McpAsyncServerExchange, McpSchema.CallToolRequest, Mono<McpSchema.CallToolResult>> handler) {
+            return (exchange, request) -> Mono.usingWhen(
+                            Mono.defer(() -> Mono.fromFuture(admission.acquire(tool))),
+                            permit -> Mono.defer(() -> handler.apply(exchange, request)).subscribeOn(scheduler),
+                            permit -> Mono.fromRunnable(permit::release))
+                    .onErrorResume(AdmissionController.RejectedException.class, e -> Mono.just(busyResult(e.getMessage())))
+                    .onErrorResume(RejectedExecutionException.class, e -> Mono.just(
+                            busyResult("too many queued requests")));
+        }
+
+        /**
+         * Error result for calls the server is too busy to run; the call can be retried later.
+         */
+        private static McpSchema.CallToolResult busyResult(String reason) {
+            return new McpSchema.CallToolResult.Builder()
+                    .content(List.of(new McpSchema.TextContent("Error: server busy, retry later (" + reason + ")")))
+                    .isError(true)
+                    .build();
+        }
+
+        /**
+         * Build the workflow of a batch_process call from its tool, workflow or workflow_path argument.
+         */
+        @SuppressWarnings("unchecked")
+        private static List<ToolInstance> batchWorkflow(Map<String, Object> args) throws Exception {
+            String toolName = getStringArg(args, "tool");
+            String workflowJson = getStringArg(args, "workflow");
+            String workflowPath = getStringArg(args, "workflow_path");
+
+            if (toolName != null && !toolName.isBlank()) {
+                ToolInstance tool = new ToolInstance(ToolRegistry.getToolByName(toolName)
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown tool: " + toolName)));
+                Object parameters = args.get("parameters");
+                if (parameters instanceof Map) {
+                    ((Map<String, Object>) parameters).forEach(tool::setParameter);
+                }
+                return List.of(tool);
+            }
+            if (workflowJson != null && !workflowJson.isBlank()) {
+                return new WorkflowSerializer().parseWorkflow(workflowJson);
+            }
+            if (workflowPath != null && !workflowPath.isBlank()) {
+                return new WorkflowSerializer().loadWorkflow(new java.io.File(workflowPath));
+            }
+            throw new IllegalArgumentException("One of tool, workflow or workflow_path is required");
+        }
+
+        private static MatLease loadImageFromArgs(Map<String, Object> args) throws Exception {
             return loadImageFromArgs(args, "image_path", "image_url", "image_data", "input_key");
         }
 
-        private static Mat loadImageFromArgs(Map<String, Object> args, String pathKey,
-                                            String urlKey, String dataKey, String cacheKey) throws Exception {
+        /**
+         * Resolve an input image. Cached images are leased and shared with the cache;
+         * images loaded from path/url/data are owned by the returned lease.
+         */
+        private static MatLease loadImageFromArgs(Map<String, Object> args, String pathKey,
+                                                  String urlKey, String dataKey, String cacheKey) throws Exception {
             String inputKey = getStringArg(args, cacheKey);
-            if (inputKey != null && !inputKey.isBlank() && cache.containsKey(inputKey)) {
-                return cache.get(inputKey);
+            if (inputKey != null && !inputKey.isBlank()) {
+                MatLease lease = cache.acquire(inputKey);
+                if (lease != null) {
+                    return lease;
+                }
             }
 
             String imagePath = getStringArg(args, pathKey);
             String imageUrl = getStringArg(args, urlKey);
             String imageData = getStringArg(args, dataKey);
 
-            return OpenCVImageProcessor.loadImage(imagePath, imageUrl, imageData);
+            return decodedImages.acquire(imagePath, imageUrl, imageData, getIntArg(args, "decode_scale", 1));
         }
 
-        private static String handleOutput(Map<String, Object> args, Mat mat, String message) throws Exception {
+        private static MatLease loadMaskFromArgs(Map<String, Object> args) throws Exception {
+            String maskKey = getStringArg(args, "mask_key");
+            if (maskKey != null && !maskKey.isBlank()) {
+                MatLease lease = cache.acquire(maskKey);
+                if (lease != null) {
+                    return lease;
+                }
+            }
+
+            String maskPath = getStringArg(args, "mask_path");
+            if (maskPath == null || maskPath.isBlank()) {
+                throw new IllegalArgumentException("Must provide mask_path or mask_key");
+            }
+            return decodedImages.acquire(maskPath, null, null, 1);
+        }
+
+        /**
+         * Save and/or cache a tool result. The Mat is handed to the cache (or released)
+         * here, so any response encoding must happen before this call; the encoded
+         * payload (if any) is kept with the cached result for later responses. Cached
+         * results are recorded as derived from the call's input keys for memo invalidation.
+         */
+        private static String handleOutput(Map<String, Object> args, String outputKey, Mat mat,
+                                           EncodedImage encoded, String message) throws Exception {
             String outputPath = getStringArg(args, "output_path");
-            String outputKey = getStringArg(args, "output_key");
 
             if (outputPath != null && !outputPath.isBlank()) {
                 OpenCVImageProcessor.saveImage(mat, outputPath);
@@ -1089,14 +2044,164 @@ public class ImageProcessingMcpServer {
 
             if (outputKey != null && !outputKey.isBlank()) {
                 cache.put(outputKey, mat);
+                cache.putEncoded(outputKey, mat, encoded);
+                memo.recordLineage(outputKey, inputKeys(args));
                 message += "\n- Cached with key: " + outputKey;
-            } else if (outputPath == null || outputPath.isBlank()) {
+                message += "\n- Resource: " + imageUri(outputKey);
+            } else {
                 mat.release();
             }
 
             return message;
         }
 
+        /**
+         * Encode a tool's result image as requested by the call's response_image mode.
+         * @return The encoded image, or null if the response carries no image
+         */
+        private static EncodedImage encodeResult(Map<String, Object> args, Mat mat) {
+            ResponseImageMode mode = responseImageModeFor(args);
+            return mode.includesImage() ? responseEncodingFor(args, mode).encode(mat) : null;
+        }
+
+        /**
+         * Build a result's content: the message, followed by the image if one was
+         * encoded and a link to the cached result if it was cached.
+         * @param outputKey Key the result was cached under, or null
+         */
+        private static List<McpSchema.Content> resultContent(String message, EncodedImage encoded, String outputKey) {
+            List<McpSchema.Content> content = new java.util.ArrayList<>();
+            content.add(new McpSchema.TextContent(message));
+            if (encoded != null) {
+                content.add(new McpSchema.ImageContent(null, encoded.getBase64(), encoded.getMimeType()));
+            }
+            if (outputKey != null && !outputKey.isBlank()) {
+                content.add(imageLink(outputKey));
+            }
+            return content;
+        }
+
+        /**
+         * Link to a cached image's image:// resource, which clients read on demand.
+         * The MIME type is left out: it is negotiated when the resource is read.
+         */
+        static McpSchema.ResourceLink imageLink(String key) {
+            return McpSchema.ResourceLink.builder()
+                    .name(key)
+                    .uri(imageUri(key))
+                    .build();
+        }
+
+        private static ResponseImageMode responseImageModeFor(Map<String, Object> args) {
+            String mode = getStringArg(args, "response_image");
+            return mode != null && !mode.isBlank() ? ResponseImageMode.parse(mode) : responseImageMode;
+        }
+
+        private static ImageEncoding responseEncodingFor(Map<String, Object> args, ResponseImageMode mode) {
+            ImageEncoding encoding = responseEncoding.withRequest(args);
+            if (mode == ResponseImageMode.THUMBNAIL) {
+                int size = getIntArg(args, "thumbnail_size", thumbnailSize);
+                if (size <= 0) {
+                    throw new IllegalArgumentException("thumbnail_size must be positive: " + size);
+                }
+                encoding = encoding.withMaxDimension(size);
+            }
+            return encoding;
+        }
+
+        /**
+         * Get the cache key for a tool result: output_key, or a generated key when
+         * the result is returned by reference.
+         */
+        private static String outputKeyFor(Map<String, Object> args) {
+            String outputKey = getStringArg(args, "output_key");
+            if ((outputKey == null || outputKey.isBlank())
+                    && responseImageModeFor(args) == ResponseImageMode.REFERENCE) {
+                outputKey = "result-" + java.util.UUID.randomUUID().toString().substring(0, 8);
+            }
+            return outputKey;
+        }
+
+        /**
+         * Encode a leased image for display, reusing the cache's encoded payload
+         * when the image came from the cache. Displaying always returns an image:
+         * a thumbnail if requested, otherwise full resolution.
+         */
+        private static EncodedImage encodeResponse(Map<String, Object> args, MatLease input) {
+            ImageEncoding encoding = responseEncodingFor(args, responseImageModeFor(args));
+            if (input.key() != null) {
+                EncodedImage encoded = cache.getEncoded(input.key(), encoding);
+                if (encoded != null) {
+                    return encoded;
+                }
+            }
+            return encoding.encode(input.mat());
+        }
+
+        /**
+         * Get the server-wide response image encoding.
+         */
+        static ImageEncoding getResponseEncoding() {
+            return responseEncoding;
+        }
+
+        /**
+         * Set the server-wide response image encoding; requests may override it
+         * with image_format, image_quality and png_compression.
+         */
+        static void setResponseEncoding(ImageEncoding encoding) {
+            responseEncoding = encoding;
+        }
+
+        /**
+         * Set the server-wide response image mode and thumbnail size; requests may
+         * override them with response_image and thumbnail_size.
+         */
+        static void setResponseImage(ResponseImageMode mode, int size) {
+            responseImageMode = mode;
+            thumbnailSize = size;
+        }
+
+        /**
+         * Share the decoded-image cache of the embedding application, so path and
+         * URL inputs decoded by the UI are reused by tool calls and vice versa.
+         */
+        static void useDecodedImageCache(DecodedImageCache sharedDecodedImages) {
+            if (sharedDecodedImages != null && sharedDecodedImages != decodedImages) {
+                decodedImages.clear();
+                decodedImages = sharedDecodedImages;
+            }
+        }
+
+        /**
+         * Replace the admission controller that limits concurrent tool work.
+         */
+        static void setAdmission(AdmissionController admissionController) {
+            admission = admissionController;
+        }
+
+        /**
+         * Set the byte budget for memoized tool results (0 disables memoization).
+         */
+        static void setMemoMaxBytes(long maxBytes) {
+            memo.setMaxBytes(maxBytes);
+        }
+
+        private static double toMb(long bytes) {
+            return bytes / (1024.0 * 1024.0);
+        }
+
+        private static List<String> inputKeys(Map<String, Object> args) {
+            List<String> keys = new java.util.ArrayList<>();
+            for (String param : List.of("input_key", "source_key", "mask_key")) {
+                String key = getStringArg(args, param);
+                if (key != null && !key.isBlank()) {
+                    keys.add(key);
+                }
+            }
+            return keys;
+        }
+
         private static String getStringArg(Map<String, Object> args, String key) {
             return getStringArg(args, key, null);
         }
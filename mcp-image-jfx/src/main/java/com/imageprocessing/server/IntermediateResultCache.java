@@ -1,15 +1,132 @@
 package com.imageprocessing.server;
 
 import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Thread-safe cache for storing intermediate image processing results.
  * Stores OpenCV Mat objects keyed by user-provided string identifiers.
+ *
+ * Mat pixel data lives in native memory that the JVM heap limit does not see,
+ * so the cache enforces its own byte budget (computed as total() * elemSize()).
+ * When the budget is exceeded, the least recently used entries are evicted and
+ * released. Keys that are pinned (e.g. by an active workflow) are never evicted.
+ *
+ * If a {@link MatSpillStore} is attached, evicted entries are written to disk
+ * instead of being dropped, and a later access faults them back in. Spill
+ * writes and fault-in reads run outside the cache lock; concurrent readers of
+ * an entry that is being faulted in wait for that one read to finish.
+ *
+ * Readers borrow cached Mats through {@link #acquire(String)}. Each cached Mat is
+ * reference counted: the cache holds one reference and every open lease holds
+ * another, so replacing or removing a key while a request is still running
+ * OpenCV on it only frees the native buffer after the last lease is closed.
+ * Leased entries are never evicted.
+ *
+ * Each entry can also report a content hash of its pixels, computed on first
+ * request and kept until the key is overwritten. Removal listeners are told
+ * when a key's content is replaced or removed (not when it is merely evicted
+ * or spilled), so derived state such as memoized tool results can be dropped.
+ * Eviction listeners are told when a key is dropped without being removed,
+ * i.e. evicted with no spill tier or lost from the spill tier.
+ *
+ * Encoded payloads (PNG bytes and their base64 form) are kept alongside each
+ * entry, keyed by format and settings, so repeated responses for an unchanged key skip the
+ * encoder. They belong to the entry's version: overwriting or removing the key
+ * discards them. Their size counts against the same byte budget, and an
+ * entry's payloads are dropped before its Mat is evicted.
  */
 public class IntermediateResultCache {
-    private final Map<String, Mat> cache = new ConcurrentHashMap<>();
+
+    private static final Logger logger = LoggerFactory.getLogger(IntermediateResultCache.class);
+
+    /** Default native byte budget: 2 GiB. */
+    public static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024 * 1024;
+
+    // Rows are hashed in bands of about this many bytes
+    private static final long HASH_BAND_BYTES = 4L * 1024 * 1024;
+
+    // Access-ordered map: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> pinCounts = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled whenever a fault-in finishes
+    private final Condition faultDone = lock.newCondition();
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    private volatile long maxBytes;
+    private MatSpillStore spillStore;
+    private long currentBytes = 0;
+    private long spilledBytes = 0;
+    private long evictionCount = 0;
+    private long spillCount = 0;
+    private long faultCount = 0;
+    private long encodedBytes = 0;
+    private long encodingHits = 0;
+    private long encodingMisses = 0;
+    private long nextVersion = 1;
+
+    public IntermediateResultCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Create a cache with the given native byte budget.
+     * @param maxBytes Maximum number of pixel bytes held by the cache (0 or less = unbounded)
+     */
+    public IntermediateResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Attach a disk spill tier. Entries evicted after this call are written to
+     * the store instead of being dropped.
+     * @param spillStore The spill store, or null to disable spilling
+     */
+    public void setSpillStore(MatSpillStore spillStore) {
+        lock.lock();
+        try {
+            this.spillStore = spillStore;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Register a listener that is called with a key whose content was replaced,
+     * removed or cleared. Listeners run on the calling thread, outside the cache lock.
+     */
+    public void addRemovalListener(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    /**
+     * Register a listener that is called with a key that was evicted for good:
+     * dropped to fit the budget, or its only copy lost from the spill tier.
+     * Listeners run on the calling thread, outside the cache lock.
+     */
+    public void addEvictionListener(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
 
     /**
      * Store an image result in the cache.
@@ -24,29 +141,96 @@ public class IntermediateResultCache {
             throw new IllegalArgumentException("Cannot store null or empty Mat");
         }
 
-        // Release existing Mat if key already exists to prevent memory leaks
-        Mat existing = cache.get(key);
-        if (existing != null) {
-            existing.release();
+        Maintenance work = new Maintenance();
+        lock.lock();
+        try {
+            Entry existing = cache.get(key);
+            if (existing != null && existing.shared != null && existing.shared.mat == mat) {
+                // Storing the same Mat again: nothing to replace
+                return;
+            }
+
+            // Drop the cache's reference to the existing Mat; it is released
+            // once any outstanding leases are closed
+            if (existing != null) {
+                cache.remove(key);
+                dropEntry(existing, work);
+                work.removedKeys.add(key);
+            }
+
+            Entry entry = new Entry(new SharedMat(mat), estimateBytes(mat), nextVersion++);
+            cache.put(key, entry);
+            currentBytes += entry.bytes;
+
+            evictIfNeeded(key, work);
+        } finally {
+            lock.unlock();
         }
 
-        cache.put(key, mat);
+        runMaintenance(work);
     }
 
     /**
-     * Retrieve an image result from the cache.
+     * Borrow a cached image. The returned lease shares the cached native buffer
+     * without copying and must be closed when the caller is done with it.
+     * Spilled entries are read back from disk transparently.
      * @param key The unique identifier for the result
-     * @return The cached Mat, or null if not found
+     * @return A lease on the cached Mat, or null if not found
      */
-    public Mat get(String key) {
+    public MatLease acquire(String key) {
         if (key == null || key.isBlank()) {
             return null;
         }
-        return cache.get(key);
+
+        Maintenance work = new Maintenance();
+        SharedMat shared = null;
+        Entry entry;
+        Path faultFile = null;
+        lock.lock();
+        try {
+            entry = cache.get(key);
+            // Another reader is faulting this entry in: wait for its result
+            while (entry != null && entry.faulting) {
+                faultDone.awaitUninterruptibly();
+                entry = cache.get(key);
+            }
+            if (entry == null) {
+                return null;
+            }
+
+            if (entry.spilling) {
+                // Accessed while being written out: keep it resident, the
+                // written file is retained as a clean copy
+                entry.spilling = false;
+                currentBytes += entry.bytes;
+                evictIfNeeded(key, work);
+            } else if (entry.shared == null) {
+                entry.faulting = true;
+                faultFile = entry.spillFile;
+            }
+            if (faultFile == null) {
+                shared = entry.shared;
+                if (shared != null) {
+                    shared.retain();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (faultFile != null) {
+            shared = faultIn(key, entry, faultFile, work);
+        }
+        runMaintenance(work);
+        if (shared == null && faultFile != null && entry.removed) {
+            // Replaced or removed while reading the old content back: look again
+            return acquire(key);
+        }
+        return shared != null ? new MatLease(shared.mat, shared::release, key, entry.version) : null;
     }
 
     /**
-     * Check if a key exists in the cache.
+     * Check if a key exists in the cache (resident or spilled to disk).
      * @param key The key to check
      * @return true if the key exists and has a valid Mat
      */
@@ -54,8 +238,16 @@ public class IntermediateResultCache {
         if (key == null || key.isBlank()) {
             return false;
         }
-        Mat mat = cache.get(key);
-        return mat != null && !mat.empty();
+        lock.lock();
+        try {
+            Entry entry = cache.get(key);
+            if (entry == null) {
+                return false;
+            }
+            return entry.shared == null ? entry.spillFile != null : !entry.shared.mat.empty();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -67,20 +259,36 @@ public class IntermediateResultCache {
         if (key == null || key.isBlank()) {
             return false;
         }
-        Mat mat = cache.remove(key);
-        if (mat != null) {
-            mat.release();
-            return true;
+        Maintenance work = new Maintenance();
+        Entry entry;
+        lock.lock();
+        try {
+            entry = cache.remove(key);
+            if (entry != null) {
+                dropEntry(entry, work);
+                work.removedKeys.add(key);
+            }
+        } finally {
+            lock.unlock();
         }
-        return false;
+        runMaintenance(work);
+        return entry != null;
     }
 
     /**
      * Clear all cached results and release their memory.
      */
     public void clear() {
-        cache.values().forEach(Mat::release);
-        cache.clear();
+        Maintenance work = new Maintenance();
+        lock.lock();
+        try {
+            cache.values().forEach(entry -> dropEntry(entry, work));
+            work.removedKeys.addAll(cache.keySet());
+            cache.clear();
+        } finally {
+            lock.unlock();
+        }
+        runMaintenance(work);
     }
 
     /**
@@ -88,7 +296,12 @@ public class IntermediateResultCache {
      * @return The cache size
      */
     public int size() {
-        return cache.size();
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -97,7 +310,762 @@ public class IntermediateResultCache {
      * @return A clone of the cached Mat, or null if not found
      */
     public Mat getClone(String key) {
-        Mat mat = get(key);
-        return mat != null ? mat.clone() : null;
+        try (MatLease lease = acquire(key)) {
+            return lease != null ? lease.mat().clone() : null;
+        }
+    }
+
+    /**
+     * Get a content hash of a cached image (SHA-256 over its header and pixels).
+     * The hash is computed on first request and remembered until the key is
+     * overwritten, so repeated lookups are cheap.
+     * @param key The key to hash
+     * @return Hex-encoded hash, or null if the key is not cached
+     */
+    public String contentHash(String key) {
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        Entry entry;
+        lock.lock();
+        try {
+            entry = cache.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.contentHash != null) {
+                return entry.contentHash;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try (MatLease lease = acquire(key)) {
+            if (lease == null) {
+                return null;
+            }
+            String hash = hashContent(lease.mat());
+            lock.lock();
+            try {
+                // Only remember it if the key still maps to the entry we hashed
+                if (cache.get(key) == entry) {
+                    entry.contentHash = hash;
+                }
+            } finally {
+                lock.unlock();
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * Get the version of a cached entry. Every put assigns a new version, so two
+     * equal versions for the same key always refer to the same content.
+     * @param key The key to look up
+     * @return The entry version, or -1 if the key is not cached
+     */
+    public long getVersion(String key) {
+        if (key == null || key.isBlank()) {
+            return -1;
+        }
+        lock.lock();
+        try {
+            Entry entry = cache.get(key);
+            return entry != null ? entry.version : -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== ENCODED PAYLOADS ====================
+
+    /**
+     * Get an encoded form of a cached image, encoding it on first request.
+     * @param key The key to encode
+     * @param encoding Encoding settings; the negotiated format and settings
+     *                 identify the stored payload
+     * @return The encoded payload, or null if the key is not cached
+     */
+    public EncodedImage getEncoded(String key, ImageEncoding encoding) {
+        VersionedEncoding versioned = getVersionedEncoding(key, encoding);
+        return versioned != null ? versioned.getImage() : null;
+    }
+
+    /**
+     * Get an encoded form of a cached image together with the version of the
+     * entry it was encoded from, so both always refer to the same content even
+     * if the key is overwritten concurrently.
+     * @return The encoded payload and its version, or null if the key is not cached
+     */
+    public VersionedEncoding getVersionedEncoding(String key, ImageEncoding encoding) {
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        Entry entry;
+        lock.lock();
+        try {
+            entry = cache.get(key);
+            if (entry == null) {
+                return null;
+            }
+            String payloadKey = encoding.payloadKey(entry.type);
+            EncodedImage encoded = entry.encodings != null ? entry.encodings.get(payloadKey) : null;
+            if (encoded != null) {
+                encodingHits++;
+                return new VersionedEncoding(encoded, entry.version);
+            }
+            encodingMisses++;
+        } finally {
+            lock.unlock();
+        }
+
+        EncodedImage encoded;
+        long version;
+        try (MatLease lease = acquire(key)) {
+            if (lease == null) {
+                return null;
+            }
+            encoded = encoding.encode(lease.mat());
+            version = lease.version();
+        }
+        // Only kept if the key still holds the entry looked up above
+        storeEncoding(key, entry, encoded);
+        return new VersionedEncoding(encoded, version);
+    }
+
+    /**
+     * Attach an already encoded payload to a cached entry, e.g. one a tool encoded
+     * for its response before caching the result. Ignored unless the key still
+     * holds exactly this Mat.
+     * @param key The key the Mat was stored under
+     * @param mat The Mat that was encoded
+     * @param encoded The encoded payload
+     */
+    public void putEncoded(String key, Mat mat, EncodedImage encoded) {
+        if (key == null || key.isBlank() || mat == null || encoded == null) {
+            return;
+        }
+        Entry entry;
+        lock.lock();
+        try {
+            entry = cache.get(key);
+            if (entry == null || entry.shared == null || entry.shared.mat != mat) {
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        storeEncoding(key, entry, encoded);
+    }
+
+    /**
+     * Get the number of bytes held by encoded payloads.
+     */
+    public long getEncodedBytes() {
+        lock.lock();
+        try {
+            return encodedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of encoded payload requests served without encoding.
+     */
+    public long getEncodingHits() {
+        lock.lock();
+        try {
+            return encodingHits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of encoded payload requests that had to encode.
+     */
+    public long getEncodingMisses() {
+        lock.lock();
+        try {
+            return encodingMisses;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== PINNING ====================
+
+    /**
+     * Pin a key so that it is never evicted while pinned.
+     * Pins are counted; the key may not exist yet (e.g. a workflow output that
+     * has not been produced). Every call must be matched by {@link #unpin(String)}.
+     * @param key The key to pin
+     */
+    public void pin(String key) {
+        if (key == null || key.isBlank()) {
+            return;
+        }
+        lock.lock();
+        try {
+            pinCounts.merge(key, 1, Integer::sum);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Release one pin on a key. Once the key is no longer pinned it becomes
+     * eligible for eviction again, and the budget is re-enforced.
+     * @param key The key to unpin
+     */
+    public void unpin(String key) {
+        if (key == null || key.isBlank()) {
+            return;
+        }
+        Maintenance work = new Maintenance();
+        lock.lock();
+        try {
+            Integer count = pinCounts.get(key);
+            if (count == null) {
+                return;
+            }
+            if (count <= 1) {
+                pinCounts.remove(key);
+                evictIfNeeded(null, work);
+            } else {
+                pinCounts.put(key, count - 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+        runMaintenance(work);
+    }
+
+    /**
+     * Check whether a key is currently pinned.
+     */
+    public boolean isPinned(String key) {
+        lock.lock();
+        try {
+            return pinCounts.containsKey(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== BUDGET ====================
+
+    /**
+     * Get the native byte budget (0 or less = unbounded).
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Change the native byte budget. Shrinking the budget evicts immediately.
+     * @param maxBytes Maximum number of pixel bytes (0 or less = unbounded)
+     */
+    public void setMaxBytes(long maxBytes) {
+        Maintenance work = new Maintenance();
+        lock.lock();
+        try {
+            this.maxBytes = maxBytes;
+            evictIfNeeded(null, work);
+        } finally {
+            lock.unlock();
+        }
+        runMaintenance(work);
+    }
+
+    /**
+     * Get the number of native pixel bytes currently held by the cache.
+     */
+    public long getCurrentBytes() {
+        lock.lock();
+        try {
+            return currentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of bytes held in spill files on disk.
+     */
+    public long getSpilledBytes() {
+        lock.lock();
+        try {
+            return spilledBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of entries evicted from memory since the cache was created.
+     */
+    public long getEvictionCount() {
+        lock.lock();
+        try {
+            return evictionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of entries written to the spill tier.
+     */
+    public long getSpillCount() {
+        lock.lock();
+        try {
+            return spillCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of spilled entries read back into memory.
+     */
+    public long getFaultCount() {
+        lock.lock();
+        try {
+            return faultCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimate the native memory used by a Mat's pixel data.
+     */
+    public static long estimateBytes(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+
+    /**
+     * Hash a Mat's dimensions, type and pixel data with SHA-256.
+     * Pixels are copied through a bounded direct buffer in bands of rows, so
+     * arbitrarily large or non-continuous Mats can be hashed.
+     * @return Hex-encoded hash
+     */
+    public static String hashContent(Mat mat) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(mat.rows()).putInt(mat.cols()).putInt(mat.type());
+        header.flip();
+        digest.update(header);
+
+        long rowBytes = mat.cols() * mat.elemSize();
+        if (rowBytes > 0 && mat.rows() > 0) {
+            int bandRows = (int) Math.max(1, Math.min(mat.rows(), HASH_BAND_BYTES / rowBytes));
+            ByteBuffer band = ByteBuffer.allocateDirect((int) (bandRows * rowBytes));
+            for (int row = 0; row < mat.rows(); row += bandRows) {
+                int rows = Math.min(bandRows, mat.rows() - row);
+                Mat view = new Mat(rows, mat.cols(), mat.type(), band);
+                Mat source = mat.rowRange(row, row + rows);
+                try {
+                    source.copyTo(view);
+                } finally {
+                    source.release();
+                    view.release();
+                }
+                band.clear();
+                band.limit((int) (rows * rowBytes));
+                digest.update(band);
+                band.clear();
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    // ==================== INTERNALS ====================
+
+    /**
+     * Remember an encoding on an entry if the key still refers to that entry.
+     */
+    private void storeEncoding(String key, Entry entry, EncodedImage encoded) {
+        Maintenance work = new Maintenance();
+        lock.lock();
+        try {
+            if (cache.get(key) != entry) {
+                // Overwritten while encoding: the payload belongs to an old version
+                return;
+            }
+            if (entry.encodings == null) {
+                entry.encodings = new HashMap<>();
+            }
+            EncodedImage previous = entry.encodings.put(encoded.getPayloadKey(), encoded);
+            if (previous != null) {
+                encodedBytes -= previous.getAccountedBytes();
+            }
+            encodedBytes += encoded.getAccountedBytes();
+            evictIfNeeded(key, work);
+        } finally {
+            lock.unlock();
+        }
+        runMaintenance(work);
+    }
+
+    /**
+     * Discard an entry's encoded payloads. Must be called with the lock held.
+     */
+    private void dropEncodings(Entry entry) {
+        if (entry.encodings != null) {
+            for (EncodedImage encoded : entry.encodings.values()) {
+                encodedBytes -= encoded.getAccountedBytes();
+            }
+            entry.encodings = null;
+        }
+    }
+
+    /**
+     * Read a spilled entry back into memory. Called without the lock on an entry
+     * marked as faulting, so only this thread reads its file.
+     * @return The resident Mat, retained for the caller, or null if the entry
+     *         could not be read or was removed meanwhile
+     */
+    private SharedMat faultIn(String key, Entry entry, Path file, Maintenance work) {
+        Mat mat = null;
+        try {
+            mat = MatSpillStore.read(file);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read spilled cache entry '{}': {}", key, e.getMessage());
+        }
+
+        lock.lock();
+        try {
+            entry.faulting = false;
+            faultDone.signalAll();
+            if (entry.removed) {
+                // dropEntry left the file for us, since we were reading it
+                work.toDelete.add(file);
+                if (mat != null) {
+                    mat.release();
+                }
+                return null;
+            }
+            if (mat == null) {
+                cache.remove(key, entry);
+                dropEntry(entry, work);
+                work.evictedKeys.add(key);
+                return null;
+            }
+            entry.shared = new SharedMat(mat);
+            entry.shared.retain();
+            currentBytes += entry.bytes;
+            faultCount++;
+            evictIfNeeded(key, work);
+            return entry.shared;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Account for an entry that has been removed from the map and schedule the
+     * cache's reference and spill file for release. Must be called with the lock held.
+     */
+    private void dropEntry(Entry entry, Maintenance work) {
+        entry.removed = true;
+        dropEncodings(entry);
+        if (entry.spillFile != null) {
+            spilledBytes -= entry.bytes;
+            if (!entry.faulting) {
+                // A faulting entry's file is deleted by the reader once it finishes
+                work.toDelete.add(entry.spillFile);
+            }
+            entry.spillFile = null;
+        }
+        if (entry.shared != null && !entry.spilling) {
+            currentBytes -= entry.bytes;
+            work.toRelease.add(entry.shared);
+        }
+        // A spilling entry's reference is dropped by the spill writer once it finishes
+    }
+
+    /**
+     * Evict least recently used, unpinned entries until the cache fits its budget.
+     * Encoded payloads of an entry are dropped before its Mat.
+     * Must be called with the lock held; native memory and disk work is collected
+     * into {@code work} so it can run after the lock is dropped.
+     * @param protectedKey Key that must not be evicted (the entry just stored), or null
+     */
+    private void evictIfNeeded(String protectedKey, Maintenance work) {
+        if (maxBytes <= 0 || currentBytes + encodedBytes <= maxBytes) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator();
+        while (currentBytes + encodedBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> candidate = it.next();
+            String key = candidate.getKey();
+            Entry entry = candidate.getValue();
+            if (key.equals(protectedKey)) {
+                continue;
+            }
+            if (entry.encodings != null) {
+                dropEncodings(entry);
+                if (currentBytes + encodedBytes <= maxBytes) {
+                    break;
+                }
+            }
+            // An entry with a write in flight was accessed since it was scheduled;
+            // it is dropped cheaply once the write has left a clean copy
+            if (pinCounts.containsKey(key) || entry.shared == null || entry.writing
+                    || entry.shared.isLeased()) {
+                continue;
+            }
+
+            evictionCount++;
+            if (spillStore == null) {
+                it.remove();
+                dropEntry(entry, work);
+                work.evictedKeys.add(key);
+            } else if (entry.spillFile != null) {
+                // A clean copy is already on disk: just drop the resident Mat
+                currentBytes -= entry.bytes;
+                work.toRelease.add(entry.shared);
+                entry.shared = null;
+            } else {
+                // The writer holds its own reference, so the Mat outlives a
+                // concurrent removal until the write has finished
+                entry.spilling = true;
+                entry.writing = true;
+                entry.shared.retain();
+                currentBytes -= entry.bytes;
+                work.toSpill.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Drop spilled entries (oldest first) until the spill tier fits its budget.
+     * Must be called with the lock held.
+     */
+    private void trimSpillTier(Maintenance work) {
+        if (spillStore == null || spillStore.getMaxBytes() <= 0) {
+            return;
+        }
+
+        Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator();
+        while (spilledBytes > spillStore.getMaxBytes() && it.hasNext()) {
+            Map.Entry<String, Entry> candidate = it.next();
+            Entry entry = candidate.getValue();
+            if (entry.spillFile == null || entry.spilling || entry.faulting) {
+                continue;
+            }
+            if (entry.shared == null) {
+                // Only copy is on disk: the entry is lost for good
+                it.remove();
+                dropEntry(entry, work);
+                work.evictedKeys.add(candidate.getKey());
+            } else {
+                // Resident entry: just discard its clean copy
+                spilledBytes -= entry.bytes;
+                work.toDelete.add(entry.spillFile);
+                entry.spillFile = null;
+            }
+        }
+    }
+
+    /**
+     * Perform the native memory and disk work collected while holding the lock.
+     */
+    private void runMaintenance(Maintenance work) {
+        work.toRelease.forEach(SharedMat::release);
+        work.toDelete.forEach(MatSpillStore::delete);
+
+        notify(removalListeners, work.removedKeys, "removal");
+        notify(evictionListeners, work.evictedKeys, "eviction");
+
+        for (Map.Entry<String, Entry> spill : work.toSpill.entrySet()) {
+            spillEntry(spill.getKey(), spill.getValue());
+        }
+    }
+
+    /**
+     * Write an evicted entry to the spill tier and drop its resident Mat, unless
+     * it was accessed meanwhile. Called once per scheduled write, with the
+     * reference evictIfNeeded retained for it.
+     */
+    private void spillEntry(String key, Entry entry) {
+        MatSpillStore store;
+        SharedMat shared;
+        lock.lock();
+        try {
+            store = spillStore;
+            // Cannot change while the write is in flight
+            shared = entry.shared;
+        } finally {
+            lock.unlock();
+        }
+
+        Path file = null;
+        try {
+            file = store.write(shared.mat);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to spill cache entry '{}', dropping it: {}", key, e.getMessage());
+        }
+
+        Maintenance work = new Maintenance();
+        lock.lock();
+        try {
+            entry.writing = false;
+            if (entry.removed) {
+                // Replaced or removed while being written
+                if (file != null) {
+                    work.toDelete.add(file);
+                }
+                if (entry.spilling) {
+                    // dropEntry left the cache's reference for us to release
+                    entry.spilling = false;
+                    work.toRelease.add(entry.shared);
+                    entry.shared = null;
+                }
+            } else if (file == null) {
+                if (entry.spilling) {
+                    // Could not write it out: fall back to a plain eviction
+                    entry.spilling = false;
+                    cache.remove(key, entry);
+                    entry.removed = true;
+                    work.toRelease.add(entry.shared);
+                    entry.shared = null;
+                    work.evictedKeys.add(key);
+                }
+            } else {
+                entry.spillFile = file;
+                spilledBytes += entry.bytes;
+                spillCount++;
+                if (entry.spilling) {
+                    entry.spilling = false;
+                    work.toRelease.add(entry.shared);
+                    entry.shared = null;
+                } else {
+                    // Accessed while being written: now it can be dropped without a
+                    // write. The cache still holds its reference, so dropping the
+                    // writer's here cannot free the Mat, and no longer counts as a lease
+                    shared.release();
+                    shared = null;
+                    evictIfNeeded(null, work);
+                }
+                trimSpillTier(work);
+            }
+            if (shared != null) {
+                work.toRelease.add(shared);
+            }
+        } finally {
+            lock.unlock();
+        }
+        runMaintenance(work);
+    }
+
+    private static void notify(List<Consumer<String>> listeners, List<String> keys, String kind) {
+        for (String key : keys) {
+            for (Consumer<String> listener : listeners) {
+                try {
+                    listener.accept(key);
+                } catch (RuntimeException e) {
+                    logger.warn("Cache {} listener failed for '{}': {}", kind, key, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * An encoded payload and the version of the entry it was encoded from.
+     */
+    public static class VersionedEncoding {
+        private final EncodedImage image;
+        private final long version;
+
+        VersionedEncoding(EncodedImage image, long version) {
+            this.image = image;
+            this.version = version;
+        }
+
+        public EncodedImage getImage() {
+            return image;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * A cached result: resident in memory, on disk, or both.
+     */
+    private static class Entry {
+        final long bytes;
+        SharedMat shared;   // null while the entry only exists on disk
+        Path spillFile;     // non-null once written to the spill tier
+        boolean spilling;   // being written out, resident copy to be dropped; shared is still valid
+        boolean writing;    // a spill write is in flight, even if spilling was cleared by an access
+        boolean faulting;   // being read back from spillFile; shared is still null
+        boolean removed;    // no longer reachable from the map
+        String contentHash; // computed lazily by contentHash()
+        Map<String, EncodedImage> encodings; // by payload key, null until first encode
+        final long version;
+        final int type;     // Mat type, known even while spilled
+
+        Entry(SharedMat shared, long bytes, long version) {
+            this.shared = shared;
+            this.bytes = bytes;
+            this.version = version;
+            this.type = shared.mat.type();
+        }
+    }
+
+    /**
+     * A cached Mat with an atomic reference count. The cache owns one reference,
+     * each open lease owns another; the native buffer is released at zero.
+     */
+    private static class SharedMat {
+        final Mat mat;
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        SharedMat(Mat mat) {
+            this.mat = mat;
+        }
+
+        void retain() {
+            refs.incrementAndGet();
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                mat.release();
+            }
+        }
+
+        boolean isLeased() {
+            return refs.get() > 1;
+        }
+    }
+
+    /**
+     * Work deferred until the cache lock has been released.
+     */
+    private static class Maintenance {
+        final List<SharedMat> toRelease = new ArrayList<>();
+        final List<Path> toDelete = new ArrayList<>();
+        final Map<String, Entry> toSpill = new LinkedHashMap<>();
+        final List<String> removedKeys = new ArrayList<>();
+        final List<String> evictedKeys = new ArrayList<>();
     }
 }
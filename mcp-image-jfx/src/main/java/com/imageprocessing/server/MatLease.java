@@ -0,0 +1,99 @@
+package com.imageprocessing.server;
+
+import org.opencv.core.Mat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A borrowed reference to a Mat.
+ *
+ * Leases handed out by {@link IntermediateResultCache#acquire(String)} share the
+ * cached native buffer without copying; the Mat is only released once the cache
+ * has dropped the entry and the last lease has been closed. Use leases in a
+ * try-with-resources block and never release the leased Mat directly.
+ */
+public class MatLease implements AutoCloseable {
+
+    private final Mat mat;
+    private final Runnable releaser;
+    private final String key;
+    private final String source;
+    private final long version;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    MatLease(Mat mat, Runnable releaser, String key, long version) {
+        this(mat, releaser, key, null, version);
+    }
+
+    private MatLease(Mat mat, Runnable releaser, String key, String source, long version) {
+        this.mat = mat;
+        this.releaser = releaser;
+        this.key = key;
+        this.source = source;
+        this.version = version;
+    }
+
+    /**
+     * Wrap a Mat that is not shared with anyone: closing the lease releases it.
+     * Used for images loaded from a path, URL or base64 data.
+     */
+    public static MatLease owned(Mat mat) {
+        return owned(mat, null);
+    }
+
+    /**
+     * Wrap an owned Mat decoded from a validated source.
+     * @param source Identity of the decoded file or URL version, see {@link #source()}
+     */
+    public static MatLease owned(Mat mat, String source) {
+        return new MatLease(mat, mat::release, null, source, -1);
+    }
+
+    /**
+     * Get the leased Mat. It must not be modified or used after the lease is closed.
+     */
+    public Mat mat() {
+        if (closed.get()) {
+            throw new IllegalStateException("Lease already closed");
+        }
+        return mat;
+    }
+
+    /**
+     * Get the cache key this lease was acquired for, or null for owned Mats.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Get the version of the cache entry this lease was acquired from, see
+     * {@link IntermediateResultCache#getVersion(String)}, or -1 for owned Mats.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Get an identity of the image's origin that changes whenever its pixels
+     * would, e.g. a file's path, decode scale, size and modification time, or
+     * null if the origin cannot be validated.
+     */
+    public String source() {
+        return source;
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    /**
+     * Return the lease. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            releaser.run();
+        }
+    }
+}
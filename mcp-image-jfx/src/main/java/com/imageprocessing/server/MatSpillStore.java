@@ -0,0 +1,176 @@
+package com.imageprocessing.server;
+
+import org.opencv.core.Mat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Local disk tier for Mats evicted from the IntermediateResultCache.
+ *
+ * Each spilled Mat is stored as a raw file: a fixed-size header (magic, rows,
+ * cols, OpenCV type, data length) followed by the continuous pixel data.
+ * Files are written and read through memory-mapped buffers that OpenCV copies
+ * directly, so no PNG encode/decode or intermediate Java byte[] is involved.
+ * A single mapping cannot exceed Integer.MAX_VALUE bytes, so the pixels are
+ * mapped in bands of whole rows.
+ */
+public class MatSpillStore {
+
+    private static final int MAGIC = 0x4D415431; // "MAT1"
+    static final int HEADER_SIZE = 32;
+
+    /** Largest region mapped at once; a MappedByteBuffer is limited to Integer.MAX_VALUE bytes. */
+    static final long MAP_CHUNK_BYTES = 1L << 30;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    /**
+     * Create a spill store.
+     * @param directory Directory for spill files (created if missing)
+     * @param maxBytes Maximum bytes kept on disk (0 or less = unbounded)
+     */
+    public MatSpillStore(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Write a Mat to a new spill file.
+     * @param mat The Mat to spill (left untouched; the caller still owns it)
+     * @return Path of the written file
+     */
+    public Path write(Mat mat) throws IOException {
+        return write(mat, MAP_CHUNK_BYTES);
+    }
+
+    Path write(Mat mat, long chunkBytes) throws IOException {
+        Path file = directory.resolve(UUID.randomUUID() + ".mat");
+        long dataLength = mat.total() * mat.elemSize();
+
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(mat.rows());
+            header.putInt(mat.cols());
+            header.putInt(mat.type());
+            header.putLong(dataLength);
+            header.flip();
+            channel.write(header, 0);
+
+            // Let OpenCV copy the pixels straight into the mapped file regions
+            long rowBytes = mat.cols() * mat.elemSize();
+            int bandRows = bandRows(mat.rows(), rowBytes, chunkBytes);
+            for (int row = 0; row < mat.rows(); row += bandRows) {
+                int rows = Math.min(bandRows, mat.rows() - row);
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + row * rowBytes, rows * rowBytes);
+                Mat view = new Mat(rows, mat.cols(), mat.type(), data);
+                Mat source = mat.rowRange(row, row + rows);
+                try {
+                    source.copyTo(view);
+                } finally {
+                    source.release();
+                    view.release();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        return file;
+    }
+
+    /**
+     * Read a spilled Mat back into native memory.
+     * @param file Spill file written by {@link #write(Mat)}
+     * @return A new Mat owned by the caller
+     */
+    public static Mat read(Path file) throws IOException {
+        return read(file, MAP_CHUNK_BYTES);
+    }
+
+    static Mat read(Path file, long chunkBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a Mat spill file: " + file);
+            }
+            int rows = header.getInt();
+            int cols = header.getInt();
+            int type = header.getInt();
+            long dataLength = header.getLong();
+
+            if (channel.size() < HEADER_SIZE + dataLength) {
+                throw new IOException("Truncated Mat spill file: " + file);
+            }
+
+            // Copy each mapped band once into a Mat that owns its memory
+            Mat mat = new Mat(rows, cols, type);
+            long rowBytes = dataLength / Math.max(1, rows);
+            try {
+                int bandRows = bandRows(rows, rowBytes, chunkBytes);
+                for (int row = 0; row < rows; row += bandRows) {
+                    int count = Math.min(bandRows, rows - row);
+                    MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + row * rowBytes, count * rowBytes);
+                    Mat view = new Mat(count, cols, type, data);
+                    Mat target = mat.rowRange(row, row + count);
+                    try {
+                        view.copyTo(target);
+                    } finally {
+                        target.release();
+                        view.release();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                mat.release();
+                throw e;
+            }
+            return mat;
+        }
+    }
+
+    /**
+     * Number of whole rows that fit in one mapping of at most {@code chunkBytes}.
+     */
+    private static int bandRows(int rows, long rowBytes, long chunkBytes) throws IOException {
+        long limit = Math.min(chunkBytes, Integer.MAX_VALUE);
+        if (rowBytes > limit) {
+            throw new IOException("Mat row of " + rowBytes + " bytes is too large to map");
+        }
+        return (int) Math.max(1, Math.min(rows, limit / Math.max(1, rowBytes)));
+    }
+
+    /**
+     * Delete a spill file, ignoring files that are already gone.
+     */
+    public static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Best effort: a stale file only costs disk space
+        }
+    }
+}
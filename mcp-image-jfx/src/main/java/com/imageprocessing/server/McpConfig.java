@@ -23,6 +23,25 @@ public class McpConfig {
     private final boolean captureServerLogs;
     private final Path logDirectory;
 
+    // Cache settings
+    private final long cacheMaxBytes;
+    private final Path spillDirectory;
+    private final long spillMaxBytes;
+    private final long memoMaxBytes;
+    private final String imageFormat;
+    private final int imageQuality;
+    private final int pngCompression;
+    private final ResponseImageMode responseImage;
+    private final int thumbnailSize;
+    private final long decodeCacheMaxBytes;
+    private final int httpMaxThreads;
+    private final int admissionPermits;
+    private final int admissionQueue;
+    private final long admissionWaitMs;
+
+    // Composite tool settings
+    private final Path workflowDirectory;
+
     private McpConfig(Builder builder) {
         this.transportMode = builder.transportMode;
         this.httpHost = builder.httpHost;
@@ -30,6 +49,21 @@ public class McpConfig {
         this.httpEndpoint = builder.httpEndpoint;
         this.captureServerLogs = builder.captureServerLogs;
         this.logDirectory = builder.logDirectory;
+        this.cacheMaxBytes = builder.cacheMaxBytes;
+        this.spillDirectory = builder.spillDirectory;
+        this.spillMaxBytes = builder.spillMaxBytes;
+        this.memoMaxBytes = builder.memoMaxBytes;
+        this.imageFormat = builder.imageFormat;
+        this.imageQuality = builder.imageQuality;
+        this.pngCompression = builder.pngCompression;
+        this.responseImage = builder.responseImage;
+        this.thumbnailSize = builder.thumbnailSize;
+        this.decodeCacheMaxBytes = builder.decodeCacheMaxBytes;
+        this.httpMaxThreads = builder.httpMaxThreads;
+        this.admissionPermits = builder.admissionPermits;
+        this.admissionQueue = builder.admissionQueue;
+        this.admissionWaitMs = builder.admissionWaitMs;
+        this.workflowDirectory = builder.workflowDirectory;
     }
 
     public TransportMode getTransportMode() {
@@ -56,6 +90,105 @@ public class McpConfig {
         return logDirectory;
     }
 
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    /**
+     * Directory for the cache's disk spill tier, or null if spilling is disabled.
+     */
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public long getSpillMaxBytes() {
+        return spillMaxBytes;
+    }
+
+    /**
+     * Byte budget for memoized tool results (0 disables memoization).
+     */
+    public long getMemoMaxBytes() {
+        return memoMaxBytes;
+    }
+
+    /**
+     * Response image format preference, e.g. "webp,jpeg,png".
+     */
+    public String getImageFormat() {
+        return imageFormat;
+    }
+
+    /**
+     * JPEG/WebP quality for response images (1-100).
+     */
+    public int getImageQuality() {
+        return imageQuality;
+    }
+
+    /**
+     * PNG compression level for response images (0-9).
+     */
+    public int getPngCompression() {
+        return pngCompression;
+    }
+
+    /**
+     * Default way image tools return their result image.
+     */
+    public ResponseImageMode getResponseImage() {
+        return responseImage;
+    }
+
+    /**
+     * Longest side of thumbnail response images in pixels.
+     */
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    /**
+     * Byte budget for decoded path/URL inputs (0 disables the decode cache).
+     */
+    public long getDecodeCacheMaxBytes() {
+        return decodeCacheMaxBytes;
+    }
+
+    /**
+     * Maximum number of Jetty request threads in HTTP mode.
+     */
+    public int getHttpMaxThreads() {
+        return httpMaxThreads;
+    }
+
+    /**
+     * Global permit budget for concurrent tool calls, weighted by tool cost (0 disables admission control).
+     */
+    public int getAdmissionPermits() {
+        return admissionPermits;
+    }
+
+    /**
+     * Maximum number of tool calls waiting for permits; further calls are rejected.
+     */
+    public int getAdmissionQueue() {
+        return admissionQueue;
+    }
+
+    /**
+     * Maximum time a tool call waits for permits before it is rejected, in milliseconds.
+     */
+    public long getAdmissionWaitMs() {
+        return admissionWaitMs;
+    }
+
+    /**
+     * Directory of saved workflows to register as composite tools, or null if there is none.
+     */
+    public Path getWorkflowDirectory() {
+        return workflowDirectory;
+    }
+
     public String getHttpUrl() {
         return String.format("http://%s:%d%s", httpHost, httpPort, httpEndpoint);
     }
@@ -92,6 +225,21 @@ public class McpConfig {
         private String httpEndpoint = "/mcp";
         private boolean captureServerLogs = true;
         private Path logDirectory = Paths.get("./logs");
+        private long cacheMaxBytes = IntermediateResultCache.DEFAULT_MAX_BYTES;
+        private Path spillDirectory = null;
+        private long spillMaxBytes = 8L * 1024 * 1024 * 1024;
+        private long memoMaxBytes = ToolResultMemo.DEFAULT_MAX_BYTES;
+        private String imageFormat = ImageEncoding.PNG;
+        private int imageQuality = ImageEncoding.DEFAULT_QUALITY;
+        private int pngCompression = ImageEncoding.DEFAULT_PNG_COMPRESSION;
+        private ResponseImageMode responseImage = ResponseImageMode.FULL;
+        private int thumbnailSize = ResponseImageMode.DEFAULT_THUMBNAIL_SIZE;
+        private long decodeCacheMaxBytes = DecodedImageCache.DEFAULT_MAX_BYTES;
+        private int httpMaxThreads = ImageProcessingMcpServer.DEFAULT_HTTP_MAX_THREADS;
+        private int admissionPermits = AdmissionController.DEFAULT_PERMITS;
+        private int admissionQueue = AdmissionController.DEFAULT_MAX_QUEUE;
+        private long admissionWaitMs = AdmissionController.DEFAULT_MAX_WAIT_MS;
+        private Path workflowDirectory = null;
 
         public Builder transportMode(TransportMode transportMode) {
             this.transportMode = transportMode;
@@ -123,6 +271,81 @@ public class McpConfig {
             return this;
         }
 
+        public Builder cacheMaxBytes(long cacheMaxBytes) {
+            this.cacheMaxBytes = cacheMaxBytes;
+            return this;
+        }
+
+        public Builder spillDirectory(Path spillDirectory) {
+            this.spillDirectory = spillDirectory;
+            return this;
+        }
+
+        public Builder spillMaxBytes(long spillMaxBytes) {
+            this.spillMaxBytes = spillMaxBytes;
+            return this;
+        }
+
+        public Builder memoMaxBytes(long memoMaxBytes) {
+            this.memoMaxBytes = memoMaxBytes;
+            return this;
+        }
+
+        public Builder imageFormat(String imageFormat) {
+            this.imageFormat = imageFormat;
+            return this;
+        }
+
+        public Builder imageQuality(int imageQuality) {
+            this.imageQuality = imageQuality;
+            return this;
+        }
+
+        public Builder pngCompression(int pngCompression) {
+            this.pngCompression = pngCompression;
+            return this;
+        }
+
+        public Builder responseImage(ResponseImageMode responseImage) {
+            this.responseImage = responseImage;
+            return this;
+        }
+
+        public Builder thumbnailSize(int thumbnailSize) {
+            this.thumbnailSize = thumbnailSize;
+            return this;
+        }
+
+        public Builder decodeCacheMaxBytes(long decodeCacheMaxBytes) {
+            this.decodeCacheMaxBytes = decodeCacheMaxBytes;
+            return this;
+        }
+
+        public Builder httpMaxThreads(int httpMaxThreads) {
+            this.httpMaxThreads = httpMaxThreads;
+            return this;
+        }
+
+        public Builder admissionPermits(int admissionPermits) {
+            this.admissionPermits = admissionPermits;
+            return this;
+        }
+
+        public Builder admissionQueue(int admissionQueue) {
+            this.admissionQueue = admissionQueue;
+            return this;
+        }
+
+        public Builder admissionWaitMs(long admissionWaitMs) {
+            this.admissionWaitMs = admissionWaitMs;
+            return this;
+        }
+
+        public Builder workflowDirectory(Path workflowDirectory) {
+            this.workflowDirectory = workflowDirectory;
+            return this;
+        }
+
         public McpConfig build() {
             return new McpConfig(this);
         }
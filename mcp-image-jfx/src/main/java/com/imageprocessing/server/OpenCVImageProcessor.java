@@ -11,8 +11,10 @@ import java.awt.image.DataBufferByte;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.*;
+import java.util.function.BooleanSupplier;
 
 /**
  * OpenCV-based image processing operations.
@@ -30,32 +32,100 @@ public class OpenCVImageProcessor {
      * @throws Exception if image cannot be loaded
      */
     public static Mat loadImage(String imagePath, String imageUrl, String imageData) throws Exception {
-        BufferedImage bufferedImage = null;
+        return loadImage(imagePath, imageUrl, imageData, 1);
+    }
+
+    /**
+     * Load an image from various sources (path, URL, base64), optionally decoding
+     * it at a reduced size. All sources are decoded natively by OpenCV; ImageIO is
+     * only used for formats OpenCV cannot read. Whatever the source and scale, the
+     * result is 8-bit: one channel for grayscale images, BGR for everything else
+     * (alpha is dropped), which is what every tool expects.
+     * @param imagePath File path to image (optional)
+     * @param imageUrl URL to image (optional)
+     * @param imageData Base64 encoded image data (optional)
+     * @param decodeScale 1 for full size, or 2, 4 or 8 to decode at 1/2, 1/4 or 1/8 size
+     * @return OpenCV Mat containing the image
+     * @throws Exception if image cannot be loaded
+     */
+    public static Mat loadImage(String imagePath, String imageUrl, String imageData, int decodeScale) throws Exception {
+        int flags = decodeFlags(decodeScale);
 
         if (imageData != null && !imageData.isBlank()) {
             // Load from base64 data
-            byte[] imageBytes = Base64.getDecoder().decode(imageData);
-            bufferedImage = ImageIO.read(new ByteArrayInputStream(imageBytes));
+            return decodeImage(Base64.getDecoder().decode(imageData), decodeScale);
         } else if (imageUrl != null && !imageUrl.isBlank()) {
             // Load from URL
-            bufferedImage = ImageIO.read(new URL(imageUrl));
+            try (InputStream in = new URL(imageUrl).openStream()) {
+                return decodeImage(in.readAllBytes(), decodeScale);
+            }
         } else if (imagePath != null && !imagePath.isBlank()) {
-            // Try OpenCV first for better format support
-            Mat mat = Imgcodecs.imread(imagePath, Imgcodecs.IMREAD_UNCHANGED);
+            Mat mat = Imgcodecs.imread(imagePath, flags);
             if (!mat.empty()) {
                 return mat;
             }
+            mat.release();
             // Fall back to ImageIO
-            bufferedImage = ImageIO.read(new File(imagePath));
+            return decodeWithImageIO(ImageIO.read(new File(imagePath)), decodeScale);
         } else {
             throw new IllegalArgumentException("No image source provided (path, url, or data)");
         }
+    }
+
+    /**
+     * Decode an encoded image (PNG, JPEG, TIFF, ...) with OpenCV, falling back to
+     * ImageIO for formats OpenCV cannot read.
+     * @param bytes Encoded image file contents
+     * @param decodeScale 1, 2, 4 or 8 (see {@link #loadImage(String, String, String, int)})
+     * @return Decoded image
+     */
+    public static Mat decodeImage(byte[] bytes, int decodeScale) throws Exception {
+        int flags = decodeFlags(decodeScale);
+        MatOfByte buffer = new MatOfByte(bytes);
+        try {
+            Mat mat = Imgcodecs.imdecode(buffer, flags);
+            if (!mat.empty()) {
+                return mat;
+            }
+            mat.release();
+        } finally {
+            buffer.release();
+        }
+        return decodeWithImageIO(ImageIO.read(new ByteArrayInputStream(bytes)), decodeScale);
+    }
 
+    /**
+     * Map a decode scale to imread/imdecode flags. IMREAD_ANYCOLOR keeps grayscale
+     * images single-channel and converts the rest to 8-bit BGR; the reduced-size
+     * bits only set the scale, so the channel policy is the same at every scale.
+     */
+    private static int decodeFlags(int decodeScale) {
+        switch (decodeScale) {
+            case 1: return Imgcodecs.IMREAD_ANYCOLOR;
+            case 2: return Imgcodecs.IMREAD_ANYCOLOR | Imgcodecs.IMREAD_REDUCED_GRAYSCALE_2;
+            case 4: return Imgcodecs.IMREAD_ANYCOLOR | Imgcodecs.IMREAD_REDUCED_GRAYSCALE_4;
+            case 8: return Imgcodecs.IMREAD_ANYCOLOR | Imgcodecs.IMREAD_REDUCED_GRAYSCALE_8;
+            default:
+                throw new IllegalArgumentException("Decode scale must be 1, 2, 4 or 8: " + decodeScale);
+        }
+    }
+
+    private static Mat decodeWithImageIO(BufferedImage bufferedImage, int decodeScale) {
         if (bufferedImage == null) {
             throw new IllegalArgumentException("Failed to load image from provided source");
         }
-
-        return bufferedImageToMat(bufferedImage);
+        Mat mat = bufferedImageToMat(bufferedImage);
+        if (decodeScale == 1) {
+            return mat;
+        }
+        Mat reduced = new Mat();
+        try {
+            Imgproc.resize(mat, reduced, new Size(Math.max(1, mat.cols() / decodeScale), Math.max(1, mat.rows() / decodeScale)),
+                0, 0, Imgproc.INTER_AREA);
+            return reduced;
+        } finally {
+            mat.release();
+        }
     }
 
     /**
@@ -146,7 +216,8 @@ public class OpenCVImageProcessor {
             Imgproc.cvtColor(src, gray, Imgproc.COLOR_BGR2GRAY);
         }
 
-        Mat dst = new Mat();
+        // Threshold a converted image in place instead of allocating another plane
+        Mat dst = gray != src ? gray : new Mat();
         int type = switch (thresholdType.toUpperCase()) {
             case "BINARY" -> Imgproc.THRESH_BINARY;
             case "BINARY_INV" -> Imgproc.THRESH_BINARY_INV;
@@ -168,10 +239,6 @@ public class OpenCVImageProcessor {
             Core.bitwise_not(dst, dst);
         }
 
-        if (src.channels() > 1 && gray != src) {
-            gray.release();
-        }
-
         return dst;
     }
 
@@ -202,21 +269,32 @@ public class OpenCVImageProcessor {
      */
     public static Mat filter(Mat src, String filterType, int kernelSize,
                             double sigmaX, double sigmaColor, double sigmaSpace) {
-        Mat dst = new Mat();
+        return filter(src, filterType, kernelSize, sigmaX, sigmaColor, sigmaSpace, TiledExecutor.callerInterrupted());
+    }
 
+    /**
+     * Apply various filters to an image, tile-parallel for large images.
+     * @param cancelled Checked between tiles
+     * @return Filtered image
+     */
+    public static Mat filter(Mat src, String filterType, int kernelSize,
+                            double sigmaX, double sigmaColor, double sigmaSpace, BooleanSupplier cancelled) {
         // Ensure kernel size is odd
-        if (kernelSize % 2 == 0) {
-            kernelSize++;
-        }
-
-        switch (filterType.toUpperCase()) {
-            case "GAUSSIAN" -> Imgproc.GaussianBlur(src, dst, new Size(kernelSize, kernelSize), sigmaX);
-            case "MEDIAN" -> Imgproc.medianBlur(src, dst, kernelSize);
-            case "BILATERAL" -> Imgproc.bilateralFilter(src, dst, kernelSize, sigmaColor, sigmaSpace);
-            default -> throw new IllegalArgumentException("Unknown filter type: " + filterType);
+        int size = kernelSize % 2 == 0 ? kernelSize + 1 : kernelSize;
+        String type = filterType.toUpperCase();
+        if (!List.of("GAUSSIAN", "MEDIAN", "BILATERAL").contains(type)) {
+            throw new IllegalArgumentException("Unknown filter type: " + filterType);
         }
 
-        return dst;
+        return TiledExecutor.apply(src, size / 2, tile -> {
+            Mat dst = new Mat();
+            switch (type) {
+                case "GAUSSIAN" -> Imgproc.GaussianBlur(tile, dst, new Size(size, size), sigmaX);
+                case "MEDIAN" -> Imgproc.medianBlur(tile, dst, size);
+                default -> Imgproc.bilateralFilter(tile, dst, size, sigmaColor, sigmaSpace);
+            }
+            return dst;
+        }, cancelled);
     }
 
     /**
@@ -228,15 +306,28 @@ public class OpenCVImageProcessor {
      * @return Denoised image
      */
     public static Mat denoise(Mat src, float h, int templateWindowSize, int searchWindowSize) {
-        Mat dst = new Mat();
-
-        if (src.channels() == 1) {
-            Photo.fastNlMeansDenoising(src, dst, h, templateWindowSize, searchWindowSize);
-        } else {
-            Photo.fastNlMeansDenoisingColored(src, dst, h, h, templateWindowSize, searchWindowSize);
-        }
+        return denoise(src, h, templateWindowSize, searchWindowSize, TiledExecutor.callerInterrupted());
+    }
 
-        return dst;
+    /**
+     * Denoise an image using Non-Local Means Denoising, tile-parallel for large images.
+     * @param cancelled Checked between tiles
+     * @return Denoised image
+     */
+    public static Mat denoise(Mat src, float h, int templateWindowSize, int searchWindowSize,
+                              BooleanSupplier cancelled) {
+        // Each pixel compares template patches anywhere in its search window
+        int halo = searchWindowSize / 2 + templateWindowSize / 2;
+
+        return TiledExecutor.apply(src, halo, tile -> {
+            Mat dst = new Mat();
+            if (tile.channels() == 1) {
+                Photo.fastNlMeansDenoising(tile, dst, h, templateWindowSize, searchWindowSize);
+            } else {
+                Photo.fastNlMeansDenoisingColored(tile, dst, h, h, templateWindowSize, searchWindowSize);
+            }
+            return dst;
+        }, cancelled);
     }
 
     /**
@@ -248,31 +339,54 @@ public class OpenCVImageProcessor {
      * @return Blurred image
      */
     public static Mat blur(Mat src, String blurType, int kernelSize, double angle) {
-        Mat dst = new Mat();
+        return blur(src, blurType, kernelSize, angle, TiledExecutor.callerInterrupted());
+    }
 
+    /**
+     * Apply various blur effects to an image, tile-parallel for large images.
+     * @param cancelled Checked between tiles
+     * @return Blurred image
+     */
+    public static Mat blur(Mat src, String blurType, int kernelSize, double angle, BooleanSupplier cancelled) {
         // Ensure kernel size is odd
-        if (kernelSize % 2 == 0) {
-            kernelSize++;
-        }
-
-        switch (blurType.toUpperCase()) {
-            case "GAUSSIAN" -> Imgproc.GaussianBlur(src, dst, new Size(kernelSize, kernelSize), 0);
-            case "BOX", "AVERAGE" -> Imgproc.blur(src, dst, new Size(kernelSize, kernelSize));
+        int size = kernelSize % 2 == 0 ? kernelSize + 1 : kernelSize;
+        String type = blurType.toUpperCase();
+
+        switch (type) {
+            case "GAUSSIAN" -> {
+                return TiledExecutor.apply(src, size / 2, tile -> {
+                    Mat dst = new Mat();
+                    Imgproc.GaussianBlur(tile, dst, new Size(size, size), 0);
+                    return dst;
+                }, cancelled);
+            }
+            case "BOX", "AVERAGE" -> {
+                return TiledExecutor.apply(src, size / 2, tile -> {
+                    Mat dst = new Mat();
+                    Imgproc.blur(tile, dst, new Size(size, size));
+                    return dst;
+                }, cancelled);
+            }
             case "MOTION" -> {
-                Mat kernel = getMotionBlurKernel(kernelSize, angle);
-                Imgproc.filter2D(src, dst, -1, kernel);
-                kernel.release();
+                Mat kernel = getMotionBlurKernel(size, angle);
+                try {
+                    return TiledExecutor.apply(src, size / 2, tile -> {
+                        Mat dst = new Mat();
+                        Imgproc.filter2D(tile, dst, -1, kernel);
+                        return dst;
+                    }, cancelled);
+                } finally {
+                    kernel.release();
+                }
             }
             default -> throw new IllegalArgumentException("Unknown blur type: " + blurType);
         }
-
-        return dst;
     }
 
     /**
      * Create a motion blur kernel.
      */
-    private static Mat getMotionBlurKernel(int size, double angle) {
+    static Mat getMotionBlurKernel(int size, double angle) {
         Mat kernel = Mat.zeros(size, size, CvType.CV_32F);
         int center = size / 2;
         double angleRad = Math.toRadians(angle);
@@ -306,15 +420,28 @@ public class OpenCVImageProcessor {
      */
     public static Map<String, Object> detectContours(Mat src, double minArea, double maxArea,
                                                       double minCircularity, double maxCircularity) {
+        return detectContours(src, minArea, maxArea, minCircularity, maxCircularity, false);
+    }
+
+    /**
+     * Detect contours in an image.
+     * @param binaryInput The source is a single-channel 0/255 mask and is used without thresholding
+     */
+    public static Map<String, Object> detectContours(Mat src, double minArea, double maxArea,
+                                                      double minCircularity, double maxCircularity,
+                                                      boolean binaryInput) {
         Mat gray = src;
         if (src.channels() > 1) {
             gray = new Mat();
             Imgproc.cvtColor(src, gray, Imgproc.COLOR_BGR2GRAY);
         }
 
-        // Ensure binary image
-        Mat binary = new Mat();
-        if (gray.channels() == 1) {
+        // Ensure binary image; findContours does not modify its input
+        Mat binary;
+        if (binaryInput && gray == src) {
+            binary = src;
+        } else if (gray.channels() == 1) {
+            binary = new Mat();
             Imgproc.threshold(gray, binary, 127, 255, Imgproc.THRESH_BINARY);
         } else {
             binary = gray.clone();
@@ -373,7 +500,9 @@ public class OpenCVImageProcessor {
         }
 
         // Cleanup
-        binary.release();
+        if (binary != src) {
+            binary.release();
+        }
         hierarchy.release();
         if (gray != src) {
             gray.release();
@@ -442,11 +571,65 @@ public class OpenCVImageProcessor {
      * @return Base64 encoded PNG image
      */
     public static String matToBase64Png(Mat mat) throws Exception {
+        return Base64.getEncoder().encodeToString(matToPngBytes(mat));
+    }
+
+    /**
+     * Encode a Mat as PNG with the default compression level.
+     * @param mat The Mat to encode
+     * @return PNG file bytes
+     */
+    public static byte[] matToPngBytes(Mat mat) {
+        return encodeImage(mat, ImageEncoding.PNG, ImageEncoding.DEFAULT_QUALITY, ImageEncoding.DEFAULT_PNG_COMPRESSION);
+    }
+
+    /**
+     * Encode a Mat with OpenCV's native codecs. The pixels are encoded straight
+     * from the Mat (no BufferedImage copy), and only the compressed result is
+     * copied into the Java heap.
+     * @param mat The Mat to encode (BGR/BGRA/gray, any depth the codec supports)
+     * @param format png, jpeg or webp
+     * @param quality JPEG/WebP quality (1-100)
+     * @param pngCompression PNG compression level (0-9)
+     * @return Encoded file bytes
+     */
+    public static byte[] encodeImage(Mat mat, String format, int quality, int pngCompression) {
+        MatOfInt params;
+        switch (format) {
+            case ImageEncoding.JPEG:
+                params = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, quality);
+                break;
+            case ImageEncoding.WEBP:
+                params = new MatOfInt(Imgcodecs.IMWRITE_WEBP_QUALITY, quality);
+                break;
+            default:
+                params = new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, pngCompression);
+                break;
+        }
+
+        MatOfByte buffer = new MatOfByte();
+        try {
+            if (!Imgcodecs.imencode("." + ImageEncoding.extension(format), mat, buffer, params)) {
+                throw new IllegalStateException("Failed to encode image as " + format);
+            }
+            return buffer.toArray();
+        } finally {
+            buffer.release();
+            params.release();
+        }
+    }
+
+    /**
+     * Encode a Mat as PNG through a BufferedImage and ImageIO. This was the
+     * original response path; it is kept for benchmarking against {@link #encodeImage}.
+     * @param mat 8-bit gray or BGR Mat
+     * @return PNG file bytes
+     */
+    public static byte[] matToPngBytesImageIO(Mat mat) throws Exception {
         BufferedImage bufferedImage = matToBufferedImage(mat);
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ImageIO.write(bufferedImage, "png", baos);
-        byte[] imageBytes = baos.toByteArray();
-        return Base64.getEncoder().encodeToString(imageBytes);
+        return baos.toByteArray();
     }
 
     /**
@@ -0,0 +1,42 @@
+package com.imageprocessing.server;
+
+import java.util.Locale;
+
+/**
+ * How an image tool returns its result image, selected per call with the
+ * {@code response_image} argument or server-wide with {@code --response-image}.
+ */
+public enum ResponseImageMode {
+    NONE,       // Text only
+    THUMBNAIL,  // Preview bounded to the thumbnail size, downscaled with INTER_AREA
+    FULL,       // Full resolution image
+    REFERENCE;  // Text only; the result is cached and its key returned
+
+    /** Default longest side of thumbnails in pixels. */
+    public static final int DEFAULT_THUMBNAIL_SIZE = 512;
+
+    /**
+     * Parse a mode name (case-insensitive).
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static ResponseImageMode parse(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid response image mode: " + value
+                + ". Must be 'none', 'thumbnail', 'full' or 'reference'");
+        }
+    }
+
+    /**
+     * Whether the response carries image data.
+     */
+    public boolean includesImage() {
+        return this == THUMBNAIL || this == FULL;
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -29,18 +29,26 @@ public class ServerLauncher {
     private final OpenCVImageProcessor processor;
     private final IntermediateResultCache cache;
     private final TextResultCache textCache;
+    private final DecodedImageCache decodedImages;
 
     private McpAsyncServer asyncServer;
     private McpStatelessSyncServer syncServer;
     private Server jettyServer;
+    private CompositeToolDirectory workflowTools;
     private Thread serverThread;
     private volatile boolean running = false;
 
     public ServerLauncher(McpConfig config, OpenCVImageProcessor processor, IntermediateResultCache cache, TextResultCache textCache) {
+        this(config, processor, cache, textCache, null);
+    }
+
+    public ServerLauncher(McpConfig config, OpenCVImageProcessor processor, IntermediateResultCache cache,
+                          TextResultCache textCache, DecodedImageCache decodedImages) {
         this.config = config;
         this.processor = processor;
         this.cache = cache;
         this.textCache = textCache;
+        this.decodedImages = decodedImages;
     }
 
     /**
@@ -84,22 +92,36 @@ public class ServerLauncher {
 
         // Create all 10 stateless tools using the shared processor and cache
         var tools = ImageProcessingMcpServer.ToolFactory.createAllStatelessTools(cache, textCache);
+        ImageProcessingMcpServer.ToolFactory.setMemoMaxBytes(config.getMemoMaxBytes());
+        ImageProcessingMcpServer.ToolFactory.useDecodedImageCache(decodedImages);
+        ImageProcessingMcpServer.ToolFactory.setResponseEncoding(ImageEncoding.of(
+                config.getImageFormat(), config.getImageQuality(), config.getPngCompression()));
+        ImageProcessingMcpServer.ToolFactory.setResponseImage(config.getResponseImage(), config.getThumbnailSize());
+        ImageProcessingMcpServer.ToolFactory.setAdmission(new AdmissionController(
+                config.getAdmissionPermits(), config.getAdmissionQueue(), config.getAdmissionWaitMs()));
 
         syncServer = McpServer.sync(transport)
                 .serverInfo("image-processing-mcp-server", getVersion())
                 .capabilities(McpSchema.ServerCapabilities.builder()
                         .tools(true)
+                        .resources(false, false)
                         .build())
                 .tools(tools.toArray(new io.modelcontextprotocol.server.McpStatelessServerFeatures.SyncToolSpecification[0]))
+                .resources(ImageProcessingMcpServer.ToolFactory.createAllStatelessResources())
                 .build();
+        if (config.getWorkflowDirectory() != null) {
+            workflowTools = ImageProcessingMcpServer.ToolFactory.watchWorkflowTools(
+                config.getWorkflowDirectory(), syncServer);
+        }
 
-        jettyServer = new Server(config.getHttpPort());
+        jettyServer = ImageProcessingMcpServer.createHttpServer(config.getHttpPort(), config.getHttpMaxThreads());
         ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
         context.setContextPath("/");
         jettyServer.setHandler(context);
 
         ServletHolder servletHolder = new ServletHolder(transport);
         context.addServlet(servletHolder, config.getHttpEndpoint());
+        context.addServlet(new ServletHolder(new BlobServlet(cache)), "/blobs/*");
 
         jettyServer.start();
         logger.info("HTTP server started: {}", getEndpointUrl());
@@ -108,7 +130,7 @@ public class ServerLauncher {
     /**
      * Start stdio server in current thread (called from background thread).
      */
-    private void startStdioServer() throws InterruptedException {
+    private void startStdioServer() throws Exception {
         logger.info("Starting stdio server");
 
         StdioServerTransportProvider transportProvider =
@@ -116,14 +138,27 @@ public class ServerLauncher {
 
         // Create all 10 async tools using the shared processor and cache
         var tools = ImageProcessingMcpServer.ToolFactory.createAllAsyncTools(cache, textCache);
+        ImageProcessingMcpServer.ToolFactory.setMemoMaxBytes(config.getMemoMaxBytes());
+        ImageProcessingMcpServer.ToolFactory.useDecodedImageCache(decodedImages);
+        ImageProcessingMcpServer.ToolFactory.setResponseEncoding(ImageEncoding.of(
+                config.getImageFormat(), config.getImageQuality(), config.getPngCompression()));
+        ImageProcessingMcpServer.ToolFactory.setResponseImage(config.getResponseImage(), config.getThumbnailSize());
+        ImageProcessingMcpServer.ToolFactory.setAdmission(new AdmissionController(
+                config.getAdmissionPermits(), config.getAdmissionQueue(), config.getAdmissionWaitMs()));
 
         asyncServer = McpServer.async(transportProvider)
                 .serverInfo("image-processing-mcp-server", getVersion())
                 .capabilities(McpSchema.ServerCapabilities.builder()
                         .tools(true)
+                        .resources(false, false)
                         .build())
                 .tools(tools.toArray(new io.modelcontextprotocol.server.McpServerFeatures.AsyncToolSpecification[0]))
+                .resources(ImageProcessingMcpServer.ToolFactory.createAllAsyncResources())
                 .build();
+        if (config.getWorkflowDirectory() != null) {
+            workflowTools = ImageProcessingMcpServer.ToolFactory.watchWorkflowTools(
+                config.getWorkflowDirectory(), asyncServer);
+        }
 
         logger.info("Stdio server started");
 
@@ -145,6 +180,11 @@ public class ServerLauncher {
         running = false;
 
         try {
+            if (workflowTools != null) {
+                workflowTools.close();
+                workflowTools = null;
+            }
+
             if (asyncServer != null) {
                 asyncServer.close();
                 asyncServer = null;
@@ -0,0 +1,281 @@
+package com.imageprocessing.server;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgproc.Imgproc;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Processes images too large to hold in memory, one band of rows at a time.
+ *
+ * Each band is read with a halo of extra rows above and below (the operation's
+ * radius), processed as a Mat, cropped back to the band and written into an
+ * uncompressed TIFF that was laid out empty up front, so peak memory depends on
+ * the band size and image width only. Inputs are read through ImageIO with a
+ * source region per band: TIFF inputs read just the band's strips, other formats
+ * decode up to the band on every read (bounded memory, more time).
+ */
+public class StreamingProcessor {
+
+    /** Default number of rows per band. */
+    public static final int DEFAULT_BAND_ROWS = 512;
+
+    private StreamingProcessor() {
+    }
+
+    /**
+     * Summary of a streamed run.
+     */
+    public static class Summary {
+        private final int width;
+        private final int height;
+        private final int bands;
+        private final long peakBandBytes;
+
+        Summary(int width, int height, int bands, long peakBandBytes) {
+            this.width = width;
+            this.height = height;
+            this.bands = bands;
+            this.peakBandBytes = peakBandBytes;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getBands() {
+            return bands;
+        }
+
+        /**
+         * Largest decoded band, including its halo, in bytes.
+         */
+        public long getPeakBandBytes() {
+            return peakBandBytes;
+        }
+    }
+
+    /**
+     * Apply a local operation to an image file band by band and write a TIFF.
+     * @param input Image file readable by ImageIO
+     * @param output TIFF file to write (.tif or .tiff), not the input file
+     * @param halo Radius of the operation in pixels
+     * @param operation Operation applied to each band (with halo); returns a new Mat of the same size
+     * @param bandRows Number of output rows per band
+     * @param cancelled Checked before each band
+     * @return Summary of the run
+     */
+    public static Summary process(Path input, Path output, int halo, TiledExecutor.TileOperation operation,
+                                  int bandRows, BooleanSupplier cancelled) throws IOException {
+        String name = output.getFileName().toString().toLowerCase();
+        if (!name.endsWith(".tif") && !name.endsWith(".tiff")) {
+            throw new IllegalArgumentException("Streamed output must be a TIFF file (.tif or .tiff): " + output);
+        }
+        // The output is deleted on open and on failure, so it must never be the input
+        if (Files.exists(input) && Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IllegalArgumentException("Streamed output must differ from the input: " + output);
+        }
+        int rowsPerBand = Math.max(1, bandRows);
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("tiff").next();
+        try (BandReader reader = new BandReader(input);
+             ImageOutputStream out = openOutput(output)) {
+            writer.setOutput(out);
+            int width = reader.width;
+            int height = reader.height;
+            int bands = 0;
+            long peakBandBytes = 0;
+
+            for (int y = 0; y < height; y += rowsPerBand) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Cancelled");
+                }
+                int rows = Math.min(rowsPerBand, height - y);
+                int y0 = Math.max(0, y - halo);
+                int y1 = Math.min(height, y + rows + halo);
+
+                Mat band = reader.read(y0, y1 - y0);
+                Mat result = null;
+                Mat inner = null;
+                try {
+                    peakBandBytes = Math.max(peakBandBytes, IntermediateResultCache.estimateBytes(band));
+                    result = operation.apply(band);
+                    inner = result.submat(y - y0, y - y0 + rows, 0, width);
+                    BufferedImage image = OpenCVImageProcessor.matToBufferedImage(inner);
+
+                    if (bands == 0) {
+                        // The first band decides the output type; lay out the whole file empty
+                        writer.prepareWriteEmpty(null, ImageTypeSpecifier.createFromRenderedImage(image),
+                            width, height, null, null, writer.getDefaultWriteParam());
+                        writer.endWriteEmpty();
+                        writer.prepareReplacePixels(0, new Rectangle(0, 0, width, height));
+                    }
+                    ImageWriteParam param = writer.getDefaultWriteParam();
+                    param.setDestinationOffset(new Point(0, y));
+                    writer.replacePixels(image.getRaster(), param);
+                    bands++;
+                } finally {
+                    band.release();
+                    if (inner != null) {
+                        inner.release();
+                    }
+                    if (result != null) {
+                        result.release();
+                    }
+                }
+            }
+            if (bands > 0) {
+                writer.endReplacePixels();
+            }
+            return new Summary(width, height, bands, peakBandBytes);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Compute the Otsu threshold of an image file's grayscale histogram, band by band.
+     * @return Threshold to use with BINARY thresholding
+     */
+    public static double otsuThreshold(Path input, int bandRows, BooleanSupplier cancelled) throws IOException {
+        int rowsPerBand = Math.max(1, bandRows);
+        long[] histogram = new long[256];
+
+        try (BandReader reader = new BandReader(input)) {
+            for (int y = 0; y < reader.height; y += rowsPerBand) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Cancelled");
+                }
+                Mat band = reader.read(y, Math.min(rowsPerBand, reader.height - y));
+                Mat gray = OpenCVImageProcessor.colorToGrayscale(band);
+                Mat hist = new Mat();
+                try {
+                    Imgproc.calcHist(List.of(gray), new MatOfInt(0), new Mat(), hist,
+                        new MatOfInt(256), new MatOfFloat(0, 256));
+                    for (int i = 0; i < 256; i++) {
+                        histogram[i] += (long) hist.get(i, 0)[0];
+                    }
+                } finally {
+                    band.release();
+                    gray.release();
+                    hist.release();
+                }
+            }
+        }
+        return otsuThreshold(histogram);
+    }
+
+    /**
+     * Otsu's threshold for a 256-bin histogram: maximizes the between-class variance.
+     */
+    static double otsuThreshold(long[] histogram) {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            total += histogram[i];
+            sum += (double) i * histogram[i];
+        }
+
+        long background = 0;
+        double backgroundSum = 0;
+        double bestVariance = -1;
+        int best = 0;
+        for (int t = 0; t < histogram.length; t++) {
+            background += histogram[t];
+            if (background == 0) {
+                continue;
+            }
+            long foreground = total - background;
+            if (foreground == 0) {
+                break;
+            }
+            backgroundSum += (double) t * histogram[t];
+            double backgroundMean = backgroundSum / background;
+            double foregroundMean = (sum - backgroundSum) / foreground;
+            double variance = (double) background * foreground
+                * (backgroundMean - foregroundMean) * (backgroundMean - foregroundMean);
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    private static ImageOutputStream openOutput(Path output) throws IOException {
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.deleteIfExists(output);
+        ImageOutputStream out = ImageIO.createImageOutputStream(output.toFile());
+        if (out == null) {
+            throw new IOException("Cannot write " + output);
+        }
+        return out;
+    }
+
+    /**
+     * Reads row bands of an image file as 8-bit Mats.
+     */
+    private static class BandReader implements AutoCloseable {
+        final ImageInputStream in;
+        final ImageReader reader;
+        final int width;
+        final int height;
+
+        BandReader(Path input) throws IOException {
+            in = ImageIO.createImageInputStream(input.toFile());
+            if (in == null) {
+                throw new IOException("Cannot read " + input);
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                in.close();
+                throw new IOException("Unsupported image format: " + input);
+            }
+            reader = readers.next();
+            reader.setInput(in);
+            width = reader.getWidth(0);
+            height = reader.getHeight(0);
+        }
+
+        Mat read(int y, int rows) throws IOException {
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, y, width, rows));
+            return OpenCVImageProcessor.bufferedImageToMat(reader.read(0, param));
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.dispose();
+            in.close();
+        }
+    }
+}
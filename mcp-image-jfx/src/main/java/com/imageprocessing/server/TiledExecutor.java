@@ -0,0 +1,161 @@
+package com.imageprocessing.server;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs local (neighborhood) pixel operations on large images tile by tile.
+ *
+ * Each tile is extended by a halo of at least the operation's radius, so every
+ * output pixel sees the same neighborhood as in a whole-image call; only the
+ * tile's inner region is copied to the result, so tiles stitch without seams
+ * and the result matches a whole-image call pixel for pixel.
+ * Tiles run in parallel on a shared ForkJoin pool, which also parallelizes
+ * operations OpenCV runs on a single thread (non-local means denoising).
+ * Images below {@link #MIN_TILED_PIXELS} are processed in one call.
+ */
+public class TiledExecutor {
+
+    /** Side length of the inner region of a tile. */
+    public static final int DEFAULT_TILE_SIZE = 1024;
+
+    /** Images with fewer pixels are not tiled. */
+    public static final long MIN_TILED_PIXELS = 4L * 1024 * 1024;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * A local operation: returns a new Mat of the same size as its input.
+     */
+    @FunctionalInterface
+    public interface TileOperation {
+        Mat apply(Mat tile);
+    }
+
+    private TiledExecutor() {
+    }
+
+    /**
+     * Cancellation check for the calling thread: true once it has been interrupted.
+     */
+    public static BooleanSupplier callerInterrupted() {
+        Thread caller = Thread.currentThread();
+        return caller::isInterrupted;
+    }
+
+    /**
+     * Apply a local operation to an image, tiled when the image is large.
+     * @param src Source image
+     * @param halo Radius of the operation in pixels
+     * @param operation Operation applied to each tile (with halo)
+     * @param cancelled Checked before each tile starts
+     * @return New image with the operation applied
+     * @throws CancellationException If cancelled before all tiles finished
+     */
+    public static Mat apply(Mat src, int halo, TileOperation operation, BooleanSupplier cancelled) {
+        return apply(src, halo, DEFAULT_TILE_SIZE, operation, cancelled);
+    }
+
+    static Mat apply(Mat src, int halo, int tileSize, TileOperation operation, BooleanSupplier cancelled) {
+        // Keep the halo a small fraction of each tile
+        int size = Math.max(tileSize, 8 * halo);
+        if ((long) src.rows() * src.cols() < MIN_TILED_PIXELS || (src.rows() <= size && src.cols() <= size)) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("Cancelled");
+            }
+            return operation.apply(src);
+        }
+
+        List<Rect> tiles = new ArrayList<>();
+        for (int y = 0; y < src.rows(); y += size) {
+            for (int x = 0; x < src.cols(); x += size) {
+                tiles.add(new Rect(x, y, Math.min(size, src.cols() - x), Math.min(size, src.rows() - y)));
+            }
+        }
+
+        ReentrantLock lock = new ReentrantLock();
+        Mat[] dst = new Mat[1];
+        AtomicBoolean failed = new AtomicBoolean();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Rect inner : tiles) {
+            tasks.add(POOL.submit(() -> {
+                if (failed.get()) {
+                    return;
+                }
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Cancelled");
+                }
+                runTile(src, inner, halo, operation, lock, dst);
+            }));
+        }
+
+        RuntimeException error = null;
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                failed.set(true);
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            if (dst[0] != null) {
+                dst[0].release();
+            }
+            throw error;
+        }
+        return dst[0];
+    }
+
+    private static void runTile(Mat src, Rect inner, int halo, TileOperation operation,
+                                ReentrantLock lock, Mat[] dst) {
+        int x0 = Math.max(0, inner.x - halo);
+        int y0 = Math.max(0, inner.y - halo);
+        int x1 = Math.min(src.cols(), inner.x + inner.width + halo);
+        int y1 = Math.min(src.rows(), inner.y + inner.height + halo);
+
+        // Hand the operation a continuous copy: on a ROI view OpenCV reads pixels past
+        // the view's edge and may take a code path that is not bit-exact with a
+        // whole-image call
+        Mat view = src.submat(y0, y1, x0, x1);
+        Mat tile = view.clone();
+        view.release();
+        Mat result = null;
+        try {
+            result = operation.apply(tile);
+            Mat target;
+            lock.lock();
+            try {
+                if (dst[0] == null) {
+                    dst[0] = new Mat(src.rows(), src.cols(), result.type());
+                }
+                target = dst[0];
+            } finally {
+                lock.unlock();
+            }
+            // Tiles write disjoint regions of the result
+            Mat innerResult = result.submat(inner.y - y0, inner.y - y0 + inner.height,
+                inner.x - x0, inner.x - x0 + inner.width);
+            Mat innerTarget = target.submat(inner);
+            innerResult.copyTo(innerTarget);
+            innerResult.release();
+            innerTarget.release();
+        } finally {
+            tile.release();
+            if (result != null) {
+                result.release();
+            }
+        }
+    }
+}
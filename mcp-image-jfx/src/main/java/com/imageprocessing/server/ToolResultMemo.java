@@ -0,0 +1,422 @@
+package com.imageprocessing.server;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Content-addressed memo of image tool results.
+ *
+ * Results are keyed by tool name, the tool's resolved parameters (sorted, so
+ * argument order and omitted defaults do not matter) and the identity of the
+ * input images. Leased cache inputs are identified by a content hash computed
+ * once per cache entry by {@link IntermediateResultCache#contentHash(String)};
+ * inputs from a validated file or URL by their {@link MatLease#source()}, i.e. the
+ * {@link DecodedImageCache}'s key and validator. Only base64 data and
+ * unvalidated URLs are hashed on every call. A hit returns a copy of the
+ * remembered result, so no OpenCV processing happens, and the memo never shares
+ * pixels with callers or the result cache: editing a cached key cannot change a
+ * memoized result.
+ *
+ * Lineage: every memo entry records the cache keys its inputs came from, and
+ * {@link #recordLineage(String, Collection)} records which keys were derived from
+ * which. When a cache key is overwritten or removed, all memo entries that read
+ * that key or anything derived from it are dropped. Lineage that can no longer
+ * reach a memoized result is forgotten when the cache evicts a key or the memo
+ * evicts results, so it does not grow with every key ever written.
+ *
+ * Memoized results hold native memory outside the cache budget, so the memo has
+ * its own byte budget with least-recently-used eviction.
+ */
+public class ToolResultMemo {
+
+    /** Default byte budget for memoized results: 256 MiB. */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * A memoizable computation. The returned Mat is owned by the caller.
+     */
+    @FunctionalInterface
+    public interface Computation {
+        Mat compute() throws Exception;
+    }
+
+    private final IntermediateResultCache cache;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Access-ordered: iteration starts at the least recently used result
+    private final LinkedHashMap<String, MemoEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Cache key -> keys of the results derived from it
+    private final Map<String, Set<String>> derived = new HashMap<>();
+
+    private volatile long maxBytes;
+    private long currentBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long invalidationCount = 0;
+    private long generation = 0;  // bumped by every invalidation
+
+    /**
+     * Create a memo over a cache and subscribe to its key removals.
+     * @param cache Cache whose keys are used as inputs
+     * @param maxBytes Maximum number of pixel bytes held by memoized results (0 disables memoization)
+     */
+    public ToolResultMemo(IntermediateResultCache cache, long maxBytes) {
+        this.cache = cache;
+        this.maxBytes = maxBytes;
+        cache.addRemovalListener(this::invalidate);
+        cache.addEvictionListener(this::forget);
+    }
+
+    /**
+     * Return the memoized result for a tool call, or compute and remember it.
+     * @param tool Tool name
+     * @param params Resolved tool parameters that affect the result
+     * @param inputs Input images in a fixed order
+     * @param computation Computes the result on a miss
+     * @return A Mat owned by the caller (release it or hand it to the cache)
+     */
+    public Mat compute(String tool, Map<String, Object> params, List<MatLease> inputs,
+                       Computation computation) throws Exception {
+        if (maxBytes <= 0) {
+            return computation.compute();
+        }
+
+        long startGeneration;
+        lock.lock();
+        try {
+            startGeneration = generation;
+        } finally {
+            lock.unlock();
+        }
+
+        List<String> inputKeys = new ArrayList<>();
+        String memoKey = memoKey(tool, params, inputs, inputKeys);
+
+        lock.lock();
+        try {
+            MemoEntry entry = entries.get(memoKey);
+            if (entry != null) {
+                hitCount++;
+                return entry.result.clone();
+            }
+            missCount++;
+        } finally {
+            lock.unlock();
+        }
+
+        Mat result = computation.compute();
+        long bytes = IntermediateResultCache.estimateBytes(result);
+        if (bytes > maxBytes) {
+            return result;
+        }
+
+        // The caller owns the result, typically handing it to the cache; keep a copy
+        Mat copy = result.clone();
+        List<Mat> toRelease = new ArrayList<>();
+        lock.lock();
+        try {
+            // Don't remember results whose inputs may have been overwritten while
+            // hashing or computing
+            if (generation != startGeneration) {
+                copy.release();
+                return result;
+            }
+
+            MemoEntry previous = entries.put(memoKey, new MemoEntry(copy, bytes, inputKeys));
+            if (previous != null) {
+                currentBytes -= previous.bytes;
+                toRelease.add(previous.result);
+            }
+            currentBytes += bytes;
+            evictIfNeeded(memoKey, toRelease);
+        } finally {
+            lock.unlock();
+        }
+        toRelease.forEach(Mat::release);
+
+        return result;
+    }
+
+    /**
+     * Record that a cache key was produced from other cache keys, so that
+     * overwriting an upstream key also invalidates results computed downstream.
+     * @param outputKey Key the result was stored under
+     * @param inputKeys Keys the result was computed from
+     */
+    public void recordLineage(String outputKey, Collection<String> inputKeys) {
+        if (outputKey == null || outputKey.isBlank()) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (String inputKey : inputKeys) {
+                if (inputKey != null && !inputKey.isBlank() && !inputKey.equals(outputKey)) {
+                    derived.computeIfAbsent(inputKey, k -> new HashSet<>()).add(outputKey);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop all results that depend on a key or on anything derived from it.
+     * Called by the cache when the key is overwritten or removed.
+     */
+    public void invalidate(String key) {
+        List<Mat> toRelease = new ArrayList<>();
+        lock.lock();
+        try {
+            generation++;
+            Set<String> affected = new HashSet<>();
+            Deque<String> pending = new ArrayDeque<>();
+            pending.add(key);
+            while (!pending.isEmpty()) {
+                String next = pending.poll();
+                if (affected.add(next)) {
+                    Set<String> downstream = derived.get(next);
+                    if (downstream != null) {
+                        pending.addAll(downstream);
+                    }
+                }
+            }
+            // The overwritten key starts a new lineage
+            forgetLineage(key);
+
+            Iterator<MemoEntry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                MemoEntry entry = it.next();
+                for (String inputKey : entry.inputKeys) {
+                    if (affected.contains(inputKey)) {
+                        it.remove();
+                        currentBytes -= entry.bytes;
+                        toRelease.add(entry.result);
+                        invalidationCount++;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        toRelease.forEach(Mat::release);
+    }
+
+    /**
+     * Forget the lineage of a key the cache evicted for good. Memoized results
+     * stay valid, since they are keyed by content; they are just no longer
+     * dropped early when the key is written again.
+     */
+    public void forget(String key) {
+        lock.lock();
+        try {
+            forgetLineage(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop all memoized results.
+     */
+    public void clear() {
+        List<Mat> toRelease = new ArrayList<>();
+        lock.lock();
+        try {
+            entries.values().forEach(entry -> toRelease.add(entry.result));
+            entries.clear();
+            derived.clear();
+            currentBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+        toRelease.forEach(Mat::release);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Change the byte budget. Shrinking it evicts immediately; 0 disables memoization.
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        if (maxBytes <= 0) {
+            clear();
+            return;
+        }
+        List<Mat> toRelease = new ArrayList<>();
+        lock.lock();
+        try {
+            evictIfNeeded(null, toRelease);
+        } finally {
+            lock.unlock();
+        }
+        toRelease.forEach(Mat::release);
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getCurrentBytes() {
+        lock.lock();
+        try {
+            return currentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        lock.lock();
+        try {
+            return hitCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMissCount() {
+        lock.lock();
+        try {
+            return missCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getInvalidationCount() {
+        lock.lock();
+        try {
+            return invalidationCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of keys with recorded downstream keys.
+     */
+    int getLineageSize() {
+        lock.lock();
+        try {
+            return derived.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== INTERNALS ====================
+
+    private String memoKey(String tool, Map<String, Object> params, List<MatLease> inputs,
+                           List<String> inputKeys) {
+        StringBuilder key = new StringBuilder(tool);
+        for (Map.Entry<String, Object> param : new TreeMap<>(params).entrySet()) {
+            key.append('|').append(param.getKey()).append('=').append(param.getValue());
+        }
+        for (MatLease input : inputs) {
+            if (input.source() != null) {
+                key.append("|@").append(input.source());
+                continue;
+            }
+            String hash = null;
+            if (input.key() != null) {
+                hash = cache.contentHash(input.key());
+                if (hash != null) {
+                    inputKeys.add(input.key());
+                }
+            }
+            if (hash == null) {
+                hash = IntermediateResultCache.hashContent(input.mat());
+            }
+            key.append("|#").append(hash);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Remove a key from the lineage graph. Must be called with the lock held.
+     */
+    private void forgetLineage(String key) {
+        derived.remove(key);
+        derived.values().removeIf(downstream -> downstream.remove(key) && downstream.isEmpty());
+    }
+
+    /**
+     * Drop lineage edges that no longer lead to a key read by a memoized result.
+     * Must be called with the lock held.
+     */
+    private void pruneLineage() {
+        // Walk upstream from the keys memoized results read
+        Map<String, Set<String>> upstream = new HashMap<>();
+        derived.forEach((key, downstream) -> downstream.forEach(
+            next -> upstream.computeIfAbsent(next, k -> new HashSet<>()).add(key)));
+        Set<String> needed = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        entries.values().forEach(entry -> pending.addAll(entry.inputKeys));
+        while (!pending.isEmpty()) {
+            String next = pending.poll();
+            if (needed.add(next)) {
+                pending.addAll(upstream.getOrDefault(next, Set.of()));
+            }
+        }
+        derived.values().removeIf(downstream -> {
+            downstream.retainAll(needed);
+            return downstream.isEmpty();
+        });
+    }
+
+    /**
+     * Evict least recently used results until the memo fits its budget.
+     * Must be called with the lock held.
+     */
+    private void evictIfNeeded(String protectedKey, List<Mat> toRelease) {
+        boolean evicted = false;
+        Iterator<Map.Entry<String, MemoEntry>> it = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, MemoEntry> candidate = it.next();
+            if (candidate.getKey().equals(protectedKey)) {
+                continue;
+            }
+            it.remove();
+            currentBytes -= candidate.getValue().bytes;
+            toRelease.add(candidate.getValue().result);
+            evicted = true;
+        }
+        if (evicted) {
+            pruneLineage();
+        }
+    }
+
+    private static class MemoEntry {
+        final Mat result;
+        final long bytes;
+        final List<String> inputKeys;
+
+        MemoEntry(Mat result, long bytes, List<String> inputKeys) {
+            this.result = result;
+            this.bytes = bytes;
+            this.inputKeys = inputKeys;
+        }
+    }
+}
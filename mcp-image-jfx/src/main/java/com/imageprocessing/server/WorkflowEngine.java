@@ -0,0 +1,280 @@
+package com.imageprocessing.server;
+
+import com.imageprocessing.execution.DirectToolExecutor;
+import com.imageprocessing.execution.PipelineResult;
+import com.imageprocessing.ui.model.ToolInstance;
+import com.imageprocessing.ui.model.ToolMetadata;
+import com.imageprocessing.ui.model.ToolRegistry;
+import com.imageprocessing.ui.model.WorkflowSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Headless workflow engine: holds the current workflow and runs it, or any
+ * other tool list or workflow JSON, on the tool executor's thread pools.
+ *
+ * The engine does not depend on the JavaFX toolkit, so the standalone server can
+ * run workflows. The UI is one {@link Listener} among others; listeners are
+ * called on engine threads and must hand work to their own thread themselves.
+ */
+public class WorkflowEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkflowEngine.class);
+
+    /**
+     * Observer of the workflow and its executions. All methods default to no-ops.
+     */
+    public interface Listener {
+
+        /**
+         * The current workflow's tool list was replaced, extended or cleared.
+         * @param tools Snapshot of the new tool list
+         */
+        default void workflowChanged(List<ToolInstance> tools) {
+        }
+
+        /**
+         * Execution of the current workflow started; tool statuses were reset.
+         */
+        default void executionStarted(List<ToolInstance> tools) {
+        }
+
+        /**
+         * A tool of the current workflow finished (successfully or not).
+         * @param finished Number of tools finished so far in this execution
+         */
+        default void toolFinished(ToolInstance tool, int finished, int total) {
+        }
+
+        /**
+         * A display_image tool asked to show a cached image.
+         */
+        default void imageDisplayed(String cacheKey) {
+        }
+
+        default void executionFinished(List<ToolInstance> tools, PipelineResult result) {
+        }
+
+        default void executionFailed(Throwable error) {
+        }
+    }
+
+    private final OpenCVImageProcessor processor;
+    private final IntermediateResultCache cache;
+    private final DecodedImageCache decodedImages;
+    private final DirectToolExecutor.Threads threads =
+        new DirectToolExecutor.Threads(Runtime.getRuntime().availableProcessors());
+    private final DirectToolExecutor executor;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicBoolean executing = new AtomicBoolean();
+    private List<ToolInstance> tools = new ArrayList<>();
+
+    public WorkflowEngine(OpenCVImageProcessor processor, IntermediateResultCache cache,
+                          DecodedImageCache decodedImages) {
+        this.processor = processor;
+        this.cache = cache;
+        this.decodedImages = decodedImages;
+        this.executor = new DirectToolExecutor(processor, cache, decodedImages, threads);
+        this.executor.setDisplayImageCallback(key -> listeners.forEach(listener -> listener.imageDisplayed(key)));
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public IntermediateResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Snapshot of the current workflow.
+     */
+    public List<ToolInstance> getTools() {
+        lock.lock();
+        try {
+            return List.copyOf(tools);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replace the current workflow. Listeners are only notified if the tool list changed.
+     */
+    public void setTools(List<ToolInstance> newTools) {
+        List<ToolInstance> snapshot;
+        lock.lock();
+        try {
+            if (tools.equals(newTools)) {
+                return;
+            }
+            tools = new ArrayList<>(newTools);
+            snapshot = List.copyOf(tools);
+        } finally {
+            lock.unlock();
+        }
+        listeners.forEach(listener -> listener.workflowChanged(snapshot));
+    }
+
+    /**
+     * Append a tool to the current workflow.
+     * @return Position of the new tool (1-based)
+     * @throws IllegalArgumentException if the tool is unknown
+     */
+    public int addTool(String toolName, Map<String, Object> parameters) {
+        ToolInstance instance = createTool(toolName, parameters);
+        List<ToolInstance> snapshot;
+        lock.lock();
+        try {
+            tools.add(instance);
+            snapshot = List.copyOf(tools);
+        } finally {
+            lock.unlock();
+        }
+        listeners.forEach(listener -> listener.workflowChanged(snapshot));
+        return snapshot.size();
+    }
+
+    /**
+     * Remove all tools from the current workflow.
+     * @return Number of tools removed
+     */
+    public int clear() {
+        int count;
+        lock.lock();
+        try {
+            count = tools.size();
+            tools = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        listeners.forEach(listener -> listener.workflowChanged(List.of()));
+        return count;
+    }
+
+    public boolean isExecuting() {
+        return executing.get();
+    }
+
+    /**
+     * Execute the current workflow. Unchanged tools reuse their earlier results.
+     * @return The executed tools and their result; fails if the workflow is empty or already executing
+     */
+    public CompletableFuture<Execution> execute() {
+        List<ToolInstance> snapshot = getTools();
+        if (snapshot.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Workflow is empty"));
+        }
+        if (!executing.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Workflow is already executing"));
+        }
+
+        snapshot.forEach(ToolInstance::reset);
+        listeners.forEach(listener -> listener.executionStarted(snapshot));
+        AtomicInteger finished = new AtomicInteger();
+        CompletableFuture<PipelineResult> future;
+        try {
+            future = executor.executePipeline(snapshot, tool -> {
+                int done = finished.incrementAndGet();
+                listeners.forEach(listener -> listener.toolFinished(tool, done, snapshot.size()));
+            });
+        } catch (RuntimeException e) {
+            executing.set(false);
+            listeners.forEach(listener -> listener.executionFailed(e));
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> {
+            executing.set(false);
+            if (error != null) {
+                logger.error("Workflow execution failed", error);
+                listeners.forEach(listener -> listener.executionFailed(error));
+            } else {
+                listeners.forEach(listener -> listener.executionFinished(snapshot, result));
+            }
+        }).thenApply(result -> new Execution(snapshot, result));
+    }
+
+    /**
+     * Execute a tool list without making it the current workflow. Listeners are
+     * not notified and the run cannot be cancelled with {@link #cancel()}.
+     */
+    public CompletableFuture<PipelineResult> execute(List<ToolInstance> workflow) {
+        if (workflow.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Workflow is empty"));
+        }
+        // A separate executor on the engine's threads, so that its cancel flag and
+        // display callback are its own
+        DirectToolExecutor runner = new DirectToolExecutor(processor, cache, decodedImages, threads);
+        return runner.executePipeline(workflow, null, false);
+    }
+
+    /**
+     * Execute workflow JSON, as saved by the UI, without making it the current workflow.
+     * @return The executed tools and their result
+     */
+    public CompletableFuture<Execution> execute(String workflowJson) {
+        List<ToolInstance> workflow;
+        try {
+            workflow = new WorkflowSerializer().parseWorkflow(workflowJson);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return execute(workflow).thenApply(result -> new Execution(workflow, result));
+    }
+
+    /**
+     * Cancel execution of the current workflow.
+     */
+    public void cancel() {
+        executor.cancel();
+    }
+
+    public void shutdown() {
+        threads.shutdown();
+    }
+
+    private static ToolInstance createTool(String toolName, Map<String, Object> parameters) {
+        ToolMetadata metadata = ToolRegistry.getToolByName(toolName)
+            .orElseThrow(() -> new IllegalArgumentException("Unknown tool: " + toolName));
+        ToolInstance instance = new ToolInstance(metadata);
+        if (parameters != null) {
+            parameters.forEach(instance::setParameter);
+        }
+        return instance;
+    }
+
+    /**
+     * Tools of an execution and its result.
+     */
+    public static class Execution {
+        private final List<ToolInstance> tools;
+        private final PipelineResult result;
+
+        Execution(List<ToolInstance> tools, PipelineResult result) {
+            this.tools = tools;
+            this.result = result;
+        }
+
+        public List<ToolInstance> getTools() {
+            return tools;
+        }
+
+        public PipelineResult getResult() {
+            return result;
+        }
+    }
+}
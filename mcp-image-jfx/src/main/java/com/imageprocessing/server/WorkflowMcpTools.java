@@ -11,7 +11,7 @@ import java.util.List;
 import java.util.Map;
 
 /**
- * MCP tools for managing the JavaFX UI workflow.
+ * MCP tools for managing the server's workflow (shown in the JavaFX UI when embedded).
  * External clients can add tools to the workflow, check status, and trigger execution.
  */
 public class WorkflowMcpTools {
@@ -41,7 +41,7 @@ public class WorkflowMcpTools {
         return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                 McpSchema.Tool.builder()
                         .name("add_to_workflow")
-                        .description("Add a tool to the UI workflow for user review. The user can then execute it from the UI.")
+                        .description("Add a tool to the workflow. In the desktop app the workflow is shown in the UI for user review; execute_workflow runs it.")
                         .inputSchema(McpJsonMapper.createDefault(), schema)
                         .build())
                 .callHandler((exchange, request) -> {
@@ -87,7 +87,7 @@ public class WorkflowMcpTools {
         return new McpStatelessServerFeatures.SyncToolSpecification.Builder().tool(
                 McpSchema.Tool.builder()
                         .name("add_to_workflow")
-                        .description("Add a tool to the UI workflow for user review")
+                        .description("Add a tool to the workflow (shown in the UI for user review in the desktop app)")
                         .inputSchema(McpJsonMapper.createDefault(), schema)
                         .build())
                 .callHandler((exchange, request) -> {
@@ -125,7 +125,7 @@ public class WorkflowMcpTools {
         return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                 McpSchema.Tool.builder()
                         .name("clear_workflow")
-                        .description("Clear all tools from the UI workflow")
+                        .description("Clear all tools from the workflow")
                         .inputSchema(McpJsonMapper.createDefault(), schema)
                         .build())
                 .callHandler((exchange, request) -> {
@@ -155,7 +155,7 @@ public class WorkflowMcpTools {
         return new McpStatelessServerFeatures.SyncToolSpecification.Builder().tool(
                 McpSchema.Tool.builder()
                         .name("clear_workflow")
-                        .description("Clear all tools from the UI workflow")
+                        .description("Clear all tools from the workflow")
                         .inputSchema(McpJsonMapper.createDefault(), schema)
                         .build())
                 .callHandler((exchange, request) -> {
@@ -187,7 +187,7 @@ public class WorkflowMcpTools {
         return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                 McpSchema.Tool.builder()
                         .name("get_workflow_status")
-                        .description("Get the current status of the UI workflow")
+                        .description("Get the current status of the workflow")
                         .inputSchema(McpJsonMapper.createDefault(), schema)
                         .build())
                 .callHandler((exchange, request) -> {
@@ -217,7 +217,7 @@ public class WorkflowMcpTools {
         return new McpStatelessServerFeatures.SyncToolSpecification.Builder().tool(
                 McpSchema.Tool.builder()
                         .name("get_workflow_status")
-                        .description("Get the current status of the UI workflow")
+                        .description("Get the current status of the workflow")
                         .inputSchema(McpJsonMapper.createDefault(), schema)
                         .build())
                 .callHandler((exchange, request) -> {
@@ -242,62 +242,28 @@ public class WorkflowMcpTools {
         String schema = """
             {
               "type": "object",
-              "properties": {}
+              "properties": {
+                "workflow": {
+                  "type": "string",
+                  "description": "Optional workflow JSON as saved by the UI; runs it instead of the current workflow, which is left unchanged"
+                }
+              }
             }
             """;
 
         return new McpServerFeatures.AsyncToolSpecification.Builder().tool(
                 McpSchema.Tool.builder()
                         .name("execute_workflow")
-                        .description("Execute the UI workflow and return all image results displayed in the UI.")
+                        .description("Execute the current workflow (or the given workflow JSON) and return all image results.")
                         .inputSchema(McpJsonMapper.createDefault(), schema)
                         .build())
-                .callHandler((exchange, request) -> {
-                    try {
-                        Map<String, Object> result = WorkflowManager.executeWorkflow().get();
-
-                        // Check for error
-                        if (result.containsKey("error")) {
-                            return Mono.just(new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(new McpSchema.TextContent("Error: " + result.get("error"))))
-                                    .isError(true)
-                                    .build());
-                        }
-
-                        // Build response with status and images
-                        List<McpSchema.Content> contentList = new java.util.ArrayList<>();
-
-                        // Add summary text
-                        StringBuilder summary = new StringBuilder();
-                        summary.append("Workflow execution completed!\n");
-                        summary.append(String.format("- Total tools: %d\n", result.get("totalTools")));
-                        summary.append(String.format("- Completed: %d\n", result.get("completed")));
-                        summary.append(String.format("- Errors: %d\n", result.get("errors")));
-                        summary.append(String.format("- Images generated: %d\n", result.get("imageCount")));
-                        contentList.add(new McpSchema.TextContent(summary.toString()));
-
-                        // Add all images
-                        @SuppressWarnings("unchecked")
-                        List<Map<String, String>> images = (List<Map<String, String>>) result.get("images");
-                        if (images != null) {
-                            for (Map<String, String> img : images) {
-                                // Extract base64 data from data URI
-                                String dataUri = img.get("data");
-                                String base64Data = dataUri.substring(dataUri.indexOf(",") + 1);
-                                contentList.add(new McpSchema.ImageContent(null, base64Data, "image/png"));
-                            }
-                        }
-
-                        return Mono.just(new McpSchema.CallToolResult.Builder()
-                                .content(contentList)
-                                .build());
-                    } catch (Exception e) {
-                        return Mono.just(new McpSchema.CallToolResult.Builder()
+                // Wait for the workflow without blocking the transport thread
+                .callHandler((exchange, request) -> Mono.fromFuture(execute(request.arguments()))
+                        .map(WorkflowMcpTools::workflowResult)
+                        .onErrorResume(e -> Mono.just(new McpSchema.CallToolResult.Builder()
                                 .content(List.of(new McpSchema.TextContent("Error: " + e.getMessage())))
                                 .isError(true)
-                                .build());
-                    }
-                })
+                                .build())))
                 .build();
     }
 
@@ -305,55 +271,24 @@ public class WorkflowMcpTools {
         String schema = """
             {
               "type": "object",
-              "properties": {}
+              "properties": {
+                "workflow": {
+                  "type": "string",
+                  "description": "Optional workflow JSON as saved by the UI; runs it instead of the current workflow, which is left unchanged"
+                }
+              }
             }
             """;
 
         return new McpStatelessServerFeatures.SyncToolSpecification.Builder().tool(
                 McpSchema.Tool.builder()
                         .name("execute_workflow")
-                        .description("Execute the UI workflow and return all image results displayed in the UI.")
+                        .description("Execute the current workflow (or the given workflow JSON) and return all image results.")
                         .inputSchema(McpJsonMapper.createDefault(), schema)
                         .build())
                 .callHandler((exchange, request) -> {
                     try {
-                        Map<String, Object> result = WorkflowManager.executeWorkflow().get();
-
-                        // Check for error
-                        if (result.containsKey("error")) {
-                            return new McpSchema.CallToolResult.Builder()
-                                    .content(List.of(new McpSchema.TextContent("Error: " + result.get("error"))))
-                                    .isError(true)
-                                    .build();
-                        }
-
-                        // Build response with status and images
-                        List<McpSchema.Content> contentList = new java.util.ArrayList<>();
-
-                        // Add summary text
-                        StringBuilder summary = new StringBuilder();
-                        summary.append("Workflow execution completed!\n");
-                        summary.append(String.format("- Total tools: %d\n", result.get("totalTools")));
-                        summary.append(String.format("- Completed: %d\n", result.get("completed")));
-                        summary.append(String.format("- Errors: %d\n", result.get("errors")));
-                        summary.append(String.format("- Images generated: %d\n", result.get("imageCount")));
-                        contentList.add(new McpSchema.TextContent(summary.toString()));
-
-                        // Add all images
-                        @SuppressWarnings("unchecked")
-                        List<Map<String, String>> images = (List<Map<String, String>>) result.get("images");
-                        if (images != null) {
-                            for (Map<String, String> img : images) {
-                                // Extract base64 data from data URI
-                                String dataUri = img.get("data");
-                                String base64Data = dataUri.substring(dataUri.indexOf(",") + 1);
-                                contentList.add(new McpSchema.ImageContent(null, base64Data, "image/png"));
-                            }
-                        }
-
-                        return new McpSchema.CallToolResult.Builder()
-                                .content(contentList)
-                                .build();
+                        return workflowResult(execute(request.arguments()).get());
                     } catch (Exception e) {
                         return new McpSchema.CallToolResult.Builder()
                                 .content(List.of(new McpSchema.TextContent("Error: " + e.getMessage())))
@@ -363,4 +298,60 @@ public class WorkflowMcpTools {
                 })
                 .build();
     }
+
+    /**
+     * Run the workflow JSON in the arguments, or the current workflow if there is none.
+     */
+    private static java.util.concurrent.CompletableFuture<Map<String, Object>> execute(Map<String, Object> args) {
+        Object workflow = args != null ? args.get("workflow") : null;
+        return workflow != null && !workflow.toString().isBlank()
+                ? WorkflowManager.executeWorkflow(workflow.toString())
+                : WorkflowManager.executeWorkflow();
+    }
+
+    /**
+     * Build the execute_workflow result: a summary followed by every image the
+     * workflow produced.
+     */
+    private static McpSchema.CallToolResult workflowResult(Map<String, Object> result) {
+        // Check for error
+        if (result.containsKey("error")) {
+            return new McpSchema.CallToolResult.Builder()
+                    .content(List.of(new McpSchema.TextContent("Error: " + result.get("error"))))
+                    .isError(true)
+                    .build();
+        }
+
+        // Build response with status and images
+        List<McpSchema.Content> contentList = new java.util.ArrayList<>();
+
+        // Add summary text
+        StringBuilder summary = new StringBuilder();
+        summary.append("Workflow execution completed!\n");
+        summary.append(String.format("- Total tools: %d\n", result.get("totalTools")));
+        summary.append(String.format("- Completed: %d\n", result.get("completed")));
+        summary.append(String.format("- Errors: %d\n", result.get("errors")));
+        if (result.get("reused") instanceof Integer && (Integer) result.get("reused") > 0) {
+            summary.append(String.format("- Reused unchanged: %d\n", result.get("reused")));
+        }
+        summary.append(String.format("- Images generated: %d\n", result.get("imageCount")));
+        contentList.add(new McpSchema.TextContent(summary.toString()));
+
+        // Add all images
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> images = (List<Map<String, String>>) result.get("images");
+        if (images != null) {
+            for (Map<String, String> img : images) {
+                // Split the data URI into MIME type and base64 data
+                String dataUri = img.get("data");
+                String mimeType = dataUri.substring("data:".length(), dataUri.indexOf(';'));
+                String base64Data = dataUri.substring(dataUri.indexOf(",") + 1);
+                contentList.add(new McpSchema.ImageContent(null, base64Data, mimeType));
+            }
+        }
+
+        return new McpSchema.CallToolResult.Builder()
+                .content(contentList)
+                .build();
+    }
 }
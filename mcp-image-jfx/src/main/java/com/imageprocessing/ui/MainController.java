@@ -1,14 +1,17 @@
 package com.imageprocessing.ui;
 
 import com.imageprocessing.server.*;
-import com.imageprocessing.execution.DirectToolExecutor;
+import com.imageprocessing.execution.LivePreview;
+import com.imageprocessing.execution.PipelineResult;
 import com.imageprocessing.ui.components.*;
 import com.imageprocessing.ui.model.*;
 import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.control.Alert;
 import javafx.stage.FileChooser;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -29,10 +32,13 @@ public class MainController {
     // Embedded server components
     private McpConfig mcpConfig;
     private ServerLauncher serverLauncher;
-    private DirectToolExecutor directExecutor;
+    private WorkflowEngine workflowEngine;
     private OpenCVImageProcessor processor;
     private IntermediateResultCache cache;
     private TextResultCache textCache;
+    private DecodedImageCache decodedImages;
+    private LivePreview livePreview;
+    private ToolInstance selectedTool;
 
     private boolean mcpServerRunning = false;
     private boolean mcpServerEnabled = true;
@@ -84,24 +90,28 @@ public class MainController {
 
             // Initialize shared components
             this.processor = new OpenCVImageProcessor();
-            this.cache = new IntermediateResultCache();
+            this.cache = new IntermediateResultCache(mcpConfig != null
+                    ? mcpConfig.getCacheMaxBytes()
+                    : IntermediateResultCache.DEFAULT_MAX_BYTES);
+            if (mcpConfig != null && mcpConfig.getSpillDirectory() != null) {
+                cache.setSpillStore(new MatSpillStore(mcpConfig.getSpillDirectory(), mcpConfig.getSpillMaxBytes()));
+            }
             this.textCache = new TextResultCache();
-            this.directExecutor = new DirectToolExecutor(processor, cache);
-
-            // Connect WorkflowManager to this controller for MCP access
-            WorkflowManager.setMainController(this);
-            WorkflowManager.setCache(cache);
+            this.decodedImages = new DecodedImageCache(mcpConfig != null
+                    ? mcpConfig.getDecodeCacheMaxBytes()
+                    : DecodedImageCache.DEFAULT_MAX_BYTES);
+            this.workflowEngine = new WorkflowEngine(processor, cache, decodedImages);
+            workflowEngine.setTools(new ArrayList<>(workflowModel.getToolInstances()));
+            workflowEngine.addListener(new EngineObserver());
+            this.livePreview = new LivePreview(processor, cache, decodedImages,
+                frame -> Platform.runLater(() -> showLivePreviewFrame(frame)));
+
+            // MCP workflow tools use the same engine; the UI observes it
+            WorkflowManager.setEngine(workflowEngine);
 
             // Connect image preview panel to cache
             this.imagePreviewPanel.setCache(cache);
 
-            // Set callback for display_image tool
-            this.directExecutor.setDisplayImageCallback(cacheKey -> {
-                Platform.runLater(() -> {
-                    imagePreviewPanel.addImageResult(cacheKey, null);
-                });
-            });
-
             // Only start MCP server if enabled and config is provided
             if (!mcpServerEnabled) {
                 statusBar.setStatus("MCP server disabled");
@@ -116,7 +126,7 @@ public class MainController {
             }
 
             // Start embedded MCP server in background
-            this.serverLauncher = new ServerLauncher(mcpConfig, processor, cache, textCache);
+            this.serverLauncher = new ServerLauncher(mcpConfig, processor, cache, textCache, decodedImages);
             serverLauncher.startAsync().thenAccept(success -> {
                 Platform.runLater(() -> {
                     if (success) {
@@ -143,6 +153,21 @@ public class MainController {
             parameterEditorPane.refreshAvailableKeys();
             parameterEditorPane.editTool(tool);
             statusBar.setStatus("Editing: " + tool.getName());
+            selectedTool = tool;
+            requestLivePreview();
+        });
+
+        // Parameter edits -> refresh live preview
+        parameterEditorPane.setOnParameterChanged(this::requestLivePreview);
+        controlBar.livePreviewProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal) {
+                requestLivePreview();
+            } else {
+                if (livePreview != null) {
+                    livePreview.stop();
+                }
+                imagePreviewPanel.hideLivePreview();
+            }
         });
 
         // Pipeline changes -> update status
@@ -159,19 +184,22 @@ public class MainController {
         controlBar.setOnSaveWorkflowAction(this::saveWorkflow);
         controlBar.setOnLoadWorkflowAction(this::loadWorkflow);
 
-        // Listen to workflow changes
+        // Listen to workflow changes; UI edits become the engine's workflow
         workflowModel.getToolInstances().addListener(
             (javafx.collections.ListChangeListener.Change<? extends ToolInstance> c) -> {
                 while (c.next()) {
                     statusBar.updateStats(workflowModel);
                 }
+                if (workflowEngine != null) {
+                    workflowEngine.setTools(new ArrayList<>(workflowModel.getToolInstances()));
+                }
             }
         );
     }
 
     /**
-     * Execute the entire pipeline using direct execution.
-     * Can be called from UI button or MCP.
+     * Execute the workflow on the workflow engine (from the UI button).
+     * MCP clients run the same engine through {@link WorkflowManager}.
      * @return CompletableFuture that completes when pipeline execution finishes
      */
     public CompletableFuture<Void> executePipeline() {
@@ -183,9 +211,9 @@ public class MainController {
             return CompletableFuture.completedFuture(null);
         }
 
-        if (directExecutor == null) {
-            System.out.println("Direct executor is null, showing warning");
-            showWarning("System Not Ready", "Direct executor not initialized. Please wait a moment and try again.");
+        if (workflowEngine == null) {
+            System.out.println("Workflow engine is null, showing warning");
+            showWarning("System Not Ready", "Workflow engine not initialized. Please wait a moment and try again.");
             return CompletableFuture.completedFuture(null);
         }
 
@@ -197,90 +225,47 @@ public class MainController {
 
         System.out.println("Starting pipeline execution with " + workflowModel.size() + " tools");
 
-        // Reset all tools to pending
-        workflowModel.resetAll();
-
-        // Clear previous image results
-        imagePreviewPanel.clear();
-
-        // Start execution
-        isExecuting = true;
-        controlBar.setExecuting(true);
-        statusBar.setStatus("Executing pipeline...");
-        statusBar.showProgress(0);
-
-        // Execute pipeline using direct execution
-        int total = workflowModel.size();
-        System.out.println("[MainController] Calling directExecutor.executePipeline() with " + total + " tools");
-
-        return directExecutor.executePipeline(
-            workflowModel.getToolInstances(),
-            tool -> {
-                // Progress callback - runs on background thread, use Platform.runLater
-                Platform.runLater(() -> {
-                    int index = workflowModel.getToolInstances().indexOf(tool);
-                    if (index >= 0) {
-                        System.out.println("[MainController] Progress callback: Tool " + (index + 1) + "/" + total + " - " + tool.getName() + " - Status: " + tool.getStatus());
-                        statusBar.setStatus("Executing: " + tool.getName());
-                        statusBar.showProgress((double) (index + 1) / total);
-                    }
-
-                    // Add image result if tool completed successfully and has output_key
-                    if (tool.getStatus() == ToolInstance.Status.COMPLETED) {
-                        String outputKey = (String) tool.getParameter("output_key");
-                        String outputPath = (String) tool.getParameter("output_path");
-
-                        if (outputKey != null && !outputKey.isBlank()) {
-                            System.out.println("[MainController] Adding image result to preview panel: " + outputKey);
-                            imagePreviewPanel.addImageResult(outputKey, outputPath);
-                        }
-                    }
-                });
-            }
-        ).thenAccept(result -> {
-            System.out.println("[MainController] Pipeline execution completed callback invoked");
-            Platform.runLater(() -> {
-                System.out.println("[MainController] Updating UI after pipeline completion");
-                isExecuting = false;
-                controlBar.setExecuting(false);
-                statusBar.hideProgress();
-
-                if (result.hasErrors()) {
-                    System.out.println("[MainController] Pipeline completed with errors: " + result.getErrors());
-                    statusBar.showError("Pipeline completed with errors");
-                    showError("Execution Errors", result.getErrors());
-                } else if (result.isCancelled()) {
-                    System.out.println("[MainController] Pipeline was cancelled");
-                    statusBar.setStatus("Pipeline cancelled");
-                } else {
-                    System.out.println("[MainController] Pipeline completed successfully");
-                    statusBar.showSuccess("Pipeline completed successfully!");
-                }
-
-                resetStatusAfterDelay(5000);
-            });
-        }).exceptionally(throwable -> {
-            System.err.println("[MainController] Pipeline execution exception: " + throwable.getMessage());
-            throwable.printStackTrace();
-            Platform.runLater(() -> {
-                isExecuting = false;
-                controlBar.setExecuting(false);
-                statusBar.hideProgress();
-                statusBar.showError("Pipeline execution failed");
-                showError("Execution Error", "Pipeline execution failed: " + throwable.getMessage());
-                resetStatusAfterDelay(5000);
-            });
+        // Progress and results reach the UI through the EngineObserver
+        return workflowEngine.execute().<Void>thenApply(execution -> null).exceptionally(throwable -> {
+            System.err.println("[MainController] Pipeline execution not started: " + throwable.getMessage());
             return null;
         });
     }
 
+    /**
+     * Preview the selected tool on a downscaled input, if live preview is on.
+     * Calls within the debounce interval are coalesced by {@link LivePreview}.
+     */
+    private void requestLivePreview() {
+        if (livePreview == null || !controlBar.livePreviewProperty().get() || selectedTool == null) {
+            return;
+        }
+        int index = workflowModel.getToolInstances().indexOf(selectedTool);
+        if (index >= 0) {
+            livePreview.request(workflowModel.getToolInstances(), index);
+        }
+    }
+
+    private void showLivePreviewFrame(LivePreview.Frame frame) {
+        if (!controlBar.livePreviewProperty().get()) {
+            return;
+        }
+        if (frame.getError() != null) {
+            imagePreviewPanel.showLivePreview(null, "Preview of " + frame.getToolName() + " failed: " + frame.getError());
+            return;
+        }
+        imagePreviewPanel.showLivePreview(SwingFXUtils.toFXImage(frame.getImage(), null),
+            String.format("Preview: %s (%dx%d, %d ms)", frame.getToolName(),
+                frame.getImage().getWidth(), frame.getImage().getHeight(), frame.getMillis()));
+    }
+
     /**
      * Stop pipeline execution.
      */
     private void stopExecution() {
         isExecuting = false;
-        if (directExecutor != null) {
-            directExecutor.cancel();
+        if (workflowEngine != null) {
+            workflowEngine.cancel();
         }
         controlBar.setExecuting(false);
         statusBar.setStatus("Execution stopped");
@@ -468,17 +453,114 @@ public class MainController {
      * Cleanup resources on application shutdown.
      */
     public void shutdown() {
+        if (livePreview != null) {
+            livePreview.shutdown();
+        }
         if (serverLauncher != null) {
             serverLauncher.shutdown();
         }
-        if (directExecutor != null) {
-            directExecutor.shutdown();
+        if (workflowEngine != null) {
+            workflowEngine.shutdown();
         }
         if (cache != null) {
             cache.clear();
         }
     }
 
+    /**
+     * Mirrors the workflow engine in the UI: tool list, progress, thumbnails and
+     * completion status. Engine callbacks arrive on engine threads.
+     */
+    private class EngineObserver implements WorkflowEngine.Listener {
+
+        @Override
+        public void workflowChanged(List<ToolInstance> tools) {
+            Platform.runLater(() -> {
+                // Changes made by MCP clients; UI edits are already in the model
+                if (!workflowModel.getToolInstances().equals(tools)) {
+                    workflowModel.getToolInstances().setAll(tools);
+                }
+            });
+        }
+
+        @Override
+        public void executionStarted(List<ToolInstance> tools) {
+            Platform.runLater(() -> {
+                // Clear previous image results
+                imagePreviewPanel.clear();
+                isExecuting = true;
+                controlBar.setExecuting(true);
+                statusBar.setStatus("Executing pipeline...");
+                statusBar.showProgress(0);
+            });
+        }
+
+        @Override
+        public void toolFinished(ToolInstance tool, int finished, int total) {
+            Platform.runLater(() -> {
+                System.out.println("[MainController] Progress callback: " + finished + "/" + total + " - " + tool.getName() + " - Status: " + tool.getStatus());
+                statusBar.setStatus("Executing: " + tool.getName());
+                statusBar.showProgress((double) finished / total);
+
+                // Add image result if tool completed successfully and has output_key
+                if (tool.getStatus() == ToolInstance.Status.COMPLETED) {
+                    String outputKey = (String) tool.getParameter("output_key");
+                    String outputPath = (String) tool.getParameter("output_path");
+
+                    if (outputKey != null && !outputKey.isBlank()) {
+                        System.out.println("[MainController] Adding image result to preview panel: " + outputKey);
+                        imagePreviewPanel.addImageResult(outputKey, outputPath);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void imageDisplayed(String cacheKey) {
+            Platform.runLater(() -> imagePreviewPanel.addImageResult(cacheKey, null));
+        }
+
+        @Override
+        public void executionFinished(List<ToolInstance> tools, PipelineResult result) {
+            Platform.runLater(() -> {
+                System.out.println("[MainController] Updating UI after pipeline completion");
+                isExecuting = false;
+                controlBar.setExecuting(false);
+                statusBar.hideProgress();
+
+                if (result.hasErrors()) {
+                    System.out.println("[MainController] Pipeline completed with errors: " + result.getErrors());
+                    statusBar.showError("Pipeline completed with errors");
+                    showError("Execution Errors", result.getErrors());
+                } else if (result.isCancelled()) {
+                    System.out.println("[MainController] Pipeline was cancelled");
+                    statusBar.setStatus("Pipeline cancelled");
+                } else {
+                    System.out.println("[MainController] Pipeline completed successfully");
+                    statusBar.showSuccess(result.getReusedCount() > 0
+                        ? "Pipeline completed successfully! (" + result.getReusedCount() + " unchanged tools reused)"
+                        : "Pipeline completed successfully!");
+                }
+
+                resetStatusAfterDelay(5000);
+            });
+        }
+
+        @Override
+        public void executionFailed(Throwable throwable) {
+            System.err.println("[MainController] Pipeline execution exception: " + throwable.getMessage());
+            throwable.printStackTrace();
+            Platform.runLater(() -> {
+                isExecuting = false;
+                controlBar.setExecuting(false);
+                statusBar.hideProgress();
+                statusBar.showError("Pipeline execution failed");
+                showError("Execution Error", "Pipeline execution failed: " + throwable.getMessage());
+                resetStatusAfterDelay(5000);
+            });
+        }
+    }
+
     // Getters for UI components
     public ToolCollectionPane getToolCollectionPane() {
         return toolCollectionPane;
@@ -1,6 +1,7 @@
 package com.imageprocessing.ui;
 
 import com.imageprocessing.server.McpConfig;
+import com.imageprocessing.server.ResponseImageMode;
 import picocli.CommandLine;
 
 import java.nio.file.Path;
@@ -67,6 +68,108 @@ public class McpCliOptions {
     )
     private String mcpLogDir;
 
+    @CommandLine.Option(
+        names = {"--cache-max-mb"},
+        description = "Native memory budget for cached images in MB, 0 for unbounded (default: ${DEFAULT-VALUE})",
+        defaultValue = "2048"
+    )
+    private long cacheMaxMb;
+
+    @CommandLine.Option(
+        names = {"--cache-spill-dir"},
+        description = "Directory for spilling evicted cache entries to disk (default: disabled)"
+    )
+    private String cacheSpillDir;
+
+    @CommandLine.Option(
+        names = {"--cache-spill-max-mb"},
+        description = "Disk budget for spilled cache entries in MB, 0 for unbounded (default: ${DEFAULT-VALUE})",
+        defaultValue = "8192"
+    )
+    private long cacheSpillMaxMb;
+
+    @CommandLine.Option(
+        names = {"--memo-max-mb"},
+        description = "Memory budget for memoized tool results in MB, 0 to disable (default: ${DEFAULT-VALUE})",
+        defaultValue = "256"
+    )
+    private long memoMaxMb;
+
+    @CommandLine.Option(
+        names = {"--image-format"},
+        description = "Response image format preference, e.g. webp,jpeg,png (default: ${DEFAULT-VALUE})",
+        defaultValue = "png"
+    )
+    private String imageFormat;
+
+    @CommandLine.Option(
+        names = {"--image-quality"},
+        description = "JPEG/WebP quality for response images, 1-100 (default: ${DEFAULT-VALUE})",
+        defaultValue = "90"
+    )
+    private int imageQuality;
+
+    @CommandLine.Option(
+        names = {"--png-compression"},
+        description = "PNG compression level for response images, 0-9 (default: ${DEFAULT-VALUE})",
+        defaultValue = "3"
+    )
+    private int pngCompression;
+
+    @CommandLine.Option(
+        names = {"--response-image"},
+        description = "Default response image mode: none, thumbnail, full or reference (default: ${DEFAULT-VALUE})",
+        defaultValue = "full"
+    )
+    private String responseImage;
+
+    @CommandLine.Option(
+        names = {"--thumbnail-size"},
+        description = "Longest side of thumbnail response images in pixels (default: ${DEFAULT-VALUE})",
+        defaultValue = "512"
+    )
+    private int thumbnailSize;
+
+    @CommandLine.Option(
+        names = {"--decode-cache-max-mb"},
+        description = "Memory budget for decoded path/URL inputs in MB, 0 to disable (default: ${DEFAULT-VALUE})",
+        defaultValue = "512"
+    )
+    private long decodeCacheMaxMb;
+
+    @CommandLine.Option(
+        names = {"--http-max-threads"},
+        description = "Maximum number of HTTP request threads (default: ${DEFAULT-VALUE})",
+        defaultValue = "200"
+    )
+    private int httpMaxThreads;
+
+    @CommandLine.Option(
+        names = {"--admission-permits"},
+        description = "Permit budget for concurrent tool calls, weighted by tool cost; 0 disables (default: two per CPU)"
+    )
+    private Integer admissionPermits;
+
+    @CommandLine.Option(
+        names = {"--admission-queue"},
+        description = "Maximum number of tool calls waiting for permits (default: ${DEFAULT-VALUE})",
+        defaultValue = "64"
+    )
+    private int admissionQueue;
+
+    @CommandLine.Option(
+        names = {"--admission-wait-ms"},
+        description = "Maximum time a tool call waits for permits in milliseconds (default: ${DEFAULT-VALUE})",
+        defaultValue = "30000"
+    )
+    private long admissionWaitMs;
+
+    @CommandLine.Option(
+        names = {"--workflow-dir"},
+        description = "Directory of saved workflows to expose as tools, reloaded when files change (default: none)"
+    )
+    private String workflowDir;
+
     /**
      * Parse command-line arguments and return CLI options.
      * Returns null if help/version was requested or parsing failed.
@@ -124,6 +227,29 @@ public class McpCliOptions {
         builder.captureServerLogs(mcpLogEnabled);
         builder.logDirectory(Paths.get(mcpLogDir));
 
+        // Set cache configuration
+        builder.cacheMaxBytes(cacheMaxMb * 1024 * 1024);
+        if (cacheSpillDir != null && !cacheSpillDir.isBlank()) {
+            builder.spillDirectory(Paths.get(cacheSpillDir));
+        }
+        builder.spillMaxBytes(cacheSpillMaxMb * 1024 * 1024);
+        builder.memoMaxBytes(memoMaxMb * 1024 * 1024);
+        builder.imageFormat(imageFormat);
+        builder.imageQuality(imageQuality);
+        builder.pngCompression(pngCompression);
+        builder.responseImage(ResponseImageMode.parse(responseImage));
+        builder.thumbnailSize(thumbnailSize);
+        builder.decodeCacheMaxBytes(decodeCacheMaxMb * 1024 * 1024);
+        builder.httpMaxThreads(httpMaxThreads);
+        if (admissionPermits != null) {
+            builder.admissionPermits(admissionPermits);
+        }
+        builder.admissionQueue(admissionQueue);
+        builder.admissionWaitMs(admissionWaitMs);
+        if (workflowDir != null && !workflowDir.isBlank()) {
+            builder.workflowDirectory(Paths.get(workflowDir));
+        }
+
         return builder.build();
     }
 
@@ -157,6 +283,66 @@ public class McpCliOptions {
         return mcpLogDir;
     }
 
+    public long getCacheMaxMb() {
+        return cacheMaxMb;
+    }
+
+    public String getCacheSpillDir() {
+        return cacheSpillDir;
+    }
+
+    public long getCacheSpillMaxMb() {
+        return cacheSpillMaxMb;
+    }
+
+    public long getMemoMaxMb() {
+        return memoMaxMb;
+    }
+
+    public String getImageFormat() {
+        return imageFormat;
+    }
+
+    public int getImageQuality() {
+        return imageQuality;
+    }
+
+    public int getPngCompression() {
+        return pngCompression;
+    }
+
+    public String getResponseImage() {
+        return responseImage;
+    }
+
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    public long getDecodeCacheMaxMb() {
+        return decodeCacheMaxMb;
+    }
+
+    public int getHttpMaxThreads() {
+        return httpMaxThreads;
+    }
+
+    public Integer getAdmissionPermits() {
+        return admissionPermits;
+    }
+
+    public int getAdmissionQueue() {
+        return admissionQueue;
+    }
+
+    public long getAdmissionWaitMs() {
+        return admissionWaitMs;
+    }
+
+    public String getWorkflowDir() {
+        return workflowDir;
+    }
+
     @Override
     public String toString() {
         return String.format("McpCliOptions{enabled=%s, mode=%s, host=%s, port=%d, endpoint=%s}",
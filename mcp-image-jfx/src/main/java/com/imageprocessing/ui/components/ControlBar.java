@@ -21,6 +21,7 @@ public class ControlBar extends HBox {
     private final Button launchServerButton;
     private final Button settingsButton;
     private final Button themeToggleButton;
+    private final ToggleButton livePreviewButton;
     private final Circle statusIndicator;
     private final Label statusLabel;
     private final BooleanProperty serverRunning;
@@ -59,6 +60,11 @@ public class ControlBar extends HBox {
             }
         });
 
+        // Live preview toggle
+        livePreviewButton = new ToggleButton("Live Preview");
+        livePreviewButton.getStyleClass().add("secondary-button");
+        livePreviewButton.setTooltip(new Tooltip("Preview the selected tool on a downscaled image while editing"));
+
         // Separator
         Separator sep1 = new Separator();
         sep1.setOrientation(javafx.geometry.Orientation.VERTICAL);
@@ -141,6 +147,7 @@ public class ControlBar extends HBox {
         this.getChildren().addAll(
             playButton,
             stopButton,
+            livePreviewButton,
             sep1,
             statusBox,
             sep2,
@@ -213,6 +220,13 @@ public class ControlBar extends HBox {
         return executing;
     }
 
+    /**
+     * Whether live preview is switched on.
+     */
+    public BooleanProperty livePreviewProperty() {
+        return livePreviewButton.selectedProperty();
+    }
+
     public void setServerRunning(boolean running) {
         serverRunning.set(running);
     }
@@ -3,6 +3,8 @@ package com.imageprocessing.ui.components;
 import com.imageprocessing.server.IntermediateResultCache;
 import javafx.geometry.Insets;
 import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.Priority;
@@ -17,6 +19,9 @@ public class ImagePreviewPanel extends VBox {
     private final ScrollPane scrollPane;
     private final FlowPane thumbnailGrid;
     private final Label titleLabel;
+    private final VBox livePreviewBox;
+    private final Label livePreviewLabel;
+    private final ImageView livePreviewView;
 
     // Cache reference for loading images
     private IntermediateResultCache cache;
@@ -38,8 +43,20 @@ public class ImagePreviewPanel extends VBox {
         scrollPane.setFitToWidth(true);
         scrollPane.getStyleClass().add("preview-scroll");
 
+        // Live preview, hidden until the first preview frame
+        livePreviewLabel = new Label();
+        livePreviewLabel.getStyleClass().add("preview-caption");
+        livePreviewView = new ImageView();
+        livePreviewView.setPreserveRatio(true);
+        livePreviewView.setFitHeight(300);
+        livePreviewView.fitWidthProperty().bind(this.widthProperty().subtract(20));
+        livePreviewBox = new VBox(5, livePreviewLabel, livePreviewView);
+        livePreviewBox.setPadding(new Insets(10));
+        livePreviewBox.setVisible(false);
+        livePreviewBox.setManaged(false);
+
         // Layout
-        this.getChildren().addAll(titleLabel, scrollPane);
+        this.getChildren().addAll(titleLabel, livePreviewBox, scrollPane);
         VBox.setVgrow(scrollPane, Priority.ALWAYS);
         this.getStyleClass().add("image-preview-panel");
     }
@@ -71,6 +88,29 @@ public class ImagePreviewPanel extends VBox {
         thumbnailGrid.getChildren().clear();
     }
 
+    /**
+     * Show a live preview frame above the thumbnails.
+     * @param image The preview image, or null to keep the previous frame (e.g. on errors)
+     * @param caption Text shown above the image
+     */
+    public void showLivePreview(Image image, String caption) {
+        if (image != null) {
+            livePreviewView.setImage(image);
+        }
+        livePreviewLabel.setText(caption);
+        livePreviewBox.setVisible(true);
+        livePreviewBox.setManaged(true);
+    }
+
+    /**
+     * Hide the live preview.
+     */
+    public void hideLivePreview() {
+        livePreviewBox.setVisible(false);
+        livePreviewBox.setManaged(false);
+        livePreviewView.setImage(null);
+    }
+
     /**
      * Update the title label text.
      * @param title The new title text
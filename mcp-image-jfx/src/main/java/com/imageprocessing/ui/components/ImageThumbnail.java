@@ -1,6 +1,7 @@
 package com.imageprocessing.ui.components;
 
 import com.imageprocessing.server.IntermediateResultCache;
+import com.imageprocessing.server.MatLease;
 import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Pos;
@@ -87,13 +88,17 @@ public class ImageThumbnail extends VBox {
         CompletableFuture.runAsync(() -> {
             try {
                 // Try loading from cache first
-                Mat mat = cache != null ? cache.get(key) : null;
+                BufferedImage bufferedImage = null;
+                if (cache != null) {
+                    try (MatLease lease = cache.acquire(key)) {
+                        if (lease != null && !lease.mat().empty()) {
+                            // Convert Mat to BufferedImage
+                            bufferedImage = matToBufferedImage(lease.mat());
+                        }
+                    }
+                }
 
-                BufferedImage bufferedImage;
-                if (mat != null && !mat.empty()) {
-                    // Convert Mat to BufferedImage
-                    bufferedImage = matToBufferedImage(mat);
-                } else if (imagePath != null && !imagePath.isEmpty()) {
+                if (bufferedImage == null && imagePath != null && !imagePath.isEmpty()) {
                     // Load from file
                     File file = new File(imagePath);
                     if (file.exists()) {
@@ -101,8 +106,6 @@ public class ImageThumbnail extends VBox {
                     } else {
                         throw new IOException("File not found: " + imagePath);
                     }
-                } else {
-                    throw new IOException("No image source available");
                 }
 
                 if (bufferedImage == null) {
@@ -110,11 +113,12 @@ public class ImageThumbnail extends VBox {
                 }
 
                 // Update UI on JavaFX thread
-                final int width = bufferedImage.getWidth();
-                final int height = bufferedImage.getHeight();
+                final BufferedImage image = bufferedImage;
+                final int width = image.getWidth();
+                final int height = image.getHeight();
 
                 Platform.runLater(() -> {
-                    Image fxImage = SwingFXUtils.toFXImage(bufferedImage, null);
+                    Image fxImage = SwingFXUtils.toFXImage(image, null);
                     imageView.setImage(fxImage);
                     infoLabel.setText(String.format("%d x %d px", width, height));
                     infoLabel.setStyle("");
@@ -1,6 +1,7 @@
 package com.imageprocessing.ui.components;
 
 import com.imageprocessing.server.IntermediateResultCache;
+import com.imageprocessing.server.MatLease;
 import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
@@ -86,33 +87,36 @@ public class ImageViewerDialog extends Dialog<Void> {
                                 IntermediateResultCache cache, String key) {
         CompletableFuture.runAsync(() -> {
             try {
-                Mat mat = cache != null ? cache.get(key) : null;
-                BufferedImage bufferedImage;
+                BufferedImage bufferedImage = null;
+                if (cache != null) {
+                    try (MatLease lease = cache.acquire(key)) {
+                        if (lease != null && !lease.mat().empty()) {
+                            bufferedImage = matToBufferedImage(lease.mat());
+                        }
+                    }
+                }
 
-                if (mat != null && !mat.empty()) {
-                    bufferedImage = matToBufferedImage(mat);
-                } else if (imagePath != null && !imagePath.isEmpty()) {
+                if (bufferedImage == null && imagePath != null && !imagePath.isEmpty()) {
                     File file = new File(imagePath);
                     if (file.exists()) {
                         bufferedImage = ImageIO.read(file);
                     } else {
                         throw new IOException("File not found: " + imagePath);
                     }
-                } else {
-                    throw new IOException("No image source available");
                 }
 
                 if (bufferedImage == null) {
                     throw new IOException("Failed to load image");
                 }
 
+                final BufferedImage image = bufferedImage;
                 Platform.runLater(() -> {
-                    Image fxImage = SwingFXUtils.toFXImage(bufferedImage, null);
+                    Image fxImage = SwingFXUtils.toFXImage(image, null);
                     imageView.setImage(fxImage);
                     contentPane.getChildren().clear();
                     contentPane.getChildren().add(imageView);
                     statusLabel.setText(String.format("Image loaded: %d x %d px",
-                        bufferedImage.getWidth(), bufferedImage.getHeight()));
+                        image.getWidth(), image.getHeight()));
                 });
 
             } catch (Exception e) {
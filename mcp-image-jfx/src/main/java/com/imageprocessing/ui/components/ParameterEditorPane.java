@@ -27,6 +27,7 @@ public class ParameterEditorPane extends VBox {
     private final VBox formContainer;
     private final Map<String, Control> parameterControls;
     private WorkflowModel workflowModel; // Reference to workflow for scanning output_keys
+    private Runnable onParameterChanged;
 
     public ParameterEditorPane() {
         this.parameterControls = new HashMap<>();
@@ -166,7 +167,7 @@ public class ParameterEditorPane extends VBox {
         field.setPromptText(param.getDescription());
         field.textProperty().addListener((obs, oldVal, newVal) -> {
             if (currentTool != null) {
-                currentTool.setParameter(param.getName(), newVal.isEmpty() ? null : newVal);
+                updateParameter(param.getName(), newVal.isEmpty() ? null : newVal);
             }
         });
         return field;
@@ -182,7 +183,7 @@ public class ParameterEditorPane extends VBox {
         }
         spinner.valueProperty().addListener((obs, oldVal, newVal) -> {
             if (currentTool != null) {
-                currentTool.setParameter(param.getName(), newVal);
+                updateParameter(param.getName(), newVal);
             }
         });
         HBox.setHgrow(spinner, Priority.ALWAYS);
@@ -205,14 +206,14 @@ public class ParameterEditorPane extends VBox {
                     double value = Double.parseDouble(newVal);
                     field.setStyle("");
                     if (currentTool != null) {
-                        currentTool.setParameter(param.getName(), value);
+                        updateParameter(param.getName(), value);
                     }
                 } catch (NumberFormatException e) {
                     field.setStyle("-fx-border-color: red;");
                 }
             } else {
                 if (currentTool != null) {
-                    currentTool.setParameter(param.getName(), null);
+                    updateParameter(param.getName(), null);
                 }
             }
         });
@@ -228,7 +229,7 @@ public class ParameterEditorPane extends VBox {
         }
         checkBox.selectedProperty().addListener((obs, oldVal, newVal) -> {
             if (currentTool != null) {
-                currentTool.setParameter(param.getName(), newVal);
+                updateParameter(param.getName(), newVal);
             }
         });
         return checkBox;
@@ -254,14 +255,14 @@ public class ParameterEditorPane extends VBox {
             if (file != null) {
                 field.setText(file.getAbsolutePath());
                 if (currentTool != null) {
-                    currentTool.setParameter(param.getName(), file.getAbsolutePath());
+                    updateParameter(param.getName(), file.getAbsolutePath());
                 }
             }
         });
 
         field.textProperty().addListener((obs, oldVal, newVal) -> {
             if (currentTool != null) {
-                currentTool.setParameter(param.getName(), newVal.isEmpty() ? null : newVal);
+                updateParameter(param.getName(), newVal.isEmpty() ? null : newVal);
             }
         });
 
@@ -283,7 +284,7 @@ public class ParameterEditorPane extends VBox {
 
         comboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
             if (currentTool != null) {
-                currentTool.setParameter(param.getName(), newVal);
+                updateParameter(param.getName(), newVal);
             }
         });
 
@@ -313,14 +314,14 @@ public class ParameterEditorPane extends VBox {
             if (file != null) {
                 field.setText(file.getAbsolutePath());
                 if (currentTool != null) {
-                    currentTool.setParameter(param.getName(), file.getAbsolutePath());
+                    updateParameter(param.getName(), file.getAbsolutePath());
                 }
             }
         });
 
         field.textProperty().addListener((obs, oldVal, newVal) -> {
             if (currentTool != null) {
-                currentTool.setParameter(param.getName(), newVal.isEmpty() ? null : newVal);
+                updateParameter(param.getName(), newVal.isEmpty() ? null : newVal);
             }
         });
 
@@ -335,7 +336,7 @@ public class ParameterEditorPane extends VBox {
         field.setPromptText("Enter key to cache result");
         field.textProperty().addListener((obs, oldVal, newVal) -> {
             if (currentTool != null) {
-                currentTool.setParameter(param.getName(), newVal.isEmpty() ? null : newVal);
+                updateParameter(param.getName(), newVal.isEmpty() ? null : newVal);
                 // Refresh result_key ComboBoxes when output_key changes
                 refreshResultKeyComboBoxes();
             }
@@ -355,7 +356,7 @@ public class ParameterEditorPane extends VBox {
 
         comboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
             if (currentTool != null) {
-                currentTool.setParameter(param.getName(), newVal);
+                updateParameter(param.getName(), newVal);
             }
         });
 
@@ -390,9 +391,29 @@ public class ParameterEditorPane extends VBox {
             }
             // Refresh the form
             editTool(currentTool);
+            if (onParameterChanged != null) {
+                onParameterChanged.run();
+            }
+        }
+    }
+
+    /**
+     * Set a parameter of the edited tool and notify the change listener.
+     */
+    private void updateParameter(String name, Object value) {
+        currentTool.setParameter(name, value);
+        if (onParameterChanged != null) {
+            onParameterChanged.run();
         }
     }
 
+    /**
+     * Set the action run after every parameter edit (on the JavaFX thread).
+     */
+    public void setOnParameterChanged(Runnable action) {
+        this.onParameterChanged = action;
+    }
+
     /**
      * Set the workflow model reference for scanning output_keys.
      */
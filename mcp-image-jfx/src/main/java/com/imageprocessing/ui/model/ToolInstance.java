@@ -3,6 +3,8 @@ package com.imageprocessing.ui.model;
 import javafx.beans.property.*;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a tool instance in the execution pipeline.
@@ -34,6 +36,13 @@ public class ToolInstance {
     private final StringProperty errorMessage;
     private final StringProperty result;
 
+    // Incremental execution: edits are counted, and a successful run records the
+    // count it started from, so edits made while it ran keep the tool dirty
+    private final AtomicLong edits = new AtomicLong();
+    private volatile long cleanEdits = -1;
+    private volatile String runStamp;
+    private volatile String runResult;
+
     public ToolInstance(ToolMetadata metadata) {
         this.metadata = metadata;
         this.parameterValues = new HashMap<>();
@@ -63,7 +72,10 @@ public class ToolInstance {
 
     // Parameter management
     public void setParameter(String name, Object value) {
-        parameterValues.put(name, value);
+        Object previous = parameterValues.put(name, value);
+        if (!Objects.equals(previous, value)) {
+            edits.incrementAndGet();
+        }
     }
 
     public Object getParameter(String name) {
@@ -113,6 +125,57 @@ public class ToolInstance {
         return result;
     }
 
+    // Dirty tracking
+
+    /**
+     * Check whether the tool must run again: its parameters changed since its
+     * last successful run, or it has never run.
+     */
+    public boolean isDirty() {
+        return cleanEdits != edits.get();
+    }
+
+    /**
+     * Force the tool to run again on the next execution.
+     */
+    public void markDirty() {
+        edits.incrementAndGet();
+    }
+
+    /**
+     * Get the number of edits so far. An executor reads it before running the
+     * tool and passes it to {@link #markClean(String, long)}.
+     */
+    public long getEditCount() {
+        return edits.get();
+    }
+
+    /**
+     * Record a successful run. The tool stays dirty if it was edited after the
+     * run started, since the run may not have seen the edit.
+     * @param stamp The executor's record of the inputs and outputs of the run
+     * @param editCount {@link #getEditCount()} when the run started
+     */
+    public void markClean(String stamp, long editCount) {
+        runStamp = stamp;
+        runResult = getResult();
+        cleanEdits = editCount;
+    }
+
+    /**
+     * Get the stamp recorded by the last successful run, or null.
+     */
+    public String getRunStamp() {
+        return runStamp;
+    }
+
+    /**
+     * Get the result message of the last successful run, or null.
+     */
+    public String getRunResult() {
+        return runResult;
+    }
+
     /**
      * Reset the tool instance to pending state.
      */
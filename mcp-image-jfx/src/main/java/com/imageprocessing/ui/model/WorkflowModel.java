@@ -52,6 +52,7 @@ public class WorkflowModel {
      */
     public void removeTool(ToolInstance instance) {
         toolInstances.remove(instance);
+        markAllDirty();
     }
 
     /**
@@ -62,6 +63,7 @@ public class WorkflowModel {
             toIndex >= 0 && toIndex < toolInstances.size()) {
             ToolInstance instance = toolInstances.remove(fromIndex);
             toolInstances.add(toIndex, instance);
+            markAllDirty();
         }
     }
 
@@ -72,6 +74,16 @@ public class WorkflowModel {
         toolInstances.clear();
     }
 
+    /**
+     * Make every tool run again on the next execution. Used when the order or
+     * set of tools changes, since cached results may then come from other steps.
+     */
+    public void markAllDirty() {
+        for (ToolInstance instance : toolInstances) {
+            instance.markDirty();
+        }
+    }
+
     /**
      * Reset all tools to pending state.
      */
@@ -55,8 +55,22 @@ public class WorkflowSerializer {
      * @throws WorkflowLoadException if workflow format is invalid or tools are not found
      */
     public List<ToolInstance> loadWorkflow(File file) throws IOException, WorkflowLoadException {
-        WorkflowData workflowData = objectMapper.readValue(file, WorkflowData.class);
+        return toToolInstances(objectMapper.readValue(file, WorkflowData.class));
+    }
+
+    /**
+     * Parse a workflow from its JSON text, as written by {@link #saveWorkflow}.
+     *
+     * @param json Workflow JSON
+     * @return List of tool instances representing the workflow
+     * @throws IOException if the JSON is malformed
+     * @throws WorkflowLoadException if workflow format is invalid or tools are not found
+     */
+    public List<ToolInstance> parseWorkflow(String json) throws IOException, WorkflowLoadException {
+        return toToolInstances(objectMapper.readValue(json, WorkflowData.class));
+    }
 
+    private List<ToolInstance> toToolInstances(WorkflowData workflowData) throws WorkflowLoadException {
         // Validate version (future compatibility)
         if (workflowData.version == null || workflowData.version.isEmpty()) {
             throw new WorkflowLoadException("Workflow version is missing");
@@ -0,0 +1,44 @@
+package com.imageprocessing.execution;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for BatchProcessor to verify input resolution.
+ */
+class BatchProcessorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testDirectoryPicksImageFiles() throws Exception {
+        for (String name : List.of("b.png", "a.JPG", "notes.txt")) {
+            Files.writeString(dir.resolve(name), "");
+        }
+        Files.createDirectories(dir.resolve("sub"));
+        Files.writeString(dir.resolve("sub/c.png"), "");
+
+        assertEquals(List.of(dir.resolve("a.JPG"), dir.resolve("b.png")),
+            BatchProcessor.resolveInputs(dir.toString()));
+    }
+
+    @Test
+    void testGlob() throws Exception {
+        Files.createDirectories(dir.resolve("sub"));
+        for (String name : List.of("a.png", "b.tif", "sub/c.png")) {
+            Files.writeString(dir.resolve(name), "");
+        }
+
+        assertEquals(List.of(dir.resolve("a.png")), BatchProcessor.resolveInputs(dir + "/*.png"));
+        assertEquals(List.of(dir.resolve("a.png"), dir.resolve("sub/c.png")),
+            BatchProcessor.resolveInputs(dir + "/**.png"));
+        assertEquals(List.of(), BatchProcessor.resolveInputs(dir + "/missing/*.png"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.imageprocessing.execution;
+
+import com.imageprocessing.server.DecodedImageCache;
+import com.imageprocessing.server.IntermediateResultCache;
+import com.imageprocessing.server.OpenCVImageProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for DirectToolExecutor to verify that executors on shared threads
+ * keep their own cancel state and leave the threads running on shutdown.
+ */
+class DirectToolExecutorTest {
+
+    @Test
+    void testSharedThreadsOutliveExecutors() throws Exception {
+        DirectToolExecutor.Threads threads = new DirectToolExecutor.Threads(2);
+        IntermediateResultCache cache = new IntermediateResultCache();
+        DecodedImageCache decodedImages = new DecodedImageCache();
+        try {
+            DirectToolExecutor first = new DirectToolExecutor(new OpenCVImageProcessor(), cache, decodedImages, threads);
+            DirectToolExecutor second = new DirectToolExecutor(new OpenCVImageProcessor(), cache, decodedImages, threads);
+
+            first.executePipeline(List.of(), null, false).get(10, TimeUnit.SECONDS);
+            first.cancel();
+            first.shutdown();
+
+            assertTrue(first.isCancelled());
+            assertFalse(second.isCancelled());
+            PipelineResult result = second.executePipeline(List.of(), null, false).get(10, TimeUnit.SECONDS);
+            assertFalse(result.isCancelled());
+        } finally {
+            threads.shutdown();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.imageprocessing.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for PipelineOptimizer to verify fusion, dead-step elimination and channel tracking.
+ */
+class PipelineOptimizerTest {
+
+    private static Map<String, Object> params(Object... keyValues) {
+        Map<String, Object> params = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            params.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return params;
+    }
+
+    private static List<String> tools(PipelineOptimizer.Plan plan) {
+        return plan.getSteps().stream().map(PipelineOptimizer.Step::getTool).collect(Collectors.toList());
+    }
+
+    @Test
+    void testGrayscaleFusedIntoSegment() {
+        PipelineOptimizer.Plan plan = PipelineOptimizer.optimize(
+            List.of("load_image", "color_to_grayscale", "segment_image", "detect_contours"),
+            List.of(params("output_key", "img"),
+                params("input_key", "img", "output_key", "gray"),
+                params("input_key", "gray", "output_key", "mask", "threshold_type", "OTSU"),
+                params("input_key", "mask", "output_csv_path", "blobs.csv")),
+            Set.of());
+
+        assertEquals(List.of("load_image", "segment_image", "detect_contours"), tools(plan));
+        assertEquals("img", plan.getSteps().get(1).getParameters().get("input_key"));
+        assertEquals(true, plan.getSteps().get(2).getParameters().get(PipelineOptimizer.BINARY_INPUT_PARAM));
+        // The gray intermediate and detect_contours' own threshold pass, one byte per pixel each
+        assertEquals(2000, plan.getSavedBytes(1000));
+    }
+
+    @Test
+    void testUnusedStepsDropped() {
+        PipelineOptimizer.Plan plan = PipelineOptimizer.optimize(
+            List.of("blur_image", "filter_image", "resize_image"),
+            List.of(params("input_key", "in", "output_key", "blurred"),
+                params("input_key", "blurred", "output_key", "filtered"),
+                params("input_key", "in", "output_key", "small", "width", 10, "height", 10, "output_path", "small.png")),
+            Set.of());
+
+        assertEquals(List.of("resize_image"), tools(plan));
+        assertEquals(2, plan.getNotes().size());
+
+        PipelineOptimizer.Plan kept = PipelineOptimizer.optimize(
+            List.of("blur_image", "filter_image"),
+            List.of(params("input_key", "in", "output_key", "blurred"),
+                params("input_key", "blurred", "output_key", "filtered")),
+            Set.of("filtered"));
+        assertEquals(List.of("blur_image", "filter_image"), tools(kept));
+    }
+
+    @Test
+    void testGrayscaleOfSingleChannelSkipped() {
+        PipelineOptimizer.Plan plan = PipelineOptimizer.optimize(
+            List.of("segment_image", "color_to_grayscale", "blur_image"),
+            List.of(params("input_key", "in", "output_key", "mask"),
+                params("input_key", "mask", "output_key", "gray"),
+                params("input_key", "gray", "output_path", "out.png")),
+            Set.of());
+
+        assertEquals(List.of("segment_image", "blur_image"), tools(plan));
+        assertEquals("mask", plan.getSteps().get(1).getParameters().get("input_key"));
+    }
+
+    @Test
+    void testInterpolatedResizeOfMaskNeedsThreshold() {
+        List<String> tools = List.of("segment_image", "resize_image", "detect_contours");
+        PipelineOptimizer.Plan linear = PipelineOptimizer.optimize(tools,
+            List.of(params("input_key", "in", "output_key", "mask", "threshold_type", "BINARY"),
+                params("input_key", "mask", "output_key", "small", "width", 100, "height", 100, "interpolation", "LINEAR"),
+                params("input_key", "small", "output_csv_path", "blobs.csv")),
+            Set.of());
+        assertNull(linear.getSteps().get(2).getParameters().get(PipelineOptimizer.BINARY_INPUT_PARAM));
+
+        PipelineOptimizer.Plan nearest = PipelineOptimizer.optimize(tools,
+            List.of(params("input_key", "in", "output_key", "mask", "threshold_type", "BINARY"),
+                params("input_key", "mask", "output_key", "small", "width", 100, "height", 100, "interpolation", "NEAREST"),
+                params("input_key", "small", "output_csv_path", "blobs.csv")),
+            Set.of());
+        assertEquals(true, nearest.getSteps().get(2).getParameters().get(PipelineOptimizer.BINARY_INPUT_PARAM));
+    }
+
+    @Test
+    void testRewrittenKeysLeaveRepeatedWritesAlone() {
+        PipelineOptimizer.Plan plan = PipelineOptimizer.optimize(
+            List.of("color_to_grayscale", "segment_image", "color_to_grayscale", "segment_image"),
+            List.of(params("input_key", "in", "output_key", "gray"),
+                params("input_key", "gray", "output_path", "a.png"),
+                params("input_key", "other", "output_key", "gray"),
+                params("input_key", "gray", "output_path", "b.png")),
+            Set.of());
+
+        assertEquals(4, plan.getSteps().size());
+    }
+}
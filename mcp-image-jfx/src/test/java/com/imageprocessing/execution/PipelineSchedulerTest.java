@@ -0,0 +1,118 @@
+package com.imageprocessing.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for PipelineScheduler to verify dependency detection and ordering.
+ */
+class PipelineSchedulerTest {
+
+    @Test
+    void testBranchesDependOnlyOnTheirSource() {
+        List<Map<String, Object>> steps = List.of(
+            Map.of("image_path", "in.png", "output_key", "src"),
+            Map.of("input_key", "src", "output_key", "a"),
+            Map.of("input_key", "src", "output_key", "b"),
+            Map.of("input_key", "src", "output_key", "c"),
+            Map.of("input_key", "a", "mask_key", "b", "output_key", "d")
+        );
+
+        var deps = PipelineScheduler.dependencies(steps);
+        assertEquals(Set.of(), deps.get(0));
+        assertEquals(Set.of(0), deps.get(1));
+        assertEquals(Set.of(0), deps.get(2));
+        assertEquals(Set.of(0), deps.get(3));
+        assertEquals(Set.of(1, 2), deps.get(4));
+    }
+
+    @Test
+    void testOverwritesKeepSequentialOrder() {
+        List<Map<String, Object>> steps = List.of(
+            Map.of("image_path", "in.png", "output_key", "img"),
+            Map.of("input_key", "img", "output_key", "blurred"),
+            Map.of("image_path", "other.png", "output_key", "img"),
+            Map.of("input_key", "blurred", "output_path", "out.png"),
+            Map.of("input_key", "img", "output_path", "out.png")
+        );
+
+        var deps = PipelineScheduler.dependencies(steps);
+        // Overwriting "img" waits for the earlier write and the earlier read
+        assertEquals(Set.of(0, 1), deps.get(2));
+        // Reads see the latest write; the second write to out.png waits for the first
+        assertEquals(Set.of(1), deps.get(3));
+        assertEquals(Set.of(2, 3), deps.get(4));
+    }
+
+    @Test
+    void testFileReadsWaitForWriters() {
+        List<Map<String, Object>> steps = List.of(
+            Map.of("image_path", "in.png", "output_key", "img"),
+            Map.of("input_key", "img", "output_path", "out/mask.png"),
+            Map.of("image_path", "out/../out/mask.png", "output_key", "reloaded"),
+            Map.of("input_key", "img", "mask_path", "out/mask.png", "output_key", "masked"),
+            Map.of("image_url", Path.of("out/mask.png").toUri().toString(), "output_key", "fetched"),
+            Map.of("input_key", "img", "output_csv_path", "stats.csv"),
+            Map.of("image_path", "stats.csv", "output_key", "table"),
+            Map.of("input_key", "img", "output_path", "in.png")
+        );
+
+        var deps = PipelineScheduler.dependencies(steps);
+        // Reading the written file, however it is spelled, waits for the write
+        assertEquals(Set.of(1), deps.get(2));
+        assertEquals(Set.of(0, 1), deps.get(3));
+        assertEquals(Set.of(1), deps.get(4));
+        assertEquals(Set.of(5), deps.get(6));
+        // Overwriting a file waits for the steps that read it
+        assertEquals(Set.of(0), deps.get(7));
+    }
+
+    @Test
+    void testIndependentStepsRunConcurrently() throws Exception {
+        List<Map<String, Object>> steps = List.of(
+            Map.of("image_path", "a.png", "output_key", "a"),
+            Map.of("image_path", "b.png", "output_key", "b"),
+            Map.of("input_key", "a", "mask_key", "b", "output_key", "c")
+        );
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        List<Integer> finished = Collections.synchronizedList(new ArrayList<>());
+
+        try {
+            PipelineScheduler.schedule(steps,
+                index -> CompletableFuture.runAsync(() -> {
+                    if (index < 2) {
+                        // Deadlocks unless steps 0 and 1 run at the same time
+                        bothStarted.countDown();
+                        try {
+                            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                    finished.add(index);
+                }, pool),
+                () -> false,
+                (index, e) -> fail("Step " + index + " failed: " + e)
+            ).get(10, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(3, finished.size());
+        assertEquals(2, finished.get(2), "Dependent step should finish last");
+    }
+}
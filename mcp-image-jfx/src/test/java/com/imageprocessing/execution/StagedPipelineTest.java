@@ -0,0 +1,79 @@
+package com.imageprocessing.execution;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for StagedPipeline to verify stage ordering, failures and backpressure.
+ */
+class StagedPipelineTest {
+
+    @Test
+    void testItemsPassEveryStage() throws Exception {
+        List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+        List<StringBuilder> items = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            items.add(new StringBuilder());
+        }
+
+        List<StagedPipeline.StageStats> stats = new StagedPipeline<StringBuilder>("test", 2)
+            .addStage("a", 1, item -> item.append('a'))
+            .addStage("b", 3, item -> item.append('b'))
+            .addStage("c", 1, item -> item.append('c'))
+            .run(items, (item, e) -> errors.add(e));
+
+        assertEquals(List.of(), errors);
+        items.forEach(item -> assertEquals("abc", item.toString()));
+        assertEquals(3, stats.size());
+        assertEquals("b", stats.get(1).getName());
+        assertEquals(20, stats.get(2).getItems());
+    }
+
+    @Test
+    void testFailedItemsSkipLaterStages() throws Exception {
+        List<Integer> failed = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+
+        List<StagedPipeline.StageStats> stats = new StagedPipeline<Integer>("test", 1)
+            .addStage("compute", 2, item -> {
+                if (item % 2 == 0) {
+                    throw new IllegalStateException("even");
+                }
+            })
+            .addStage("write", 1, written::add)
+            .run(List.of(1, 2, 3, 4, 5), (item, e) -> failed.add(item));
+
+        assertEquals(List.of(2, 4), failed.stream().sorted().toList());
+        assertEquals(List.of(1, 3, 5), written.stream().sorted().toList());
+        assertEquals(2, stats.get(0).getFailed());
+    }
+
+    @Test
+    void testSlowStageBoundsItemsInFlight() throws Exception {
+        List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            items.add(i);
+        }
+
+        new StagedPipeline<Integer>("test", 2)
+            .addStage("decode", 1, item -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+            .addStage("encode", 1, item -> {
+                Thread.sleep(2);
+                inFlight.decrementAndGet();
+            })
+            .run(items, (item, e) -> errors.add(e));
+
+        assertEquals(List.of(), errors);
+        // One item in each worker, plus the queue in between
+        assertTrue(maxInFlight.get() <= 4, "in flight: " + maxInFlight.get());
+    }
+}
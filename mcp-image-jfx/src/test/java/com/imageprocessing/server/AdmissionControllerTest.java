@@ -0,0 +1,60 @@
+package com.imageprocessing.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for AdmissionController to verify cost-weighted admission, queueing and rejection.
+ */
+class AdmissionControllerTest {
+
+    @Test
+    void testCostsAreCappedByBudget() {
+        AdmissionController admission = new AdmissionController(4, 8, 1000);
+        assertEquals(4, admission.costOf("denoise_image"), "Heavy tools should never exceed the whole budget");
+        assertEquals(1, admission.costOf("color_to_grayscale"));
+        assertEquals(0, admission.costOf("get_server_stats"));
+        assertEquals(0, new AdmissionController(0, 0, 0).costOf("denoise_image"), "0 permits disables admission control");
+    }
+
+    @Test
+    void testQueuedCallRunsAfterRelease() throws Exception {
+        AdmissionController admission = new AdmissionController(8, 8, 5000);
+        AdmissionController.Permit denoise = admission.acquire("denoise_image").get();
+        assertEquals(0, admission.getAvailablePermits());
+
+        CompletableFuture<AdmissionController.Permit> grayscale = admission.acquire("color_to_grayscale");
+        assertFalse(grayscale.isDone(), "Call over budget should wait");
+        assertEquals(1, admission.getQueueDepth());
+
+        denoise.release();
+        grayscale.get(1, TimeUnit.SECONDS).release();
+        assertEquals(0, admission.getQueueDepth());
+        assertEquals(8, admission.getAvailablePermits());
+        assertEquals(2, admission.getAdmittedCount());
+    }
+
+    @Test
+    void testFullQueueAndTimeoutAreRejected() throws Exception {
+        AdmissionController admission = new AdmissionController(2, 1, 100);
+        AdmissionController.Permit blur = admission.acquire("blur_image").get();
+
+        CompletableFuture<AdmissionController.Permit> waiting = admission.acquire("blur_image");
+        CompletableFuture<AdmissionController.Permit> overflow = admission.acquire("blur_image");
+        assertTrue(overflow.isCompletedExceptionally(), "Call arriving at a full queue should be rejected at once");
+
+        ExecutionException timeout = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(AdmissionController.RejectedException.class, timeout.getCause());
+        assertEquals(2, admission.getRejectedCount());
+        assertEquals(0, admission.getQueueDepth());
+
+        blur.release();
+        blur.release();
+        assertEquals(2, admission.getAvailablePermits(), "Releasing twice should return permits once");
+    }
+}
@@ -0,0 +1,123 @@
+package com.imageprocessing.server;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for BlobServlet to verify that uploads are validated before any
+ * pixel buffer is allocated and that ETags follow the content they describe.
+ */
+class BlobServletTest {
+
+    // Room for one 100x100 BGR image
+    private static final long MAX_BYTES = 100 * 100 * 3;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private IntermediateResultCache cache;
+    private Server server;
+    private String baseUrl;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @BeforeEach
+    void startServer() throws Exception {
+        cache = new IntermediateResultCache(MAX_BYTES);
+        server = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
+        context.addServlet(new ServletHolder(new BlobServlet(cache)), "/blobs/*");
+        server.setHandler(context);
+        server.start();
+        baseUrl = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort() + "/blobs/";
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        server.stop();
+        cache.clear();
+    }
+
+    private HttpResponse<byte[]> put(String path, byte[] body) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .PUT(HttpRequest.BodyPublishers.ofByteArray(body)).build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpResponse<byte[]> get(String path, String ifNoneMatch) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    @Test
+    void testRawUploadValidatedBeforeAllocation() throws Exception {
+        // Larger than the whole budget
+        assertEquals(400, put("big?format=raw&rows=1000&cols=1000&type=0", new byte[1000 * 1000]).statusCode());
+        // Body does not match the declared size
+        assertEquals(400, put("short?format=raw&rows=10&cols=10&type=16", new byte[10]).statusCode());
+        // Not a Mat type, and a size that overflows
+        assertEquals(400, put("bad?format=raw&rows=10&cols=10&type=-1", new byte[100]).statusCode());
+        assertEquals(400, put("huge?format=raw&rows=2147483647&cols=2147483647&type=7", new byte[1]).statusCode());
+        assertEquals(0, cache.size());
+
+        assertEquals(201, put("ok?format=raw&rows=10&cols=10&type=16", new byte[300]).statusCode());
+        assertTrue(cache.containsKey("ok"));
+    }
+
+    @Test
+    void testEncodedUploadFollowsDecodePolicy() throws Exception {
+        Mat source = new Mat(20, 30, CvType.CV_16UC4, new Scalar(1000, 2000, 3000, 65535));
+        MatOfByte png = new MatOfByte();
+        Imgcodecs.imencode(".png", source, png);
+        assertEquals(201, put("png", png.toArray()).statusCode());
+        source.release();
+        png.release();
+
+        try (MatLease lease = cache.acquire("png")) {
+            assertEquals(CvType.CV_8UC3, lease.mat().type());
+            assertEquals(30, lease.mat().cols());
+        }
+        assertEquals(400, put("junk", new byte[]{1, 2, 3}).statusCode());
+    }
+
+    @Test
+    void testEtagFollowsContent() throws Exception {
+        put("img?format=raw&rows=10&cols=10&type=0", new byte[100]);
+        HttpResponse<byte[]> first = get("img?format=raw", null);
+        String etag = first.headers().firstValue("ETag").orElseThrow();
+        assertEquals("\"" + cache.getVersion("img") + "-raw\"", etag);
+        assertEquals(304, get("img?format=raw", etag).statusCode());
+
+        HttpResponse<byte[]> encoded = get("img?image_format=png", null);
+        assertEquals(200, encoded.statusCode());
+        String encodedEtag = encoded.headers().firstValue("ETag").orElseThrow();
+        assertTrue(encodedEtag.startsWith("\"" + cache.getVersion("img") + "-"));
+        assertEquals(304, get("img?image_format=png", encodedEtag).statusCode());
+
+        put("img?format=raw&rows=10&cols=10&type=0", new byte[100]);
+        assertEquals(200, get("img?format=raw", etag).statusCode());
+        assertEquals(200, get("img?image_format=png", encodedEtag).statusCode());
+    }
+}
@@ -0,0 +1,76 @@
+package com.imageprocessing.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imageprocessing.ui.model.ToolInstance;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for CompositeWorkflow to verify that a saved workflow's unbound
+ * parameters become tool arguments and that calls get their own intermediates.
+ */
+class CompositeWorkflowTest {
+
+    private static final String WORKFLOW = """
+        {
+          "version": "1.0",
+          "name": "Blur and Save",
+          "tools": [
+            {"name": "load_image", "parameters": {"output_key": "src"}},
+            {"name": "blur_image", "parameters": {"input_key": "src", "kernel_size": "${size}", "output_key": "blurred"}},
+            {"name": "color_to_grayscale", "parameters": {"input_key": "blurred", "output_path": "/tmp/${stem}.png", "output_key": "gray"}}
+          ]
+        }
+        """;
+
+    @Test
+    void testSchemaFromUnboundParameters() throws Exception {
+        CompositeWorkflow workflow = CompositeWorkflow.parse("ignored.json", WORKFLOW);
+        assertEquals("blur_and_save", workflow.getName());
+        assertEquals(List.of("load_image", "blur_image", "color_to_grayscale"), workflow.getTools());
+
+        JsonNode schema = new ObjectMapper().readTree(workflow.inputSchema());
+        JsonNode properties = schema.get("properties");
+        assertEquals("integer", properties.get("size").get("type").asText());
+        assertEquals("string", properties.get("stem").get("type").asText());
+        assertTrue(properties.has("image_path"));
+        assertTrue(properties.has("response_image"));
+        assertFalse(properties.has("kernel_size"));
+        assertEquals(List.of("size", "stem"), List.of(schema.get("required").get(0).asText(),
+            schema.get("required").get(1).asText()));
+    }
+
+    @Test
+    void testBindRenamesIntermediates() throws Exception {
+        CompositeWorkflow workflow = CompositeWorkflow.parse("blur.json", WORKFLOW);
+        CompositeWorkflow.Binding binding = workflow.bind(
+            Map.of("image_path", "/data/in.png", "size", 9, "stem", "out"), "call:");
+
+        List<ToolInstance> tools = binding.getTools();
+        assertEquals("/data/in.png", tools.get(0).getParameter("image_path"));
+        assertEquals("call:src", tools.get(0).getParameter("output_key"));
+        assertEquals(9, tools.get(1).getParameter("kernel_size"));
+        assertEquals("call:blurred", tools.get(2).getParameter("input_key"));
+        assertEquals("/tmp/out.png", tools.get(2).getParameter("output_path"));
+        // Nothing reads gray, so it is the final output and keeps its key
+        assertEquals("gray", tools.get(2).getParameter("output_key"));
+
+        assertEquals(List.of("gray"), binding.getOutputs().stream().map(CompositeWorkflow.Output::getKey).toList());
+        assertEquals(2, binding.getIntermediateKeys().size());
+        assertTrue(binding.getIntermediateKeys().containsAll(List.of("call:src", "call:blurred")));
+    }
+
+    @Test
+    void testMissingArguments() throws Exception {
+        CompositeWorkflow workflow = CompositeWorkflow.parse("blur.json", WORKFLOW);
+        assertThrows(IllegalArgumentException.class,
+            () -> workflow.bind(Map.of("image_path", "/data/in.png", "stem", "out"), "call:"));
+        assertThrows(IllegalArgumentException.class,
+            () -> workflow.bind(Map.of("size", 9, "stem", "out"), "call:"));
+    }
+}
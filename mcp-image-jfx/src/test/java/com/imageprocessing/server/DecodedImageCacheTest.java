@@ -0,0 +1,109 @@
+package com.imageprocessing.server;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for DecodedImageCache to verify that loaded images are private
+ * copies and that changed files are decoded again.
+ */
+class DecodedImageCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    private Path write(String name, int rows, int value) {
+        Path file = dir.resolve(name);
+        Mat mat = new Mat(rows, 64, CvType.CV_8UC1, new Scalar(value));
+        Imgcodecs.imwrite(file.toString(), mat);
+        mat.release();
+        return file;
+    }
+
+    @Test
+    void testLoadedImagesAreCopies() throws Exception {
+        DecodedImageCache cache = new DecodedImageCache();
+        Path file = write("in.png", 32, 10);
+
+        // Modifying the decoded image or a cached copy in place leaves the cache intact
+        Mat first = cache.load(file.toString(), null, null, 1);
+        first.setTo(new Scalar(99));
+        Mat second = cache.load(file.toString(), null, null, 1);
+        assertEquals(10.0, second.get(0, 0)[0]);
+        second.setTo(new Scalar(77));
+        Mat third = cache.load(file.toString(), null, null, 1);
+        try {
+            assertEquals(10.0, third.get(0, 0)[0]);
+            assertEquals(2, cache.getHitCount());
+            assertEquals(1, cache.getMissCount());
+        } finally {
+            first.release();
+            second.release();
+            third.release();
+        }
+    }
+
+    @Test
+    void testChangedFileIsRevalidated() throws Exception {
+        DecodedImageCache cache = new DecodedImageCache();
+        Path file = write("in.png", 32, 10);
+        cache.load(file.toString(), null, null, 1).release();
+        // Other decode scales are cached separately
+        cache.load(file.toString(), null, null, 2).release();
+        assertEquals(2, cache.size());
+
+        write("in.png", 48, 20);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5000));
+        Mat changed = cache.load(file.toString(), null, null, 1);
+        try {
+            assertEquals(48, changed.rows());
+            assertEquals(20.0, changed.get(0, 0)[0]);
+            assertEquals(0, cache.getHitCount());
+            assertEquals(3, cache.getMissCount());
+            assertEquals(2, cache.size());
+        } finally {
+            changed.release();
+        }
+    }
+
+    @Test
+    void testBudgetEvictsLeastRecentlyUsed() throws Exception {
+        // Room for two 32x64 gray images
+        DecodedImageCache cache = new DecodedImageCache(2 * 32 * 64);
+        Path a = write("a.png", 32, 1);
+        Path b = write("b.png", 32, 2);
+        Path c = write("c.png", 32, 3);
+        cache.load(a.toString(), null, null, 1).release();
+        cache.load(b.toString(), null, null, 1).release();
+        cache.load(a.toString(), null, null, 1).release();
+        cache.load(c.toString(), null, null, 1).release();
+
+        assertEquals(2, cache.size());
+        assertEquals(2 * 32 * 64, cache.getCurrentBytes());
+        cache.load(a.toString(), null, null, 1).release();
+        assertEquals(2, cache.getHitCount());
+
+        // Images larger than the budget are returned without being cached
+        Path large = write("large.png", 256, 4);
+        Mat mat = cache.load(large.toString(), null, null, 1);
+        assertEquals(4.0, mat.get(0, 0)[0]);
+        mat.release();
+        assertEquals(2, cache.size());
+    }
+}
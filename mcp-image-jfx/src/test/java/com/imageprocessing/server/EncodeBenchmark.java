@@ -0,0 +1,89 @@
+package com.imageprocessing.server;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Base64;
+
+/**
+ * Compares response image encoders on synthetic photographs of 1, 10 and 50 MP:
+ * the previous ImageIO PNG path against OpenCV's native PNG (several compression
+ * levels), JPEG and WebP codecs, including base64 encoding.
+ *
+ * Not a unit test; run with {@code gradle encodeBenchmark}.
+ */
+public class EncodeBenchmark {
+
+    private static final int[] MEGAPIXELS = {1, 10, 50};
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws Exception {
+        nu.pattern.OpenCV.loadLocally();
+
+        System.out.printf("%-6s %-22s %10s %12s%n", "MP", "encoder", "ms", "bytes");
+        for (int mp : MEGAPIXELS) {
+            Mat image = syntheticImage(mp);
+            try {
+                run(mp, "imageio-png", () -> OpenCVImageProcessor.matToPngBytesImageIO(image));
+                for (int level : new int[]{1, 3, 6, 9}) {
+                    run(mp, "opencv-png:" + level,
+                        () -> OpenCVImageProcessor.encodeImage(image, ImageEncoding.PNG, 0, level));
+                }
+                run(mp, "opencv-jpeg:90",
+                    () -> OpenCVImageProcessor.encodeImage(image, ImageEncoding.JPEG, 90, 0));
+                run(mp, "opencv-webp:90",
+                    () -> OpenCVImageProcessor.encodeImage(image, ImageEncoding.WEBP, 90, 0));
+            } finally {
+                image.release();
+            }
+        }
+    }
+
+    private interface Encoder {
+        byte[] encode() throws Exception;
+    }
+
+    private static void run(int mp, String name, Encoder encoder) {
+        try {
+            encoder.encode();  // warm-up
+            long best = Long.MAX_VALUE;
+            int size = 0;
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                byte[] bytes = encoder.encode();
+                Base64.getEncoder().encodeToString(bytes);
+                best = Math.min(best, System.nanoTime() - start);
+                size = bytes.length;
+            }
+            System.out.printf("%-6d %-22s %10.1f %12d%n", mp, name, best / 1e6, size);
+        } catch (Exception e) {
+            System.out.printf("%-6d %-22s %s%n", mp, name, "unavailable: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Smooth gradients plus noise, roughly as compressible as a photograph.
+     */
+    private static Mat syntheticImage(int megapixels) {
+        int width = (int) Math.round(Math.sqrt(megapixels * 1_000_000.0 * 4 / 3));
+        int height = megapixels * 1_000_000 / width;
+        Mat image = new Mat(height, width, CvType.CV_8UC3);
+        Mat small = new Mat(16, 16, CvType.CV_8UC3);
+        Mat noise = new Mat(height, width, CvType.CV_8UC3);
+        try {
+            Core.randu(small, 0, 255);
+            Imgproc.resize(small, image, image.size(), 0, 0, Imgproc.INTER_CUBIC);
+            Core.randn(noise, 0, 8);
+            Core.add(image, noise, image);
+            Imgproc.circle(image, new org.opencv.core.Point(width / 2.0, height / 2.0),
+                Math.min(width, height) / 4, new Scalar(0, 0, 255), 5);
+        } finally {
+            small.release();
+            noise.release();
+        }
+        return image;
+    }
+}
@@ -0,0 +1,124 @@
+package com.imageprocessing.server;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the latency of a cheap tool ({@code color_to_grayscale} on a small image)
+ * against a running HTTP server, first alone and then while other clients keep
+ * the server busy with {@code denoise_image} calls on a large image.
+ *
+ * Test images are uploaded through the {@code /blobs} endpoint, so the harness needs
+ * no OpenCV of its own. Not a unit test; start the server with
+ * {@code gradle runServer --args="--http"}, then run {@code gradle httpLoadTest}
+ * (optional arguments: base URL, slow clients, cheap calls).
+ */
+public class HttpLoadTest {
+
+    private static final int LARGE_SIZE = 2000;
+    private static final int SMALL_SIZE = 256;
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8082";
+        int slowClients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int cheapCalls = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        HttpClient client = HttpClient.newHttpClient();
+        upload(client, baseUrl, "loadtest-large", LARGE_SIZE);
+        upload(client, baseUrl, "loadtest-small", SMALL_SIZE);
+
+        String cheap = toolCall("color_to_grayscale", "\"input_key\": \"loadtest-small\", \"response_image\": \"none\"");
+        String slow = toolCall("denoise_image", "\"input_key\": \"loadtest-large\", \"response_image\": \"none\"");
+
+        for (int i = 0; i < 10; i++) {
+            call(client, baseUrl, cheap);  // warm-up
+        }
+        report("idle", measure(client, baseUrl, cheap, cheapCalls));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger slowCompleted = new AtomicInteger();
+        ExecutorService background = Executors.newFixedThreadPool(slowClients);
+        for (int i = 0; i < slowClients; i++) {
+            background.submit(() -> {
+                while (running.get()) {
+                    call(client, baseUrl, slow);
+                    slowCompleted.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        try {
+            Thread.sleep(1000);  // let the slow calls pile up
+            report(slowClients + " x denoise", measure(client, baseUrl, cheap, cheapCalls));
+        } finally {
+            running.set(false);
+            background.shutdown();
+            background.awaitTermination(5, TimeUnit.MINUTES);
+        }
+        System.out.printf("denoise_image calls completed: %d%n", slowCompleted.get());
+    }
+
+    private static long[] measure(HttpClient client, String baseUrl, String body, int calls) throws Exception {
+        long[] nanos = new long[calls];
+        for (int i = 0; i < calls; i++) {
+            long start = System.nanoTime();
+            call(client, baseUrl, body);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void report(String load, long[] sorted) {
+        System.out.printf("%-16s p50 %8.1f ms  p90 %8.1f ms  p99 %8.1f ms  max %8.1f ms%n", load,
+            percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+            sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, int p) {
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static String toolCall(String tool, String arguments) {
+        return "{\"jsonrpc\": \"2.0\", \"id\": 1, \"method\": \"tools/call\", "
+            + "\"params\": {\"name\": \"" + tool + "\", \"arguments\": {" + arguments + "}}}";
+    }
+
+    private static void call(HttpClient client, String baseUrl, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/mcp"))
+            .header("Content-Type", "application/json")
+            .header("Accept", "application/json, text/event-stream")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200 || response.body().contains("\"isError\":true")) {
+            throw new IllegalStateException("Call failed (" + response.statusCode() + "): " + response.body());
+        }
+    }
+
+    /**
+     * Upload a square 8-bit BGR noise image as raw pixels.
+     */
+    private static void upload(HttpClient client, String baseUrl, String key, int size) throws Exception {
+        byte[] pixels = new byte[size * size * 3];
+        new Random(size).nextBytes(pixels);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(
+                baseUrl + "/blobs/" + key + "?format=raw&rows=" + size + "&cols=" + size + "&type=16"))
+            .PUT(HttpRequest.BodyPublishers.ofByteArray(pixels))
+            .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException("Upload of " + key + " failed: " + response.body());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.imageprocessing.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.modelcontextprotocol.spec.McpSchema;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for ImageProcessingMcpServer to verify that batch_call runs a call
+ * reading a file only after the earlier call writing it has finished, and that
+ * tool schemas carry the shared image options.
+ */
+class ImageProcessingMcpServerTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    @Test
+    void testBatchCallReadsFileAfterWrite() throws Exception {
+        // Large enough that writing the output takes a while
+        Mat color = new Mat(2000, 2000, CvType.CV_8UC3);
+        Core.randu(color, 0, 256);
+        Path input = dir.resolve("in.png");
+        Path gray = dir.resolve("gray.png");
+        assertTrue(Imgcodecs.imwrite(input.toString(), color));
+        color.release();
+
+        // Both calls may run at once, on separate schedulers, unless ordered by their files
+        Map<String, Object> args = Map.of("max_concurrency", 2, "calls", List.of(
+            Map.of("tool", "color_to_grayscale",
+                "arguments", Map.of("image_path", input.toString(), "output_path", gray.toString())),
+            Map.of("tool", "load_image",
+                "arguments", Map.of("image_path", gray.toString()))
+        ));
+        McpSchema.CallToolResult result;
+        ImageProcessingMcpServer.ToolFactory.setAdmission(new AdmissionController(0, 0, 0));
+        try {
+            result = ImageProcessingMcpServer.ToolFactory.createBatchCallTool().callHandler()
+                .apply(null, new McpSchema.CallToolRequest("batch_call", args))
+                .block(Duration.ofSeconds(60));
+        } finally {
+            ImageProcessingMcpServer.ToolFactory.setAdmission(new AdmissionController());
+        }
+
+        assertNotNull(result);
+        JsonNode calls = new ObjectMapper().readTree(((McpSchema.TextContent) result.content().get(0)).text());
+        assertEquals(2, calls.size());
+        assertTrue(calls.get(0).get("ok").asBoolean(), calls.get(0).toString());
+        assertTrue(calls.get(1).get("ok").asBoolean(), calls.get(1).toString());
+        // The reload sees the finished grayscale file
+        assertTrue(calls.get(1).get("result").asText().contains("Channels: 1"), calls.get(1).toString());
+    }
+
+    @Test
+    void testSchemasShareImageOptions() {
+        McpSchema.JsonSchema load = ImageProcessingMcpServer.ToolFactory.createLoadImageTool().tool().inputSchema();
+        assertTrue(load.properties().keySet().containsAll(List.of("image_path", "image_format", "image_quality",
+            "png_compression", "response_image", "thumbnail_size", "decode_scale")));
+
+        // A tool that declares an option itself keeps its own definition
+        McpSchema.JsonSchema display = ImageProcessingMcpServer.ToolFactory.createDisplayImageTool().tool().inputSchema();
+        assertEquals(List.of("thumbnail", "full"),
+            ((Map<?, ?>) display.properties().get("response_image")).get("enum"));
+        assertTrue(display.properties().containsKey("decode_scale"));
+    }
+}
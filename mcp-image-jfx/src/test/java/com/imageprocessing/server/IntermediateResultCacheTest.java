@@ -0,0 +1,309 @@
+package com.imageprocessing.server;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for IntermediateResultCache to verify budget enforcement, the
+ * disk spill tier and lease reference counting.
+ */
+class IntermediateResultCacheTest {
+
+    // One 100x100 8UC1 image
+    private static final long IMAGE_BYTES = 100 * 100;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    private static Mat image(int value) {
+        return new Mat(100, 100, CvType.CV_8UC1, new Scalar(value));
+    }
+
+    private static long spillFiles(Path dir) throws Exception {
+        try (var files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        IntermediateResultCache cache = new IntermediateResultCache(3 * IMAGE_BYTES);
+        cache.put("a", image(1));
+        cache.put("b", image(2));
+        cache.put("c", image(3));
+        // Touch "a" so that "b" becomes the least recently used entry
+        cache.acquire("a").close();
+        cache.put("d", image(4));
+
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("c"));
+        assertTrue(cache.containsKey("d"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3 * IMAGE_BYTES, cache.getCurrentBytes());
+
+        // Shrinking the budget evicts immediately, oldest first
+        cache.setMaxBytes(IMAGE_BYTES);
+        assertEquals(1, cache.size());
+        assertTrue(cache.containsKey("d"));
+    }
+
+    @Test
+    void testPinnedKeysAreNotEvicted() {
+        IntermediateResultCache cache = new IntermediateResultCache(2 * IMAGE_BYTES);
+        // Pins may be taken before the key exists and are counted
+        cache.pin("a");
+        cache.pin("a");
+        cache.put("a", image(1));
+        cache.put("b", image(2));
+        cache.put("c", image(3));
+
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("b"));
+
+        cache.unpin("a");
+        assertTrue(cache.isPinned("a"));
+        cache.put("d", image(4));
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("c"));
+
+        // Pinned entries may exceed the budget; the last unpin re-enforces it
+        cache.setMaxBytes(IMAGE_BYTES);
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("d"));
+        cache.put("e", image(5));
+        assertEquals(2 * IMAGE_BYTES, cache.getCurrentBytes());
+        cache.unpin("a");
+        assertFalse(cache.isPinned("a"));
+        assertEquals(IMAGE_BYTES, cache.getCurrentBytes());
+        assertFalse(cache.containsKey("a"));
+        assertTrue(cache.containsKey("e"));
+    }
+
+    @Test
+    void testLeaseOutlivesReplacement() {
+        IntermediateResultCache cache = new IntermediateResultCache(0);
+        Mat original = image(1);
+        cache.put("a", original);
+
+        MatLease first = cache.acquire("a");
+        MatLease second = cache.acquire("a");
+        assertSame(original, first.mat());
+        assertEquals("a", first.key());
+
+        // Replacing the key drops only the cache's reference
+        cache.put("a", image(2));
+        assertFalse(original.empty());
+        first.close();
+        first.close();
+        assertTrue(first.isClosed());
+        assertThrows(IllegalStateException.class, first::mat);
+        assertFalse(original.empty());
+
+        // The last lease frees the old buffer
+        second.close();
+        assertTrue(original.empty());
+        try (MatLease lease = cache.acquire("a")) {
+            assertEquals(2.0, lease.mat().get(0, 0)[0]);
+        }
+    }
+
+    @Test
+    void testLeasedEntriesAreNotEvicted() {
+        IntermediateResultCache cache = new IntermediateResultCache(IMAGE_BYTES);
+        cache.put("a", image(1));
+        try (MatLease lease = cache.acquire("a")) {
+            cache.put("b", image(2));
+            assertTrue(cache.containsKey("a"));
+            assertEquals(2 * IMAGE_BYTES, cache.getCurrentBytes());
+            assertEquals(1.0, lease.mat().get(0, 0)[0]);
+        }
+        // Removing a key after its lease is closed frees it at once
+        Mat removed;
+        try (MatLease lease = cache.acquire("a")) {
+            removed = lease.mat();
+        }
+        cache.remove("a");
+        assertTrue(removed.empty());
+    }
+
+    @Test
+    void testOwnedLeaseReleasesOnClose() {
+        Mat mat = image(3);
+        MatLease lease = MatLease.owned(mat);
+        assertNull(lease.key());
+        lease.close();
+        assertTrue(mat.empty());
+    }
+
+    @Test
+    void testSpillAndFaultInRoundTrip() throws Exception {
+        IntermediateResultCache cache = new IntermediateResultCache(2 * IMAGE_BYTES);
+        cache.setSpillStore(new MatSpillStore(dir, 0));
+        cache.put("a", image(1));
+        cache.put("b", image(2));
+        cache.put("c", image(3));
+
+        assertEquals(1, cache.getSpillCount());
+        assertEquals(IMAGE_BYTES, cache.getSpilledBytes());
+        assertEquals(2 * IMAGE_BYTES, cache.getCurrentBytes());
+        assertTrue(cache.containsKey("a"));
+        assertEquals(1, spillFiles(dir));
+
+        try (MatLease lease = cache.acquire("a")) {
+            assertEquals(1, cache.getFaultCount());
+            assertEquals(1.0, lease.mat().get(50, 50)[0]);
+        }
+        // Faulting "a" back in pushed the least recently used entry out
+        assertEquals(2, cache.getSpillCount());
+        assertEquals(2 * IMAGE_BYTES, cache.getCurrentBytes());
+        try (MatLease lease = cache.acquire("b")) {
+            assertEquals(2.0, lease.mat().get(0, 0)[0]);
+        }
+
+        cache.clear();
+        assertEquals(0, cache.getSpilledBytes());
+        assertEquals(0, spillFiles(dir));
+    }
+
+    @Test
+    void testAccessDuringSpillWritesOnce() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        AtomicInteger writes = new AtomicInteger();
+        // Holds up the first write until the test lets it finish
+        MatSpillStore slowStore = new MatSpillStore(dir, 0) {
+            @Override
+            public Path write(Mat mat) throws IOException {
+                if (writes.incrementAndGet() == 1) {
+                    writing.countDown();
+                    try {
+                        proceed.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return super.write(mat);
+            }
+        };
+        IntermediateResultCache cache = new IntermediateResultCache(IMAGE_BYTES);
+        cache.setSpillStore(slowStore);
+        cache.put("a", image(1));
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // Evicts "a"; its write blocks
+            Future<?> put = pool.submit(() -> cache.put("b", image(2)));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+            // Accessed mid-write: "a" stays resident and pushes "b" out
+            try (MatLease lease = cache.acquire("a")) {
+                assertEquals(1.0, lease.mat().get(0, 0)[0]);
+            }
+            // Evicted again while the first write is still running
+            cache.put("c", image(3));
+
+            proceed.countDown();
+            put.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdown();
+        }
+
+        // One write each for "a" and "b", and "a" dropped once its copy was on disk
+        assertEquals(2, writes.get());
+        assertEquals(2, spillFiles(dir));
+        assertEquals(2 * IMAGE_BYTES, cache.getSpilledBytes());
+        assertEquals(IMAGE_BYTES, cache.getCurrentBytes());
+        try (MatLease lease = cache.acquire("a")) {
+            assertEquals(1.0, lease.mat().get(50, 50)[0]);
+        }
+        try (MatLease lease = cache.acquire("b")) {
+            assertEquals(2.0, lease.mat().get(50, 50)[0]);
+        }
+
+        cache.clear();
+        assertEquals(0, cache.getSpilledBytes());
+        assertEquals(0, spillFiles(dir));
+    }
+
+    @Test
+    void testConcurrentFaultInReadsOnce() throws Exception {
+        IntermediateResultCache cache = new IntermediateResultCache(0);
+        cache.setSpillStore(new MatSpillStore(dir, 0));
+        cache.put("a", image(7));
+        // Shrinking the budget spills everything that is not leased
+        cache.setMaxBytes(1);
+        assertEquals(IMAGE_BYTES, cache.getSpilledBytes());
+        cache.setMaxBytes(0);
+
+        int readers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<MatLease>> leases = new ArrayList<>();
+        try {
+            for (int i = 0; i < readers; i++) {
+                leases.add(pool.submit(() -> {
+                    start.await();
+                    return cache.acquire("a");
+                }));
+            }
+            start.countDown();
+            Mat first = null;
+            for (Future<MatLease> future : leases) {
+                try (MatLease lease = future.get()) {
+                    if (first == null) {
+                        first = lease.mat();
+                    }
+                    assertSame(first, lease.mat());
+                    assertEquals(7.0, lease.mat().get(10, 10)[0]);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, cache.getFaultCount());
+    }
+
+    @Test
+    void testUnreadableSpillFileDropsEntry() throws Exception {
+        IntermediateResultCache cache = new IntermediateResultCache(IMAGE_BYTES);
+        cache.setSpillStore(new MatSpillStore(dir, 0));
+        List<String> evicted = new ArrayList<>();
+        cache.addEvictionListener(evicted::add);
+        cache.put("a", image(1));
+        cache.put("b", image(2));
+        try (var files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.write(file, new byte[8]);
+            }
+        }
+
+        assertNull(cache.acquire("a"));
+        assertFalse(cache.containsKey("a"));
+        assertEquals(0, cache.getSpilledBytes());
+        assertEquals(List.of("a"), evicted);
+    }
+}
@@ -0,0 +1,88 @@
+package com.imageprocessing.server;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for MatSpillStore to verify that Mats survive a write/read round
+ * trip, including when the pixels are mapped in several bands.
+ */
+class MatSpillStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    private static Mat random(int rows, int cols, int type) {
+        Mat mat = new Mat(rows, cols, type);
+        Core.randu(mat, 0, 255);
+        return mat;
+    }
+
+    private static void assertPixelsEqual(Mat expected, Mat actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.type(), actual.type());
+        Mat diff = new Mat();
+        try {
+            Core.absdiff(expected, actual, diff);
+            assertEquals(0, Core.countNonZero(diff.reshape(1)));
+        } finally {
+            diff.release();
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        MatSpillStore store = new MatSpillStore(dir, 0);
+        Mat mat = random(37, 53, CvType.CV_8UC3);
+        Path file = store.write(mat);
+        Mat read = MatSpillStore.read(file);
+        try {
+            assertEquals(MatSpillStore.HEADER_SIZE + 37 * 53 * 3, Files.size(file));
+            assertPixelsEqual(mat, read);
+        } finally {
+            mat.release();
+            read.release();
+            MatSpillStore.delete(file);
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testBandedMapping() throws Exception {
+        MatSpillStore store = new MatSpillStore(dir, 0);
+        Mat mat = random(101, 40, CvType.CV_16UC3);
+        // A non-continuous view, mapped 7 rows (1680 bytes) at a time with a short last band
+        Mat roi = mat.submat(3, 98, 5, 35);
+        Path file = store.write(roi, 7 * 30 * 6 + 5);
+        Mat read = MatSpillStore.read(file, 3 * 30 * 6);
+        try {
+            assertPixelsEqual(roi, read);
+        } finally {
+            roi.release();
+            mat.release();
+            read.release();
+        }
+    }
+
+    @Test
+    void testRejectsForeignFiles() throws Exception {
+        Path file = dir.resolve("bogus.mat");
+        Files.write(file, new byte[64]);
+        assertThrows(IOException.class, () -> MatSpillStore.read(file));
+    }
+}
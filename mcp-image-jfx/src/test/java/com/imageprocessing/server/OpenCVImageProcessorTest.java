@@ -0,0 +1,87 @@
+package com.imageprocessing.server;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for OpenCVImageProcessor to verify that every input is decoded to
+ * 8-bit gray or BGR, whatever its source, format and decode scale.
+ */
+class OpenCVImageProcessorTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    private static byte[] encode(String extension, Mat mat) {
+        MatOfByte buffer = new MatOfByte();
+        try {
+            Imgcodecs.imencode(extension, mat, buffer);
+            return buffer.toArray();
+        } finally {
+            buffer.release();
+            mat.release();
+        }
+    }
+
+    @Test
+    void testDecodePolicyAtEveryScale() throws Exception {
+        byte[] bgra16 = encode(".png", new Mat(64, 64, CvType.CV_16UC4, new Scalar(1000, 2000, 3000, 65535)));
+        byte[] gray = encode(".png", new Mat(64, 64, CvType.CV_8UC1, new Scalar(7)));
+        byte[] jpeg = encode(".jpg", new Mat(64, 64, CvType.CV_8UC3, new Scalar(10, 20, 30)));
+
+        for (int scale : new int[] {1, 2, 4, 8}) {
+            Mat color = OpenCVImageProcessor.decodeImage(bgra16, scale);
+            Mat single = OpenCVImageProcessor.decodeImage(gray, scale);
+            Mat bgr = OpenCVImageProcessor.decodeImage(jpeg, scale);
+            try {
+                assertEquals(CvType.CV_8UC3, color.type(), "16-bit BGRA at scale " + scale);
+                assertEquals(CvType.CV_8UC1, single.type(), "gray at scale " + scale);
+                assertEquals(CvType.CV_8UC3, bgr.type(), "JPEG at scale " + scale);
+                assertEquals(64 / scale, single.cols());
+            } finally {
+                color.release();
+                single.release();
+                bgr.release();
+            }
+        }
+    }
+
+    @Test
+    void testSourcesDecodeAlike() throws Exception {
+        byte[] bytes = encode(".png", new Mat(32, 48, CvType.CV_16UC4, new Scalar(1000, 2000, 3000, 65535)));
+        Path file = dir.resolve("in.png");
+        Files.write(file, bytes);
+
+        Mat fromPath = OpenCVImageProcessor.loadImage(file.toString(), null, null, 1);
+        Mat fromData = OpenCVImageProcessor.loadImage(null, null, Base64.getEncoder().encodeToString(bytes), 1);
+        Mat fromUrl = OpenCVImageProcessor.loadImage(null, file.toUri().toString(), null, 1);
+        try {
+            for (Mat mat : new Mat[] {fromPath, fromData, fromUrl}) {
+                assertEquals(CvType.CV_8UC3, mat.type());
+                assertEquals(48, mat.cols());
+                assertEquals(32, mat.rows());
+            }
+        } finally {
+            fromPath.release();
+            fromData.release();
+            fromUrl.release();
+        }
+    }
+}
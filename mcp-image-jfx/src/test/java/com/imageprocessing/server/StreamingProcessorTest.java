@@ -0,0 +1,131 @@
+package com.imageprocessing.server;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for StreamingProcessor to verify that band-by-band results match
+ * a whole-image call, including the short last band.
+ */
+class StreamingProcessorTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    private Path writeRandom(String name, int type) {
+        // 515 rows: eight full 64-row bands and a 3-row last band
+        Mat mat = new Mat(515, 600, type);
+        Core.setRNGSeed(11);
+        Core.randu(mat, 0, 256);
+        Path file = dir.resolve(name);
+        Imgcodecs.imwrite(file.toString(), mat);
+        mat.release();
+        return file;
+    }
+
+    private static void assertMatchesWhole(Path input, Path output, TiledExecutor.TileOperation operation, int flags) {
+        Mat src = Imgcodecs.imread(input.toString(), flags);
+        Mat expected = operation.apply(src);
+        Mat actual = Imgcodecs.imread(output.toString(), flags);
+        Mat diff = new Mat();
+        try {
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.type(), actual.type());
+            Core.absdiff(expected, actual, diff);
+            assertEquals(0, Core.countNonZero(diff.reshape(1)));
+        } finally {
+            src.release();
+            expected.release();
+            actual.release();
+            diff.release();
+        }
+    }
+
+    @Test
+    void testBandsMatchWholeImage() throws Exception {
+        Path input = writeRandom("color.png", CvType.CV_8UC3);
+        Path output = dir.resolve("blurred.tif");
+        TiledExecutor.TileOperation blur = band -> {
+            Mat dst = new Mat();
+            Imgproc.GaussianBlur(band, dst, new Size(15, 15), 0);
+            return dst;
+        };
+
+        StreamingProcessor.Summary summary = StreamingProcessor.process(input, output, 7, blur, 64, () -> false);
+        assertEquals(600, summary.getWidth());
+        assertEquals(515, summary.getHeight());
+        assertEquals(9, summary.getBands());
+        // A band never holds more than its rows plus the halo on both sides
+        assertTrue(summary.getPeakBandBytes() <= (64 + 2 * 7) * 600 * 3);
+        assertMatchesWhole(input, output, blur, Imgcodecs.IMREAD_COLOR);
+    }
+
+    @Test
+    void testGrayBandsMatchWholeImage() throws Exception {
+        Path input = writeRandom("gray.png", CvType.CV_8UC1);
+        Path output = dir.resolve("median.tiff");
+        TiledExecutor.TileOperation median = band -> {
+            Mat dst = new Mat();
+            Imgproc.medianBlur(band, dst, 5);
+            return dst;
+        };
+
+        StreamingProcessor.process(input, output, 2, median, 64, () -> false);
+        assertMatchesWhole(input, output, median, Imgcodecs.IMREAD_GRAYSCALE);
+
+        Mat gray = Imgcodecs.imread(input.toString(), Imgcodecs.IMREAD_GRAYSCALE);
+        Mat binary = new Mat();
+        double expected = Imgproc.threshold(gray, binary, 0, 255, Imgproc.THRESH_BINARY + Imgproc.THRESH_OTSU);
+        gray.release();
+        binary.release();
+        assertEquals(expected, StreamingProcessor.otsuThreshold(input, 64, () -> false));
+    }
+
+    @Test
+    void testRejectsNonTiffOutputAndCleansUpOnCancel() throws Exception {
+        Path input = writeRandom("in.png", CvType.CV_8UC1);
+        TiledExecutor.TileOperation copy = band -> band.clone();
+        assertThrows(IllegalArgumentException.class,
+            () -> StreamingProcessor.process(input, dir.resolve("out.png"), 0, copy, 64, () -> false));
+
+        Path output = dir.resolve("cancelled.tif");
+        int[] checks = {0};
+        assertThrows(CancellationException.class,
+            () -> StreamingProcessor.process(input, output, 0, copy, 64, () -> ++checks[0] > 2));
+        assertFalse(Files.exists(output));
+    }
+
+    @Test
+    void testRejectsOutputThatIsTheInput() throws Exception {
+        Path input = writeRandom("in.tif", CvType.CV_8UC1);
+        long size = Files.size(input);
+        TiledExecutor.TileOperation failing = band -> {
+            throw new IllegalStateException("Failed");
+        };
+
+        // Spelled differently, still the same file: it must survive
+        Path sameFile = dir.resolve("sub/../in.tif");
+        Files.createDirectories(dir.resolve("sub"));
+        assertThrows(IllegalArgumentException.class,
+            () -> StreamingProcessor.process(input, sameFile, 0, failing, 64, () -> false));
+        assertEquals(size, Files.size(input));
+    }
+}
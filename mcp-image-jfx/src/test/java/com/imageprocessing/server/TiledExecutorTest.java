@@ -0,0 +1,122 @@
+package com.imageprocessing.server;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.photo.Photo;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for TiledExecutor to verify that tiled filter, blur and denoise
+ * results match a single whole-image call pixel for pixel, edge tiles included.
+ */
+class TiledExecutorTest {
+
+    // 2100 x 2090 = 4.4 MP: two full 1024 tiles per axis plus narrow edge tiles
+    private static Mat color;
+    private static Mat gray;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+        color = new Mat(2090, 2100, CvType.CV_8UC3);
+        Core.setRNGSeed(7);
+        Core.randu(color, 0, 256);
+        gray = new Mat();
+        Imgproc.cvtColor(color, gray, Imgproc.COLOR_BGR2GRAY);
+    }
+
+    @AfterAll
+    static void release() {
+        color.release();
+        gray.release();
+    }
+
+    private static void assertIdentical(Mat expected, Mat actual) {
+        try {
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.type(), actual.type());
+            Mat diff = new Mat();
+            Core.absdiff(expected, actual, diff);
+            assertEquals(0, Core.countNonZero(diff.reshape(1)));
+            diff.release();
+        } finally {
+            expected.release();
+            actual.release();
+        }
+    }
+
+    @Test
+    void testFilterMatchesUntiled() {
+        assertTrue((long) color.rows() * color.cols() >= TiledExecutor.MIN_TILED_PIXELS);
+
+        Mat gaussian = new Mat();
+        Imgproc.GaussianBlur(color, gaussian, new Size(9, 9), 2.0);
+        assertIdentical(gaussian, OpenCVImageProcessor.filter(color, "GAUSSIAN", 9, 2.0, 0, 0, () -> false));
+
+        Mat median = new Mat();
+        Imgproc.medianBlur(color, median, 7);
+        assertIdentical(median, OpenCVImageProcessor.filter(color, "MEDIAN", 7, 0, 0, 0, () -> false));
+
+        Mat bilateral = new Mat();
+        Imgproc.bilateralFilter(gray, bilateral, 5, 50, 50);
+        assertIdentical(bilateral, OpenCVImageProcessor.filter(gray, "BILATERAL", 5, 0, 50, 50, () -> false));
+    }
+
+    @Test
+    void testBlurMatchesUntiled() {
+        Mat gaussian = new Mat();
+        Imgproc.GaussianBlur(color, gaussian, new Size(15, 15), 0);
+        assertIdentical(gaussian, OpenCVImageProcessor.blur(color, "GAUSSIAN", 15, 0, () -> false));
+
+        Mat box = new Mat();
+        Imgproc.blur(gray, box, new Size(11, 11));
+        assertIdentical(box, OpenCVImageProcessor.blur(gray, "BOX", 11, 0, () -> false));
+
+        // Motion blur goes through filter2D with an angled kernel
+        Mat kernel = OpenCVImageProcessor.getMotionBlurKernel(9, 30);
+        Mat motion = new Mat();
+        Imgproc.filter2D(gray, motion, -1, kernel);
+        kernel.release();
+        assertIdentical(motion, OpenCVImageProcessor.blur(gray, "MOTION", 9, 30, () -> false));
+    }
+
+    @Test
+    void testDenoiseMatchesUntiled() {
+        Mat gray8 = new Mat();
+        Photo.fastNlMeansDenoising(gray, gray8, 10, 3, 9);
+        assertIdentical(gray8, OpenCVImageProcessor.denoise(gray, 10, 3, 9, () -> false));
+
+        Mat bgr = new Mat();
+        Photo.fastNlMeansDenoisingColored(color, bgr, 10, 10, 3, 7);
+        assertIdentical(bgr, OpenCVImageProcessor.denoise(color, 10, 3, 7, () -> false));
+    }
+
+    @Test
+    void testSmallTilesAndCancellation() {
+        // Many small tiles, with ragged right and bottom edges, through the package-private tile size
+        Mat expected = new Mat();
+        Imgproc.GaussianBlur(gray, expected, new Size(21, 21), 0);
+        assertIdentical(expected, TiledExecutor.apply(gray, 10, 300, tile -> {
+            Mat dst = new Mat();
+            Imgproc.GaussianBlur(tile, dst, new Size(21, 21), 0);
+            return dst;
+        }, () -> false));
+
+        AtomicInteger checks = new AtomicInteger();
+        assertThrows(CancellationException.class, () -> TiledExecutor.apply(gray, 1, 300, tile -> {
+            Mat dst = new Mat();
+            tile.copyTo(dst);
+            return dst;
+        }, () -> checks.incrementAndGet() > 3));
+    }
+}
@@ -0,0 +1,183 @@
+package com.imageprocessing.server;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Scalar;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for ToolResultMemo to verify how inputs are identified and that
+ * lineage invalidates derived results and is forgotten once it is unreachable.
+ */
+class ToolResultMemoTest {
+
+    private static final long IMAGE_BYTES = 100 * 100;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void loadOpenCV() {
+        nu.pattern.OpenCV.loadLocally();
+    }
+
+    private static Mat image(int value) {
+        return new Mat(100, 100, CvType.CV_8UC1, new Scalar(value));
+    }
+
+    private static void invert(ToolResultMemo memo, MatLease input) throws Exception {
+        Mat result = memo.compute("invert", Map.of(), List.of(input), () -> {
+            Mat inverted = new Mat();
+            Core.bitwise_not(input.mat(), inverted);
+            return inverted;
+        });
+        result.release();
+    }
+
+    private static void invertKey(IntermediateResultCache cache, ToolResultMemo memo, String key) throws Exception {
+        try (MatLease input = cache.acquire(key)) {
+            invert(memo, input);
+        }
+    }
+
+    @Test
+    void testResultsDoNotShareMemoizedPixels() throws Exception {
+        ToolResultMemo memo = new ToolResultMemo(new IntermediateResultCache(), ToolResultMemo.DEFAULT_MAX_BYTES);
+        try (MatLease input = MatLease.owned(image(1), "file:/in.png#1@10@1000")) {
+            Mat first = memo.compute("invert", Map.of(), List.of(input), () -> {
+                Mat inverted = new Mat();
+                Core.bitwise_not(input.mat(), inverted);
+                return inverted;
+            });
+            // Edited in place by its new owner, e.g. through a cache lease
+            first.setTo(new Scalar(0));
+
+            Mat second = memo.compute("invert", Map.of(), List.of(input), () -> fail("Should be memoized"));
+            second.setTo(new Scalar(7));
+            Mat third = memo.compute("invert", Map.of(), List.of(input), () -> fail("Should be memoized"));
+            try {
+                assertEquals(2, memo.getHitCount());
+                assertEquals(254.0, Core.mean(third).val[0]);
+                assertEquals(0.0, Core.mean(first).val[0]);
+            } finally {
+                first.release();
+                second.release();
+                third.release();
+            }
+        }
+    }
+
+    @Test
+    void testValidatedSourceIdentifiesInput() throws Exception {
+        ToolResultMemo memo = new ToolResultMemo(new IntermediateResultCache(), ToolResultMemo.DEFAULT_MAX_BYTES);
+        // Same source, different pixels: the source alone decides, nothing is hashed
+        try (MatLease first = MatLease.owned(image(1), "file:/in.png#1@10@1000");
+             MatLease second = MatLease.owned(image(2), "file:/in.png#1@10@1000")) {
+            invert(memo, first);
+            invert(memo, second);
+        }
+        assertEquals(1, memo.getHitCount());
+        assertEquals(1, memo.getMissCount());
+    }
+
+    @Test
+    void testFileInputRevalidated() throws Exception {
+        ToolResultMemo memo = new ToolResultMemo(new IntermediateResultCache(), ToolResultMemo.DEFAULT_MAX_BYTES);
+        DecodedImageCache decoded = new DecodedImageCache();
+        Path file = dir.resolve("in.png");
+        Mat original = image(10);
+        Imgcodecs.imwrite(file.toString(), original);
+        original.release();
+
+        String source;
+        try (MatLease input = decoded.acquire(file.toString(), null, null, 1)) {
+            source = input.source();
+            assertNotNull(source);
+            invert(memo, input);
+        }
+        try (MatLease input = decoded.acquire(file.toString(), null, null, 1)) {
+            assertEquals(source, input.source());
+            invert(memo, input);
+        }
+        assertEquals(1, decoded.getHitCount());
+        assertEquals(1, memo.getHitCount());
+
+        // Rewriting the file changes its validator: both caches miss
+        Mat changed = image(20);
+        Imgcodecs.imwrite(file.toString(), changed);
+        changed.release();
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5000));
+        try (MatLease input = decoded.acquire(file.toString(), null, null, 1)) {
+            assertNotEquals(source, input.source());
+            assertEquals(20.0, input.mat().get(0, 0)[0]);
+            invert(memo, input);
+        }
+        assertEquals(1, decoded.getHitCount());
+        assertEquals(2, memo.getMissCount());
+
+        // Base64 data has no validator and falls back to hashing
+        try (MatLease input = decoded.acquire(null, null,
+                Base64.getEncoder().encodeToString(Files.readAllBytes(file)), 1)) {
+            assertNull(input.source());
+        }
+    }
+
+    @Test
+    void testLineageInvalidatesDerivedResults() throws Exception {
+        IntermediateResultCache cache = new IntermediateResultCache(0);
+        ToolResultMemo memo = new ToolResultMemo(cache, ToolResultMemo.DEFAULT_MAX_BYTES);
+        cache.put("a", image(1));
+        invertKey(cache, memo, "a");
+        cache.put("b", image(2));
+        memo.recordLineage("b", List.of("a"));
+        invertKey(cache, memo, "b");
+        cache.put("c", image(3));
+        invertKey(cache, memo, "c");
+        assertEquals(3, memo.size());
+
+        // Overwriting "a" drops results read from "a" and from "b", derived from it
+        cache.put("a", image(4));
+        assertEquals(1, memo.size());
+        assertEquals(2, memo.getInvalidationCount());
+        assertEquals(0, memo.getLineageSize());
+    }
+
+    @Test
+    void testLineageForgottenOnEviction() throws Exception {
+        // Cache eviction: the evicted key's lineage is dropped
+        IntermediateResultCache small = new IntermediateResultCache(IMAGE_BYTES);
+        ToolResultMemo memo = new ToolResultMemo(small, ToolResultMemo.DEFAULT_MAX_BYTES);
+        small.put("a", image(1));
+        memo.recordLineage("b", List.of("a"));
+        assertEquals(1, memo.getLineageSize());
+        small.put("b", image(2));
+        assertFalse(small.containsKey("a"));
+        assertEquals(0, memo.getLineageSize());
+
+        // Memo eviction: lineage that no remaining result reads is dropped
+        IntermediateResultCache cache = new IntermediateResultCache(0);
+        ToolResultMemo bounded = new ToolResultMemo(cache, IMAGE_BYTES);
+        cache.put("a", image(1));
+        cache.put("b", image(2));
+        cache.put("c", image(3));
+        bounded.recordLineage("b", List.of("a"));
+        invertKey(cache, bounded, "b");
+        assertEquals(1, bounded.getLineageSize());
+        invertKey(cache, bounded, "c");
+        assertEquals(1, bounded.size());
+        assertEquals(0, bounded.getLineageSize());
+    }
+}
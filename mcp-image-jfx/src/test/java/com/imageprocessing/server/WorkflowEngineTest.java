@@ -0,0 +1,58 @@
+package com.imageprocessing.server;
+
+import com.imageprocessing.ui.model.ToolInstance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for WorkflowEngine to verify workflow editing and listener notification
+ * without a JavaFX UI.
+ */
+class WorkflowEngineTest {
+
+    private final WorkflowEngine engine = new WorkflowEngine(new OpenCVImageProcessor(),
+        new IntermediateResultCache(), new DecodedImageCache());
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void testListenersSeeWorkflowChanges() {
+        List<List<ToolInstance>> changes = new ArrayList<>();
+        engine.addListener(new WorkflowEngine.Listener() {
+            @Override
+            public void workflowChanged(List<ToolInstance> tools) {
+                changes.add(tools);
+            }
+        });
+
+        assertEquals(1, engine.addTool("blur_image", Map.of("kernel_size", 7)));
+        assertEquals(2, engine.addTool("color_to_grayscale", Map.of()));
+        assertEquals(7, engine.getTools().get(0).getParameter("kernel_size"));
+        assertEquals(2, changes.size());
+
+        // Setting the same tool list again is not a change
+        engine.setTools(engine.getTools());
+        assertEquals(2, changes.size());
+
+        assertEquals(2, engine.clear());
+        assertEquals(List.of(), changes.get(2));
+        assertThrows(IllegalArgumentException.class, () -> engine.addTool("no_such_tool", Map.of()));
+    }
+
+    @Test
+    void testEmptyWorkflowFailsToExecute() {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> engine.execute().get());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertFalse(engine.isExecuting());
+    }
+}
@@ -1,8 +1,12 @@
 package com.imageprocessing.ui;
 
+import com.imageprocessing.server.AdmissionController;
 import com.imageprocessing.server.McpConfig;
+import com.imageprocessing.server.ResponseImageMode;
 import org.junit.jupiter.api.Test;
 
+import java.nio.file.Paths;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -106,6 +110,92 @@ class McpCliOptionsTest {
         assertEquals("/api/mcp", config.getHttpEndpoint(), "Config endpoint should be /api/mcp");
     }
 
+    @Test
+    void testCacheBudget() {
+        McpCliOptions options = McpCliOptions.parse(new String[]{"--cache-max-mb=512"});
+        assertNotNull(options, "Options should not be null");
+
+        assertEquals(512, options.getCacheMaxMb(), "Cache budget should be 512 MB");
+
+        McpConfig config = options.buildMcpConfig();
+        assertEquals(512L * 1024 * 1024, config.getCacheMaxBytes(), "Config cache budget should be in bytes");
+        assertNull(config.getSpillDirectory(), "Spilling should be disabled by default");
+    }
+
+    @Test
+    void testCacheSpill() {
+        McpCliOptions options = McpCliOptions.parse(new String[]{
+            "--cache-spill-dir=/tmp/spill", "--cache-spill-max-mb=1024"});
+        assertNotNull(options, "Options should not be null");
+
+        McpConfig config = options.buildMcpConfig();
+        assertEquals(java.nio.file.Paths.get("/tmp/spill"), config.getSpillDirectory(), "Spill directory should be set");
+        assertEquals(1024L * 1024 * 1024, config.getSpillMaxBytes(), "Spill budget should be in bytes");
+    }
+
+    @Test
+    void testMemoBudget() {
+        McpCliOptions options = McpCliOptions.parse(new String[]{"--memo-max-mb=0"});
+        assertNotNull(options, "Options should not be null");
+        assertEquals(0L, options.getMemoMaxMb(), "Memo budget should be 0");
+        assertEquals(0L, options.buildMcpConfig().getMemoMaxBytes(), "Memoization should be disabled");
+    }
+
+    @Test
+    void testDecodeCacheBudget() {
+        McpCliOptions options = McpCliOptions.parse(new String[]{"--decode-cache-max-mb=64"});
+        assertNotNull(options, "Options should not be null");
+        assertEquals(64L * 1024 * 1024, options.buildMcpConfig().getDecodeCacheMaxBytes());
+    }
+
+    @Test
+    void testImageEncoding() {
+        McpCliOptions options = McpCliOptions.parse(new String[]{
+            "--image-format=webp,jpeg", "--image-quality=75", "--png-compression=6"
+        });
+        assertNotNull(options, "Options should not be null");
+        McpConfig config = options.buildMcpConfig();
+        assertEquals("webp,jpeg", config.getImageFormat());
+        assertEquals(75, config.getImageQuality());
+        assertEquals(6, config.getPngCompression());
+    }
+
+    @Test
+    void testResponseImage() {
+        McpCliOptions options = McpCliOptions.parse(new String[]{"--response-image=Thumbnail", "--thumbnail-size=256"});
+        assertNotNull(options, "Options should not be null");
+        McpConfig config = options.buildMcpConfig();
+        assertEquals(ResponseImageMode.THUMBNAIL, config.getResponseImage());
+        assertEquals(256, config.getThumbnailSize());
+
+        McpCliOptions invalid = McpCliOptions.parse(new String[]{"--response-image=tiny"});
+        assertThrows(IllegalArgumentException.class, invalid::buildMcpConfig);
+    }
+
+    @Test
+    void testAdmission() {
+        McpConfig defaults = McpCliOptions.parse(new String[]{}).buildMcpConfig();
+        assertEquals(AdmissionController.DEFAULT_PERMITS, defaults.getAdmissionPermits());
+
+        McpCliOptions options = McpCliOptions.parse(new String[]{
+            "--admission-permits=16", "--admission-queue=4", "--admission-wait-ms=500"
+        });
+        assertNotNull(options, "Options should not be null");
+        McpConfig config = options.buildMcpConfig();
+        assertEquals(16, config.getAdmissionPermits());
+        assertEquals(4, config.getAdmissionQueue());
+        assertEquals(500L, config.getAdmissionWaitMs());
+    }
+
+    @Test
+    void testWorkflowDir() {
+        assertNull(McpCliOptions.parse(new String[]{}).buildMcpConfig().getWorkflowDirectory());
+
+        McpCliOptions options = McpCliOptions.parse(new String[]{"--workflow-dir=/tmp/workflows"});
+        assertNotNull(options, "Options should not be null");
+        assertEquals(Paths.get("/tmp/workflows"), options.buildMcpConfig().getWorkflowDirectory());
+    }
+
     @Test
     void testInvalidMode() {
         McpCliOptions options = McpCliOptions.parse(new String[]{"--mcp-mode=invalid"});
@@ -0,0 +1,55 @@
+package com.imageprocessing.ui.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test suite for ToolInstance to verify dirty tracking of parameters.
+ */
+class ToolInstanceTest {
+
+    @Test
+    void testParameterEditsMarkDirty() {
+        ToolInstance tool = new ToolInstance(ToolRegistry.getToolByName("blur_image").orElseThrow());
+        assertTrue(tool.isDirty());
+
+        tool.setResult("Applied GAUSSIAN blur");
+        tool.markClean("stamp", tool.getEditCount());
+        assertFalse(tool.isDirty());
+        assertEquals("stamp", tool.getRunStamp());
+        assertEquals("Applied GAUSSIAN blur", tool.getRunResult());
+
+        // Setting the same value is not an edit
+        tool.setParameter("kernel_size", tool.getParameter("kernel_size"));
+        assertFalse(tool.isDirty());
+
+        tool.setParameter("kernel_size", 9);
+        assertTrue(tool.isDirty());
+    }
+
+    @Test
+    void testEditDuringRunKeepsDirty() {
+        ToolInstance tool = new ToolInstance(ToolRegistry.getToolByName("blur_image").orElseThrow());
+        long runStart = tool.getEditCount();
+
+        // Edited while the run that started above is still going
+        tool.setParameter("kernel_size", 9);
+        tool.markClean("stamp", runStart);
+        assertTrue(tool.isDirty());
+
+        tool.markClean("stamp", tool.getEditCount());
+        assertFalse(tool.isDirty());
+    }
+
+    @Test
+    void testReorderingMarksAllDirty() {
+        WorkflowModel model = new WorkflowModel();
+        model.addTool(ToolRegistry.getToolByName("blur_image").orElseThrow());
+        model.addTool(ToolRegistry.getToolByName("color_to_grayscale").orElseThrow());
+        model.getToolInstances().forEach(tool -> tool.markClean("stamp", tool.getEditCount()));
+
+        model.moveTool(0, 1);
+        model.getToolInstances().forEach(tool -> assertTrue(tool.isDirty()));
+    }
+}